@@ -0,0 +1,17 @@
+package org.omnetpp.scave.writers;
+
+/**
+ * Extends IOutputVector with a recording method that takes a primitive
+ * timestamp, so that recording does not require boxing the time into a
+ * Number object.
+ */
+public interface IOutputVector2 extends IOutputVector {
+    /**
+     * Record a value with the given time stamp into the output vector. The
+     * return value is true if the data was actually recorded, and false
+     * if it was not recorded (because of filtering, etc.)
+     *
+     * Values MUST be recorded increasing timestamp order.
+     */
+    boolean record(double time, double value);
+}
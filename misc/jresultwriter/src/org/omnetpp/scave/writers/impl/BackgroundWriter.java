@@ -0,0 +1,125 @@
+package org.omnetpp.scave.writers.impl;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.omnetpp.scave.writers.ResultRecordingException;
+
+/**
+ * Executes write tasks on a dedicated background thread, in submission order.
+ * Tasks are passed through a bounded queue, so if the writer cannot keep up
+ * with the producer, submit() blocks until there is room (backpressure).
+ * Errors that occur on the writer thread are remembered and rethrown on the
+ * producer thread by the next submit(), drain() or close() call.
+ */
+public class BackgroundWriter {
+    private static final Runnable STOP = new Runnable() {
+        public void run() {
+        }
+    };
+
+    private final BlockingQueue<Runnable> queue;
+    private final Thread thread;
+    private volatile RuntimeException error;
+
+    public BackgroundWriter(String threadName, int queueCapacity) {
+        queue = new ArrayBlockingQueue<Runnable>(queueCapacity);
+        thread = new Thread(threadName) {
+            @Override
+            public void run() {
+                processTasks();
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    protected void processTasks() {
+        while (true) {
+            Runnable task;
+            try {
+                task = queue.take();
+            }
+            catch (InterruptedException e) {
+                error = new ResultRecordingException("Result writer thread interrupted", e);
+                return;
+            }
+            if (task == STOP)
+                return;
+            if (error != null)
+                continue; // skip remaining writes after an error, but keep consuming the queue
+            try {
+                task.run();
+            }
+            catch (RuntimeException e) {
+                error = e;
+            }
+        }
+    }
+
+    /**
+     * Appends a task to the queue; blocks if the queue is full.
+     */
+    public void submit(Runnable task) {
+        checkError();
+        if (!thread.isAlive())
+            throw new IllegalStateException("Result writer thread is no longer running");
+        try {
+            queue.put(task);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResultRecordingException("Interrupted while waiting for the result writer thread", e);
+        }
+    }
+
+    /**
+     * Waits until all tasks submitted so far have been executed.
+     */
+    public void drain() {
+        final CountDownLatch done = new CountDownLatch(1);
+        submit(new Runnable() {
+            public void run() {
+                done.countDown();
+            }
+        });
+        try {
+            while (!done.await(100, TimeUnit.MILLISECONDS))
+                if (error != null || !thread.isAlive())
+                    break;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResultRecordingException("Interrupted while waiting for the result writer thread", e);
+        }
+        checkError();
+    }
+
+    /**
+     * Executes all pending tasks, then stops the writer thread.
+     */
+    public void close() {
+        if (thread.isAlive()) {
+            try {
+                queue.put(STOP);
+                thread.join();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ResultRecordingException("Interrupted while waiting for the result writer thread", e);
+            }
+        }
+        checkError();
+    }
+
+    /**
+     * Rethrows the error that occurred on the writer thread, if any.
+     */
+    public void checkError() {
+        RuntimeException e = error;
+        if (e != null)
+            throw e;
+    }
+}
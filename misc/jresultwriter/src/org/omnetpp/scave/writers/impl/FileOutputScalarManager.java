@@ -2,8 +2,11 @@ package org.omnetpp.scave.writers.impl;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.OutputStream;
 import java.io.PrintStream;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.omnetpp.scave.writers.IHistogramSummary;
 import org.omnetpp.scave.writers.IOutputScalarManager;
@@ -17,33 +20,126 @@ import org.omnetpp.scave.writers.ResultRecordingException;
  * This class does not support filtering (of scalars or recorded data),
  * this functionality may be added via subclasses.
  *
+ * In asynchronous mode (see setAsyncWriting()), records are formatted into
+ * an in-memory buffer on the calling thread; full buffers are passed to a
+ * background writer thread, which writes them to the file.
+ *
  * @author Andras
  */
 public class FileOutputScalarManager extends OutputFileManager implements IOutputScalarManager {
     public static final int FILE_VERSION = 2;
+    public static final int ASYNC_BUFFER_SIZE = 64*1024;
 
     protected String runID;
     protected Map<String, String> runAttributes;
     protected File file;
     protected PrintStream out;
 
+    // asynchronous mode: "out" writes into recordBuffer, and fileOut is used by the writer thread
+    protected boolean asyncWriting = false;
+    protected int asyncQueueCapacity = 16;
+    protected BackgroundWriter writer;
+    protected RecordBuffer recordBuffer;
+    protected Queue<RecordBuffer> freeRecordBuffers = new ConcurrentLinkedQueue<RecordBuffer>();
+    protected PrintStream fileOut;
+
+    /**
+     * Formatted records waiting to be written into the file. Buffers are
+     * handed over to the writer thread when full, and reused afterwards.
+     */
+    class RecordBuffer implements Runnable {
+        byte[] data = new byte[ASYNC_BUFFER_SIZE + 1024];
+        int size = 0;
+
+        void write(int b) {
+            if (size == data.length)
+                grow(1);
+            data[size++] = (byte)b;
+        }
+
+        void write(byte[] b, int off, int len) {
+            if (size + len > data.length)
+                grow(len);
+            System.arraycopy(b, off, data, size, len);
+            size += len;
+        }
+
+        void grow(int len) {
+            byte[] newData = new byte[Math.max(2 * data.length, size + len)];
+            System.arraycopy(data, 0, newData, 0, size);
+            data = newData;
+        }
+
+        /**
+         * Writes the records into the scalar file. Invoked on the background writer thread.
+         */
+        public void run() {
+            if (fileOut == null)
+                fileOut = openFile();
+            fileOut.write(data, 0, size);
+            size = 0;
+            freeRecordBuffers.offer(this);
+        }
+    }
+
     public FileOutputScalarManager(String fileName) {
         file = new File(fileName);
         if (file.exists() && !file.delete())
             throw new ResultRecordingException("Cannot delete old output scalar file " + file.getPath());
     }
 
+    public boolean isAsyncWriting() {
+        return asyncWriting;
+    }
+
+    /**
+     * Turns on/off asynchronous mode, where the scalar file is written by
+     * a background thread. This should be called before recording starts.
+     */
+    public void setAsyncWriting(boolean asyncWriting) {
+        if (out != null)
+            throw new IllegalStateException("Cannot change writing mode after recording has started");
+        this.asyncWriting = asyncWriting;
+    }
+
+    public int getAsyncQueueCapacity() {
+        return asyncQueueCapacity;
+    }
+
+    /**
+     * Sets the maximum number of buffers (each holding ASYNC_BUFFER_SIZE bytes
+     * of records) that may wait for the background writer thread in asynchronous
+     * mode; when the queue is full, recording blocks until the writer catches up.
+     */
+    public void setAsyncQueueCapacity(int count) {
+        if (writer != null)
+            throw new IllegalStateException("Cannot change queue capacity after recording has started");
+        this.asyncQueueCapacity = count;
+    }
+
     public void open(String runID, Map<String, String> runAttributes) {
         this.runID = runID;
         this.runAttributes = runAttributes;
     }
 
     protected void open() {
-        try {
-            out = new PrintStream(file);
+        if (asyncWriting) {
+            recordBuffer = new RecordBuffer();
+            out = new PrintStream(new OutputStream() {
+                @Override
+                public void write(int b) {
+                    recordBuffer.write(b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    recordBuffer.write(b, off, len);
+                }
+            });
+            writer = new BackgroundWriter("Scalar writer for " + file.getName(), asyncQueueCapacity);
         }
-        catch (FileNotFoundException e) {
-            throw new ResultRecordingException("Cannot open output scalar file " + file.getPath() + e.getMessage(), e);
+        else {
+            out = openFile();
         }
 
         out.println("version " + FILE_VERSION);
@@ -52,10 +148,25 @@ public class FileOutputScalarManager extends OutputFileManager implements IOutpu
         flushAndCheck();
     }
 
+    protected PrintStream openFile() {
+        try {
+            return new PrintStream(file);
+        }
+        catch (FileNotFoundException e) {
+            throw new ResultRecordingException("Cannot open output scalar file " + file.getPath() + e.getMessage(), e);
+        }
+    }
+
     public void close() {
         if (out != null) {
             flushAndCheck();
             out.close();
+            if (writer != null) {
+                writer.close();
+                writer = null;
+                if (fileOut != null)
+                    fileOut.close();
+            }
         }
     }
 
@@ -67,6 +178,39 @@ public class FileOutputScalarManager extends OutputFileManager implements IOutpu
     protected void flushAndCheck() {
         if (out.checkError()) // implies flush()
             throw new ResultRecordingException("Cannot write output scalar file " + file.getPath());
+        if (writer != null) {
+            submitRecordBuffer();
+            writer.submit(new Runnable() {
+                public void run() {
+                    if (fileOut != null && fileOut.checkError())
+                        throw new ResultRecordingException("Cannot write output scalar file " + file.getPath());
+                }
+            });
+            writer.drain();
+        }
+    }
+
+    /**
+     * In asynchronous mode, hands over the formatted records to the writer
+     * thread once the buffer is full.
+     */
+    protected void recordDone() {
+        if (writer != null && recordBuffer.size >= ASYNC_BUFFER_SIZE)
+            submitRecordBuffer();
+    }
+
+    /**
+     * Passes the current buffer to the writer thread, and continues with
+     * a free one.
+     */
+    protected void submitRecordBuffer() {
+        if (recordBuffer.size > 0) {
+            RecordBuffer filledBuffer = recordBuffer;
+            recordBuffer = freeRecordBuffers.poll();
+            if (recordBuffer == null)
+                recordBuffer = new RecordBuffer();
+            writer.submit(filledBuffer);
+        }
     }
 
     public String getFileName() {
@@ -78,6 +222,7 @@ public class FileOutputScalarManager extends OutputFileManager implements IOutpu
             open();
         out.println("scalar " + q(componentPath) + " " + q(name) + " " + value);
         writeAttributes(out, attributes);
+        recordDone();
     }
 
     public void recordScalar(String componentPath, String name, Number value, Map<String, String> attributes) {
@@ -85,6 +230,7 @@ public class FileOutputScalarManager extends OutputFileManager implements IOutpu
             open();
         out.println("scalar " + q(componentPath) + " " + q(name) + " " + value.toString());
         writeAttributes(out, attributes);
+        recordDone();
     }
 
     public void recordStatistic(String componentPath, String name, IStatisticalSummary statistic, Map<String, String> attributes) {
@@ -122,6 +268,7 @@ public class FileOutputScalarManager extends OutputFileManager implements IOutpu
                 out.println("bin " + histogram.getCellBoundary(n) + histogram.getOverflowCell());
             }
         }
+        recordDone();
     }
 
     protected void writeField(String name, double value) {
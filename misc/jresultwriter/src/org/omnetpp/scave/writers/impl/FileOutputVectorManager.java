@@ -6,11 +6,20 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
-import java.util.HashSet;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.omnetpp.scave.writers.IOutputVector;
+import org.omnetpp.scave.writers.IOutputVector2;
 import org.omnetpp.scave.writers.IOutputVectorManager;
 import org.omnetpp.scave.writers.ISimulationTimeProvider;
 import org.omnetpp.scave.writers.ResultRecordingException;
@@ -23,15 +32,36 @@ import org.omnetpp.scave.writers.ResultRecordingException;
  * This class does not support filtering (of vectors or recorded data)
  * at all -- this functionality may be added via subclasses.
  *
+ * Recorded data are buffered in primitive arrays that are reused from block
+ * to block, and blocks are formatted into a reusable direct buffer and written
+ * via the file channel, so recording does not create garbage. Use the
+ * record(double,double) method of IOutputVector2 to avoid boxing timestamps.
+ *
+ * In asynchronous mode (see setAsyncWriting()), filled blocks are handed
+ * over to a background writer thread which formats them and writes the vector
+ * and index files, so the recording thread does not wait for disk I/O.
+ *
+ * In concurrent mode (see setConcurrentRecording()), vectors may be created
+ * and recorded from multiple threads. Each thread keeps count of the data it
+ * has buffered and hands over its own filled blocks to the single background
+ * writer thread, which serializes them into the vector and index files.
+ * There is no global lock on the recording path; a vector is only locked
+ * while it is being recorded into or flushed. Data recorded into one vector
+ * must still have increasing timestamps, so a vector is normally recorded
+ * from one thread at a time. The simulation time provider must return the
+ * simulation time of the calling thread.
+ *
  * @author Andras
  */
 public class FileOutputVectorManager extends OutputFileManager implements IOutputVectorManager {
     public static final int FILE_VERSION = 2;
+    public static final int WRITE_BUFFER_SIZE = 64*1024;
 
     protected String runID;
     protected Map<String, String> runAttributes;
     protected File file;
     protected FileOutputStream stream;
+    protected FileChannel channel;
     protected PrintStream out;
     protected File indexFile;
     protected FileOutputStream indexStream;
@@ -42,28 +72,137 @@ public class FileOutputVectorManager extends OutputFileManager implements IOutpu
     protected int perVectorLimit = 1000;
     protected int totalLimit = 1000000;
 
-    protected int lastId = 0;
-    protected int nbuffered = 0;
-
-    protected Set<OutputVector> vectors = new HashSet<OutputVector>();
+    protected AtomicInteger lastId = new AtomicInteger();
+    protected int nbuffered = 0;  // not used in concurrent mode
+
+    protected Set<OutputVector> vectors = Collections.newSetFromMap(new ConcurrentHashMap<OutputVector, Boolean>());
+
+    // reused for formatting vector data; only accessed by the thread that does the writing
+    protected NumberFormatter formatter = new NumberFormatter();
+    protected byte[] lineBuffer = new byte[3*NumberFormatter.MAX_LENGTH + 3];
+    protected ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+
+    // asynchronous mode
+    protected boolean asyncWriting = false;
+    protected int asyncQueueCapacity = 64;
+    protected volatile BackgroundWriter writer;
+    protected Queue<Block> freeBlocks = new ConcurrentLinkedQueue<Block>();
+    protected Runnable flushTask = new Runnable() {
+        public void run() {
+            if (out != null)
+                flushAndCheck();
+        }
+    };
+
+    // concurrent mode
+    protected boolean concurrentRecording = false;
+    protected ThreadLocal<ThreadBuffers> threadBuffers = new ThreadLocal<ThreadBuffers>() {
+        @Override
+        protected ThreadBuffers initialValue() {
+            return new ThreadBuffers();
+        }
+    };
+
+    /**
+     * Buffer accounting of one recording thread in concurrent mode: the
+     * number of values the thread has buffered, and the vectors it has
+     * recorded into since its last flush.
+     */
+    class ThreadBuffers {
+        int nbuffered = 0;
+        List<OutputVector> dirtyVectors = new ArrayList<OutputVector>();
+
+        void writeBlocks() {
+            for (OutputVector v : dirtyVectors) {
+                synchronized (v) {
+                    v.listed = false;
+                    v.writeBlock();
+                }
+            }
+            dirtyVectors.clear();
+            nbuffered = 0;
+        }
+    }
 
-    class OutputVector implements IOutputVector {
+    /**
+     * A block of buffered vector data, together with the statistics
+     * that go into its index entry. Blocks are reused.
+     */
+    class Block implements Runnable {
+        OutputVector vector;
         int id;
-        byte[] header;
 
         int n = 0;
-        Number[] times = new Number[10];
+        double[] times = new double[10];
         double[] values = new double[10];
 
-        Number blockStartTime = 0;
-        Number blockEndTime = 0;
+        double startTime = 0;
+        double endTime = 0;
         double min = Double.NaN;
         double max = Double.NaN;
         double sum = 0;
         double sqrSum = 0;
 
+        void add(double time, double value) {
+            // grow only until the buffer limit is reached; arrays are reused afterwards
+            if (n == times.length) {
+                int newSize = (n * 3) / 2;
+                double[] newTimes = new double[newSize];
+                double[] newValues = new double[newSize];
+                System.arraycopy(times, 0, newTimes, 0, n);
+                System.arraycopy(values, 0, newValues, 0, n);
+                times = newTimes;
+                values = newValues;
+            }
+
+            // store
+            times[n] = time;
+            values[n] = value;
+            if (n == 0)
+                startTime = time;
+            endTime = time;
+            n++;
+
+            // update statistics
+            if (min > value || Double.isNaN(min))
+                min = value;
+            if (max < value || Double.isNaN(max))
+                max = value;
+            sum += value;
+            sqrSum += value*value;
+        }
+
+        void reset() {
+            n = 0;
+            min = Double.NaN;
+            max = Double.NaN;
+            sum = 0;
+            sqrSum = 0;
+        }
+
+        /**
+         * Writes the block into the vector file and its entry into the index file.
+         * Invoked on the background writer thread in asynchronous mode.
+         */
+        public void run() {
+            writeBlockData(this);
+            reset();
+            vector = null;
+            freeBlocks.offer(this);
+        }
+    }
+
+    class OutputVector implements IOutputVector2 {
+        int id;
+        byte[] header;  // only accessed by the thread that does the writing
+
+        Block block;
+        double lastTime = 0;
+        boolean listed = false;  // concurrent mode: whether in some thread's dirtyVectors list
+
         public OutputVector(int id, String componentPath, String vectorName, Map<String, String> attributes) {
             this.id = id;
+            this.block = newBlock(this);
 
             // postpone writing out vector declaration until there's actually something to record
             ByteArrayOutputStream bos = new ByteArrayOutputStream();
@@ -85,55 +224,47 @@ public class FileOutputVectorManager extends OutputFileManager implements IOutpu
         public void close() {
             flush();
             vectors.remove(this);
-            id = -1; // i.e. dead object
+            if (concurrentRecording) {
+                synchronized (this) {
+                    id = -1;
+                }
+            }
+            else
+                id = -1; // i.e. dead object
         }
 
         public void flush() {
             if (id == -1)
                 throw new IllegalStateException("Output vector already closed");
 
-            writeBlock();  // implies file flushing as well
+            writeBlockLocked();  // implies file flushing as well
+            if (writer != null)
+                writer.drain();
         }
 
         public boolean record(double value) {
             if (simtimeProvider == null)
                 throw new IllegalStateException("Simtime provider not yet specified");
 
-            return record(simtimeProvider.getSimulationTime(), value);
+            return record(simtimeProvider.getSimulationTime().doubleValue(), value);
         }
 
         public boolean record(Number time, double value) {
-            if (id == -1)
-                throw new IllegalStateException("Attempt to write to an output vector that's already closed");
+            return record(time.doubleValue(), value);
+        }
 
-            if (time.doubleValue() < blockEndTime.doubleValue())
-                throw new IllegalStateException("Vector data must be recorded in increasing timestamp order (t="+time+ "tprev="+blockEndTime+")");
+        public boolean record(double time, double value) {
+            if (concurrentRecording)
+                return recordConcurrently(time, value);
 
-            if (n == times.length) {
-                int newSize = (n * 3) / 2;
-                Number[] newTimes = new Number[newSize];
-                double[] newValues = new double[newSize];
-                System.arraycopy(times, 0, newTimes, 0, n);
-                System.arraycopy(values, 0, newValues, 0, n);
-                times = newTimes;
-                values = newValues;
-            }
+            if (id == -1)
+                throw new IllegalStateException("Attempt to write to an output vector that's already closed");
 
-            // store
-            times[n] = time;
-            values[n] = value;
-            if (n == 0)
-                blockStartTime = time;
-            blockEndTime = time;
-            n++;
+            if (time < lastTime)
+                throw new IllegalStateException("Vector data must be recorded in increasing timestamp order (t="+time+ "tprev="+lastTime+")");
 
-            // update statistics
-            if (min > value || Double.isNaN(min))
-                min = value;
-            if (max < value || Double.isNaN(max))
-                max = value;
-            sum += value;
-            sqrSum += value*value;
+            block.add(time, value);
+            lastTime = time;
 
             ++nbuffered;
 
@@ -143,42 +274,66 @@ public class FileOutputVectorManager extends OutputFileManager implements IOutpu
             return false;
         }
 
+        protected boolean recordConcurrently(double time, double value) {
+            ThreadBuffers buffers = threadBuffers.get();
+            synchronized (this) {
+                if (id == -1)
+                    throw new IllegalStateException("Attempt to write to an output vector that's already closed");
+
+                if (time < lastTime)
+                    throw new IllegalStateException("Vector data must be recorded in increasing timestamp order (t="+time+ "tprev="+lastTime+")");
+
+                if (!listed) {
+                    buffers.dirtyVectors.add(this);
+                    listed = true;
+                }
+                block.add(time, value);
+                lastTime = time;
+
+                if (block.n > perVectorLimit) {
+                    buffers.nbuffered = Math.max(0, buffers.nbuffered - (block.n - 1));
+                    writeBlock();
+                    return false;
+                }
+            }
+
+            // flush this thread's buffers if needed; done outside the lock,
+            // because it locks other vectors
+            if (++buffers.nbuffered > totalLimit)
+                buffers.writeBlocks();
+
+            return false;
+        }
+
         protected void writeBlock() {
-            try {
-                // write out vector declaration if not yet done
-                if (header != null)
-                    writeVectorHeader();
-
-                // write data
-                long blockOffset = stream.getChannel().position();
-                for (int i=0; i<n; i++)
-                    out.println(id + " " + times[i] + " " + values[i]);
-                long blockSize = stream.getChannel().position() - blockOffset;
-
-                // make sure that the offsets referred to by the index file are exists in the vector file
-                // so the index can be used to access the vector file while it is being written
-                out.flush();
-                if (out.checkError())
-                    throw new ResultRecordingException("Cannot write output vector file " + file.getPath());
-
-                // write index
-                indexOut.println(id + " " + blockOffset + " " + blockSize + " " +
-                        blockStartTime + " " + blockEndTime + " " +
-                        n + " " + min + " " + max + " " + sum + " " + sqrSum);
-
-
-                // reset block
-                nbuffered -= n;
-                n = 0;
-                min = Double.NaN;
-                max = Double.NaN;
-                sum = 0;
-                sqrSum = 0;
-                times = new Number[10];
-                values = new double[10];
+            if (block.n == 0)
+                return;
+
+            if (!concurrentRecording)
+                nbuffered -= block.n;
+            if (!asyncWriting) {
+                writeBlockData(block);
+                block.reset();
             }
-            catch (IOException e) {
-                throw new ResultRecordingException("Error recording vector results:" + e.getMessage(), e);
+            else {
+                // hand over the filled block to the writer thread, and continue with an empty one
+                Block filledBlock = block;
+                block = newBlock(this);
+                getWriter().submit(filledBlock);
+            }
+        }
+
+        /**
+         * Like writeBlock(), but in concurrent mode it locks the vector,
+         * so it may be called from any thread.
+         */
+        protected void writeBlockLocked() {
+            if (!concurrentRecording)
+                writeBlock();
+            else {
+                synchronized (this) {
+                    writeBlock();
+                }
             }
         }
     }
@@ -218,6 +373,55 @@ public class FileOutputVectorManager extends OutputFileManager implements IOutpu
         this.totalLimit = count;
     }
 
+    public boolean isAsyncWriting() {
+        return asyncWriting;
+    }
+
+    /**
+     * Turns on/off asynchronous mode, where vector data are written to disk by
+     * a background thread. This should be called before recording starts.
+     */
+    public void setAsyncWriting(boolean asyncWriting) {
+        if (out != null || writer != null)
+            throw new IllegalStateException("Cannot change writing mode after recording has started");
+        if (!asyncWriting && concurrentRecording)
+            throw new IllegalArgumentException("Concurrent recording requires asynchronous writing");
+        this.asyncWriting = asyncWriting;
+    }
+
+    public boolean isConcurrentRecording() {
+        return concurrentRecording;
+    }
+
+    /**
+     * Turns on/off concurrent mode, where vectors may be created and recorded
+     * from multiple threads. Concurrent mode implies asynchronous writing.
+     * This should be called before recording starts. In concurrent mode,
+     * the total buffer limit applies to each recording thread separately.
+     */
+    public void setConcurrentRecording(boolean concurrentRecording) {
+        if (out != null || writer != null || !vectors.isEmpty())
+            throw new IllegalStateException("Cannot change recording mode after recording has started");
+        this.concurrentRecording = concurrentRecording;
+        if (concurrentRecording)
+            this.asyncWriting = true;
+    }
+
+    public int getAsyncQueueCapacity() {
+        return asyncQueueCapacity;
+    }
+
+    /**
+     * Sets the maximum number of filled blocks that may wait for the background
+     * writer thread in asynchronous mode; when the queue is full, recording
+     * blocks until the writer catches up.
+     */
+    public void setAsyncQueueCapacity(int count) {
+        if (writer != null)
+            throw new IllegalStateException("Cannot change queue capacity after recording has started");
+        this.asyncQueueCapacity = count;
+    }
+
     public void open(String runID, Map<String, String> runAttributes) {
         this.runID = runID;
         this.runAttributes = runAttributes;
@@ -226,6 +430,7 @@ public class FileOutputVectorManager extends OutputFileManager implements IOutpu
     protected void open() {
         try {
             stream = new FileOutputStream(file);
+            channel = stream.getChannel();
         }
         catch (FileNotFoundException e) {
             throw new ResultRecordingException("Cannot open output vector file " + file.getPath(), e);
@@ -252,8 +457,15 @@ public class FileOutputVectorManager extends OutputFileManager implements IOutpu
     }
 
     public void close() {
+        for (OutputVector v : vectors)
+            v.writeBlockLocked();
+        if (writer != null) {
+            writer.close();  // writes all pending blocks
+            writer = null;
+        }
+
         if (out != null) {
-            flush();
+            flushAndCheck();
             out.close();
 
             // record size and timestamp of the vector file, for up-to-date checks
@@ -273,9 +485,13 @@ public class FileOutputVectorManager extends OutputFileManager implements IOutpu
 
     public void flush() {
         for (OutputVector v : vectors)
-            v.writeBlock();
+            v.writeBlockLocked();
 
-        if (out != null)
+        if (writer != null) {
+            writer.submit(flushTask);
+            writer.drain();
+        }
+        else if (out != null)
             flushAndCheck();
     }
 
@@ -291,18 +507,85 @@ public class FileOutputVectorManager extends OutputFileManager implements IOutpu
     }
 
     public IOutputVector createVector(String componentPath, String vectorName, Map<String, String> attributes) {
-        int id = ++lastId;
+        int id = lastId.incrementAndGet();
         OutputVector vector = new OutputVector(id, componentPath, vectorName, attributes);
         vectors.add(vector);
         return vector;
     }
 
     protected void changed(OutputVector vector) {
-        if (vector.n > perVectorLimit)
+        if (vector.block.n > perVectorLimit)
             vector.writeBlock();
         else if (nbuffered > totalLimit) {
             for (OutputVector v : vectors)
                 v.writeBlock();
         }
     }
+
+    protected synchronized BackgroundWriter getWriter() {
+        if (writer == null)
+            writer = new BackgroundWriter("Vector writer for " + file.getName(), asyncQueueCapacity);
+        return writer;
+    }
+
+    protected Block newBlock(OutputVector vector) {
+        Block block = freeBlocks.poll();
+        if (block == null)
+            block = new Block();
+        block.vector = vector;
+        block.id = vector.id;
+        return block;
+    }
+
+    /**
+     * Writes the data in the block into the vector file, and the corresponding
+     * entry into the index file. The vector declaration is written before the
+     * first block of the vector.
+     */
+    protected void writeBlockData(Block block) {
+        try {
+            // write out vector declaration if not yet done
+            OutputVector vector = block.vector;
+            if (vector.header != null)
+                vector.writeVectorHeader();
+            out.flush();
+            if (out.checkError())
+                throw new ResultRecordingException("Cannot write output vector file " + file.getPath());
+
+            // write data; the block is complete in the vector file when the index
+            // entry is written, so the index can be used while the file is being written
+            long blockOffset = channel.position();
+            byte[] line = lineBuffer;
+            ByteBuffer buf = writeBuffer;
+            buf.clear();
+            for (int i=0; i<block.n; i++) {
+                int len = formatter.formatLong(block.id, line, 0);
+                line[len++] = ' ';
+                len = formatter.formatDouble(block.times[i], line, len);
+                line[len++] = ' ';
+                len = formatter.formatDouble(block.values[i], line, len);
+                line[len++] = '\n';
+                if (buf.remaining() < len) {
+                    buf.flip();
+                    while (buf.hasRemaining())
+                        channel.write(buf);
+                    buf.clear();
+                }
+                buf.put(line, 0, len);
+            }
+            buf.flip();
+            while (buf.hasRemaining())
+                channel.write(buf);
+            buf.clear();
+            long blockSize = channel.position() - blockOffset;
+
+            // write index
+            indexOut.println(block.id + " " + blockOffset + " " + blockSize + " " +
+                    block.startTime + " " + block.endTime + " " +
+                    block.n + " " + block.min + " " + block.max + " " + block.sum + " " + block.sqrSum);
+        }
+        catch (IOException e) {
+            throw new ResultRecordingException("Error recording vector results:" + e.getMessage(), e);
+        }
+    }
 }
@@ -0,0 +1,239 @@
+package org.omnetpp.scave.writers.impl;
+
+/**
+ * Formats numbers as ASCII text into a caller-supplied byte array, without
+ * creating garbage. Doubles are written so that they parse back to the very
+ * same value (i.e. no precision is lost), using the shortest of the cheaply
+ * computable representations. Special values are written as "nan", "inf"
+ * and "-inf", like the C++ result file writers do.
+ *
+ * Instances hold scratch buffers and are therefore not thread-safe; use one
+ * instance per writer thread.
+ */
+public class NumberFormatter {
+    /**
+     * The maximum number of bytes a single formatDouble() or formatLong()
+     * call may produce.
+     */
+    public static final int MAX_LENGTH = 32;
+
+    private static final double[] POW10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private static final double TWO_POW_53 = 9007199254740992.0;
+    private static final long TEN_POW_14 = 100000000000000L;
+    private static final long TEN_POW_15 = 1000000000000000L;
+
+    private final byte[] digits = new byte[48];
+
+    /**
+     * Writes the decimal representation of the given long into buf starting
+     * at pos, and returns the position after the last byte written.
+     */
+    public int formatLong(long value, byte[] buf, int pos) {
+        if (value == Long.MIN_VALUE)
+            return put(Long.toString(value), buf, pos);
+        if (value < 0) {
+            buf[pos++] = '-';
+            value = -value;
+        }
+        int n = 0;
+        do {
+            digits[n++] = (byte)('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        while (n > 0)
+            buf[pos++] = digits[--n];
+        return pos;
+    }
+
+    /**
+     * Writes a textual representation of the given double into buf starting
+     * at pos, and returns the position after the last byte written. The
+     * output parses back to exactly the same double.
+     */
+    public int formatDouble(double value, byte[] buf, int pos) {
+        if (Double.isNaN(value))
+            return put("nan", buf, pos);
+        if (Double.isInfinite(value))
+            return put(value < 0 ? "-inf" : "inf", buf, pos);
+        if (value == 0)
+            return put("0", buf, pos);
+
+        if (value < 0) {
+            buf[pos++] = '-';
+            value = -value;
+        }
+
+        // integers that are exactly representable as long
+        if (value < TWO_POW_53 && value == Math.rint(value))
+            return formatLong((long)value, buf, pos);
+
+        // try 15 significant digits; the round-trip check below is exact
+        // because both the digits and the power of ten are exact doubles
+        int endPos = formatShort(value, buf, pos);
+        if (endPos != -1)
+            return endPos;
+
+        // exact binary-to-decimal expansion with 17 significant digits,
+        // for the range where it can be done with long arithmetic
+        endPos = formatExact(value, buf, pos);
+        if (endPos != -1)
+            return endPos;
+
+        // very small or very large numbers: rare, allowed to be slow
+        return put(Double.toString(value), buf, pos);
+    }
+
+    private int formatShort(double value, byte[] buf, int pos) {
+        int exp10 = (int)Math.floor(Math.log10(value));
+        int scale = 14 - exp10;
+        long mantissa = scaleAndRound(value, scale);
+        if (mantissa >= TEN_POW_15) {
+            scale--;
+            mantissa = scaleAndRound(value, scale);
+        }
+        else if (mantissa < TEN_POW_14 && mantissa != -1) {
+            scale++;
+            mantissa = scaleAndRound(value, scale);
+        }
+        if (mantissa <= 0 || mantissa >= TEN_POW_15)
+            return -1;
+
+        double back = scale >= 0 ? mantissa / POW10[scale] : mantissa * POW10[-scale];
+        if (back != value)
+            return -1;
+
+        while (mantissa % 10 == 0) {
+            mantissa /= 10;
+            scale--;
+        }
+
+        // collect digits
+        int n = 0;
+        for (long m = mantissa; m != 0; m /= 10)
+            digits[n++] = (byte)('0' + m % 10);
+        for (int i = 0, j = n-1; i < j; i++, j--) {
+            byte tmp = digits[i]; digits[i] = digits[j]; digits[j] = tmp;
+        }
+
+        int sciExp = n - 1 - scale; // value = d.ddd * 10^sciExp
+        if (sciExp < -5 || sciExp >= 15) {
+            buf[pos++] = digits[0];
+            if (n > 1) {
+                buf[pos++] = '.';
+                for (int i = 1; i < n; i++)
+                    buf[pos++] = digits[i];
+            }
+            buf[pos++] = 'e';
+            return formatLong(sciExp, buf, pos);
+        }
+        else if (scale <= 0) {
+            for (int i = 0; i < n; i++)
+                buf[pos++] = digits[i];
+            for (int i = 0; i < -scale; i++)
+                buf[pos++] = '0';
+            return pos;
+        }
+        else if (scale >= n) {
+            buf[pos++] = '0';
+            buf[pos++] = '.';
+            for (int i = 0; i < scale - n; i++)
+                buf[pos++] = '0';
+            for (int i = 0; i < n; i++)
+                buf[pos++] = digits[i];
+            return pos;
+        }
+        else {
+            for (int i = 0; i < n - scale; i++)
+                buf[pos++] = digits[i];
+            buf[pos++] = '.';
+            for (int i = n - scale; i < n; i++)
+                buf[pos++] = digits[i];
+            return pos;
+        }
+    }
+
+    private static long scaleAndRound(double value, int scale) {
+        if (scale < -22 || scale > 22)
+            return -1;
+        double scaled = scale >= 0 ? value * POW10[scale] : value / POW10[-scale];
+        return Math.round(scaled);
+    }
+
+    private int formatExact(double value, byte[] buf, int pos) {
+        // value = mantissa * 2^-shift; only positive, normal, non-integer
+        // values below 2^53 get here, so shift >= 1
+        long bits = Double.doubleToRawLongBits(value);
+        int biasedExp = (int)((bits >>> 52) & 0x7ff);
+        if (biasedExp == 0)
+            return -1; // subnormal
+        int shift = 1075 - biasedExp;
+        if (shift < 1 || shift > 59)
+            return -1;
+        long mantissa = (bits & 0xfffffffffffffL) | (1L << 52);
+        long mask = (1L << shift) - 1;
+        long intPart = mantissa >>> shift;
+        long frac = mantissa & mask;
+
+        // integer digits (at most 16, as value < 2^53)
+        int n = 0;
+        if (intPart != 0) {
+            for (long m = intPart; m != 0; m /= 10)
+                digits[n++] = (byte)('0' + m % 10);
+            for (int i = 0, j = n-1; i < j; i++, j--) {
+                byte tmp = digits[i]; digits[i] = digits[j]; digits[j] = tmp;
+            }
+        }
+        int pointPos = n;
+        int significant = n;
+
+        // fraction digits, up to 17 significant digits in total
+        while (significant < 17 && frac != 0) {
+            frac *= 10;
+            int digit = (int)(frac >>> shift);
+            frac &= mask;
+            digits[n++] = (byte)('0' + digit);
+            if (significant > 0 || digit != 0)
+                significant++;
+        }
+
+        // round half up, based on the remaining fraction
+        if (frac != 0 && ((frac * 10) >>> shift) >= 5) {
+            int i = n - 1;
+            while (i >= 0 && digits[i] == '9')
+                digits[i--] = '0';
+            if (i >= 0)
+                digits[i]++;
+            else {
+                System.arraycopy(digits, 0, digits, 1, n);
+                digits[0] = '1';
+                n++;
+                pointPos++;
+            }
+        }
+
+        // drop trailing zeros of the fraction
+        while (n > pointPos && digits[n-1] == '0')
+            n--;
+
+        if (pointPos == 0)
+            buf[pos++] = '0';
+        for (int i = 0; i < pointPos; i++)
+            buf[pos++] = digits[i];
+        if (n > pointPos) {
+            buf[pos++] = '.';
+            for (int i = pointPos; i < n; i++)
+                buf[pos++] = digits[i];
+        }
+        return pos;
+    }
+
+    private static int put(String s, byte[] buf, int pos) {
+        for (int i = 0; i < s.length(); i++)
+            buf[pos++] = (byte)s.charAt(i);
+        return pos;
+    }
+}
@@ -655,6 +655,12 @@ bool ResultFileManager::isFileLoaded(const char *displayName) const
     return getFile(displayName) != nullptr;
 }
 
+bool ResultFileManager::isFileUpToDate(const char *displayName, const char *fileSystemFileName) const
+{
+    ResultFile *file = getFile(displayName);
+    return file != nullptr && readFileFingerprint(fileSystemFileName) == file->fingerprint;
+}
+
 ResultFile *ResultFileManager::getFile(const char *displayName) const
 {
     if (!displayName)
@@ -1370,6 +1376,98 @@ void ResultFileManager::unloadFile(ResultFile *file)
     delete file;
 }
 
+void ResultFileManager::moveFilesFrom(ResultFileManager *other)
+{
+    WRITER_MUTEX
+#ifdef THREADED
+    Mutex __other_writer_mutex_(other->getWriteLock());
+#endif
+
+    if (other == this)
+        return;
+
+    serial++;
+    other->serial++;
+
+    // take over the files
+    for (ResultFile *file : other->fileList) {
+        ResultFile *existingFile = getFile(file->getFilePath().c_str());
+        if (existingFile)
+            unloadFile(existingFile);
+        file->resultFileManager = this;
+        fileList.insert(file);
+        filesByDisplayName[file->getFilePath()] = file;
+    }
+
+    // take over the runs, or map them to the existing ones
+    std::map<Run*,Run*> runMap;
+    std::vector<Run*> mergedRuns;
+    for (Run *run : other->runList) {
+        Run *existingRun = getRunByName(run->getRunName().c_str());
+        if (existingRun) {
+            runMap[run] = existingRun;
+            mergedRuns.push_back(run);
+        }
+        else {
+            run->resultFileManager = this;
+            run->fileRuns.clear(); // re-added below
+            runList.insert(run);
+            runsByName[run->getRunName()] = run;
+            runMap[run] = run;
+        }
+    }
+
+    // take over the file runs with their result items; names and attributes
+    // are re-pooled, so that items with equal ones share them across files
+    std::set<const StringMap*> movedAttrs;
+    auto moveItem = [&](ResultItem& item) {
+        item.moduleNameRef = moduleNames.insert(*item.moduleNameRef);
+        item.nameRef = names.insert(*item.nameRef);
+        auto it = attrsPool.find(item.attributes);
+        if (it != attrsPool.end())
+            item.attributes = *it;
+        else {
+            attrsPool.insert(item.attributes);
+            movedAttrs.insert(item.attributes);
+        }
+    };
+    for (FileRun *fileRun : other->fileRunList) {
+        if (fileRun == nullptr)
+            continue;
+        fileRun->id = fileRunList.size();
+        fileRunList.push_back(fileRun);
+        fileRun->runRef = runMap.at(fileRun->runRef);
+        fileRun->runRef->fileRuns.push_back(fileRun);
+        for (ScalarResult& scalar : fileRun->scalarResults)
+            moveItem(scalar);
+        for (ParameterResult& parameter : fileRun->parameterResults)
+            moveItem(parameter);
+        for (VectorResult& vector : fileRun->vectorResults)
+            moveItem(vector);
+        for (StatisticsResult& statistics : fileRun->statisticsResults)
+            moveItem(statistics);
+        for (HistogramResult& histogram : fileRun->histogramResults)
+            moveItem(histogram);
+    }
+
+    // empty the other manager without deleting what has been moved
+    for (Run *run : mergedRuns)
+        delete run;
+    for (const StringMap *attrs : other->attrsPool)
+        if (movedAttrs.find(attrs) == movedAttrs.end())
+            delete attrs;
+    other->attrsPool.clear();
+    other->fileRunList.clear();
+    other->runList.clear();
+    other->runsByName.clear();
+    other->fileList.clear();
+    other->filesByDisplayName.clear();
+    other->namesWithSuffixCache.clear();
+    other->moduleNames.clear();
+    other->names.clear();
+    other->classNames.clear();
+}
+
 /*--------------------------------------------------------------------------
  *                        compute filter hints
  *--------------------------------------------------------------------------*/
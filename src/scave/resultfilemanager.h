@@ -252,6 +252,7 @@ class SCAVE_API ResultFileManager
     const StatisticsResult *getStatistics(ID id) const;
     const HistogramResult *getHistogram(ID id) const;
     static int getTypeOf(ID id) {return _type(id);} // PARAMETER/SCALAR/VECTOR/STATISTICS/HISTOGRAM
+    static int getFileRunIdOf(ID id) {return _filerunid(id);} // the id of the FileRun the item belongs to, see FileRun::getId()
     static bool isField(ID id) {return  _fieldid(id) != 0;}
     static ID getContainingItemID(ID fieldItemId) {return _containingItemID(fieldItemId);}
     static ID getFieldItemID(ID containingItemId, int fieldId) {return _fieldItemID(containingItemId, fieldId);}
@@ -362,7 +363,17 @@ class SCAVE_API ResultFileManager
     void unloadFile(ResultFile *file);
     void unloadFile(const char *displayName);
 
+    /**
+     * Moves all files loaded into the other manager into this one, leaving the
+     * other manager empty. This allows files to be parsed into separate managers
+     * (e.g. in parallel) without locking this one, and merged in afterwards.
+     * Files already loaded here under the same name are unloaded first. Runs
+     * that already exist here are shared, and keep their attributes.
+     */
+    void moveFilesFrom(ResultFileManager *other);
+
     bool isFileLoaded(const char *displayName) const;
+    bool isFileUpToDate(const char *displayName, const char *fileSystemFileName) const; // loaded, and unchanged since
     ResultFile *getFile(const char *displayName) const;
     Run *getRunByName(const char *runName) const;
     FileRun *getFileRun(ResultFile *file, Run *run) const;
@@ -358,6 +358,7 @@ class SCAVE_API FileRun
     StatisticsResults statisticsResults;
     HistogramResults histogramResults;
   public:
+    int getId() const {return id;}
     ResultFile *getFile() const {return fileRef;}
     Run *getRun() const {return runRef;}
 };
@@ -41,7 +41,6 @@ import org.eclipse.swt.graphics.GC;
 import org.eclipse.swt.graphics.Image;
 import org.eclipse.swt.graphics.ImageData;
 import org.eclipse.swt.graphics.ImageLoader;
-import org.eclipse.swt.graphics.Transform;
 import org.eclipse.swt.widgets.Composite;
 import org.omnetpp.common.Debug;
 import org.omnetpp.common.canvas.ITileCache.Tile;
@@ -52,15 +51,37 @@ import org.omnetpp.common.util.GraphicsUtils;
  * A scrollable canvas that supports caching of (part of) the drawing
  * in off-screen image buffers for performance improvement.
  *
+ * While the user is scrolling, tiles in the scroll direction (one viewport
+ * ahead) are rendered into the cache during idle time, in small time slices,
+ * so that they are already available when they scroll into view. SWT drawing
+ * is only allowed on the UI thread, so this is done there as well.
+ *
  * @author andras
  */
 @SuppressWarnings("restriction")
 public abstract class CachingCanvas extends LargeScrollableCanvas {
 
+    private static final int PREFETCH_DELAY_MILLIS = 50;
+    private static final int PREFETCH_TIME_SLICE_MILLIS = 20;
+    private static final int CACHE_MEMORY_SCREENFULS = 4; // the default cache memory limit is adjusted to hold this many viewports
+
     private boolean doCaching = true;
     private ITileCache tileCache = new XYTileCache();
+    private boolean isCacheMemoryLimitSet = false; // if false, the limit follows the viewport size
     private boolean debug = Debug.isChannelEnabled("cachingcanvas");
 
+    // prefetching tiles in the scroll direction
+    private boolean doPrefetching = true;
+    private long lastViewportLeft;
+    private long lastViewportTop;
+    private int prefetchDirectionX;
+    private int prefetchDirectionY;
+    private Runnable prefetchRunnable = new Runnable() {
+        public void run() {
+            prefetchTiles();
+        }
+    };
+
     /**
      * Constructor.
      */
@@ -107,6 +128,50 @@ public abstract class CachingCanvas extends LargeScrollableCanvas {
         clearCanvasCache();
     }
 
+    /**
+     * Returns whether tiles in the scroll direction are rendered ahead of time.
+     */
+    public boolean getPrefetching() {
+        return doPrefetching;
+    }
+
+    /**
+     * Turns on/off rendering tiles in the scroll direction ahead of time.
+     */
+    public void setPrefetching(boolean doPrefetching) {
+        this.doPrefetching = doPrefetching;
+    }
+
+    /**
+     * Returns the memory limit of the tile cache in bytes.
+     */
+    public int getCacheMemoryLimit() {
+        return tileCache.getMemoryUsageLimit();
+    }
+
+    /**
+     * Sets the memory limit of the tile cache in bytes. Least recently used
+     * tiles are discarded when the limit is exceeded. By default, the limit
+     * is large enough to hold a few viewports, and grows with the viewport.
+     */
+    public void setCacheMemoryLimit(int limit) {
+        isCacheMemoryLimitSet = true;
+        tileCache.setMemoryUsageLimit(limit);
+    }
+
+    /**
+     * Raises the default cache memory limit to hold CACHE_MEMORY_SCREENFULS
+     * viewports, so that tiles can be rendered ahead on large screens too.
+     */
+    private void adjustCacheMemoryLimit() {
+        if (isCacheMemoryLimitSet)
+            return;
+        long limit = CACHE_MEMORY_SCREENFULS * tileCache.estimateMemoryUsage(getViewportWidth(), getViewportHeight());
+        limit = Math.min(Math.max(limit, XYTileCache.DEFAULT_MEMORY_USAGE_LIMIT), Integer.MAX_VALUE);
+        if (limit > tileCache.getMemoryUsageLimit())
+            tileCache.setMemoryUsageLimit((int)limit);
+    }
+
     /**
      * Copies the image of the chart to the clipboard.
      * Uses AWT functionality, because SWT does not support ImageTransfer yet.
@@ -240,6 +305,7 @@ public abstract class CachingCanvas extends LargeScrollableCanvas {
             ArrayList<Tile> cachedTiles = new ArrayList<Tile>();
             ArrayList<LargeRect> missingAreas = new ArrayList<LargeRect>();
 
+            adjustCacheMemoryLimit();
             tileCache.getTiles(lclip, getVirtualWidth(), getVirtualHeight(), cachedTiles, missingAreas);
             //Debug.println("cache: found "+cachedTiles.size()+" tiles, missing "+missingAreas.size()+" areas");
 
@@ -252,27 +318,7 @@ public abstract class CachingCanvas extends LargeScrollableCanvas {
             // draw missing tiles
             for (LargeRect lrect : missingAreas) {
                 Rectangle rect = virtualToCanvasRect(lrect);
-                Assert.isTrue(!rect.isEmpty()); // tile cache should not return empty rectangles
-
-                Graphics imageGraphics = null;
-                GC imageGC = null;
-                Transform transform = null;
-                Image image = new Image(getDisplay(), rect.width, rect.height);
-                try {
-                    imageGC = new GC(image);
-                    imageGraphics = createGraphics(imageGC);
-                    imageGraphics.translate(-rect.x, -rect.y);
-                    imageGraphics.setClip(new Rectangle(rect.x, rect.y, rect.width, rect.height));
-                    paintCachableLayer(imageGraphics);
-                }
-                finally {
-                    if (imageGraphics != null)
-                        imageGraphics.dispose();
-                    if (transform != null)
-                        transform.dispose();
-                    if (imageGC != null)
-                        imageGC.dispose();
-                }
+                Image image = renderCachableLayer(rect, false);
 
                 // draw the image on the screen, and also add it to the cache
                 graphics.drawImage(image, rect.x, rect.y);
@@ -283,9 +329,102 @@ public abstract class CachingCanvas extends LargeScrollableCanvas {
             // paint items that we don't want to cache
             graphics.setClip(oldClip);
             paintNoncachableLayer(graphics);
+
+            schedulePrefetch();
         }
     }
 
+    /**
+     * Renders the cachable layer of the given area (in canvas coordinates) into a new image.
+     */
+    private Image renderCachableLayer(Rectangle rect, boolean ahead) {
+        Assert.isTrue(!rect.isEmpty()); // tile cache should not return empty rectangles
+
+        Graphics imageGraphics = null;
+        GC imageGC = null;
+        Image image = new Image(getDisplay(), rect.width, rect.height);
+        try {
+            imageGC = new GC(image);
+            imageGraphics = createGraphics(imageGC);
+            imageGraphics.translate(-rect.x, -rect.y);
+            imageGraphics.setClip(new Rectangle(rect.x, rect.y, rect.width, rect.height));
+            if (ahead)
+                paintCachableLayerAhead(imageGraphics);
+            else
+                paintCachableLayer(imageGraphics);
+        }
+        finally {
+            if (imageGraphics != null)
+                imageGraphics.dispose();
+            if (imageGC != null)
+                imageGC.dispose();
+        }
+        return image;
+    }
+
+    /**
+     * Remembers the scroll direction, and schedules rendering the tiles ahead
+     * for when the user pauses scrolling.
+     */
+    private void schedulePrefetch() {
+        long dx = getViewportLeft() - lastViewportLeft;
+        long dy = getViewportTop() - lastViewportTop;
+        lastViewportLeft = getViewportLeft();
+        lastViewportTop = getViewportTop();
+        if (!doPrefetching || (dx == 0 && dy == 0))
+            return;
+        prefetchDirectionX = Long.signum(dx);
+        prefetchDirectionY = Long.signum(dy);
+        getDisplay().timerExec(PREFETCH_DELAY_MILLIS, prefetchRunnable); // reschedules if already scheduled
+    }
+
+    /**
+     * Renders missing tiles one viewport ahead in the last scroll direction,
+     * for at most a time slice, and reschedules itself if there is more to do.
+     * Does nothing if the cache is too small to hold the tiles ahead without
+     * evicting the visible ones.
+     */
+    private void prefetchTiles() {
+        if (isDisposed() || !doCaching || !doPrefetching)
+            return;
+        long width = getViewportWidth(), height = getViewportHeight();
+        if (width <= 1 || height <= 1)
+            return;
+        adjustCacheMemoryLimit();
+        if (3 * tileCache.estimateMemoryUsage(width, height) > tileCache.getMemoryUsageLimit())
+            return;
+
+        LargeRect ahead = new LargeRect(
+                getViewportLeft() + prefetchDirectionX * width,
+                getViewportTop() + prefetchDirectionY * height,
+                width, height);
+        long left = Math.max(ahead.x, 0), top = Math.max(ahead.y, 0);
+        long right = Math.min(ahead.right(), getVirtualWidth()), bottom = Math.min(ahead.bottom(), getVirtualHeight());
+        if (left >= right || top >= bottom)
+            return;
+
+        ArrayList<Tile> cachedTiles = new ArrayList<Tile>();
+        ArrayList<LargeRect> missingAreas = new ArrayList<LargeRect>();
+        tileCache.getTiles(new LargeRect(left, top, right - left, bottom - top), getVirtualWidth(), getVirtualHeight(), cachedTiles, missingAreas);
+
+        // render in parts, so that the time slice is not overrun by a large area
+        long deadline = System.currentTimeMillis() + PREFETCH_TIME_SLICE_MILLIS;
+        int count = 0;
+        for (LargeRect area : missingAreas) {
+            for (LargeRect lrect : tileCache.splitMissingArea(area)) {
+                if (System.currentTimeMillis() > deadline) {
+                    getDisplay().asyncExec(prefetchRunnable); // continue after pending events
+                    return;
+                }
+                Image image = renderCachableLayer(virtualToCanvasRect(lrect), true);
+                tileCache.add(lrect, image);
+                count++;
+            }
+        }
+        if (debug && count > 0)
+            Debug.println("prefetched " + count + " parts");
+    }
+
     /**
      * Paint directly on the graphics
      */
@@ -322,6 +461,16 @@ public abstract class CachingCanvas extends LargeScrollableCanvas {
      */
     protected abstract void paintCachableLayer(Graphics graphics);
 
+    /**
+     * Called instead of paintCachableLayer() when tiles outside the viewport are
+     * rendered ahead of time, i.e. not as part of a repaint. Override if
+     * paintCachableLayer() saves state for the subsequent paintNoncachableLayer()
+     * call. The default implementation calls paintCachableLayer().
+     */
+    protected void paintCachableLayerAhead(Graphics graphics) {
+        paintCachableLayer(graphics);
+    }
+
     /**
      * Paint in this method anything that you don't want to be cached
      * (selection marks, etc). It will paint over the cachable layer.
@@ -44,6 +44,17 @@ public class ColumnTileCache implements ITileCache {
         discardOldTiles();
     }
 
+    public long estimateMemoryUsage(long width, long height) {
+        return (width + 8) * height * 4; // see imageSize() and tweakRect()
+    }
+
+    public List<LargeRect> splitMissingArea(LargeRect area) {
+        // tiles are full-height columns, and rendering narrower ones does not pay off
+        List<LargeRect> result = new ArrayList<LargeRect>();
+        result.add(area);
+        return result;
+    }
+
     public void add(LargeRect rect, Image image) {
         Tile tile = new Tile(rect, image);
         cache.add(tile);
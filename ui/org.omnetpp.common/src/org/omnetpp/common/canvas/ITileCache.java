@@ -38,6 +38,12 @@ public interface ITileCache {
 
     public int getMemoryUsage();
 
+    /**
+     * Returns the number of bytes the tiles covering an area of the given size
+     * may take up in the cache, with the cache's own accounting.
+     */
+    public long estimateMemoryUsage(long width, long height);
+
     /**
      * Receives the rectangle to cover on screen and the dimensions
      * of the full "virtual" canvas, and returns a list of tiles
@@ -56,6 +62,14 @@ public interface ITileCache {
             List<Tile> outCachedTiles,
             List<LargeRect> outMissingAreas);
 
+    /**
+     * Splits a missing area returned by getTiles() into parts that can be
+     * rendered and added to the cache one by one. The parts should be large
+     * enough that rendering them separately does not cost much more than
+     * rendering the whole area at once.
+     */
+    public List<LargeRect> splitMissingArea(LargeRect area);
+
     /**
      * Puts the given image (or parts of it) into the cache.
      *
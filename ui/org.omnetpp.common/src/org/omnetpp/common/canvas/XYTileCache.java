@@ -7,6 +7,7 @@
 
 package org.omnetpp.common.canvas;
 
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 
@@ -16,7 +17,10 @@ import org.eclipse.swt.graphics.Image;
 import org.omnetpp.common.Debug;
 
 /**
- * A tile cache for CachingCanvas that works with tiles of fixed size (100x100 pixels).
+ * A tile cache for CachingCanvas that works with tiles of fixed size (30x200 pixels).
+ * Tiles are evicted in least-recently-used order when the memory usage limit
+ * is exceeded. Memory usage is computed from the pixel depth of the device
+ * the tile images are created on.
  *
  * @author andras
  */
@@ -24,15 +28,33 @@ public class XYTileCache implements ITileCache {
     // we use narrow tall tiles to ensure smoother scrolling, as our canvases are typically drawn with a loop along the x axis
     private static final int TILE_WIDTH = 30;
     private static final int TILE_HEIGHT = 200;
-    private static final int TILE_SIZE_BYTES = TILE_HEIGHT*TILE_WIDTH*4; // assumption: RGBA true color
+    private static final int STRIP_COLUMNS = 8; // width of the parts of missing areas, in tiles
+
+    public static final int DEFAULT_MEMORY_USAGE_LIMIT = 32*1024*1024; // 32Meg
 
     private static final boolean debug = false;
 
-    private int memoryUsageLimit = 32*1024*1024; // 32Meg by default
+    private int memoryUsageLimit = DEFAULT_MEMORY_USAGE_LIMIT;
     private int memoryUsage = 0;
+    private int tileSizeBytes = TILE_HEIGHT*TILE_WIDTH*4; // until the first tile is added; assumes RGBA true color
+
+    // use coords of tile's top-left corner as key into the hashmap; access-ordered "linked" map is used for LRU cache mgmt
+    private LinkedHashMap<LargePoint,Tile> cache = new LinkedHashMap<LargePoint,Tile>(16, 0.75f, true);
 
-    // use coords of tile's top-left corner as key into the hashmap; "linked" is used for LRU cache mgmt
-    private LinkedHashMap<LargePoint,Tile> cache = new LinkedHashMap<LargePoint,Tile>();
+    public XYTileCache() {
+    }
+
+    public XYTileCache(int memoryUsageLimit) {
+        this.memoryUsageLimit = memoryUsageLimit;
+    }
+
+    public static int getTileWidth() {
+        return TILE_WIDTH;
+    }
+
+    public static int getTileHeight() {
+        return TILE_HEIGHT;
+    }
 
     public int getMemoryUsage() {
         return memoryUsage;
@@ -47,8 +69,26 @@ public class XYTileCache implements ITileCache {
         discardOldTiles();
     }
 
+    public long estimateMemoryUsage(long width, long height) {
+        // an unaligned area may touch one more tile in each direction
+        long numTilesX = (width + TILE_WIDTH - 1) / TILE_WIDTH + 1;
+        long numTilesY = (height + TILE_HEIGHT - 1) / TILE_HEIGHT + 1;
+        return numTilesX * numTilesY * tileSizeBytes;
+    }
+
+    public List<LargeRect> splitMissingArea(LargeRect area) {
+        // full-height strips a few tiles wide; missing areas are made up of whole tiles
+        List<LargeRect> result = new ArrayList<LargeRect>();
+        long stripWidth = STRIP_COLUMNS * TILE_WIDTH;
+        for (long x = area.x; x < area.right(); x += stripWidth)
+            result.add(new LargeRect(x, area.y, Math.min(stripWidth, area.right() - x), area.height));
+        return result;
+    }
+
     public void add(LargeRect rect, Image image) {
         // find WHOLE tiles in the image, and extract them
+        if (cache.isEmpty())
+            tileSizeBytes = TILE_WIDTH * TILE_HEIGHT * bytesPerPixel(image.getDevice().getDepth());
         GC gc = new GC(image);
         long startX = modulo(rect.x,TILE_WIDTH)==0 ? rect.x : rect.x - modulo(rect.x,TILE_WIDTH) + TILE_WIDTH;
         long startY = modulo(rect.y,TILE_HEIGHT)==0 ? rect.y : rect.y - modulo(rect.y,TILE_HEIGHT) + TILE_HEIGHT;
@@ -67,7 +107,7 @@ public class XYTileCache implements ITileCache {
                     gc.copyArea(tileImage, (int)(x - rect.x), (int)(y - rect.y));
                     Tile tile = new Tile(new LargeRect(x, y, TILE_WIDTH, TILE_HEIGHT), tileImage);
                     cache.put(key, tile);
-                    memoryUsage += TILE_SIZE_BYTES;
+                    memoryUsage += tileSizeBytes;
                     if (memoryUsage > memoryUsageLimit)
                         discardOldTiles();
                 }
@@ -83,7 +123,7 @@ public class XYTileCache implements ITileCache {
     public void printCache() {
         Debug.printf("Cache: %d tiles, memory usage %dk, limit %dk\n", cache.size(), memoryUsage/1024, memoryUsageLimit/1024);
         for (LargePoint p : cache.keySet()) {
-            Debug.printf(" - tile (%d,%d) at (%d,%d), size %dk\n", p.x/TILE_WIDTH, p.y/TILE_HEIGHT, p.x, p.y, TILE_SIZE_BYTES/1024);
+            Debug.printf(" - tile (%d,%d) at (%d,%d), size %dk\n", p.x/TILE_WIDTH, p.y/TILE_HEIGHT, p.x, p.y, tileSizeBytes/1024);
         }
     }
 
@@ -92,10 +132,10 @@ public class XYTileCache implements ITileCache {
         int count = 0;
         while (memoryUsage > memoryUsageLimit) {
             Assert.isTrue(cache.size()>0);
-            LargePoint key = cache.keySet().iterator().next(); // get first element's key
+            LargePoint key = cache.keySet().iterator().next(); // get first (least recently used) element's key
             Tile tile = cache.remove(key);
             tile.image.dispose();
-            memoryUsage -= TILE_SIZE_BYTES;
+            memoryUsage -= tileSizeBytes;
             count++;
         }
         if (debug && count>0)
@@ -119,9 +159,10 @@ public class XYTileCache implements ITileCache {
         for (long x = startX; x<rect.right(); x+=TILE_WIDTH) {
             for (long y = startY; y<rect.bottom(); y+=TILE_HEIGHT) {
                 lookupKey.set(x,y);
-                if (cache.containsKey(lookupKey)) {
-                    Assert.isTrue(cache.get(lookupKey).rect.x==lookupKey.x && cache.get(lookupKey).rect.y==lookupKey.y);
-                    outCachedTiles.add(cache.get(lookupKey));
+                Tile tile = cache.get(lookupKey); // also marks the tile as recently used
+                if (tile != null) {
+                    Assert.isTrue(tile.rect.x==lookupKey.x && tile.rect.y==lookupKey.y);
+                    outCachedTiles.add(tile);
                 }
                 else {
                     mergeOrAdd(outMissingAreas, new LargeRect(x, y, TILE_WIDTH, TILE_HEIGHT));
@@ -165,6 +206,13 @@ public class XYTileCache implements ITileCache {
         areas.add(r);
     }
 
+    /**
+     * Returns the number of bytes a pixel takes up in an image of the given depth.
+     */
+    private static int bytesPerPixel(int depth) {
+        return depth > 16 ? 4 : (depth + 7) / 8;
+    }
+
     private long modulo(long a, long b) {
         return a < 0 ? a % b + b : a % b;
     }
@@ -0,0 +1,212 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.common.eventlog;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.swt.widgets.Display;
+import org.omnetpp.common.CommonPlugin;
+import org.omnetpp.common.Debug;
+
+/**
+ * Watches an event log file for changes on a background thread, and runs the
+ * given runnable in the UI thread when the file has changed. File system change
+ * notifications (WatchService) are used where available; the file size and
+ * modification time are also polled periodically, because notifications are
+ * not delivered on all file systems (e.g. network drives).
+ *
+ * Notifications are coalesced: changes arriving within a short interval, or
+ * while the previous notification is still waiting to be processed by the UI
+ * thread, result in a single call to the runnable. Appended content is read
+ * on the background thread before notifying, so that the UI thread finds it
+ * in the operating system's file cache when it parses the new events.
+ *
+ * If the file is not available in the local file system, the runnable is
+ * simply called periodically, and it is up to the runnable to find out if
+ * the file has changed.
+ */
+public class EventLogFileWatcher {
+    private static final boolean debug = false;
+
+    private static final int POLL_INTERVAL_MILLIS = 3000;
+    private static final int COALESCE_INTERVAL_MILLIS = 200;
+    private static final long MAX_READ_AHEAD_BYTES = 64 * 1024 * 1024;
+
+    private final File file;
+    private final Runnable changeHandler;
+    private final AtomicBoolean notificationPending = new AtomicBoolean();
+
+    private volatile Thread thread; // the current watcher thread, null if stopped
+    private WatchService watchService;
+
+    private long lastLength = -1;
+    private long lastModified = -1;
+
+    /**
+     * Creates the watcher, but does not start watching yet. The file may be null
+     * if it is not available in the local file system.
+     */
+    public EventLogFileWatcher(File file, Runnable changeHandler) {
+        this.file = file;
+        this.changeHandler = changeHandler;
+    }
+
+    /**
+     * Starts watching the file. Does nothing if already started.
+     */
+    public synchronized void start() {
+        if (thread != null)
+            return;
+        if (file != null) {
+            lastLength = file.length();
+            lastModified = file.lastModified();
+        }
+        Thread newThread = new Thread(() -> watch(), "Event log watcher: " + (file == null ? "" : file.getName()));
+        newThread.setDaemon(true);
+        thread = newThread;
+        newThread.start();
+    }
+
+    /**
+     * Stops watching the file. Notifications already scheduled in the UI thread are dropped.
+     */
+    public synchronized void stop() {
+        if (thread == null)
+            return;
+        thread.interrupt();
+        thread = null;
+        closeWatchService();
+    }
+
+    private boolean isStopped() {
+        return thread != Thread.currentThread();
+    }
+
+    private void watch() {
+        WatchService watchService = openWatchService();
+        try {
+            while (!isStopped()) {
+                boolean notified = false;
+                if (watchService != null) {
+                    WatchKey key = watchService.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (key != null) {
+                        for (WatchEvent<?> event : key.pollEvents())
+                            if (event.kind() == StandardWatchEventKinds.OVERFLOW || file.getName().equals(String.valueOf(event.context())))
+                                notified = true;
+                        key.reset();
+                    }
+                }
+                else
+                    Thread.sleep(POLL_INTERVAL_MILLIS);
+
+                if (file == null)
+                    scheduleNotification();
+                else {
+                    // let the writer finish its burst of writes
+                    if (notified)
+                        Thread.sleep(COALESCE_INTERVAL_MILLIS);
+                    if (checkFile())
+                        scheduleNotification();
+                }
+            }
+        }
+        catch (InterruptedException | ClosedWatchServiceException e) {
+            // stopped
+        }
+    }
+
+    private synchronized WatchService openWatchService() {
+        if (file == null || isStopped())
+            return null;
+        try {
+            Path directory = file.getAbsoluteFile().getParentFile().toPath();
+            watchService = FileSystems.getDefault().newWatchService();
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            return watchService;
+        }
+        catch (IOException | UnsupportedOperationException e) {
+            // fall back to polling
+            if (debug)
+                Debug.println("Cannot watch event log file " + file + " for changes, polling instead: " + e.getMessage());
+            closeWatchService();
+            return null;
+        }
+    }
+
+    private synchronized void closeWatchService() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            }
+            catch (IOException e) {
+                CommonPlugin.logError(e);
+            }
+            watchService = null;
+        }
+    }
+
+    /**
+     * Returns true if the file has changed since the last check. Appended content
+     * is read in advance.
+     */
+    private boolean checkFile() {
+        long length = file.length();
+        long modified = file.lastModified();
+        if (length == lastLength && modified == lastModified)
+            return false;
+        if (length > lastLength && lastLength >= 0)
+            readAhead(lastLength, length);
+        lastLength = length;
+        lastModified = modified;
+        return true;
+    }
+
+    private void readAhead(long begin, long end) {
+        begin = Math.max(begin, end - MAX_READ_AHEAD_BYTES);
+        byte[] buffer = new byte[64 * 1024];
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            input.seek(begin);
+            for (long remaining = end - begin; remaining > 0 && !isStopped(); ) {
+                int count = input.read(buffer, 0, (int)Math.min(buffer.length, remaining));
+                if (count < 0)
+                    break;
+                remaining -= count;
+            }
+        }
+        catch (IOException e) {
+            // the file is going to be read again anyway, errors are reported there
+        }
+    }
+
+    private void scheduleNotification() {
+        // at most one notification is waiting in the UI thread at any time
+        if (!notificationPending.compareAndSet(false, true))
+            return;
+        Display display = Display.getDefault();
+        if (display.isDisposed())
+            return;
+        display.asyncExec(new Runnable() {
+            public void run() {
+                notificationPending.set(false);
+                if (thread != null)
+                    changeHandler.run();
+            }
+        });
+    }
+}
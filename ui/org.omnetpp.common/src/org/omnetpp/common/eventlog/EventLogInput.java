@@ -7,20 +7,32 @@
 
 package org.omnetpp.common.eventlog;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.runtime.Assert;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.swt.widgets.Display;
 import org.eclipse.ui.part.FileEditorInput;
 import org.omnetpp.common.CommonPlugin;
 import org.omnetpp.common.Debug;
 import org.omnetpp.common.util.PersistentResourcePropertyManager;
-import org.omnetpp.common.util.RecurringJob;
 import org.omnetpp.eventlog.engine.EventLogTableFacade;
 import org.omnetpp.eventlog.engine.FileReader;
 import org.omnetpp.eventlog.engine.FilteredEventLog;
+import org.omnetpp.eventlog.engine.IEvent;
 import org.omnetpp.eventlog.engine.IEventLog;
 import org.omnetpp.eventlog.engine.ModuleCreatedEntry;
 import org.omnetpp.eventlog.engine.ModuleCreatedEntryList;
@@ -79,10 +91,37 @@ public class EventLogInput extends FileEditorInput
      */
     protected EventLogFindTextDialog findTextDialog = new EventLogFindTextDialog(null);
 
+    /**
+     * Full-text search index of the event log file, null if not yet created.
+     */
+    protected EventLogSearchIndex searchIndex;
+
+    /**
+     * The result of the last raw text search, reused while the file does not change.
+     */
+    protected EventLogSearchIndex.SearchResult lastSearchResult;
+
+    /**
+     * The indices of the matching entries of the recently asked events of the last
+     * search result, for highlighting them.
+     */
+    @SuppressWarnings("serial")
+    protected Map<Long, int[]> searchHitEntryIndices = new LinkedHashMap<Long, int[]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, int[]> eldest) {
+            return size() > 1000;
+        }
+    };
+
+    /**
+     * The currently running raw text search, null if there is none.
+     */
+    protected Job searchJob;
+
     /**
      * Watches the event log file for changes.
      */
-    protected RecurringJob eventLogWatcher;
+    protected EventLogFileWatcher eventLogWatcher;
 
     /**
      * True indicates a long running operation was canceled by the user.
@@ -114,17 +153,14 @@ public class EventLogInput extends FileEditorInput
     public EventLogInput(IFile file, IEventLog eventLog) {
         super(file);
         this.eventLogProgressManager = new EventLogProgressManager();
-        this.eventLogWatcher = new RecurringJob(3000) {
+        IPath location = file.getLocation();
+        this.eventLogWatcher = new EventLogFileWatcher(location == null ? null : location.toFile(), new Runnable() {
+            // synchronize may destructively modify the underlying structure of the event log
+            // and thus it must be called from the UI thread to prevent concurrent paints
             public void run() {
-                Display.getDefault().asyncExec(new Runnable() {
-                    // synchronize may destructively modify the underlying structure of the event log
-                    // and thus it must be called from the UI thread to prevent concurrent paints
-                    public void run() {
-                        synchronize(getEventLog().getFileReader().checkFileForChanges());
-                    }
-                });
+                synchronize(getEventLog().getFileReader().checkFileForChanges());
             }
-        };
+        });
 
         setEventLog(eventLog);
         restoreState();
@@ -153,6 +189,9 @@ public class EventLogInput extends FileEditorInput
         if (eventLogWatcher != null)
             eventLogWatcher.stop();
 
+        if (searchJob != null)
+            searchJob.cancel();
+
         if (eventLog != null)
             eventLog.getFileReader().ensureFileClosed();
     }
@@ -259,6 +298,112 @@ public class EventLogInput extends FileEditorInput
         }
     }
 
+    /*************************************************************************************
+     * SEARCHING
+     */
+
+    /**
+     * Returns the full-text search index of the event log file, or null if the
+     * file is not available in the local file system. The index is stored in
+     * the plugin's state location.
+     */
+    public EventLogSearchIndex getSearchIndex() {
+        if (searchIndex == null) {
+            IPath location = getFile().getLocation();
+            if (location != null) {
+                File file = location.toFile();
+                String indexFileName = Integer.toHexString(file.getAbsolutePath().hashCode()) + "-" + file.getName() + ".idx";
+                File indexFile = CommonPlugin.getDefault().getStateLocation().append("eventlog-index").append(indexFileName).toFile();
+                searchIndex = new EventLogSearchIndex(file, indexFile);
+            }
+        }
+        return searchIndex;
+    }
+
+    /**
+     * Searches the raw content of the event log file for the given text in a
+     * background job, and calls the result handler in the UI thread with all
+     * hits. The search index is brought up to date first. The result of the
+     * last search is reused if the file has not changed since. Returns false
+     * if indexed search is not available for the file.
+     */
+    public boolean findText(String text, boolean caseSensitive, Consumer<EventLogSearchIndex.SearchResult> resultHandler) {
+        EventLogSearchIndex index = getSearchIndex();
+        if (index == null)
+            return false;
+
+        if (lastSearchResult != null && lastSearchResult.getText().equals(text) && lastSearchResult.isCaseSensitive() == caseSensitive && index.isUpToDate(lastSearchResult)) {
+            resultHandler.accept(lastSearchResult);
+            return true;
+        }
+
+        if (searchJob != null)
+            searchJob.cancel();
+        searchJob = new Job("Searching " + getFile().getName() + " for \"" + text + "\"") {
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                SubMonitor subMonitor = SubMonitor.convert(monitor, 100);
+                try {
+                    index.update(subMonitor.split(70));
+                    EventLogSearchIndex.SearchResult result = index.search(text, caseSensitive, subMonitor.split(30), numHits -> monitor.subTask(numHits + " matches found"));
+                    Job job = this;
+                    Display.getDefault().asyncExec(new Runnable() {
+                        public void run() {
+                            if (searchJob == job) {
+                                searchJob = null;
+                                lastSearchResult = result;
+                                searchHitEntryIndices.clear();
+                                resultHandler.accept(result);
+                            }
+                        }
+                    });
+                    return Status.OK_STATUS;
+                }
+                catch (OperationCanceledException e) {
+                    return Status.CANCEL_STATUS;
+                }
+                catch (IOException e) {
+                    return new Status(IStatus.ERROR, CommonPlugin.PLUGIN_ID, "Error searching " + getFile().getName(), e);
+                }
+            }
+        };
+        searchJob.setUser(true);
+        searchJob.schedule();
+        return true;
+    }
+
+    /**
+     * Returns the result of the last raw text search, or null if there was none
+     * or the event log has been overwritten since. Views highlight its hits.
+     */
+    public EventLogSearchIndex.SearchResult getLastSearchResult() {
+        return lastSearchResult;
+    }
+
+    /**
+     * Returns true if the given event log entry of the given event contains the
+     * text of the last raw text search. Entries are indexed as in IEvent.
+     */
+    public boolean isSearchHit(IEvent event, int entryIndex) {
+        if (lastSearchResult == null || !lastSearchResult.isHit(event.getEventNumber()))
+            return false;
+        int[] entryIndices = searchHitEntryIndices.get(event.getEventNumber());
+        if (entryIndices == null) {
+            try {
+                entryIndices = getSearchIndex().findEventLogEntryIndices(event.getBeginOffset(), event.getEndOffset(), lastSearchResult.getText(), lastSearchResult.isCaseSensitive());
+            }
+            catch (IOException e) {
+                CommonPlugin.logError(e);
+                entryIndices = new int[0];
+            }
+            searchHitEntryIndices.put(event.getEventNumber(), entryIndices);
+        }
+        for (int index : entryIndices)
+            if (index == entryIndex)
+                return true;
+        return false;
+    }
+
     /*************************************************************************************
      * FILTERING
      */
@@ -444,6 +589,8 @@ public class EventLogInput extends FileEditorInput
             Debug.println("Notifying listeners about the content being overwritten in the event log");
 
         moduleTreeRoot = null;
+        lastSearchResult = null;
+        searchHitEntryIndices.clear();
 
         for (IEventLogChangeListener listener : eventLogChangeListeners)
             listener.eventLogOverwritten();
@@ -0,0 +1,489 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.common.eventlog;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.omnetpp.common.CommonPlugin;
+
+/**
+ * Full-text search index of an event log file, used to find raw text without
+ * scanning the whole file. The file is divided into blocks of consecutive events
+ * (about BLOCK_SIZE bytes each), and for each block a bit set of the (lowercase)
+ * character trigrams occurring in it is stored. A search only reads the blocks
+ * which may contain all trigrams of the searched text. The lines before the first
+ * event belong to the first block, and matches there are reported for the first
+ * event.
+ *
+ * The index is built by reading the file directly (the C++ event log reader
+ * is not involved), so it can be done on a background thread. It is updated
+ * incrementally when the file grows, and rebuilt when it is overwritten. The
+ * index is saved to the given index file, and loaded from there next time.
+ *
+ * The index may be used from any thread.
+ */
+public class EventLogSearchIndex {
+    private static final int MAGIC = 0x656c6978; // "elix"
+    private static final int VERSION = 2;
+    private static final int BLOCK_SIZE = 64 * 1024;
+    private static final int TRIGRAM_BITS = 16 * 1024; // must be a power of 2
+    private static final int TRIGRAM_WORDS = TRIGRAM_BITS / 64;
+    private static final int CHECKSUM_SIZE = 4096;
+
+    /**
+     * A range of the file starting with an event line (or the beginning of the file).
+     */
+    private static class Block {
+        long beginOffset;
+        long endOffset;
+        long firstEventNumber;
+        long[] trigrams = new long[TRIGRAM_WORDS];
+    }
+
+    /**
+     * Interface for receiving the number of hits while the search is in progress.
+     */
+    public interface IHitCountListener {
+        void hitCountChanged(int numHits);
+    }
+
+    /**
+     * The result of a search: the numbers of the events having a matching line.
+     */
+    public static class SearchResult {
+        private final String text;
+        private final boolean caseSensitive;
+        private final long fileLength;
+        private final long fileLastModified;
+        private final long[] eventNumbers; // sorted
+
+        private SearchResult(String text, boolean caseSensitive, long fileLength, long fileLastModified, long[] eventNumbers) {
+            this.text = text;
+            this.caseSensitive = caseSensitive;
+            this.fileLength = fileLength;
+            this.fileLastModified = fileLastModified;
+            this.eventNumbers = eventNumbers;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public boolean isCaseSensitive() {
+            return caseSensitive;
+        }
+
+        public int getNumHits() {
+            return eventNumbers.length;
+        }
+
+        /**
+         * Returns true if the given event has a matching line.
+         */
+        public boolean isHit(long eventNumber) {
+            return Arrays.binarySearch(eventNumbers, eventNumber) >= 0;
+        }
+
+        /**
+         * Returns the first hit after (or before, if not forward) the given event
+         * number, or -1 if there is none.
+         */
+        public long getNextHit(long eventNumber, boolean forward) {
+            int index = Arrays.binarySearch(eventNumbers, eventNumber);
+            if (forward) {
+                index = index >= 0 ? index + 1 : -index - 1;
+                return index < eventNumbers.length ? eventNumbers[index] : -1;
+            }
+            else {
+                index = index >= 0 ? index - 1 : -index - 2;
+                return index >= 0 ? eventNumbers[index] : -1;
+            }
+        }
+    }
+
+    private final File file;
+    private final File indexFile;
+
+    private ArrayList<Block> blocks = new ArrayList<Block>();
+    private long indexedLength = 0; // the file is indexed up to this offset
+    private long checksum = -1; // of the first CHECKSUM_SIZE bytes of the file
+    private boolean loaded = false;
+    private boolean dirty = false;
+
+    public EventLogSearchIndex(File file, File indexFile) {
+        this.file = file;
+        this.indexFile = indexFile;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the length of the part of the file covered by the index.
+     */
+    public synchronized long getIndexedLength() {
+        return indexedLength;
+    }
+
+    /**
+     * Brings the index up to date with the file: indexes the appended content,
+     * or rebuilds the index if the file has been overwritten. The index file is
+     * saved if anything has changed.
+     */
+    public synchronized void update(IProgressMonitor monitor) throws IOException {
+        if (!loaded) {
+            load();
+            loaded = true;
+        }
+
+        long length = file.length();
+        long currentChecksum = computeChecksum();
+        if (length < indexedLength || currentChecksum != checksum) {
+            blocks.clear();
+            indexedLength = 0;
+            checksum = currentChecksum;
+            dirty = true;
+        }
+        if (length > indexedLength) {
+            // the last block may have been incomplete, index it again
+            if (!blocks.isEmpty()) {
+                Block lastBlock = blocks.remove(blocks.size() - 1);
+                indexedLength = lastBlock.beginOffset;
+            }
+            indexRange(indexedLength, length, monitor);
+            dirty = true;
+        }
+        if (dirty)
+            save();
+    }
+
+    /**
+     * Searches the indexed part of the file for lines containing the given text,
+     * and returns the numbers of the events containing them. The search can be
+     * canceled via the monitor (OperationCanceledException is thrown then).
+     */
+    public synchronized SearchResult search(String text, boolean caseSensitive, IProgressMonitor monitor, IHitCountListener hitCountListener) throws IOException {
+        long fileLength = file.length();
+        long fileLastModified = file.lastModified();
+        byte[] pattern = text.getBytes(StandardCharsets.UTF_8);
+        if (!caseSensitive)
+            toLowerCase(pattern, 0, pattern.length);
+        long[] queryTrigrams = new long[TRIGRAM_WORDS];
+        for (int i = 0; i + 2 < pattern.length; i++)
+            setTrigram(queryTrigrams, toLowerCase(pattern[i]), toLowerCase(pattern[i + 1]), toLowerCase(pattern[i + 2]));
+
+        ArrayList<Block> candidates = new ArrayList<Block>();
+        for (Block block : blocks)
+            if (containsAll(block.trigrams, queryTrigrams))
+                candidates.add(block);
+
+        monitor.beginTask("Searching for " + text, candidates.size());
+        long[] hits = new long[16];
+        int numHits = 0;
+        byte[] buffer = new byte[BLOCK_SIZE];
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            for (Block block : candidates) {
+                if (monitor.isCanceled())
+                    throw new OperationCanceledException();
+                int size = (int)(block.endOffset - block.beginOffset);
+                if (buffer.length < size)
+                    buffer = new byte[size];
+                input.seek(block.beginOffset);
+                input.readFully(buffer, 0, size);
+
+                long eventNumber = block.firstEventNumber;
+                long lastHit = -1;
+                for (int lineStart = 0; lineStart < size; ) {
+                    int lineEnd = lineStart;
+                    while (lineEnd < size && buffer[lineEnd] != '\n')
+                        lineEnd++;
+                    if (isEventLine(buffer, lineStart, lineEnd))
+                        eventNumber = parseEventNumber(buffer, lineStart, lineEnd, eventNumber);
+                    if (!caseSensitive)
+                        toLowerCase(buffer, lineStart, lineEnd);
+                    if (eventNumber != lastHit && eventNumber != -1 && indexOf(buffer, lineStart, lineEnd, pattern)) {
+                        if (numHits == hits.length)
+                            hits = Arrays.copyOf(hits, 2 * numHits);
+                        hits[numHits++] = eventNumber;
+                        lastHit = eventNumber;
+                    }
+                    lineStart = lineEnd + 1;
+                }
+                if (hitCountListener != null)
+                    hitCountListener.hitCountChanged(numHits);
+                monitor.worked(1);
+            }
+        }
+        finally {
+            monitor.done();
+        }
+        // results are only reused if the whole file was indexed
+        if (indexedLength != fileLength)
+            fileLength = -1;
+        return new SearchResult(text, caseSensitive, fileLength, fileLastModified, Arrays.copyOf(hits, numHits));
+    }
+
+    /**
+     * Returns true if the file has not changed since the given search result was
+     * computed. Does not wait for a running update or search.
+     */
+    public boolean isUpToDate(SearchResult result) {
+        return result.fileLength == file.length() && result.fileLastModified == file.lastModified();
+    }
+
+    /**
+     * Searches the lines of an event, i.e. the given range of the file, for the given
+     * text. Returns the index of the first matching event log entry after (or the last
+     * one before, if not forward) the given entry index, or -1 if there is none. Entries
+     * are counted like in the C++ event log: the event line is entry 0, and it is
+     * followed by the non-empty lines.
+     */
+    public int findEventLogEntryIndex(long beginOffset, long endOffset, String text, boolean caseSensitive, int startIndex, boolean forward) throws IOException {
+        int result = -1;
+        for (int entryIndex : findEventLogEntryIndices(beginOffset, endOffset, text, caseSensitive)) {
+            if (forward ? entryIndex > startIndex : entryIndex < startIndex) {
+                result = entryIndex;
+                if (forward)
+                    break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the indices of all event log entries in the given range of the file
+     * (i.e. of an event) that contain the given text, in increasing order. Entries
+     * are counted as in findEventLogEntryIndex().
+     */
+    public int[] findEventLogEntryIndices(long beginOffset, long endOffset, String text, boolean caseSensitive) throws IOException {
+        byte[] pattern = text.getBytes(StandardCharsets.UTF_8);
+        if (!caseSensitive)
+            toLowerCase(pattern, 0, pattern.length);
+        int size = (int)(endOffset - beginOffset);
+        byte[] buffer = new byte[size];
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            input.seek(beginOffset);
+            input.readFully(buffer, 0, size);
+        }
+        int[] result = new int[16];
+        int numResults = 0;
+        int entryIndex = 0;
+        for (int lineStart = 0; lineStart < size; ) {
+            int lineEnd = lineStart;
+            while (lineEnd < size && buffer[lineEnd] != '\n')
+                lineEnd++;
+            if (lineEnd > lineStart && buffer[lineStart] != '\r') {
+                if (!caseSensitive)
+                    toLowerCase(buffer, lineStart, lineEnd);
+                if (indexOf(buffer, lineStart, lineEnd, pattern)) {
+                    if (numResults == result.length)
+                        result = Arrays.copyOf(result, 2 * numResults);
+                    result[numResults++] = entryIndex;
+                }
+                entryIndex++;
+            }
+            lineStart = lineEnd + 1;
+        }
+        return Arrays.copyOf(result, numResults);
+    }
+
+    private void indexRange(long begin, long end, IProgressMonitor monitor) throws IOException {
+        monitor.beginTask("Indexing " + file.getName(), (int)((end - begin) / BLOCK_SIZE) + 1);
+        try (InputStream input = new BufferedInputStream(new FileInputStream(file), 1024 * 1024)) {
+            skipFully(input, begin);
+            byte[] line = new byte[1024];
+            long offset = begin;
+            Block block = null;
+            while (offset < end) {
+                if (monitor.isCanceled())
+                    throw new OperationCanceledException();
+                // read a line
+                int length = 0;
+                int c;
+                while ((c = input.read()) != -1 && c != '\n') {
+                    if (length == line.length)
+                        line = Arrays.copyOf(line, 2 * length);
+                    line[length++] = (byte)c;
+                }
+                if (c == -1 || offset + length + 1 > end)
+                    break; // incomplete line, the rest will be indexed later
+                long lineStart = offset;
+                offset += length + 1;
+
+                // events start new blocks when the current one is full; the lines
+                // before the first event go into the first block
+                boolean isEventLine = isEventLine(line, 0, length);
+                if (block == null || (isEventLine && lineStart - block.beginOffset >= BLOCK_SIZE && block.firstEventNumber != -1)) {
+                    if (block != null) {
+                        block.endOffset = lineStart;
+                        blocks.add(block);
+                        monitor.worked(1);
+                    }
+                    block = new Block();
+                    block.beginOffset = lineStart;
+                    block.firstEventNumber = -1;
+                }
+                if (isEventLine && block.firstEventNumber == -1)
+                    block.firstEventNumber = parseEventNumber(line, 0, length, -1);
+                toLowerCase(line, 0, length);
+                for (int i = 0; i + 2 < length; i++)
+                    setTrigram(block.trigrams, line[i], line[i + 1], line[i + 2]);
+                indexedLength = offset;
+            }
+            if (block != null) {
+                block.endOffset = indexedLength;
+                blocks.add(block);
+            }
+        }
+        finally {
+            monitor.done();
+        }
+    }
+
+    private long computeChecksum() throws IOException {
+        byte[] buffer = new byte[CHECKSUM_SIZE];
+        int length = 0;
+        try (InputStream input = new FileInputStream(file)) {
+            int count;
+            while (length < buffer.length && (count = input.read(buffer, length, buffer.length - length)) != -1)
+                length += count;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer, 0, length);
+        return crc.getValue();
+    }
+
+    private void load() {
+        if (!indexFile.exists())
+            return;
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION)
+                return;
+            long loadedChecksum = input.readLong();
+            long loadedIndexedLength = input.readLong();
+            int numBlocks = input.readInt();
+            ArrayList<Block> loadedBlocks = new ArrayList<Block>(numBlocks);
+            for (int i = 0; i < numBlocks; i++) {
+                Block block = new Block();
+                block.beginOffset = input.readLong();
+                block.endOffset = input.readLong();
+                block.firstEventNumber = input.readLong();
+                for (int j = 0; j < TRIGRAM_WORDS; j++)
+                    block.trigrams[j] = input.readLong();
+                loadedBlocks.add(block);
+            }
+            checksum = loadedChecksum;
+            indexedLength = loadedIndexedLength;
+            blocks = loadedBlocks;
+        }
+        catch (IOException e) {
+            // corrupt index file, it will be rebuilt
+            CommonPlugin.logError("Cannot read eventlog search index " + indexFile, e);
+        }
+    }
+
+    private void save() {
+        indexFile.getParentFile().mkdirs();
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(checksum);
+            output.writeLong(indexedLength);
+            output.writeInt(blocks.size());
+            for (Block block : blocks) {
+                output.writeLong(block.beginOffset);
+                output.writeLong(block.endOffset);
+                output.writeLong(block.firstEventNumber);
+                for (long word : block.trigrams)
+                    output.writeLong(word);
+            }
+            dirty = false;
+        }
+        catch (IOException e) {
+            CommonPlugin.logError("Cannot save eventlog search index " + indexFile, e);
+        }
+    }
+
+    private static void skipFully(InputStream input, long count) throws IOException {
+        while (count > 0) {
+            long skipped = input.skip(count);
+            if (skipped <= 0)
+                throw new IOException("Unexpected end of file");
+            count -= skipped;
+        }
+    }
+
+    private static boolean isEventLine(byte[] line, int start, int end) {
+        return end - start >= 2 && line[start] == 'E' && line[start + 1] == ' ';
+    }
+
+    /**
+     * Parses the event number from an event line ("E # 123 t ..."), returns defaultValue if not found.
+     */
+    private static long parseEventNumber(byte[] line, int start, int end, long defaultValue) {
+        int i = start + 2;
+        if (i + 1 >= end || line[i] != '#' || line[i + 1] != ' ')
+            return defaultValue;
+        i += 2;
+        long result = 0;
+        int digits = 0;
+        for (; i < end && line[i] >= '0' && line[i] <= '9'; i++, digits++)
+            result = result * 10 + (line[i] - '0');
+        return digits == 0 ? defaultValue : result;
+    }
+
+    private static boolean indexOf(byte[] buffer, int start, int end, byte[] pattern) {
+        int last = end - pattern.length;
+        outer:
+        for (int i = start; i <= last; i++) {
+            for (int j = 0; j < pattern.length; j++)
+                if (buffer[i + j] != pattern[j])
+                    continue outer;
+            return true;
+        }
+        return false;
+    }
+
+    private static void setTrigram(long[] bits, byte b0, byte b1, byte b2) {
+        int hash = ((b0 & 0xff) * 961 + (b1 & 0xff) * 31 + (b2 & 0xff)) * 0x9e3779b1;
+        int bit = (hash >>> 16) & (TRIGRAM_BITS - 1);
+        bits[bit >>> 6] |= 1L << (bit & 63);
+    }
+
+    private static boolean containsAll(long[] bits, long[] subset) {
+        for (int i = 0; i < bits.length; i++)
+            if ((bits[i] & subset[i]) != subset[i])
+                return false;
+        return true;
+    }
+
+    private static byte toLowerCase(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte)(b + ('a' - 'A')) : b;
+    }
+
+    private static void toLowerCase(byte[] buffer, int start, int end) {
+        for (int i = start; i < end; i++)
+            buffer[i] = toLowerCase(buffer[i]);
+    }
+}
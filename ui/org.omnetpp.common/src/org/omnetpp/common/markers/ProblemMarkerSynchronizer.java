@@ -44,6 +44,7 @@ import org.omnetpp.common.Debug;
  *
  * ProblemMarkerSynchronizers are one-shot objects, they cannot be reused.
  * Clients need to create a new instance for every synchronization.
+ * Markers may be collected from several threads concurrently.
  *
  * @author Andras
  */
@@ -118,7 +119,7 @@ public class ProblemMarkerSynchronizer {
      * no addMarker() for that file, that file will be ignored (existing markers left
      * untouched) unless you register them with register().
      */
-    public void register(IResource file) {
+    public synchronized void register(IResource file) {
         Assert.isNotNull(file);
         if (!markerTable.containsKey(file))
             markerTable.put(file, new ArrayList<MarkerData>());
@@ -127,7 +128,7 @@ public class ProblemMarkerSynchronizer {
     /**
      * Returns true if no files registered.
      */
-    public boolean isEmpty() {
+    public synchronized boolean isEmpty() {
         return markerTable.isEmpty();
     }
 
@@ -135,7 +136,7 @@ public class ProblemMarkerSynchronizer {
      * Stores data for a marker to be added to the given file (or other resource).
      * Implies registerFile().
      */
-    public void addMarker(IResource file, String markerType, Map<String, Object> markerAttrs) {
+    public synchronized void addMarker(IResource file, String markerType, Map<String, Object> markerAttrs) {
         register(file);
 
         HashMap<String, Object> markerAttrsHashMap = markerAttrs.getClass().equals(HashMap.class) ?
@@ -151,14 +152,14 @@ public class ProblemMarkerSynchronizer {
     /**
      * Returns the number of files (or other resources) registered in this synchronizer.
      */
-    public int getNumberOfFiles() {
+    public synchronized int getNumberOfFiles() {
         return markerTable.size();
     }
 
     /**
      * Returns the number of markers registered in this synchronizer.
      */
-    public int getNumberOfMarkers() {
+    public synchronized int getNumberOfMarkers() {
         int count = 0;
         for (IResource file : markerTable.keySet())
             count += markerTable.get(file).size();
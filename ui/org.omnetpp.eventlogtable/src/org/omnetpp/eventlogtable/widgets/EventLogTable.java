@@ -7,6 +7,7 @@
 
 package org.omnetpp.eventlogtable.widgets;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.Iterator;
 
@@ -34,6 +35,7 @@ import org.omnetpp.common.color.ColorFactory;
 import org.omnetpp.common.eventlog.EventLogEntryReference;
 import org.omnetpp.common.eventlog.EventLogFindTextDialog;
 import org.omnetpp.common.eventlog.EventLogInput;
+import org.omnetpp.common.eventlog.EventLogSearchIndex;
 import org.omnetpp.common.eventlog.EventLogSelection;
 import org.omnetpp.common.eventlog.EventNumberRangeSet;
 import org.omnetpp.common.eventlog.IEventLogChangeListener;
@@ -602,16 +604,75 @@ public class EventLogTable
 
             if (findText != null) {
                 EventLogEntryReference eventLogEntryReference = getFocusElement();
-                EventLogEntry startEventLogEntry = (eventLogEntryReference == null ? getTopVisibleElement() : eventLogEntryReference).getEventLogEntry(eventLogInput);
-                EventLogEntry foundEventLogEntry = eventLog.findEventLogEntry(startEventLogEntry, findText, !findTextDialog.isBackward(), !findTextDialog.isCaseInsensitive());
+                if (eventLogEntryReference == null)
+                    eventLogEntryReference = getTopVisibleElement();
+                EventLogEntryReference startEventLogEntryReference = eventLogEntryReference;
+                boolean forward = !findTextDialog.isBackward();
+
+                // the search runs in the background if the file can be indexed
+                boolean started = eventLogInput.findText(findText, !findTextDialog.isCaseInsensitive(), result -> {
+                    if (!isDisposed())
+                        gotoSearchHit(result, startEventLogEntryReference, forward);
+                });
 
-                if (foundEventLogEntry != null)
-                    gotoClosestElement(new EventLogEntryReference(foundEventLogEntry));
-                else
-                    MessageDialog.openInformation(null, "Find raw text", "No more matches found for " + findText);
+                if (!started) {
+                    EventLogEntry startEventLogEntry = eventLogEntryReference.getEventLogEntry(eventLogInput);
+                    EventLogEntry foundEventLogEntry = eventLog.findEventLogEntry(startEventLogEntry, findText, forward, !findTextDialog.isCaseInsensitive());
+
+                    if (foundEventLogEntry != null)
+                        gotoClosestElement(new EventLogEntryReference(foundEventLogEntry));
+                    else
+                        MessageDialog.openInformation(null, "Find raw text", "No more matches found for " + findText);
+                }
             }
         }
     }
+
+    /**
+     * Goes to the first matching entry after (or before) the given entry. The search
+     * result tells which events contain the text; the entries of the start event and
+     * of the first such event present in the (possibly filtered) event log are then
+     * searched for the matching entry itself. The matching entries are highlighted
+     * by the row renderer.
+     */
+    private void gotoSearchHit(EventLogSearchIndex.SearchResult result, EventLogEntryReference startEventLogEntryReference, boolean forward) {
+        redraw();
+        long eventNumber = startEventLogEntryReference.getEventNumber();
+        if (result.isHit(eventNumber)) {
+            IEvent event = eventLog.getEventForEventNumber(eventNumber);
+            if (event != null) {
+                int index = findEventLogEntryIndex(result, event, startEventLogEntryReference.getEventEntryIndex(), forward);
+                if (index != -1) {
+                    gotoClosestElement(new EventLogEntryReference(event.getEventLogEntry(index)));
+                    return;
+                }
+            }
+        }
+        while ((eventNumber = result.getNextHit(eventNumber, forward)) != -1) {
+            IEvent event = eventLog.getEventForEventNumber(eventNumber);
+            if (event != null) {
+                int index = findEventLogEntryIndex(result, event, forward ? -1 : Integer.MAX_VALUE, forward);
+                // matches before the first event are reported for the first event
+                EventLogEntry eventLogEntry = index != -1 ? event.getEventLogEntry(index) : event.getEventEntry();
+                gotoClosestElement(new EventLogEntryReference(eventLogEntry));
+                return;
+            }
+        }
+        MessageDialog.openInformation(null, "Find raw text", "No more matches found for " + result.getText());
+    }
+
+    private int findEventLogEntryIndex(EventLogSearchIndex.SearchResult result, IEvent event, int startIndex, boolean forward) {
+        try {
+            EventLogSearchIndex searchIndex = eventLogInput.getSearchIndex();
+            if (searchIndex == null)
+                return -1;
+            return searchIndex.findEventLogEntryIndex(event.getBeginOffset(), event.getEndOffset(), result.getText(), result.isCaseSensitive(), startIndex, forward);
+        }
+        catch (IOException e) {
+            EventLogTablePlugin.logError(e);
+            return -1;
+        }
+    }
 }
 
 /**
@@ -73,6 +73,7 @@ public class EventLogTableRowRenderer implements IVirtualTableRowRenderer<EventL
     private static final Color BLACK = new Color(null, 0, 0, 0);
     private static final Color LIGHTGREY = new Color(null, 211, 211, 211);
     private static final Color BOOKMARK_COLOR = ColorFactory.LIGHT_CYAN;
+    private static final Color SEARCH_HIT_COLOR = new Color(null, 255, 240, 160);
     private static final Styler EVENT_ENTRY_EVENT_NUMBER_STYLE = createStyle(BLACK);
     private static final Styler EVENT_LOG_ENTRY_EVENT_NUMBER_STYLE = createStyle(LIGHTGREY);
     private static final Styler EVENT_ENTRY_SIMULATION_TIME_STYLE = createStyle(BLACK);
@@ -152,6 +153,12 @@ public class EventLogTableRowRenderer implements IVirtualTableRowRenderer<EventL
             throw new RuntimeException(e);
         }
 
+        if (eventLogInput.isSearchHit(contextEvent, eventLogEntryReference.getEventEntryIndex()) &&
+                gc.getBackground().equals(Display.getCurrent().getSystemColor(SWT.COLOR_LIST_BACKGROUND))) {
+            gc.setBackground(SEARCH_HIT_COLOR);
+            gc.fillRectangle(gc.getClipping());
+        }
+
         StyledString styledString = getStyledText(eventLogEntryReference, index, isSelected);
         int x = getIndentation(eventLogEntryReference, index);
 
@@ -0,0 +1,813 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.figures.layout;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import org.eclipse.core.runtime.Assert;
+import org.eclipse.draw2d.geometry.PrecisionPoint;
+import org.omnetpp.common.Debug;
+import org.omnetpp.common.displaymodel.PointF;
+
+/**
+ * Spring embedder for large graphs. It uses the same model as
+ * BasicSpringEmbedderLayoutAlgorithm (edge attraction, repulsion between
+ * connected nodes up to a distance of 2000 and between unconnected ones up to
+ * 100, friction, speed limit, anchors), but repulsion is not computed for all
+ * pairs of nodes:
+ *  - nodes of the same connected component are put into a quadtree, and the
+ *    repulsion of far away cells is approximated with that of their center
+ *    of mass (Barnes-Hut approximation);
+ *  - nodes of other components are looked up in a uniform grid whose cells
+ *    are as large as the repulsion distance.
+ * This makes an iteration O(n log n) instead of O(n^2). Node data are kept in
+ * primitive arrays, and repulsion is computed in parallel for large graphs.
+ *
+ * The algorithm may be run in a background thread. Intermediate positions can
+ * be published periodically (see setProgressListener()), and the layouting can
+ * be cut short with cancel().
+ *
+ * Differences to BasicSpringEmbedderLayoutAlgorithm: coincident nodes are
+ * pushed apart with a deterministic pseudo-random force instead of drawing from
+ * the RNG (which would make the result depend on thread scheduling), and
+ * anchors are confined to the area correctly.
+ */
+public class BarnesHutSpringEmbedderLayoutAlgorithm extends AbstractGraphLayoutAlgorithm {
+    private static final int TIMEOUT = 15000;  // 15 sec timeout for the layouter
+    private static final int PUBLISH_INTERVAL_MILLIS = 200;
+    private static final int PARALLEL_THRESHOLD = 500; // number of nodes above which repulsion is computed in parallel
+
+    private static final double SAME_COLOR_CUTOFF = 2000; // connected nodes don't repulse if farther than this
+    private static final double OTHER_COLOR_CUTOFF = 100; // unconnected nodes don't repulse if farther than this
+    private static final double THETA = 0.5; // Barnes-Hut accuracy parameter: cell size / distance
+    private static final int LEAF_CAPACITY = 8;
+    private static final double MIN_CELL_HALF_SIZE = 0.5;
+
+    private int maxIterations = 500;
+    private double repulsiveForce = 50;
+    private double attractionForce = 0.3;
+
+    // nodes
+    private int numNodes;
+    private int[] nodeIds = new int[16];
+    private Map<Integer,Integer> nodeIndices = new HashMap<>(); // node id -> index
+    private boolean[] fixed = new boolean[16];
+    private int[] anchor = new int[16]; // anchor index, or -1
+    private double[] inputX = new double[16], inputY = new double[16]; // fixed nodes: position
+    private double[] offX = new double[16], offY = new double[16]; // anchored nodes: offset to anchor point
+    private double[] sizeX = new double[16], sizeY = new double[16]; // half width/height
+    private boolean allNodesAreFixed = true;
+    private boolean haveAnchoredNode = false;
+
+    // anchors
+    private List<String> anchorNames = new ArrayList<>();
+    private int[] anchorRefCount = new int[16];
+    private boolean[] anchorPositionGiven = new boolean[16]; // see setAnchorPosition()
+    private double[] anchorInputX = new double[16], anchorInputY = new double[16];
+
+    // edges
+    private int numEdges;
+    private int[] edgeFrom = new int[16], edgeTo = new int[16];
+    private double[] edgeLen = new double[16];
+
+    private int initialSeed = rndseed;
+
+    // layouting state
+    private double[] x, y, dx, dy;
+    private double[] anchorX, anchorY, anchorDX, anchorDY;
+    private int[] color;
+    private int numColors;
+    private double minx, miny, maxx, maxy;
+    private QuadTree quadTree;
+    private int[] colorRoots;
+    private Map<Long,Integer> gridCells = new HashMap<>(); // cell -> first node
+    private int[] gridNext;
+    private long iterationSeed;
+
+    private volatile boolean canceled;
+    private volatile double[][] publishedPositions; // {x, y}
+    private Runnable progressListener;
+
+    /**
+     * Quadtree over the nodes, stored in primitive arrays. Every cell knows the
+     * number of nodes below it and the sum of their positions; leaf cells store
+     * their nodes in a linked list.
+     */
+    private class QuadTree {
+        int numCells;
+        double[] centerX = new double[64], centerY = new double[64], halfSize = new double[64];
+        double[] sumX = new double[64], sumY = new double[64];
+        int[] count = new int[64];
+        int[] firstChild = new int[64]; // -1 for leaves
+        int[] firstNode = new int[64]; // leaves: head of the node list
+        int[] nextNode = new int[numNodes];
+
+        int addCell(double cx, double cy, double half) {
+            if (numCells == count.length) {
+                int n = 2 * numCells;
+                centerX = Arrays.copyOf(centerX, n);
+                centerY = Arrays.copyOf(centerY, n);
+                halfSize = Arrays.copyOf(halfSize, n);
+                sumX = Arrays.copyOf(sumX, n);
+                sumY = Arrays.copyOf(sumY, n);
+                count = Arrays.copyOf(count, n);
+                firstChild = Arrays.copyOf(firstChild, n);
+                firstNode = Arrays.copyOf(firstNode, n);
+            }
+            int cell = numCells++;
+            centerX[cell] = cx;
+            centerY[cell] = cy;
+            halfSize[cell] = half;
+            sumX[cell] = sumY[cell] = 0;
+            count[cell] = 0;
+            firstChild[cell] = -1;
+            firstNode[cell] = -1;
+            return cell;
+        }
+
+        int getQuadrant(int cell, double px, double py) {
+            return (px >= centerX[cell] ? 1 : 0) + (py >= centerY[cell] ? 2 : 0);
+        }
+
+        void insert(int cell, int node) {
+            double px = x[node], py = y[node];
+            while (true) {
+                count[cell]++;
+                sumX[cell] += px;
+                sumY[cell] += py;
+                if (firstChild[cell] == -1) {
+                    nextNode[node] = firstNode[cell];
+                    firstNode[cell] = node;
+                    if (count[cell] > LEAF_CAPACITY && halfSize[cell] > MIN_CELL_HALF_SIZE)
+                        split(cell);
+                    return;
+                }
+                cell = firstChild[cell] + getQuadrant(cell, px, py);
+            }
+        }
+
+        void split(int cell) {
+            double half = halfSize[cell] / 2;
+            int first = addCell(centerX[cell] - half, centerY[cell] - half, half);
+            addCell(centerX[cell] + half, centerY[cell] - half, half);
+            addCell(centerX[cell] - half, centerY[cell] + half, half);
+            addCell(centerX[cell] + half, centerY[cell] + half, half);
+            firstChild[cell] = first;
+            int node = firstNode[cell];
+            firstNode[cell] = -1;
+            while (node != -1) {
+                int next = nextNode[node];
+                insert(first + getQuadrant(cell, x[node], y[node]), node);
+                node = next;
+            }
+        }
+    }
+
+    public BarnesHutSpringEmbedderLayoutAlgorithm() {
+    }
+
+    /**
+     * Set repulsive force
+     */
+    public void setRepulsiveForce(double f) {
+        repulsiveForce = f;
+    }
+
+    /**
+     * Set attraction force
+     */
+    public void setAttractionForce(double f) {
+        attractionForce = f;
+    }
+
+    /**
+     * Set max number of iterations
+     */
+    public void setMaxIterations(int n) {
+        maxIterations = n;
+    }
+
+    /**
+     * Sets a listener which is called from execute() whenever new intermediate
+     * positions have been published, see getPublishedNodePosition().
+     */
+    public void setProgressListener(Runnable progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Makes execute() stop at the end of the current iteration. May be called
+     * from any thread.
+     */
+    public void cancel() {
+        canceled = true;
+    }
+
+    public boolean isCanceled() {
+        return canceled;
+    }
+
+    /**
+     * Returns true if execute() would move any node.
+     */
+    public boolean hasMovableNodes() {
+        return numNodes > 0 && !allNodesAreFixed;
+    }
+
+    @Override
+    public void setSeed(int seed) {
+        super.setSeed(seed);
+        initialSeed = seed;
+    }
+
+    public void setSize(double width, double height, double border) {
+        setScaleToArea(width, height, border);
+    }
+
+    public void addMovableNode(int nodeId, double width, double height) {
+        int i = addNode(nodeId, width, height);
+        allNodesAreFixed = false;
+        fixed[i] = false;
+    }
+
+    public void addFixedNode(int nodeId, double x, double y, double width, double height) {
+        int i = addNode(nodeId, width, height);
+        fixed[i] = true;
+        inputX[i] = x;
+        inputY[i] = y;
+    }
+
+    public void addAnchoredNode(int nodeId, String anchorName, double offx, double offy, double width, double height) {
+        int i = addNode(nodeId, width, height);
+        haveAnchoredNode = true;
+        allNodesAreFixed = false;
+
+        int a = getOrAddAnchor(anchorName);
+        anchorRefCount[a]++;
+
+        fixed[i] = false;
+        anchor[i] = a;
+        offX[i] = offx;
+        offY[i] = offy;
+    }
+
+    private int getOrAddAnchor(String anchorName) {
+        int a = anchorNames.indexOf(anchorName);
+        if (a == -1) {
+            a = anchorNames.size();
+            anchorNames.add(anchorName);
+            if (a == anchorRefCount.length) {
+                anchorRefCount = Arrays.copyOf(anchorRefCount, 2 * a);
+                anchorPositionGiven = Arrays.copyOf(anchorPositionGiven, 2 * a);
+                anchorInputX = Arrays.copyOf(anchorInputX, 2 * a);
+                anchorInputY = Arrays.copyOf(anchorInputY, 2 * a);
+            }
+        }
+        return a;
+    }
+
+    private int addNode(int nodeId, double width, double height) {
+        Assert.isTrue(!nodeIndices.containsKey(nodeId));
+        if (numNodes == nodeIds.length) {
+            int n = 2 * numNodes;
+            nodeIds = Arrays.copyOf(nodeIds, n);
+            fixed = Arrays.copyOf(fixed, n);
+            anchor = Arrays.copyOf(anchor, n);
+            inputX = Arrays.copyOf(inputX, n);
+            inputY = Arrays.copyOf(inputY, n);
+            offX = Arrays.copyOf(offX, n);
+            offY = Arrays.copyOf(offY, n);
+            sizeX = Arrays.copyOf(sizeX, n);
+            sizeY = Arrays.copyOf(sizeY, n);
+        }
+        int i = numNodes++;
+        nodeIds[i] = nodeId;
+        nodeIndices.put(nodeId, i);
+        anchor[i] = -1;
+        sizeX[i] = width / 2;
+        sizeY[i] = height / 2;
+        return i;
+    }
+
+    /**
+     * Sets the starting position of the anchor instead of a random one. The anchor
+     * still moves during layouting.
+     */
+    public void setAnchorPosition(String anchor, double x, double y) {
+        int a = getOrAddAnchor(anchor);
+        anchorPositionGiven[a] = true;
+        anchorInputX[a] = x;
+        anchorInputY[a] = y;
+    }
+
+    public void addEdge(int srcNodeId, int destNodeId, double len) {
+        Integer from = nodeIndices.get(srcNodeId);
+        Integer to = nodeIndices.get(destNodeId);
+        Assert.isTrue(from != null && to != null);
+
+        if (numEdges == edgeFrom.length) {
+            int n = 2 * numEdges;
+            edgeFrom = Arrays.copyOf(edgeFrom, n);
+            edgeTo = Arrays.copyOf(edgeTo, n);
+            edgeLen = Arrays.copyOf(edgeLen, n);
+        }
+        int e = numEdges++;
+        edgeFrom[e] = from;
+        edgeTo[e] = to;
+        edgeLen[e] = len > 0 ? len : defaultEdgeLen;
+
+        // heuristics to take submodule size into account
+        edgeLen[e] += 2 * (Math.min(sizeX[from], sizeY[from]) + Math.min(sizeX[to], sizeY[to]));
+    }
+
+    public void addEdgeToBorder(int nodeId, double len) {
+        // XXX this layouter algorithm ignores connections to border
+    }
+
+    /**
+     * Returns true if the other layouter was given exactly the same input as this one,
+     * i.e. their execute() would produce the same result.
+     */
+    public boolean hasSameInput(BarnesHutSpringEmbedderLayoutAlgorithm other) {
+        int n = numNodes;
+        int m = numEdges;
+        return n == other.numNodes && m == other.numEdges &&
+                initialSeed == other.initialSeed && defaultEdgeLen == other.defaultEdgeLen &&
+                sizingMode == other.sizingMode && width == other.width && height == other.height && border == other.border &&
+                maxIterations == other.maxIterations && repulsiveForce == other.repulsiveForce && attractionForce == other.attractionForce &&
+                Arrays.equals(nodeIds, 0, n, other.nodeIds, 0, n) &&
+                Arrays.equals(fixed, 0, n, other.fixed, 0, n) &&
+                Arrays.equals(anchor, 0, n, other.anchor, 0, n) &&
+                Arrays.equals(inputX, 0, n, other.inputX, 0, n) &&
+                Arrays.equals(inputY, 0, n, other.inputY, 0, n) &&
+                Arrays.equals(offX, 0, n, other.offX, 0, n) &&
+                Arrays.equals(offY, 0, n, other.offY, 0, n) &&
+                Arrays.equals(sizeX, 0, n, other.sizeX, 0, n) &&
+                Arrays.equals(sizeY, 0, n, other.sizeY, 0, n) &&
+                anchorNames.equals(other.anchorNames) &&
+                Arrays.equals(anchorPositionGiven, 0, anchorNames.size(), other.anchorPositionGiven, 0, anchorNames.size()) &&
+                Arrays.equals(anchorInputX, 0, anchorNames.size(), other.anchorInputX, 0, anchorNames.size()) &&
+                Arrays.equals(anchorInputY, 0, anchorNames.size(), other.anchorInputY, 0, anchorNames.size()) &&
+                Arrays.equals(edgeFrom, 0, m, other.edgeFrom, 0, m) &&
+                Arrays.equals(edgeTo, 0, m, other.edgeTo, 0, m) &&
+                Arrays.equals(edgeLen, 0, m, other.edgeLen, 0, m);
+    }
+
+    public void execute() {
+        long startMillis = System.currentTimeMillis();
+
+        int n = numNodes;
+        x = Arrays.copyOf(inputX, n);
+        y = Arrays.copyOf(inputY, n);
+        if (n == 0 || allNodesAreFixed)
+            return;
+
+        if (debug)
+            Debug.println("running layouter: " + n + " nodes, " + "allNodesAreFixed=" + allNodesAreFixed + ", haveAnchoredNode=" + haveAnchoredNode);
+
+        // consume a some values (manually given seeds are usually small!)
+        privRand01();
+        privRand01();
+        privRand01();
+
+        // initialize variables (also randomize start positions)
+        int numAnchors = anchorNames.size();
+        anchorX = new double[numAnchors];
+        anchorY = new double[numAnchors];
+        anchorDX = new double[numAnchors];
+        anchorDY = new double[numAnchors];
+        for (int a = 0; a < numAnchors; a++) {
+            // note: random numbers are consumed even for given positions, so that they don't affect the rest of the layout
+            anchorX[a] = 100 * privRand01();
+            anchorY[a] = 100 * privRand01();
+            if (anchorPositionGiven[a]) {
+                anchorX[a] = anchorInputX[a];
+                anchorY[a] = anchorInputY[a];
+            }
+        }
+        dx = new double[n];
+        dy = new double[n];
+        for (int i = 0; i < n; i++) {
+            if (fixed[i]) {
+                // nop
+            }
+            else if (anchor[i] != -1) {
+                x[i] = anchorX[anchor[i]] + offX[i];
+                y[i] = anchorY[anchor[i]] + offY[i];
+            }
+            else { // movable
+                x[i] = width * privRand01();
+                y[i] = height * privRand01();
+            }
+        }
+
+        // set area
+        if (sizingMode == SIZINGMODE_CONFINE) {
+            minx = border;
+            miny = border;
+            maxx = width - border;
+            maxy = height - border;
+        }
+        else {
+            minx = -100000000;
+            miny = -100000000;
+            maxx =  100000000;
+            maxy =  100000000;
+        }
+
+        // partition graph
+        doColoring();
+        gridNext = new int[n];
+
+        if (progressListener != null)
+            publishPositions();
+
+        // now the real job -- stop if max moved distance is <0.05 at least 20 times in a row
+        // or we spent more time on layouting then the preset timeout
+        int i, maxdcounter = 0;
+        long lastPublishMillis = System.currentTimeMillis();
+        for (i = 1; i < maxIterations && maxdcounter < 20 && (System.currentTimeMillis() - startMillis) < TIMEOUT && !canceled; i++) {
+            double maxd = relax(i);
+
+            if (maxd < 0.05)
+                maxdcounter++;
+            else
+                maxdcounter = 0;
+
+            if (progressListener != null && System.currentTimeMillis() - lastPublishMillis >= PUBLISH_INTERVAL_MILLIS) {
+                publishPositions();
+                lastPublishMillis = System.currentTimeMillis();
+            }
+        }
+
+        if (debug)
+            Debug.println("layout done: " + n + " nodes, " + i + " iterations, " + (System.currentTimeMillis() - startMillis) + "ms");
+
+        scaleBack(x, y);
+
+        quadTree = null;
+        gridCells.clear();
+    }
+
+    /**
+     * Scale back if too big -- BUT scale back only non fixed nodes.
+     * Fixed nodes do not change position.
+     */
+    protected void scaleBack(double[] x, double[] y) {
+        if (sizingMode != SIZINGMODE_SCALE)
+            return;
+
+        // calculate bounding box
+        double x1, y1, x2, y2;
+        x1 = x2 = x[0];
+        y1 = y2 = y[0];
+        for (int i = 0; i < numNodes; i++) {
+            // skip the fixed nodes
+            if (fixed[i]) continue;
+            if (x[i] - sizeX[i] < x1) x1 = x[i] - sizeX[i];
+            if (y[i] - sizeY[i] < y1) y1 = y[i] - sizeY[i];
+            if (x[i] + sizeX[i] > x2) x2 = x[i] + sizeX[i];
+            if (y[i] + sizeY[i] > y2) y2 = y[i] + sizeY[i];
+        }
+
+        double bx = border, by = border;
+        if (!haveAnchoredNode) {
+            // rescale
+            double xfact = (width - 2 * border) / (x2 - x1);
+            double yfact = (height - 2 * border) / (y2 - y1);
+            if (xfact > 1) {xfact = 1;} // only scale down if needed, but never magnify
+            if (yfact > 1) {yfact = 1;}
+            for (int i = 0; i < numNodes; i++) {
+                if (fixed[i]) continue;
+                x[i] = bx + (x[i] - x1) * xfact;
+                y[i] = by + (y[i] - y1) * yfact;
+            }
+        }
+        else {
+            // don't want to rescale with anchored nodes, just shift bounding box to (bx,by)
+            for (int i = 0; i < numNodes; i++) {
+                if (fixed[i]) continue;
+                x[i] = bx + x[i] - x1;
+                y[i] = by + y[i] - y1;
+            }
+        }
+    }
+
+    private void publishPositions() {
+        double[] px = x.clone();
+        double[] py = y.clone();
+        scaleBack(px, py);
+        publishedPositions = new double[][] {px, py};
+        progressListener.run();
+    }
+
+    public PointF getNodePosition(int nodeId) {
+        Integer i = nodeIndices.get(nodeId);
+        if (i == null || x == null)
+            return null;
+        return new PointF((float)x[i], (float)y[i]);
+    }
+
+    /**
+     * Returns the position of the node at the time positions were last published
+     * by a running execute(), or null if none have been published yet. May be
+     * called from any thread.
+     */
+    public PointF getPublishedNodePosition(int nodeId) {
+        double[][] positions = publishedPositions;
+        Integer i = nodeIndices.get(nodeId);
+        if (positions == null || i == null)
+            return null;
+        return new PointF((float)positions[0][i], (float)positions[1][i]);
+    }
+
+    public PrecisionPoint getAnchorPosition(String anchor) {
+        // derived from the position of an anchored node, as the node positions are shifted after layouting
+        int a = anchorNames.indexOf(anchor);
+        if (a == -1 || x == null)
+            return null;
+        for (int i = 0; i < numNodes; i++)
+            if (this.anchor[i] == a)
+                return new PrecisionPoint(x[i] - offX[i], y[i] - offY[i]);
+        return null;
+    }
+
+    /**
+     * Mark connected nodes with same color (needed by relax())
+     */
+    protected void doColoring() {
+        // union-find over the edges
+        int n = numNodes;
+        int[] parent = new int[n];
+        for (int i = 0; i < n; i++)
+            parent[i] = i;
+        for (int e = 0; e < numEdges; e++) {
+            int a = findRoot(parent, edgeFrom[e]);
+            int b = findRoot(parent, edgeTo[e]);
+            if (a != b)
+                parent[Math.max(a, b)] = Math.min(a, b);
+        }
+
+        color = new int[n];
+        numColors = 0;
+        int[] colorOfRoot = new int[n];
+        Arrays.fill(colorOfRoot, -1);
+        for (int i = 0; i < n; i++) {
+            int root = findRoot(parent, i);
+            if (colorOfRoot[root] == -1)
+                colorOfRoot[root] = numColors++;
+            color[i] = colorOfRoot[root];
+        }
+    }
+
+    private static int findRoot(int[] parent, int i) {
+        while (parent[i] != i)
+            i = parent[i] = parent[parent[i]];
+        return i;
+    }
+
+    /**
+     * Main algorithm (modified spring embedder), see BasicSpringEmbedderLayoutAlgorithm.relax()
+     */
+    protected double relax(int iteration) {
+        int n = numNodes;
+
+        // edge attraction: calculate if edges are longer or shorter than requested (tension),
+        // and modify their (dx,dy) movement vector accordingly
+        for (int e = 0; e < numEdges; e++) {
+            int from = edgeFrom[e], to = edgeTo[e];
+            if (fixed[from] && fixed[to])
+                continue;
+            double vx = x[to] - x[from];
+            double vy = y[to] - y[from];
+            double len = Math.sqrt(vx * vx + vy * vy);
+            len = len == 0 ? 1.0 : len;
+            double f = attractionForce * (edgeLen[e] - len) / len;
+            dx[to] += f * vx;
+            dy[to] += f * vy;
+            dx[from] -= f * vx;
+            dy[from] -= f * vy;
+        }
+
+        // nodes repulse each other, update (dx,dy) with this effect; only nodes that share
+        // the same color (i.e., are connected) repulse each other at larger distances
+        buildQuadTree();
+        buildGrid();
+        iterationSeed = ((long)rndseed << 32) ^ iteration;
+        if (n >= PARALLEL_THRESHOLD)
+            IntStream.range(0, n).parallel().forEach(i -> addRepulsion(i));
+        else
+            for (int i = 0; i < n; i++)
+                addRepulsion(i);
+
+        // limit dx,dy into (-50,50); move nodes by (dx,dy);
+        // constrain nodes into rectangle (minx, miny, maxx, maxy)
+        double maxd = 0;
+        for (int i = 0; i < n; i++) {
+            if (!fixed[i] && anchor[i] == -1) {
+                x[i] += Math.max(-50, Math.min(50, dx[i])); // speed limit
+                y[i] += Math.max(-50, Math.min(50, dy[i]));
+
+                x[i] = Math.max(minx, Math.min(maxx, x[i]));
+                y[i] = Math.max(miny, Math.min(maxy, y[i]));
+            }
+
+            // this is used for stopping condition
+            if (maxd < dx[i]) maxd = dx[i];
+            if (maxd < dy[i]) maxd = dy[i];
+
+            // "friction" -- nodes stop eventually if not driven by a force
+            dx[i] /= 2;
+            dy[i] /= 2;
+        }
+
+        // sum up movements of anchor nodes
+        int numAnchors = anchorNames.size();
+        Arrays.fill(anchorDX, 0);
+        Arrays.fill(anchorDY, 0);
+        for (int i = 0; i < n; i++) {
+            if (anchor[i] != -1) {
+                anchorDX[anchor[i]] += dx[i];
+                anchorDY[anchor[i]] += dy[i];
+            }
+        }
+
+        // move anchor points
+        for (int a = 0; a < numAnchors; a++) {
+            anchorX[a] += Math.max(-50, Math.min(50, anchorDX[a])); // speed limit
+            anchorY[a] += Math.max(-50, Math.min(50, anchorDY[a]));
+
+            anchorX[a] = Math.max(minx, Math.min(maxx, anchorX[a]));
+            anchorY[a] = Math.max(miny, Math.min(maxy, anchorY[a]));
+
+            // this is used for stopping condition
+            if (maxd < anchorDX[a]) maxd = anchorDX[a];
+            if (maxd < anchorDY[a]) maxd = anchorDY[a];
+
+            // "friction" -- nodes stop eventually if not driven by a force
+            anchorDX[a] /= 2;
+            anchorDY[a] /= 2;
+        }
+
+        // refresh positions of anchored nodes (and distribute anchor's dx,dy among its nodes)
+        for (int i = 0; i < n; i++) {
+            int a = anchor[i];
+            if (a != -1) {
+                x[i] = anchorX[a] + offX[i];
+                y[i] = anchorY[a] + offY[i];
+                dx[i] = anchorDX[a] / anchorRefCount[a];
+                dy[i] = anchorDY[a] / anchorRefCount[a];
+            }
+        }
+        return maxd;
+    }
+
+    /**
+     * Builds one quadtree per color, all in the same cell arrays.
+     */
+    private void buildQuadTree() {
+        int n = numNodes;
+        double[] bounds = new double[4 * numColors]; // minX, minY, maxX, maxY per color
+        for (int c = 0; c < numColors; c++) {
+            bounds[4*c] = bounds[4*c+1] = Double.POSITIVE_INFINITY;
+            bounds[4*c+2] = bounds[4*c+3] = Double.NEGATIVE_INFINITY;
+        }
+        for (int i = 0; i < n; i++) {
+            int c = color[i];
+            bounds[4*c] = Math.min(bounds[4*c], x[i]);
+            bounds[4*c+1] = Math.min(bounds[4*c+1], y[i]);
+            bounds[4*c+2] = Math.max(bounds[4*c+2], x[i]);
+            bounds[4*c+3] = Math.max(bounds[4*c+3], y[i]);
+        }
+
+        quadTree = new QuadTree();
+        colorRoots = new int[numColors];
+        for (int c = 0; c < numColors; c++) {
+            double half = Math.max(bounds[4*c+2] - bounds[4*c], bounds[4*c+3] - bounds[4*c+1]) / 2 + 1;
+            colorRoots[c] = quadTree.addCell((bounds[4*c] + bounds[4*c+2]) / 2, (bounds[4*c+1] + bounds[4*c+3]) / 2, half);
+        }
+        for (int i = 0; i < n; i++)
+            quadTree.insert(colorRoots[color[i]], i);
+    }
+
+    /**
+     * Puts nodes into a grid whose cells are as large as the repulsion distance
+     * of unconnected nodes. Not needed if all nodes are connected.
+     */
+    private void buildGrid() {
+        gridCells.clear();
+        if (numColors <= 1)
+            return;
+        for (int i = 0; i < numNodes; i++) {
+            Long cell = getGridCell(Math.floor(x[i] / OTHER_COLOR_CUTOFF), Math.floor(y[i] / OTHER_COLOR_CUTOFF));
+            Integer first = gridCells.put(cell, i);
+            gridNext[i] = first == null ? -1 : first;
+        }
+    }
+
+    private static Long getGridCell(double gx, double gy) {
+        return ((long)gx << 32) | ((long)gy & 0xffffffffL);
+    }
+
+    private void addRepulsion(int i) {
+        if (fixed[i])
+            return;
+
+        double[] f = new double[2];
+        addQuadTreeRepulsion(i, colorRoots[color[i]], f);
+
+        if (numColors > 1) {
+            double gx = Math.floor(x[i] / OTHER_COLOR_CUTOFF);
+            double gy = Math.floor(y[i] / OTHER_COLOR_CUTOFF);
+            for (int ox = -1; ox <= 1; ox++) {
+                for (int oy = -1; oy <= 1; oy++) {
+                    Integer first = gridCells.get(getGridCell(gx + ox, gy + oy));
+                    for (int j = first == null ? -1 : first; j != -1; j = gridNext[j])
+                        if (color[j] != color[i])
+                            addPairRepulsion(i, j, OTHER_COLOR_CUTOFF, f);
+                }
+            }
+        }
+
+        dx[i] += repulsiveForce * f[0];
+        dy[i] += repulsiveForce * f[1];
+    }
+
+    private void addQuadTreeRepulsion(int i, int cell, double[] f) {
+        QuadTree tree = quadTree;
+        if (tree.count[cell] == 0)
+            return;
+
+        // skip the cell if all its nodes are too far
+        double px = x[i], py = y[i];
+        double half = tree.halfSize[cell];
+        double distX = Math.max(0, Math.abs(px - tree.centerX[cell]) - half);
+        double distY = Math.max(0, Math.abs(py - tree.centerY[cell]) - half);
+        if (distX * distX + distY * distY > SAME_COLOR_CUTOFF * SAME_COLOR_CUTOFF)
+            return;
+
+        if (tree.firstChild[cell] == -1) {
+            for (int j = tree.firstNode[cell]; j != -1; j = tree.nextNode[j])
+                if (j != i)
+                    addPairRepulsion(i, j, SAME_COLOR_CUTOFF, f);
+            return;
+        }
+
+        // approximate with the center of mass if the cell is far enough, and entirely within the cutoff distance
+        boolean isInside = distX == 0 && distY == 0;
+        if (!isInside) {
+            double farX = Math.abs(px - tree.centerX[cell]) + half;
+            double farY = Math.abs(py - tree.centerY[cell]) + half;
+            double vx = px - tree.sumX[cell] / tree.count[cell];
+            double vy = py - tree.sumY[cell] / tree.count[cell];
+            double lensq = vx * vx + vy * vy;
+            if (farX * farX + farY * farY <= SAME_COLOR_CUTOFF * SAME_COLOR_CUTOFF && lensq > 1.0 && 4 * half * half < THETA * THETA * lensq) {
+                f[0] += tree.count[cell] * vx / lensq;
+                f[1] += tree.count[cell] * vy / lensq;
+                return;
+            }
+        }
+        for (int q = 0; q < 4; q++)
+            addQuadTreeRepulsion(i, tree.firstChild[cell] + q, f);
+    }
+
+    private void addPairRepulsion(int i, int j, double cutoff, double[] f) {
+        double vx = x[i] - x[j];
+        double vy = y[i] - y[j];
+        double lensq = vx * vx + vy * vy;
+        if (lensq > cutoff * cutoff) {
+            // don't repulse if far
+        }
+        else if (lensq <= 1.0) {
+            f[0] += getJitter(i, j, 0);
+            f[1] += getJitter(i, j, 1);
+        }
+        else {
+            f[0] += vx / lensq;
+            f[1] += vy / lensq;
+        }
+    }
+
+    /**
+     * Returns a pseudo-random number in [0,1) that only depends on the arguments
+     * and the iteration, so that the result does not depend on the order in
+     * which forces are computed.
+     */
+    private double getJitter(int i, int j, int k) {
+        long h = iterationSeed + 0x9E3779B97F4A7C15L * (((long)i << 33) + ((long)j << 1) + k);
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        h = h ^ (h >>> 31);
+        return (h >>> 11) * 0x1.0p-53;
+    }
+}
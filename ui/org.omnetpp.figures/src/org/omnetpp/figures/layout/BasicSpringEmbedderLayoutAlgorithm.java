@@ -96,7 +96,7 @@ public class BasicSpringEmbedderLayoutAlgorithm extends AbstractGraphLayoutAlgor
     /**
      * Constructor
      */
-    BasicSpringEmbedderLayoutAlgorithm() {
+    public BasicSpringEmbedderLayoutAlgorithm() {
         haveFixedNode = false;
         haveAnchoredNode = false;
         allNodesAreFixed = true; // unless later it proves otherwise
@@ -10,15 +10,21 @@ package org.omnetpp.figures.layout;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.AssertionFailedException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.draw2d.AbstractLayout;
 import org.eclipse.draw2d.Connection;
 import org.eclipse.draw2d.IFigure;
 import org.eclipse.draw2d.LayoutManager;
 import org.eclipse.draw2d.geometry.Dimension;
 import org.eclipse.draw2d.geometry.Rectangle;
+import org.eclipse.swt.widgets.Display;
 import org.omnetpp.common.Debug;
 import org.omnetpp.common.displaymodel.DimensionF;
 import org.omnetpp.common.displaymodel.PointF;
@@ -31,16 +37,74 @@ import org.omnetpp.layout.engine.BasicGraphLayouterEnvironment;
 /**
  * This lays out submodules inside a compound module.
  *
+ * Compound modules with many submodules are laid out with
+ * BarnesHutSpringEmbedderLayoutAlgorithm in a background job, so that the UI
+ * does not freeze. While the job is running, layout() places the submodules
+ * at the intermediate positions published by the algorithm, and the final
+ * positions are stored into the constraints when the job is done.
+ *
  * @author rhornig, andras
  */
 public class CompoundModuleLayout extends AbstractLayout {
     private static boolean debug = false;
 
     private static final DimensionF DEFAULT_SIZE = new DimensionF(300.0f, 200.0f);
+    private static final int LARGE_GRAPH_THRESHOLD = 200; // number of submodules above which layouting is done in the background
     protected Map<SubmoduleFigure, Integer> submoduleToId;
     protected int algSeed = 1;
     private CompoundModuleFigure compoundModuleFigure;
     private float scale = Float.NaN;
+    private BackgroundLayoutJob backgroundLayoutJob;
+
+    /**
+     * Runs a layout algorithm in the background, and triggers a relayout of
+     * the compound module in the UI thread when intermediate positions are
+     * available or the layouting is done.
+     */
+    private class BackgroundLayoutJob extends Job {
+        private final BarnesHutSpringEmbedderLayoutAlgorithm alg;
+        private final Map<SubmoduleFigure, Integer> submoduleToId;
+        private final AtomicBoolean revalidatePending = new AtomicBoolean();
+        private volatile boolean done;
+
+        public BackgroundLayoutJob(BarnesHutSpringEmbedderLayoutAlgorithm alg, Map<SubmoduleFigure, Integer> submoduleToId) {
+            super("Laying out submodules");
+            this.alg = alg;
+            this.submoduleToId = submoduleToId;
+            setSystem(true);
+            alg.setProgressListener(() -> scheduleRevalidate());
+        }
+
+        @Override
+        protected IStatus run(IProgressMonitor monitor) {
+            alg.execute();
+            if (alg.isCanceled())
+                return Status.CANCEL_STATUS;
+            done = true;
+            revalidatePending.set(false);
+            scheduleRevalidate();
+            return Status.OK_STATUS;
+        }
+
+        @Override
+        protected void canceling() {
+            alg.cancel();
+        }
+
+        private void scheduleRevalidate() {
+            // at most one request is waiting in the UI thread at any time
+            if (!revalidatePending.compareAndSet(false, true))
+                return;
+            Display display = Display.getDefault();
+            if (!display.isDisposed()) {
+                display.asyncExec(() -> {
+                    revalidatePending.set(false);
+                    if (backgroundLayoutJob == this)
+                        compoundModuleFigure.getSubmoduleLayer().revalidate();
+                });
+            }
+        }
+    }
 
     /**
      * Constructor.
@@ -72,7 +136,8 @@ public class CompoundModuleLayout extends AbstractLayout {
      */
     @SuppressWarnings("unchecked")
     protected ILayoutAlgorithm createAutoLayouter() {
-        ILayoutAlgorithm autoLayouter = createLayouterAlgorithm();
+        IFigure nodeParent = compoundModuleFigure.getSubmoduleLayer();
+        ILayoutAlgorithm autoLayouter = createLayouterAlgorithm(nodeParent.getChildren().size());
         autoLayouter.setSeed(algSeed);
 
         // set the layouting area
@@ -98,7 +163,6 @@ public class CompoundModuleLayout extends AbstractLayout {
 
         // iterate over the nodes and add them to the algorithm
         // all child figures on this layer are considered as node
-        IFigure nodeParent = compoundModuleFigure.getSubmoduleLayer();
         for (SubmoduleFigure node : (List<SubmoduleFigure>)nodeParent.getChildren()) {
             submoduleToId.put(node, nodeIndex);
 
@@ -156,7 +220,11 @@ public class CompoundModuleLayout extends AbstractLayout {
         return autoLayouter;
     }
 
-    protected ILayoutAlgorithm createLayouterAlgorithm() {
+    protected ILayoutAlgorithm createLayouterAlgorithm(int numNodes) {
+        // Java implementation for large graphs, approximates repulsion (may be run in the background, see layout()):
+        if (numNodes > LARGE_GRAPH_THRESHOLD)
+            return new BarnesHutSpringEmbedderLayoutAlgorithm();
+
         // Java implementation:
         // ILayoutAlgorithm layouter = new BasicSpringEmbedderLayoutAlgorithm();
 
@@ -239,6 +307,11 @@ public class CompoundModuleLayout extends AbstractLayout {
         if (parent.getChildren().size() != 0) {
             // create and run the layouter
             ILayoutAlgorithm alg = createAutoLayouter();
+            if (alg instanceof BarnesHutSpringEmbedderLayoutAlgorithm && ((BarnesHutSpringEmbedderLayoutAlgorithm)alg).hasMovableNodes()) {
+                layoutInBackground((BarnesHutSpringEmbedderLayoutAlgorithm)alg);
+                return;
+            }
+            cancelBackgroundLayout();
             alg.execute();
 
             // store back the new seed - otherwise unpinned modules created one-by-one would pop up at the exact same place
@@ -253,10 +326,52 @@ public class CompoundModuleLayout extends AbstractLayout {
                 node.setCenterPosition(loc.toPixels(scale));
             }
         }
+        else
+            cancelBackgroundLayout();
         if (debug)
             Debug.println("CompoundModuleLayout: " + (System.currentTimeMillis()-startTime) + "ms");
     }
 
+    /**
+     * Starts laying out in the background, unless the running background layout
+     * was started with the same input. Places the submodules at the positions
+     * published by the background layout so far, or at the final positions if
+     * it is done.
+     */
+    protected void layoutInBackground(BarnesHutSpringEmbedderLayoutAlgorithm alg) {
+        BackgroundLayoutJob job = backgroundLayoutJob;
+        if (job == null || !job.alg.hasSameInput(alg) || !job.submoduleToId.equals(submoduleToId)) {
+            cancelBackgroundLayout();
+            job = backgroundLayoutJob = new BackgroundLayoutJob(alg, submoduleToId);
+            job.schedule();
+        }
+
+        if (job.done) {
+            // store back the new seed and the final locations; the next layout will use them
+            backgroundLayoutJob = null;
+            algSeed = job.alg.getSeed();
+            for (SubmoduleFigure node : job.submoduleToId.keySet()) {
+                PointF loc = job.alg.getNodePosition(job.submoduleToId.get(node));
+                getConstraint(node).setLayoutedLocation(loc);
+                node.setCenterPosition(loc.toPixels(scale));
+            }
+        }
+        else {
+            for (SubmoduleFigure node : job.submoduleToId.keySet()) {
+                PointF loc = job.alg.getPublishedNodePosition(job.submoduleToId.get(node));
+                if (loc != null)
+                    node.setCenterPosition(loc.toPixels(scale));
+            }
+        }
+    }
+
+    protected void cancelBackgroundLayout() {
+        if (backgroundLayoutJob != null) {
+            backgroundLayoutJob.cancel();
+            backgroundLayoutJob = null;
+        }
+    }
+
     /**
      * After calling this, the next layout process will call a full layout process.
      * Pinned nodes will stay, unpinned nodes will move.
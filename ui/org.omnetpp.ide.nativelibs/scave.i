@@ -78,6 +78,7 @@ USE_COMMON_ENGINE_ILOCK();
 %include "std_vector.i"
 %include "std_map.i"
 %include "std_pair.i"
+%include "various.i"     // for char *BYTE
 
 %include "map_oldapi.i" // needed for SWIG >=4.0 so we still have the 3.x functions
 
@@ -157,6 +158,35 @@ namespace std {
         }
    %}
 
+   %typemap(javacode) vector<int8_t> %{
+       public byte[] toByteArray() {
+           int sz = (int) size();
+           byte[] array = new byte[sz];
+           copyToArray(0, array, sz);
+           return array;
+       }
+       public static ByteVector fromByteArray(byte[] array, int length) {
+           ByteVector vector = new ByteVector();
+           vector.reserve(length);
+           vector.appendArray(array, length);
+           return vector;
+       }
+   %}
+
+   // bulk copy; element-wise access via JNI is too slow for multi-megabyte pickles
+   %apply char *BYTE { char *bytes };
+   %extend vector<int8_t> {
+       void copyToArray(int start, char *bytes, int length) {
+           if (start < 0 || length < 0 || (size_t)start + length > self->size())
+               return;
+           memcpy(bytes, self->data() + start, length);
+       }
+       void appendArray(char *bytes, int length) {
+           self->insert(self->end(), (int8_t *)bytes, (int8_t *)bytes + length);
+       }
+   }
+   %clear char *bytes;
+
    %extend set<string> {
        std::vector<std::string> keys() {
            std::vector<std::string> vec;
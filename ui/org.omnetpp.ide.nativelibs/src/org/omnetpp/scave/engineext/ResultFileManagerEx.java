@@ -73,6 +73,13 @@ public class ResultFileManagerEx extends ResultFileManager {
         super.unloadFile(fileName);
     }
 
+    @Override
+    public void moveFilesFrom(ResultFileManager other) {
+        checkNotDeleted();
+        checkWriteLock();
+        super.moveFilesFrom(other);
+    }
+
 
     /*-------------------------------------------
      *               Reader methods
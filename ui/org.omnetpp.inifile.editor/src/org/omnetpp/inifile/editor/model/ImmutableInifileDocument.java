@@ -7,6 +7,7 @@ import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.runtime.Assert;
@@ -36,6 +37,9 @@ final class ImmutableInifileDocument implements IReadonlyInifileDocument {
     // included files, including indirectly referenced ones
     private ArrayList<IFile> includedFiles;
 
+    // lazily built indices for parameter lookups, per section
+    private Map<String,ParamKeyIndex> paramKeyIndices = new ConcurrentHashMap<String,ParamKeyIndex>();
+
     /**
      * Copies the content of doc into this immutable document.
      */
@@ -106,6 +110,14 @@ final class ImmutableInifileDocument implements IReadonlyInifileDocument {
         return section == null ? null : section.entries.keySet();
     }
 
+    /**
+     * Returns the parameter key index of the given section. The index is built
+     * on first use; this is safe because the document does not change.
+     */
+    ParamKeyIndex getParamKeyIndex(String sectionName) {
+        return paramKeyIndices.computeIfAbsent(sectionName, name -> new ParamKeyIndex(getKeys(name)));
+    }
+
     public List<String> getMatchingKeys(String sectionName, String regex) {
         Section section = sections.get(sectionName);
         if (section == null)
@@ -144,6 +144,9 @@ public class InifileUtils {
      * because that eats all matching params (anything after that cannot match.)
      */
     public static List<SectionKey> lookupParameter(String paramFullPath, boolean hasNedDefault, String[] sectionChain, IReadonlyInifileDocument doc) {
+        if (doc instanceof ImmutableInifileDocument)
+            return lookupParameter(paramFullPath, hasNedDefault, sectionChain, (ImmutableInifileDocument)doc);
+
         List<SectionKey> result = new ArrayList<SectionKey>();
         for (String section : sectionChain) {
             for (String key : doc.getKeys(section)) {
@@ -161,6 +164,31 @@ public class InifileUtils {
         return result;
     }
 
+    /**
+     * Same as the generic version, but only tests the keys that the section's
+     * ParamKeyIndex returns as candidates. They come in the original key order,
+     * so the result is the same.
+     */
+    private static List<SectionKey> lookupParameter(String paramFullPath, boolean hasNedDefault, String[] sectionChain, ImmutableInifileDocument doc) {
+        List<SectionKey> result = new ArrayList<SectionKey>();
+        for (String section : sectionChain) {
+            ParamKeyIndex index = doc.getParamKeyIndex(section);
+            for (int i : index.getCandidates(paramFullPath)) {
+                ParamUtil.KeyMatcher keyMatcher = index.getKeyMatcher(i);
+                if (keyMatcher.matcher.matches(paramFullPath)) {
+                    String key = index.getKey(i);
+                    String value = doc.getValue(section, key);
+                    if (hasNedDefault || !value.equals(DEFAULT)) {
+                        result.add(new SectionKey(section, key));
+                        if (keyMatcher.keyEqualsGeneralizedKey)
+                            return result;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
     /**
      * Chops off potential "Config " prefix from a section name.
      */
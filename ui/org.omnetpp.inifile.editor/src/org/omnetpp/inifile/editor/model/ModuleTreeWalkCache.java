@@ -0,0 +1,196 @@
+package org.omnetpp.inifile.editor.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+import org.eclipse.core.resources.IProject;
+import org.omnetpp.ned.core.IModuleTreeVisitor;
+import org.omnetpp.ned.core.NedTreeTraversal;
+import org.omnetpp.ned.model.interfaces.INedTypeInfo;
+import org.omnetpp.ned.model.interfaces.INedTypeResolver;
+import org.omnetpp.ned.model.interfaces.ISubmoduleOrConnection;
+
+/**
+ * Caches module tree walks, i.e. the sequence of visitor calls NedTreeTraversal
+ * makes when traversing a network, so that the walk can be replayed for other
+ * sections instead of traversing the NED types again.
+ *
+ * A walk depends on the ini file section only via the types the visitor chooses
+ * for parametric ("like") submodules and channels. These decisions are recorded
+ * together with the walk, and replaying a walk fails as soon as the visitor makes
+ * a different decision; then the next recorded walk of the network is tried, and
+ * finally a real traversal is done (and recorded).
+ *
+ * Walks are only valid as long as the NED types don't change, so the cache must be
+ * used with an immutable NED type resolver. Real traversals are serialized, because
+ * they fill in lazily computed data in the NED model; replays only touch objects that
+ * have already been visited by the traversal that recorded the walk, so they may
+ * run concurrently.
+ */
+class ModuleTreeWalkCache {
+    private static final int MAX_WALKS_PER_NETWORK = 8;
+
+    private enum EventType { ENTER, LEAVE, UNRESOLVED, RECURSIVE, LIKE }
+
+    private static class Event {
+        EventType type;
+        ISubmoduleOrConnection element;
+        INedTypeInfo typeInfo;
+        String typeName;  // unresolved type name, or result of resolveLikeType()
+        boolean result;  // return value of enter()
+
+        Event(EventType type, ISubmoduleOrConnection element, INedTypeInfo typeInfo, String typeName, boolean result) {
+            this.type = type;
+            this.element = element;
+            this.typeInfo = typeInfo;
+            this.typeName = typeName;
+            this.result = result;
+        }
+    }
+
+    /**
+     * Delegates to the given visitor, and records the calls.
+     */
+    private static class RecordingVisitor implements IModuleTreeVisitor {
+        private final IModuleTreeVisitor delegate;
+        private final List<Event> events = new ArrayList<Event>();
+
+        public RecordingVisitor(IModuleTreeVisitor delegate) {
+            this.delegate = delegate;
+        }
+
+        public boolean enter(ISubmoduleOrConnection element, INedTypeInfo typeInfo) {
+            boolean result = delegate.enter(element, typeInfo);
+            events.add(new Event(EventType.ENTER, element, typeInfo, null, result));
+            return result;
+        }
+
+        public void leave() {
+            delegate.leave();
+            events.add(new Event(EventType.LEAVE, null, null, null, false));
+        }
+
+        public void unresolvedType(ISubmoduleOrConnection element, String typeName) {
+            delegate.unresolvedType(element, typeName);
+            events.add(new Event(EventType.UNRESOLVED, element, null, typeName, false));
+        }
+
+        public void recursiveType(ISubmoduleOrConnection element, INedTypeInfo typeInfo) {
+            delegate.recursiveType(element, typeInfo);
+            events.add(new Event(EventType.RECURSIVE, element, typeInfo, null, false));
+        }
+
+        public String resolveLikeType(ISubmoduleOrConnection element) {
+            String result = delegate.resolveLikeType(element);
+            events.add(new Event(EventType.LIKE, element, null, result, false));
+            return result;
+        }
+    }
+
+    private final INedTypeResolver resolver;
+    private final IProject contextProject;
+    private final Map<INedTypeInfo, List<Event[]>> walks = new HashMap<INedTypeInfo, List<Event[]>>();
+    private final Object traversalLock = new Object();
+
+    private int numReplays = 0;
+    private int numTraversals = 0;
+
+    public ModuleTreeWalkCache(INedTypeResolver resolver, IProject contextProject) {
+        this.resolver = resolver;
+        this.contextProject = contextProject;
+    }
+
+    /**
+     * Walks the module tree of the given network with a visitor obtained from the
+     * factory, and returns the visitor that completed the walk. The factory may be
+     * invoked several times, as visitors of failed replays are thrown away.
+     */
+    public <T extends IModuleTreeVisitor> T traverse(INedTypeInfo network, Supplier<T> visitorFactory) {
+        List<Event[]> candidates = getWalks(network);
+        T visitor = replayAny(candidates, visitorFactory);
+        if (visitor != null)
+            return visitor;
+
+        synchronized (traversalLock) {
+            // another thread may have recorded a suitable walk meanwhile
+            List<Event[]> newCandidates = getWalks(network);
+            newCandidates.removeAll(candidates);
+            visitor = replayAny(newCandidates, visitorFactory);
+            if (visitor != null)
+                return visitor;
+
+            visitor = visitorFactory.get();
+            RecordingVisitor recorder = new RecordingVisitor(visitor);
+            new NedTreeTraversal(resolver, recorder, contextProject).traverse(network);
+            addWalk(network, recorder.events.toArray(new Event[0]));
+            return visitor;
+        }
+    }
+
+    public synchronized int getNumReplays() {
+        return numReplays;
+    }
+
+    public synchronized int getNumTraversals() {
+        return numTraversals;
+    }
+
+    private synchronized List<Event[]> getWalks(INedTypeInfo network) {
+        List<Event[]> list = walks.get(network);
+        return list == null ? new ArrayList<Event[]>() : new ArrayList<Event[]>(list);
+    }
+
+    private synchronized void addWalk(INedTypeInfo network, Event[] walk) {
+        numTraversals++;
+        List<Event[]> list = walks.get(network);
+        if (list == null)
+            walks.put(network, list = new ArrayList<Event[]>());
+        if (list.size() >= MAX_WALKS_PER_NETWORK)
+            list.remove(0);
+        list.add(walk);
+    }
+
+    private synchronized void replayed() {
+        numReplays++;
+    }
+
+    private <T extends IModuleTreeVisitor> T replayAny(List<Event[]> candidates, Supplier<T> visitorFactory) {
+        for (Event[] walk : candidates) {
+            T visitor = visitorFactory.get();
+            if (replay(walk, visitor)) {
+                replayed();
+                return visitor;
+            }
+        }
+        return null;
+    }
+
+    private static boolean replay(Event[] walk, IModuleTreeVisitor visitor) {
+        for (Event event : walk) {
+            switch (event.type) {
+                case ENTER:
+                    if (visitor.enter(event.element, event.typeInfo) != event.result)
+                        return false;
+                    break;
+                case LEAVE:
+                    visitor.leave();
+                    break;
+                case UNRESOLVED:
+                    visitor.unresolvedType(event.element, event.typeName);
+                    break;
+                case RECURSIVE:
+                    visitor.recursiveType(event.element, event.typeInfo);
+                    break;
+                case LIKE:
+                    if (!Objects.equals(visitor.resolveLikeType(event.element), event.typeName))
+                        return false; // different type chosen, the rest of the walk is not valid
+                    break;
+            }
+        }
+        return true;
+    }
+}
@@ -29,17 +29,34 @@ public class ParamCollector {
      */
     public static ParamResolutionStatus.Entry collectParametersAndProperties(IReadonlyInifileDocument doc,
             INedTypeResolver nedResolver, String activeSection, IProgressMonitor monitor) {
+        return collectParametersAndProperties(doc, nedResolver, activeSection, null, monitor);
+    }
+
+    /**
+     * Like collectParametersAndProperties(), but the module tree walk may be replayed from
+     * (and recorded into) the given walk cache, which must have been created for the same
+     * NED type resolver and ini file project. Pass null for walkCache to always traverse
+     * the NED types.
+     */
+    static ParamResolutionStatus.Entry collectParametersAndProperties(final IReadonlyInifileDocument doc,
+            INedTypeResolver nedResolver, final String activeSection, ModuleTreeWalkCache walkCache, final IProgressMonitor monitor) {
 
         Assert.isNotNull(doc);
         Assert.isNotNull(activeSection);
 
-        ModuleTreeVisitor visitor = new ModuleTreeVisitor(doc, activeSection, true, new String[] {"signal", "statistic"}, null, monitor);
+        ModuleTreeVisitor visitor;
         String networkName = InifileUtils.lookupNetwork(doc, activeSection);
         INedTypeInfo network = networkName != null ? resolveNetwork(doc, nedResolver, networkName) : null;
-        if (network != null) {
-            IProject contextProject = doc.getDocumentFile().getProject();
-            NedTreeTraversal treeTraversal = new NedTreeTraversal(nedResolver, visitor, contextProject);
-            treeTraversal.traverse(network.getFullyQualifiedName());
+        if (network != null && walkCache != null) {
+            visitor = walkCache.traverse(network, () -> new ModuleTreeVisitor(doc, activeSection, true, new String[] {"signal", "statistic"}, null, monitor));
+        }
+        else {
+            visitor = new ModuleTreeVisitor(doc, activeSection, true, new String[] {"signal", "statistic"}, null, monitor);
+            if (network != null) {
+                IProject contextProject = doc.getDocumentFile().getProject();
+                NedTreeTraversal treeTraversal = new NedTreeTraversal(nedResolver, visitor, contextProject);
+                treeTraversal.traverse(network.getFullyQualifiedName());
+            }
         }
 
         ParamResolutionStatus.Entry result = new ParamResolutionStatus.Entry();
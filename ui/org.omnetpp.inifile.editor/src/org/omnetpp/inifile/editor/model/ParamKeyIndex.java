@@ -0,0 +1,128 @@
+package org.omnetpp.inifile.editor.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.omnetpp.ned.core.ParamUtil;
+import org.omnetpp.ned.core.ParamUtil.KeyMatcher;
+
+/**
+ * Index over the keys of an ini file section, for finding the keys that may match
+ * a parameter full path without running the pattern matcher of every key.
+ *
+ * Keys are matched on their generalized form (see ParamUtil.KeyMatcher), which is
+ * a full-string pattern. Its literal prefix (the text before the first wildcard)
+ * and literal suffix (the text after the last wildcard) must therefore appear at
+ * the beginning and the end of every matching path. Keys without wildcards are
+ * looked up by equality; keys whose literal suffix contains a dot are bucketed by
+ * the last path segment they accept; the remaining keys are prefiltered by their
+ * prefix and suffix. Candidates are returned in the original key order, so that
+ * callers can preserve first-match semantics; they still need to be checked with
+ * the key's matcher.
+ */
+class ParamKeyIndex {
+    private static final String SPECIAL_CHARS = "?*{}[]\\"; // conservative: anything that may start or end a non-literal pattern element
+    private static final int[] EMPTY = new int[0];
+
+    private final String[] keys; // in document order
+    private final KeyMatcher[] keyMatchers;
+    private final String[] prefixes;
+    private final String[] suffixes;
+    private final Map<String,Integer> literalKeys = new HashMap<>(); // generalized key -> key index
+    private final Map<String,int[]> keysByLastSegment = new HashMap<>(); // last path segment -> key indices
+    private final int[] otherKeys;
+
+    public ParamKeyIndex(Set<String> sectionKeys) {
+        int n = sectionKeys == null ? 0 : sectionKeys.size();
+        keys = n == 0 ? new String[0] : sectionKeys.toArray(new String[n]);
+        keyMatchers = new KeyMatcher[n];
+        prefixes = new String[n];
+        suffixes = new String[n];
+
+        Map<String,List<Integer>> lastSegmentLists = new HashMap<>();
+        List<Integer> otherList = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            KeyMatcher keyMatcher = ParamUtil.getOrCreateKeyMatcher(keys[i]);
+            keyMatchers[i] = keyMatcher;
+            String pattern = keyMatcher.generalizedKey;
+            int first = indexOfSpecialChar(pattern);
+            if (first == -1) {
+                prefixes[i] = suffixes[i] = pattern;
+                literalKeys.putIfAbsent(pattern, i);
+                continue;
+            }
+            int last = lastIndexOfSpecialChar(pattern);
+            prefixes[i] = pattern.substring(0, first);
+            suffixes[i] = pattern.substring(last + 1);
+            int dot = suffixes[i].lastIndexOf('.');
+            if (dot != -1)
+                lastSegmentLists.computeIfAbsent(suffixes[i].substring(dot + 1), k -> new ArrayList<>()).add(i);
+            else
+                otherList.add(i);
+        }
+
+        for (Map.Entry<String,List<Integer>> e : lastSegmentLists.entrySet())
+            keysByLastSegment.put(e.getKey(), toArray(e.getValue()));
+        otherKeys = toArray(otherList);
+    }
+
+    private static int indexOfSpecialChar(String pattern) {
+        for (int i = 0; i < pattern.length(); i++)
+            if (SPECIAL_CHARS.indexOf(pattern.charAt(i)) != -1)
+                return i;
+        return -1;
+    }
+
+    private static int lastIndexOfSpecialChar(String pattern) {
+        for (int i = pattern.length() - 1; i >= 0; i--)
+            if (SPECIAL_CHARS.indexOf(pattern.charAt(i)) != -1)
+                return i;
+        return -1;
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] result = new int[list.size()];
+        for (int i = 0; i < result.length; i++)
+            result[i] = list.get(i);
+        return result;
+    }
+
+    public String getKey(int index) {
+        return keys[index];
+    }
+
+    public KeyMatcher getKeyMatcher(int index) {
+        return keyMatchers[index];
+    }
+
+    /**
+     * Returns the indices of the keys that may match the given parameter full path,
+     * in increasing order. Keys not returned are guaranteed not to match it.
+     */
+    public int[] getCandidates(String paramFullPath) {
+        if (keys.length == 0)
+            return EMPTY;
+        Integer literalKey = literalKeys.get(paramFullPath);
+        int[] bucket = keysByLastSegment.get(paramFullPath.substring(paramFullPath.lastIndexOf('.') + 1));
+        if (bucket == null)
+            bucket = EMPTY;
+
+        int[] result = new int[(literalKey == null ? 0 : 1) + bucket.length + otherKeys.length];
+        int count = 0;
+        if (literalKey != null)
+            result[count++] = literalKey;
+        for (int i : bucket)
+            if (paramFullPath.endsWith(suffixes[i]) && paramFullPath.startsWith(prefixes[i]))
+                result[count++] = i;
+        for (int i : otherKeys)
+            if (paramFullPath.endsWith(suffixes[i]) && paramFullPath.startsWith(prefixes[i]))
+                result[count++] = i;
+        result = Arrays.copyOf(result, count);
+        Arrays.sort(result);
+        return result;
+    }
+}
@@ -2,12 +2,20 @@ package org.omnetpp.inifile.editor.model;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Status;
-import org.eclipse.core.runtime.SubProgressMonitor;
 import org.eclipse.core.runtime.jobs.Job;
 import org.omnetpp.common.Debug;
 import org.omnetpp.inifile.editor.InifileEditorPlugin;
@@ -20,6 +28,7 @@ import org.omnetpp.ned.model.interfaces.INedTypeResolver;
  * Job for performing the parameter resolution asynchronously.
  *
  * It works on a read-only copy of the ini file and returns the result in its status.
+ * Sections are resolved in parallel, sharing module tree walks via ModuleTreeWalkCache.
  *
  * The actual work is factored out to the ParamCollector class, so
  * they can be called directly too.
@@ -65,48 +74,85 @@ class ParamResolutionJob extends Job {
         final INedResources nedResources = NedResourcesPlugin.getNedResources();
         final INedTypeResolver nedResolver = nedResources.getImmutableCopy();
 
-        List<Entry> entries = new ArrayList<Entry>();
         String[] sections = docCopy.getSectionNames();
         monitor.beginTask("Analyzing " + docCopy.getDocumentFile().getName(), sections.length * 100);
+        monitor.subTask("Resolving module parameters and properties.");
 
         long startTime = System.currentTimeMillis();
 
-        class SubMonitor extends SubProgressMonitor {
-            public SubMonitor(IProgressMonitor monitor, int ticks) {
-                super(monitor, ticks);
-            }
-
+        // sections are resolved in parallel; workers check this monitor instead of the job's
+        final AtomicBoolean stopped = new AtomicBoolean();
+        class WorkerMonitor extends NullProgressMonitor {
             @Override
             public boolean isCanceled() {
-                return super.isCanceled() || !doc.isImmutableCopyUpToDate(docCopy) || !nedResources.isImmutableCopyUpToDate(nedResolver);
+                return stopped.get() || monitor.isCanceled() || !doc.isImmutableCopyUpToDate(docCopy) || !nedResources.isImmutableCopyUpToDate(nedResolver);
             }
         };
+        final IProgressMonitor workerMonitor = new WorkerMonitor();
+        final ModuleTreeWalkCache walkCache = new ModuleTreeWalkCache(nedResolver, docCopy.getDocumentFile().getProject());
+
+        int numThreads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), sections.length));
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        CompletionService<Entry> completionService = new ExecutorCompletionService<Entry>(executor);
+        List<Future<Entry>> futures = new ArrayList<Future<Entry>>();
 
         try {
-            for (String activeSection : sections) {
-                if (monitor.isCanceled() || !doc.isImmutableCopyUpToDate(docCopy) || !nedResources.isImmutableCopyUpToDate(nedResolver))
-                    throw new OperationCanceledException();
+            for (final String activeSection : sections)
+                futures.add(completionService.submit(() -> ParamCollector.collectParametersAndProperties(docCopy, nedResolver, activeSection, walkCache, workerMonitor)));
 
-                monitor.subTask("Resolving module parameters and properties.");
-                Entry entry =
-                    ParamCollector.collectParametersAndProperties(docCopy, nedResolver, activeSection, new SubMonitor(monitor, 100));
-                entries.add(entry);
+            for (int numCompleted = 0; numCompleted < sections.length; ) {
+                if (workerMonitor.isCanceled())
+                    throw new OperationCanceledException();
+                Future<Entry> future = completionService.poll(100, TimeUnit.MILLISECONDS);
+                if (future != null) {
+                    future.get(); // rethrow failure
+                    numCompleted++;
+                    monitor.worked(100);
+                }
             }
 
-        } catch (OperationCanceledException e) {
-            if (monitor.isCanceled()) {
-                Debug.println("ParamResolutionJob: canceled after "+(System.currentTimeMillis()-startTime)+"ms");
-                return new Status(IStatus.CANCEL, InifileEditorPlugin.PLUGIN_ID, USER_CANCELED, "", null);
-            }
-            else {
-                Debug.println("ParamResolutionJob: stopped because input changed after "+(System.currentTimeMillis()-startTime)+"ms");
-                return new Status(IStatus.CANCEL, InifileEditorPlugin.PLUGIN_ID, DOC_CHANGED, "", null);
-            }
-        } finally {
+            // keep the section order
+            List<Entry> entries = new ArrayList<Entry>();
+            for (Future<Entry> future : futures)
+                entries.add(future.get());
+
+            Debug.println("ParamResolutionJob: completed in "+(System.currentTimeMillis()-startTime)+"ms using " + numThreads + " threads, " +
+                    walkCache.getNumTraversals() + " module tree traversals, " + walkCache.getNumReplays() + " replays");
+            return new ParamResolutionStatus(entries, docCopy, nedResolver);
+        }
+        catch (OperationCanceledException e) {
+            return canceled(monitor, startTime);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return canceled(monitor, startTime);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof OperationCanceledException)
+                return canceled(monitor, startTime);
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException)e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error)e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+        finally {
+            stopped.set(true);
+            for (Future<Entry> future : futures)
+                future.cancel(false);
+            executor.shutdown();
             monitor.done();
         }
+    }
 
-        Debug.println("ParamResolutionJob: completed in "+(System.currentTimeMillis()-startTime)+"ms");
-        return new ParamResolutionStatus(entries, docCopy, nedResolver);
+    private IStatus canceled(IProgressMonitor monitor, long startTime) {
+        if (monitor.isCanceled()) {
+            Debug.println("ParamResolutionJob: canceled after "+(System.currentTimeMillis()-startTime)+"ms");
+            return new Status(IStatus.CANCEL, InifileEditorPlugin.PLUGIN_ID, USER_CANCELED, "", null);
+        }
+        else {
+            Debug.println("ParamResolutionJob: stopped because input changed after "+(System.currentTimeMillis()-startTime)+"ms");
+            return new Status(IStatus.CANCEL, InifileEditorPlugin.PLUGIN_ID, DOC_CHANGED, "", null);
+        }
     }
 }
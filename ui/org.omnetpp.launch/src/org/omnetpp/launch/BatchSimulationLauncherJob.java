@@ -0,0 +1,210 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.launch;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.IJobChangeEvent;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.jobs.JobChangeAdapter;
+import org.eclipse.debug.core.ILaunch;
+import org.eclipse.debug.core.ILaunchConfiguration;
+import org.omnetpp.common.Debug;
+import org.omnetpp.common.util.StringUtils;
+
+/**
+ * Executes a set of simulation runs with a limited number of concurrent simulation
+ * processes. Runs are handed out from a shared queue whenever a process finishes,
+ * so that processes that happen to get short runs do not sit idle while others are
+ * still working. Runs are started in longest-first order, based on the durations
+ * recorded in previous launches (see RunCostHistory).
+ *
+ * Each process is given at most batchSize runs; towards the end of the queue,
+ * batches are made smaller so that the remaining runs are spread over all processes.
+ */
+public class BatchSimulationLauncherJob extends Job {
+    private static final int POLL_INTERVAL_MILLIS = 500;
+
+    private ILaunchConfiguration configuration;
+    private ILaunch launch;
+    private boolean reportProgress;
+    private int port;
+    private int numConcurrentProcesses;
+    private int batchSize;
+    private boolean stopOnError;
+    private int numRuns;
+    private String configKey;
+    private RunCostHistory costHistory = RunCostHistory.getInstance();
+
+    // state, guarded by "this"
+    private LinkedList<Integer> pendingRuns = new LinkedList<>();
+    private Map<SimulationLauncherJob, List<Integer>> runningBatches = new HashMap<>();
+    private Map<SimulationLauncherJob, Long> startTimes = new HashMap<>();
+    private int numFinishedRuns = 0;
+    private int numUnreportedRuns = 0;
+    private int numFailedProcesses = 0;
+    private int numCanceledProcesses = 0;
+    private long busyMillis = 0; // total duration of finished processes
+
+    public BatchSimulationLauncherJob(ILaunchConfiguration configuration, ILaunch launch, List<Integer> runNumbers, boolean reportProgress, int port,
+            int numConcurrentProcesses, int batchSize, boolean stopOnError) throws CoreException {
+        super("Batch Execution of " + configuration.getName() + " (" + runNumbers.size() + " runs using " + Math.min(numConcurrentProcesses, runNumbers.size()) + " concurrent processes)");
+        this.configuration = configuration;
+        this.launch = launch;
+        this.reportProgress = reportProgress;
+        this.port = port;
+        this.numConcurrentProcesses = Math.max(1, numConcurrentProcesses);
+        this.batchSize = Math.max(1, batchSize);
+        this.stopOnError = stopOnError;
+        this.numRuns = runNumbers.size();
+        this.configKey = RunCostHistory.getConfigKey(configuration);
+        pendingRuns.addAll(orderLongestFirst(runNumbers));
+    }
+
+    /**
+     * Sorts runs by decreasing expected duration. Runs never executed before are
+     * assumed to take the average time of the known ones; the sort is stable, so
+     * the original order is kept when nothing is known.
+     */
+    protected List<Integer> orderLongestFirst(List<Integer> runNumbers) {
+        Map<Integer,Long> estimates = new HashMap<>();
+        long sum = 0;
+        int count = 0;
+        for (int runNumber : runNumbers) {
+            long duration = costHistory.getEstimatedDuration(configKey, runNumber);
+            estimates.put(runNumber, duration);
+            if (duration != -1) {
+                sum += duration;
+                count++;
+            }
+        }
+        long average = count == 0 ? 0 : sum / count;
+        for (Map.Entry<Integer,Long> entry : estimates.entrySet())
+            if (entry.getValue() == -1)
+                entry.setValue(average);
+
+        List<Integer> result = new ArrayList<>(runNumbers);
+        result.sort(Comparator.comparing((Integer runNumber) -> estimates.get(runNumber)).reversed());
+        return result;
+    }
+
+    @Override
+    public boolean belongsTo(Object family) {
+        return family == launch || SimulationLauncherJob.SIMULATION_JOB_FAMILY.equals(family);
+    }
+
+    @Override
+    protected IStatus run(IProgressMonitor monitor) {
+        monitor.beginTask(getName(), numRuns);
+        long startTime = System.currentTimeMillis();
+        boolean canceled = false;
+        try {
+            synchronized (this) {
+                while (true) {
+                    canceled |= monitor.isCanceled() || numCanceledProcesses > 0;
+                    boolean stopping = canceled || (stopOnError && numFailedProcesses > 0);
+                    if (stopping) {
+                        pendingRuns.clear();
+                        for (Job job : new ArrayList<>(runningBatches.keySet()))
+                            job.cancel();
+                    }
+
+                    while (runningBatches.size() < numConcurrentProcesses && !pendingRuns.isEmpty())
+                        startNextBatch();
+
+                    if (numUnreportedRuns > 0) {
+                        monitor.worked(numUnreportedRuns);
+                        numUnreportedRuns = 0;
+                    }
+                    monitor.subTask(getThroughputInfo(startTime));
+
+                    if (runningBatches.isEmpty() && pendingRuns.isEmpty())
+                        break;
+
+                    try {
+                        wait(POLL_INTERVAL_MILLIS);
+                    }
+                    catch (InterruptedException e) {
+                        canceled = true;
+                    }
+                }
+                Debug.println("Batch execution of " + configuration.getName() + " finished: " + getThroughputInfo(startTime));
+            }
+        }
+        finally {
+            costHistory.save();
+            monitor.done();
+        }
+        return canceled ? Status.CANCEL_STATUS : Status.OK_STATUS;
+    }
+
+    protected synchronized void startNextBatch() {
+        // take a fair share of the remaining runs, but at most batchSize
+        int n = Math.min(batchSize, (pendingRuns.size() + numConcurrentProcesses - 1) / numConcurrentProcesses);
+        List<Integer> batch = new ArrayList<>();
+        for (int i = 0; i < n; i++)
+            batch.add(pendingRuns.removeFirst());
+
+        SimulationLauncherJob job = new SimulationLauncherJob(configuration, launch, StringUtils.join(batch, ","), reportProgress, port);
+        job.setPriority(Job.BUILD);
+        job.setSystem(false);
+        job.addJobChangeListener(new JobChangeAdapter() {
+            @Override
+            public void done(IJobChangeEvent event) {
+                batchFinished(job, event.getResult());
+            }
+        });
+        runningBatches.put(job, batch);
+        startTimes.put(job, System.currentTimeMillis());
+        job.schedule();
+    }
+
+    protected synchronized void batchFinished(SimulationLauncherJob job, IStatus result) {
+        List<Integer> batch = runningBatches.remove(job);
+        long duration = System.currentTimeMillis() - startTimes.remove(job);
+        busyMillis += duration;
+        numFinishedRuns += batch.size();
+        numUnreportedRuns += batch.size();
+
+        if (result == null || result.getSeverity() == IStatus.CANCEL)
+            numCanceledProcesses++;
+        else if (result.getSeverity() == IStatus.ERROR)
+            numFailedProcesses++;
+        else {
+            // only successful runs are representative; the runs of a batch share its duration
+            for (int runNumber : batch)
+                costHistory.recordDuration(configKey, runNumber, duration / batch.size());
+        }
+        notifyAll();
+    }
+
+    /**
+     * Returns the number of runs finished, runs/hour, and the utilization of the
+     * process slots (the fraction of time numConcurrentProcesses processes were
+     * running) as a string.
+     */
+    protected synchronized String getThroughputInfo(long startTime) {
+        long now = System.currentTimeMillis();
+        long elapsedMillis = Math.max(1, now - startTime);
+        long busy = busyMillis;
+        for (long processStartTime : startTimes.values())
+            busy += now - processStartTime;
+        double runsPerHour = numFinishedRuns * 3600000.0 / elapsedMillis;
+        double utilization = 100.0 * busy / elapsedMillis / Math.max(1, Math.min(numConcurrentProcesses, numRuns));
+        return String.format("%d of %d runs finished, %.1f runs/hour, %.0f%% process utilization", numFinishedRuns, numRuns, runsPerHour, Math.min(100.0, utilization));
+    }
+}
@@ -0,0 +1,182 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.launch;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.debug.core.ILaunchConfiguration;
+
+/**
+ * Remembers how long simulation runs took in previous batch launches, so that
+ * the runs expected to be the longest can be started first. Durations are kept
+ * in a properties file in the plugin's state location, keyed by the launch
+ * configuration, the inifile config and the run number. Entries of launch
+ * configurations that have not been used for a long time are dropped on save,
+ * and the number of launch configurations remembered is limited.
+ */
+public class RunCostHistory {
+    private static final String FILENAME = "runcosts.properties";
+    private static final String LAST_USED = "lastUsed"; // property suffix, next to the run numbers
+    private static final int MAX_CONFIGS = 100;
+    private static final long MAX_AGE_MILLIS = 90L * 24 * 60 * 60 * 1000; // 90 days
+
+    private static RunCostHistory instance;
+
+    private File file;
+    private Properties durations = new Properties();
+    private boolean dirty = false;
+
+    public static synchronized RunCostHistory getInstance() {
+        if (instance == null)
+            instance = new RunCostHistory(LaunchPlugin.getDefault().getStateLocation().append(FILENAME).toFile());
+        return instance;
+    }
+
+    protected RunCostHistory(File file) {
+        this.file = file;
+        if (file.exists()) {
+            try (InputStream in = new FileInputStream(file)) {
+                durations.load(in);
+            }
+            catch (IOException | IllegalArgumentException e) {
+                LaunchPlugin.logError("Cannot read simulation run durations from " + file, e);
+                durations.clear();
+            }
+        }
+    }
+
+    /**
+     * Returns a string that identifies the set of runs the run numbers of the given
+     * launch configuration refer to.
+     */
+    public static String getConfigKey(ILaunchConfiguration configuration) throws CoreException {
+        String key = configuration.getName() + "|" +
+                configuration.getAttribute(IOmnetppLaunchConstants.OPP_WORKING_DIRECTORY, "") + "|" +
+                configuration.getAttribute(IOmnetppLaunchConstants.OPP_INI_FILES, "") + "|" +
+                configuration.getAttribute(IOmnetppLaunchConstants.OPP_CONFIG_NAME, "");
+        return toHexString(createDigest().digest(key.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e); // SHA-256 is always available
+        }
+    }
+
+    private static String toHexString(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(2 * bytes.length);
+        for (byte b : bytes)
+            sb.append(String.format("%02x", b));
+        return sb.toString();
+    }
+
+    /**
+     * Returns the expected duration of the given run in milliseconds, or -1 if unknown.
+     */
+    public synchronized long getEstimatedDuration(String configKey, int runNumber) {
+        String value = durations.getProperty(configKey + "." + runNumber);
+        try {
+            return value == null ? -1 : Long.parseLong(value);
+        }
+        catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Records the duration of a run. Repeated measurements are averaged, with
+     * more weight given to the latest one.
+     */
+    public synchronized void recordDuration(String configKey, int runNumber, long millis) {
+        long previous = getEstimatedDuration(configKey, runNumber);
+        long estimate = previous == -1 ? millis : (previous + millis) / 2;
+        durations.setProperty(configKey + "." + runNumber, Long.toString(estimate));
+        durations.setProperty(configKey + "." + LAST_USED, Long.toString(System.currentTimeMillis()));
+        dirty = true;
+    }
+
+    /**
+     * Drops the entries of the launch configurations not used for MAX_AGE_MILLIS,
+     * and of the least recently used ones above MAX_CONFIGS. Entries without a
+     * last use time (e.g. from older versions) count as unused.
+     */
+    private void prune() {
+        final Map<String,Long> lastUsed = new HashMap<String,Long>();
+        for (String name : durations.stringPropertyNames()) {
+            String configKey = getConfigKeyOf(name);
+            long time = 0;
+            if (name.equals(configKey + "." + LAST_USED)) {
+                try {
+                    time = Long.parseLong(durations.getProperty(name));
+                }
+                catch (NumberFormatException e) {
+                }
+            }
+            Long previous = lastUsed.get(configKey);
+            lastUsed.put(configKey, previous == null ? time : Math.max(previous, time));
+        }
+
+        List<String> configKeys = new ArrayList<String>(lastUsed.keySet());
+        Collections.sort(configKeys, new Comparator<String>() {
+            public int compare(String a, String b) {
+                return Long.compare(lastUsed.get(b), lastUsed.get(a)); // most recently used first
+            }
+        });
+        long minTime = System.currentTimeMillis() - MAX_AGE_MILLIS;
+        Set<String> droppedConfigKeys = new HashSet<String>();
+        for (int i = 0; i < configKeys.size(); i++)
+            if (i >= MAX_CONFIGS || lastUsed.get(configKeys.get(i)) < minTime)
+                droppedConfigKeys.add(configKeys.get(i));
+        if (!droppedConfigKeys.isEmpty())
+            for (String name : durations.stringPropertyNames())
+                if (droppedConfigKeys.contains(getConfigKeyOf(name)))
+                    durations.remove(name);
+    }
+
+    private static String getConfigKeyOf(String propertyName) {
+        int dot = propertyName.indexOf('.');
+        return dot == -1 ? propertyName : propertyName.substring(0, dot);
+    }
+
+    /**
+     * Writes the recorded durations to disk if they changed.
+     */
+    public synchronized void save() {
+        if (!dirty)
+            return;
+        prune();
+        try (OutputStream out = new FileOutputStream(file)) {
+            durations.store(out, "Durations of simulation runs in milliseconds");
+            dirty = false;
+        }
+        catch (IOException e) {
+            LaunchPlugin.logError("Cannot save simulation run durations to " + file, e);
+        }
+    }
+}
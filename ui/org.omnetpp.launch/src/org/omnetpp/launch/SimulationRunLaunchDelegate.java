@@ -8,28 +8,20 @@
 package org.omnetpp.launch;
 
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.ResourcesPlugin;
-import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
-import org.eclipse.core.runtime.IStatus;
-import org.eclipse.core.runtime.OperationCanceledException;
-import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.core.runtime.jobs.IJobChangeEvent;
 import org.eclipse.core.runtime.jobs.IJobChangeListener;
 import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.core.runtime.jobs.JobChangeAdapter;
-import org.eclipse.core.runtime.jobs.JobGroup;
 import org.eclipse.debug.core.ILaunch;
 import org.eclipse.debug.core.ILaunchConfiguration;
 import org.eclipse.debug.core.model.LaunchConfigurationDelegate;
-import org.omnetpp.common.Debug;
 import org.omnetpp.common.project.ProjectUtils;
 import org.omnetpp.common.simulation.AbstractSimulationProcess;
 import org.omnetpp.common.util.StringUtils;
@@ -113,38 +105,7 @@ public class SimulationRunLaunchDelegate extends LaunchConfigurationDelegate {
             int batchSize = configuration.getAttribute(IOmnetppLaunchConstants.OPP_BATCH_SIZE, 1);
             boolean stopOnError = configuration.getAttribute(IOmnetppLaunchConstants.OPP_STOP_BATCH_ON_ERROR, "false").equals("true"); //XXX similar ini setting won't take effect here
 
-            List<List<Integer>> batches = splitIntoBatches(runNumbers, batchSize);
-            Debug.println(batches.toString());
-
-            String[] batchRunFilters = batches.stream().map(batch -> StringUtils.join(batch, ",")).collect(Collectors.toList()).toArray(new String[]{});
-
-            Job launcherJob = new Job("Batch Execution of " + configuration.getName() + " ("+runNumbers.size()+" runs using " + batchRunFilters.length + " processes) ") {
-                @Override
-                protected IStatus run(IProgressMonitor monitor) {
-                    JobGroup jobGroup = new JobGroup("Simulation batch", numConcurrentProcesses, batchRunFilters.length) {
-                        @Override
-                        protected boolean shouldCancel(IStatus lastCompletedJobResult, int numberOfFailedJobs, int numberOfCanceledJobs) {
-                            return numberOfCanceledJobs > 0 || (stopOnError && numberOfFailedJobs > 0);
-                        }
-                    };
-                    for (String batchRunFilter : batchRunFilters) {
-                        Job job1 = new SimulationLauncherJob(configuration, launch, batchRunFilter, reportProgress, portNumber);
-                        job1.setJobGroup(jobGroup);
-                        job1.setPriority(Job.BUILD);
-                        job1.setSystem(false);
-                        job1.schedule();
-                    }
-                    try {
-                        jobGroup.join(0, monitor);
-                    } catch (OperationCanceledException | InterruptedException e) {
-                        Debug.println("Cancelling group");
-                        jobGroup.cancel();
-                        return Status.CANCEL_STATUS;
-                    }
-                    return Status.OK_STATUS;
-                }
-
-            };
+            Job launcherJob = new BatchSimulationLauncherJob(configuration, launch, runNumbers, reportProgress, portNumber, numConcurrentProcesses, batchSize, stopOnError);
             launcherJob.setPriority(Job.BUILD);
             launcherJob.setSystem(false);
             launcherJob.setUser(true);
@@ -175,24 +136,6 @@ public class SimulationRunLaunchDelegate extends LaunchConfigurationDelegate {
         }
     }
 
-    protected List<List<Integer>> splitIntoBatches(List<Integer> runNumbers, int batchSize) {
-        // note: this algorithm prefers creating equal-size batches to strictly sticking to batchSize, e.g. creates 3+3 instead of 4+2
-        List<List<Integer>> result = new ArrayList<>();
-        int numBatches = (runNumbers.size() + batchSize - 1) / batchSize;
-        int cursor = 0; // for drawing from runNumbers[]
-        for (int i = 0; i < numBatches; i++) {
-            List<Integer> batch = new ArrayList<>();
-            int runsInBatch = runNumbers.size() / numBatches;
-            if (i < runNumbers.size() % numBatches)
-                runsInBatch++;
-            for (int j = 0; j < runsInBatch; j++)
-                batch.add(runNumbers.get(cursor++));
-            result.add(batch);
-        }
-        Assert.isTrue(cursor == runNumbers.size());
-        return result;
-    }
-
     @Override
     protected IProject[] getProjectsForProblemSearch(ILaunchConfiguration configuration, String mode) throws CoreException {
         // NOTE: we need to do this twice: here and in launch() which is kind of superfluous
@@ -106,7 +106,9 @@ public interface INedResources extends INedTypeResolver {
      * analysis) in a background thread without locking the INedResources object.
      *
      * Elements in the immutable copy can be related back to the original trees
-     * with INedElement's getOriginal() method.
+     * with INedElement's getOriginal() method. Trees of NED files not affected by
+     * the changes since the previous immutable copy may be shared with that copy,
+     * so getResolver() of an element may return an earlier immutable copy.
      *
      * Any model change event (NedModelChangeEvent) will cause subsequent calls to this method
      * to return a different, up-to-date instance. (Marker changes do not count.)
@@ -1,28 +1,244 @@
 package org.omnetpp.ned.core;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.omnetpp.common.Debug;
 import org.omnetpp.ned.model.ex.NedFileElementEx;
+import org.omnetpp.ned.model.interfaces.INedTypeElement;
+import org.omnetpp.ned.model.interfaces.INedTypeResolver;
 import org.omnetpp.ned.model.notification.INedChangeListener;
 import org.omnetpp.ned.model.notification.NedMarkerChangeEvent;
 import org.omnetpp.ned.model.notification.NedModelEvent;
 
 /**
- * Default implementation of INedTypeResolver
+ * Immutable copy of a NED type resolver.
+ *
+ * A copy may be derived from an earlier copy, sharing the trees of the NED files
+ * that are not affected by the changes since then. Elements remember the resolver
+ * that created them, and lookups made from a shared element go through the earlier
+ * copy; therefore a tree can only be shared if nothing it may look up, directly or
+ * indirectly, has changed. Files are copied again if they changed, or if they contain
+ * a type that extends, implements or uses (as submodule or channel type, or as "like"
+ * interface of one) a type in a file that is copied, transitively. Derived copies keep
+ * the earlier copies they share trees with alive; to limit the memory kept this way,
+ * a full copy is made every now and then.
  *
  * @author Andras
  */
 public class ImmutableNedTypeResolver extends NedTypeResolver {
+    private static final int MAX_GENERATIONS = 16;
+
     private INedChangeListener listener = new INedChangeListener() {
         public void modelChanged(NedModelEvent event) {
             ImmutableNedTypeResolver.this.modelChanged(event);
         }
     };
 
+    // earlier copies whose elements may be reachable from this one (directly or indirectly)
+    private final Set<INedTypeResolver> sharedResolvers = new HashSet<INedTypeResolver>();
+
+    // number of copies since the last full copy, and the number of files copied in them
+    private final int generation;
+    private final int copiedFilesInChain;
+
     protected ImmutableNedTypeResolver(NedTypeResolver other) {
         super(other);
 
         // add change listeners
         for (NedFileElementEx fileElement : nedElementFiles.keySet())
             fileElement.addNedChangeListener(listener);
+
+        generation = 0;
+        copiedFilesInChain = nedFiles.size();
+    }
+
+    /**
+     * Creates an up-to-date copy of {@code other} from an earlier copy of it, given
+     * the files that have changed since the earlier copy was made. Check canDerive()
+     * first.
+     */
+    protected ImmutableNedTypeResolver(NedTypeResolver other, ImmutableNedTypeResolver previous, Collection<IFile> changedFiles) {
+        long startMillis = System.currentTimeMillis();
+
+        // start from the previous copy's trees and tables
+        lastChangeSerial = other.lastChangeSerial;
+        builtInDeclarationsFile = previous.builtInDeclarationsFile;
+        nedFiles.putAll(previous.nedFiles);
+        nedElementFiles.putAll(previous.nedElementFiles);
+        for (Map.Entry<IProject, ProjectData> entry : previous.projects.entrySet())
+            projects.put(entry.getKey(), copyProjectData(entry.getValue()));
+        registeredTypes.putAll(previous.registeredTypes);
+        indexedTypes.putAll(previous.indexedTypes);
+        copyIndex(previous.subtypeIndex, subtypeIndex);
+        copyIndex(previous.userIndex, userIndex);
+
+        // files added or removed should be among the changed ones, but make sure
+        Set<IFile> files = new HashSet<IFile>(changedFiles);
+        for (IFile file : other.nedFiles.keySet())
+            if (!previous.nedFiles.containsKey(file))
+                files.add(file);
+        for (IFile file : previous.nedFiles.keySet())
+            if (!other.nedFiles.containsKey(file))
+                files.add(file);
+
+        // copy the changed files, then the files that may see them, until there are no more such files
+        Set<IFile> copiedFiles = new HashSet<IFile>();
+        while (!files.isEmpty()) {
+            Set<String> names = new HashSet<String>();
+            Set<String> interfaceNames = new HashSet<String>();
+            copyFiles(other, files, names, interfaceNames);
+            copiedFiles.addAll(files);
+            files = collectDependentFiles(names, interfaceNames);
+            files.removeAll(copiedFiles);
+        }
+
+        // remember which earlier copies we depend on
+        for (NedFileElementEx fileElement : nedElementFiles.keySet())
+            addSharedResolver(fileElement.getResolver());
+        addSharedResolver(builtInDeclarationsFile.getResolver());
+        int maxGeneration = 0;
+        for (INedTypeResolver resolver : sharedResolvers)
+            maxGeneration = Math.max(maxGeneration, ((ImmutableNedTypeResolver)resolver).generation);
+        generation = sharedResolvers.isEmpty() ? 0 : maxGeneration + 1;
+        copiedFilesInChain = sharedResolvers.isEmpty() ? nedFiles.size() : previous.copiedFilesInChain + copiedFiles.size();
+
+        if (debug) {
+            long dt = System.currentTimeMillis() - startMillis;
+            Debug.println("derived immutable copy: " + dt + "ms, copied " + copiedFiles.size() + " of " + nedFiles.size() + " files for " + changedFiles.size() + " changed files");
+        }
+    }
+
+    /**
+     * Returns true if an up-to-date copy of {@code other} can be derived from this
+     * copy, given the files that have changed since this copy was made.
+     */
+    protected boolean canDerive(NedTypeResolver other, Collection<IFile> changedFiles) {
+        if (generation >= MAX_GENERATIONS || copiedFilesInChain > 2 * other.nedFiles.size())
+            return false;
+
+        // package.ned files affect the package of other files
+        for (IFile file : changedFiles)
+            if (file.getName().equals(PACKAGE_NED_FILENAME))
+                return false;
+
+        // NED source folders and project references must be the same
+        if (!projects.keySet().equals(other.projects.keySet()))
+            return false;
+        for (IProject project : projects.keySet()) {
+            ProjectData projectData = projects.get(project);
+            ProjectData otherProjectData = other.projects.get(project);
+            if (!Arrays.equals(projectData.nedSourceFolders, otherProjectData.nedSourceFolders) ||
+                    !Arrays.equals(projectData.nedSourceFolderPackages, otherProjectData.nedSourceFolderPackages) ||
+                    !Arrays.equals(projectData.excludedPackageRoots, otherProjectData.excludedPackageRoots) ||
+                    !Arrays.equals(projectData.referencedProjects, otherProjectData.referencedProjects))
+                return false;
+        }
+        return true;
+    }
+
+    private static ProjectData copyProjectData(ProjectData projectData) {
+        ProjectData newProjectData = new ProjectData();
+        newProjectData.nedSourceFolders = projectData.nedSourceFolders.clone();
+        newProjectData.nedSourceFolderPackages = projectData.nedSourceFolderPackages.clone();
+        newProjectData.excludedPackageRoots = projectData.excludedPackageRoots.clone();
+        newProjectData.referencedProjects = projectData.referencedProjects.clone();
+        newProjectData.components.putAll(projectData.components);
+        newProjectData.duplicates.putAll(projectData.duplicates);
+        newProjectData.reservedNames.addAll(projectData.reservedNames);
+        for (Map.Entry<String, List<INedTypeElement>> entry : projectData.definitions.entrySet())
+            newProjectData.definitions.put(entry.getKey(), new ArrayList<INedTypeElement>(entry.getValue()));
+        return newProjectData;
+    }
+
+    private static void copyIndex(Map<String, Set<INedTypeElement>> index, Map<String, Set<INedTypeElement>> result) {
+        for (Map.Entry<String, Set<INedTypeElement>> entry : index.entrySet())
+            result.put(entry.getKey(), new HashSet<INedTypeElement>(entry.getValue()));
+    }
+
+    /**
+     * Replaces the trees of the given files with fresh copies of the ones in
+     * {@code other}, and updates the tables. Collects the simple names of the types
+     * whose elements changed, and the names of the interfaces and base types they
+     * referred to before and after the change (users of those need to see the new
+     * elements in "like" lookups).
+     */
+    private void copyFiles(NedTypeResolver other, Collection<IFile> files, Set<String> names, Set<String> interfaceNames) {
+        for (IFile file : files) {
+            collectSupertypeNames(file, interfaceNames);
+            NedFileElementEx oldFileElement = nedFiles.remove(file);
+            if (oldFileElement != null)
+                nedElementFiles.remove(oldFileElement);
+            NedFileElementEx fileElement = other.nedFiles.get(file);
+            if (fileElement != null) {
+                NedFileElementEx copy = (NedFileElementEx)fileElement.deepDup(this, true, true);
+                nedFiles.put(file, copy);
+                nedElementFiles.put(copy, file);
+                copy.addNedChangeListener(listener);
+            }
+        }
+
+        for (String name : internalRehash(files))
+            names.add(getSimpleName(name));
+
+        for (IFile file : files) {
+            collectSupertypeNames(file, interfaceNames);
+            if (nedFiles.containsKey(file)) {
+                List<INedTypeElement> types = new ArrayList<INedTypeElement>();
+                collectAllTypes(nedFiles.get(file), types);
+                for (INedTypeElement typeElement : types)
+                    names.add(typeElement.getName());
+            }
+        }
+    }
+
+    private void collectSupertypeNames(IFile file, Set<String> result) {
+        Map<INedTypeElement, TypeReferences> entries = indexedTypes.get(file);
+        if (entries != null)
+            for (TypeReferences references : entries.values())
+                result.addAll(references.supertypeNames);
+    }
+
+    /**
+     * Returns the files containing types that extend, implement or use types of the
+     * given names, or use the given interface names.
+     */
+    private Set<IFile> collectDependentFiles(Set<String> names, Set<String> interfaceNames) {
+        Set<IFile> result = new HashSet<IFile>();
+        for (String name : names) {
+            addFilesOf(subtypeIndex.get(name), result);
+            addFilesOf(userIndex.get(name), result);
+        }
+        for (String name : interfaceNames)
+            addFilesOf(userIndex.get(name), result);
+        return result;
+    }
+
+    private void addFilesOf(Set<INedTypeElement> typeElements, Set<IFile> result) {
+        if (typeElements != null) {
+            for (INedTypeElement typeElement : typeElements) {
+                IFile file = nedElementFiles.get(typeElement.getContainingNedFileElement());
+                if (file != null)
+                    result.add(file);
+            }
+        }
+    }
+
+    private void addSharedResolver(INedTypeResolver resolver) {
+        if (resolver != this && sharedResolvers.add(resolver))
+            sharedResolvers.addAll(((ImmutableNedTypeResolver)resolver).sharedResolvers);
+    }
+
+    @Override
+    protected boolean isCompatibleResolver(INedTypeResolver resolver) {
+        return resolver == this || sharedResolvers.contains(resolver);
     }
 
     protected void modelChanged(NedModelEvent event) {
@@ -30,4 +246,4 @@ public class ImmutableNedTypeResolver extends NedTypeResolver {
             return; // that's OK
         throw new RuntimeException("Attempt to modify element in an immutable type resolver: " + event.toString());
     }
-}
\ No newline at end of file
+}
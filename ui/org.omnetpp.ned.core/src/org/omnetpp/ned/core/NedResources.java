@@ -8,9 +8,14 @@
 package org.omnetpp.ned.core;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IMarker;
@@ -39,12 +44,14 @@ import org.omnetpp.common.util.DelayedJob;
 import org.omnetpp.common.util.StringUtils;
 import org.omnetpp.ned.model.INedElement;
 import org.omnetpp.ned.model.NedElement;
+import org.omnetpp.ned.model.NedSourceRegion;
 import org.omnetpp.ned.model.NedTreeDifferenceUtils;
 import org.omnetpp.ned.model.NedTreeUtil;
 import org.omnetpp.ned.model.ex.CompoundModuleElementEx;
 import org.omnetpp.ned.model.ex.NedElementFactoryEx;
 import org.omnetpp.ned.model.ex.NedFileElementEx;
 import org.omnetpp.ned.model.interfaces.INedTypeElement;
+import org.omnetpp.ned.model.interfaces.INedTypeLookupContext;
 import org.omnetpp.ned.model.interfaces.INedTypeResolver;
 import org.omnetpp.ned.model.notification.INedChangeListener;
 import org.omnetpp.ned.model.notification.NedBeginModelChangeEvent;
@@ -54,6 +61,7 @@ import org.omnetpp.ned.model.notification.NedFileRemovedEvent;
 import org.omnetpp.ned.model.notification.NedModelChangeEvent;
 import org.omnetpp.ned.model.notification.NedModelEvent;
 import org.omnetpp.ned.model.notification.NedStructuralChangeEvent;
+import org.omnetpp.ned.model.pojo.CommentElement;
 
 /**
  * Parses all NED files in the workspace and makes them available for other
@@ -79,6 +87,12 @@ public class NedResources extends NedTypeResolver implements INedResources, IRes
     // DO NOT SET THIS DIRECTLY! Use invalidate().
     private boolean needsRehash = false;
 
+    // if tables need to be rebuilt from scratch; otherwise only changedFiles need to be processed
+    private boolean needsFullRehash = false;
+
+    // NED files changed since the last rehash
+    private final Set<IFile> changedFiles = new HashSet<IFile>();
+
     // For debugging: We increment this counter whenever a rehash occurs. Checks can be made
     // to assert that the function is not called unnecessarily
     private int debugRehashCounter = 0;
@@ -89,6 +103,15 @@ public class NedResources extends NedTypeResolver implements INedResources, IRes
     // can be used for computations in a background thread without locking NedResources
     private ImmutableNedTypeResolver immutableCopy = null;
 
+    // the last immutable copy made, and the NED files changed since then (null if unknown);
+    // the next copy is derived from it if possible
+    private ImmutableNedTypeResolver lastImmutableCopy = null;
+    private Set<IFile> filesChangedSinceLastImmutableCopy = null;
+
+    // the text the tree of each file open in an editor was last synchronized with via setNedFileText(),
+    // provided the tree has not been changed otherwise since; allows reparsing only the edited part
+    private final Map<IFile, String> parsedTexts = new HashMap<IFile, String>();
+
     // caches the result of expression parsing
     private Map<String,INedElement> expressionCache = new HashMap<String, INedElement>();
     private static final INedElement BOGUS_EXPRESSION = NedElementFactoryEx.getInstance().createElement(INedElement.NED_UNKNOWN); // special value to signal syntax error
@@ -153,6 +176,13 @@ public class NedResources extends NedTypeResolver implements INedResources, IRes
     public synchronized void setNedFileText(IFile file, String text) {
         NedFileElementEx currentTree = getNedFileElement(file);
 
+        // if only the inside of a NED type was edited, it is enough to reparse that type
+        String parsedText = parsedTexts.remove(file);
+        if (parsedText != null && applyTextChangeIncrementally(file, currentTree, parsedText, text)) {
+            parsedTexts.put(file, text);
+            return;
+        }
+
         // parse
         ProblemMarkerSynchronizer markerSync = new ProblemMarkerSynchronizer(NEDSYNTAXPROBLEM_MARKERID);
         markerSync.register(file);
@@ -178,13 +208,15 @@ public class NedResources extends NedTypeResolver implements INedResources, IRes
                 markerSync.runAsWorkspaceJob();
 
                 // force rehash now, so that validation errors appear soon
-                rehash();
+                // (the changes have already been recorded via the model change notifications)
+                rehashIfNeeded();
             }
 
             long dt = System.currentTimeMillis() - startTime;
             if (dt > 100)
                 Debug.println("setNedFileText(): textual changes applied as tree differences in " + dt + "ms");
 
+            parsedTexts.put(file, text);
         }
         else {
             // mark the tree as having a syntax error, so that the graphical doesn't allow editing
@@ -195,6 +227,154 @@ public class NedResources extends NedTypeResolver implements INedResources, IRes
         }
     }
 
+    /**
+     * Applies a textual change to the tree of a NED file without reparsing the whole
+     * file, provided the tree (which must be free of syntax errors) was created from
+     * oldText. This is possible if the change is confined to the lines strictly between
+     * the first and last line of a top-level NED type: then only that type needs to be
+     * reparsed, and the comments the parser attaches to it and to its neighbours (which
+     * depend on the surrounding lines) stay the same. The new subtree is merged into the
+     * current one as tree differences, so change notifications are only fired for the
+     * elements of that type; the source regions of the elements after it are shifted
+     * without notification, like with tree differences. Returns false without touching
+     * the tree if the change cannot be applied this way (e.g. it spans several types,
+     * or it introduces a syntax error); a full reparse is needed then.
+     */
+    protected boolean applyTextChangeIncrementally(IFile file, NedFileElementEx currentTree, String oldText, String newText) {
+        if (oldText.equals(newText))
+            return true;
+        long startTime = System.currentTimeMillis();
+
+        // the changed range: [start,oldEnd) of the old text was replaced by [start,newEnd) of the new text
+        int minLength = Math.min(oldText.length(), newText.length());
+        int start = 0;
+        while (start < minLength && oldText.charAt(start) == newText.charAt(start))
+            start++;
+        int oldEnd = oldText.length();
+        int newEnd = newText.length();
+        while (oldEnd > start && newEnd > start && oldText.charAt(oldEnd-1) == newText.charAt(newEnd-1)) {
+            oldEnd--;
+            newEnd--;
+        }
+
+        // find the top-level type whose inner lines contain the change; its first line and
+        // the newline at the end of the line before its last line must be left intact
+        int[] lineOffsets = getLineOffsets(oldText);
+        int numLines = lineOffsets.length - 1;
+        INedElement typeElement = null;
+        for (INedElement child : currentTree) {
+            NedSourceRegion region = child.getSourceRegion();
+            if (child instanceof INedTypeElement && region != null && region.getStartLine() >= 1 && region.getEndLine() <= numLines &&
+                    start >= lineOffsets[region.getStartLine()] && oldEnd < lineOffsets[region.getEndLine()-1]) {
+                typeElement = child;
+                break;
+            }
+        }
+        if (typeElement == null)
+            return false;
+        int startLine = typeElement.getSourceRegion().getStartLine();
+        int endLine = typeElement.getSourceRegion().getEndLine();
+
+        // reparse the lines of the type; they must contain that type and nothing else
+        int snippetStart = lineOffsets[startLine-1];
+        int snippetEnd = newText.length() - (oldText.length() - lineOffsets[endLine]);
+        ProblemMarkerSynchronizer markerSync = new ProblemMarkerSynchronizer(NEDSYNTAXPROBLEM_MARKERID); // not run: problems mean we fall back to a full reparse
+        NedMarkerErrorStore errorStore = new NedMarkerErrorStore(markerSync);
+        errorStore.setFile(file);
+        NedFileElementEx snippetTree = NedTreeUtil.parseNedText(newText.substring(snippetStart, snippetEnd), errorStore, file.getFullPath().toString(), this);
+        if (errorStore.getNumProblems() != 0 || snippetTree.getSyntaxProblemMaxCumulatedSeverity() != INedElement.SEVERITY_NONE)
+            return false;
+        INedElement newTypeElement = null;
+        for (INedElement child : snippetTree) {
+            if (child.getTagCode() == INedElement.NED_COMMENT)
+                continue; // belongs to the file, ignore
+            if (newTypeElement != null || child.getTagCode() != typeElement.getTagCode())
+                return false;
+            newTypeElement = child;
+        }
+        if (newTypeElement == null)
+            return false;
+
+        // line numbers in the snippet are relative to its first line
+        shiftSourceLines(newTypeElement, 1, startLine - 1, true);
+
+        // the banner and trailing comments depend on the lines around the type, which did not change
+        INedElement oldTrailingComment = typeElement.getFirstChildWithAttribute(INedElement.NED_COMMENT, CommentElement.ATT_LOCID, "trailing");
+        INedElement newTrailingComment = newTypeElement.getFirstChildWithAttribute(INedElement.NED_COMMENT, CommentElement.ATT_LOCID, "trailing");
+        if (newTrailingComment != null)
+            newTrailingComment.removeFromParent();
+        INedElement oldBannerComment = typeElement.getFirstChildWithAttribute(INedElement.NED_COMMENT, CommentElement.ATT_LOCID, "banner");
+        if (oldBannerComment != null) {
+            // the parser puts the banner comment after the other comments of the header
+            INedElement where = newTypeElement.getFirstChild();
+            while (where != null && where.getTagCode() == INedElement.NED_COMMENT)
+                where = where.getNextSibling();
+            newTypeElement.insertChildBefore(where, oldBannerComment.deepDup(this, false, false));
+        }
+        if (oldTrailingComment != null)
+            newTypeElement.insertChildBefore(newTypeElement.getFirstChild(), oldTrailingComment.deepDup(this, false, false));
+
+        NedTreeDifferenceUtils.Applier treeDifferenceApplier = new NedTreeDifferenceUtils.Applier();
+        NedTreeDifferenceUtils.applyTreeDifferences(typeElement, newTypeElement, treeDifferenceApplier);
+
+        // elements after the type moved by the number of lines added or removed
+        int lineDelta = StringUtils.countNewLines(newText.substring(start, newEnd)) - StringUtils.countNewLines(oldText.substring(start, oldEnd));
+        if (lineDelta != 0) {
+            shiftSourceLines(currentTree, endLine + 1, lineDelta, false);
+            for (INedElement element = typeElement.getNextSibling(); element != null; element = element.getNextSibling())
+                shiftSourceLines(element, endLine + 1, lineDelta, true);
+        }
+
+        if (treeDifferenceApplier.hasDifferences()) {
+            typeElement.fireModelEvent(new NedBeginModelChangeEvent(typeElement));
+            treeDifferenceApplier.apply();
+            typeElement.fireModelEvent(new NedEndModelChangeEvent(typeElement));
+
+            // force rehash now, so that validation errors appear soon
+            rehashIfNeeded();
+        }
+
+        long dt = System.currentTimeMillis() - startTime;
+        if (dt > 100)
+            Debug.println("setNedFileText(): textual changes applied incrementally in " + dt + "ms");
+        return true;
+    }
+
+    /**
+     * Returns the offsets of the lines of the text; the last element is the text length.
+     */
+    private static int[] getLineOffsets(String text) {
+        int[] result = new int[StringUtils.countNewLines(text) + 2];
+        int line = 1;
+        for (int i = 0; i < text.length(); i++)
+            if (text.charAt(i) == '\n')
+                result[line++] = i + 1;
+        result[line] = text.length();
+        return result;
+    }
+
+    /**
+     * Adds delta to the line numbers in the source region and source location of the
+     * element (and its descendants, if recursive is true) which are at least fromLine.
+     */
+    private static void shiftSourceLines(INedElement element, int fromLine, int delta, boolean recursive) {
+        NedSourceRegion region = element.getSourceRegion();
+        if (region != null) {
+            int startLine = region.getStartLine() >= fromLine ? region.getStartLine() + delta : region.getStartLine();
+            int endLine = region.getEndLine() >= fromLine ? region.getEndLine() + delta : region.getEndLine();
+            element.setSourceRegion(new NedSourceRegion(startLine, region.getStartColumn(), endLine, region.getEndColumn()));
+        }
+        String location = element.getSourceLocation();
+        if (location != null && location.indexOf(':') != -1) {
+            int line = NedTreeUtil.getLineFrom(location);
+            if (line >= fromLine)
+                element.setSourceLocation(StringUtils.substringBeforeLast(location, ":") + ":" + (line + delta));
+        }
+        if (recursive)
+            for (INedElement child : element)
+                shiftSourceLines(child, fromLine, delta, true);
+    }
+
     public synchronized void connect(IFile file) {
         if (connectCount.containsKey(file))
             connectCount.put(file, connectCount.get(file) + 1);
@@ -212,6 +392,7 @@ public class NedResources extends NedTypeResolver implements INedResources, IRes
             // there's no open editor -- remove counter and re-read last saved
             // state from disk (provided it has not been deleted)
             connectCount.remove(file);
+            parsedTexts.remove(file);
             if (file.exists())
                 readNedFile(file);
         }
@@ -235,7 +416,7 @@ public class NedResources extends NedTypeResolver implements INedResources, IRes
         ProblemMarkerSynchronizer markerSync = new ProblemMarkerSynchronizer();
         doReadNedFile(file, markerSync);
         markerSync.runAsWorkspaceJob();
-        rehash();
+        rehashIfNeeded();
     }
 
     /**
@@ -246,15 +427,30 @@ public class NedResources extends NedTypeResolver implements INedResources, IRes
         //Note: the following is a bad idea, because of undefined startup order: the editor calling us might run sooner than readAllNedFiles()
         //Assert.isTrue(isNEDFile(file), "file is outside the NED source folders, or not a NED file at all");
 
+        NedFileElementEx tree = parseNedFileFromDisk(file, markerSync);
+        commitNedFile(file, tree);
+    }
+
+    /**
+     * Internal: parses the given NED file from the disk, without storing it.
+     * Does not need the NedResources lock, so it may be called from several
+     * threads concurrently.
+     */
+    protected NedFileElementEx parseNedFileFromDisk(IFile file, ProblemMarkerSynchronizer markerSync) {
         if (debug)
             Debug.println("reading from disk: " + file.toString());
 
-        // parse the NED file and put it into the hash table
         NedMarkerErrorStore errorStore = new NedMarkerErrorStore(markerSync, NEDSYNTAXPROBLEM_MARKERID);
         errorStore.setFile(file);
         NedFileElementEx tree = NedTreeUtil.parseNedFile(file.getLocation().toOSString(), errorStore, file.getFullPath().toString(), this);
         Assert.isNotNull(tree);
+        return tree;
+    }
 
+    /**
+     * Internal: puts the parsed tree of the given NED file into the hash table.
+     */
+    protected synchronized void commitNedFile(IFile file, NedFileElementEx tree) {
         // only store the file if its declared package is not excluded -- that would lead to thrashing, see bug #518
         // (this can only happen to top package.ned files that *define* their own package, for other files
         // we won't get invoked in the first place)
@@ -277,7 +473,7 @@ public class NedResources extends NedTypeResolver implements INedResources, IRes
         if (isSourceFolderPackageNedFile(file))
             rebuildProjectsTable();
 
-        invalidate();
+        invalidate(file);
     }
 
     /**
@@ -296,9 +492,9 @@ public class NedResources extends NedTypeResolver implements INedResources, IRes
             nedFileElement.removeNedChangeListener(nedModelChangeListener);
 
             // unregister
+            invalidate(file);
             nedFiles.remove(file);
             nedElementFiles.remove(nedFileElement);
-            invalidate();
 
             // if this was a package.ned, expected package names might have changed
             if (isSourceFolderPackageNedFile(file))
@@ -318,9 +514,9 @@ public class NedResources extends NedTypeResolver implements INedResources, IRes
         Assert.isTrue(!connectCount.containsKey(file), "cannot replace the tree while an editor is open");
 
         NedFileElementEx oldTree = nedFiles.get(file);
-        // if the new tree has changed, we have to rehash everything
+        // if the new tree has changed, we have to rehash
         if (oldTree == null || !NedTreeUtil.isNedTreeEqual(oldTree, tree)) {
-            invalidate();
+            invalidate(file);  // while the old tree is still in place
             nedFiles.put(file, tree);
             nedElementFiles.put(tree, file);
             // add ourselves to the tree root as a listener
@@ -344,23 +540,102 @@ public class NedResources extends NedTypeResolver implements INedResources, IRes
         needsRehash = false;
         debugRehashCounter++;
 
-        internalRehash();
+        if (needsFullRehash) {
+            needsFullRehash = false;
+            changedFiles.clear();
+            internalRehash();
+        }
+        else {
+            List<IFile> files = new ArrayList<IFile>(changedFiles);
+            changedFiles.clear();
+
+            // qualified names of the types in the changed files may have changed (e.g. package declaration)
+            for (IFile file : files)
+                if (nedFiles.containsKey(file))
+                    invalidateTypeInfo(nedFiles.get(file));
+
+            // update tables, then invalidate whatever depends on the added/removed/replaced types
+            Set<String> changedNames = internalRehash(files);
+            invalidateAffectedTypes(files, changedNames);
+            for (String name : changedNames)
+                removeCachedLookups(getSimpleName(name));
+            if (!changedNames.isEmpty())
+                nedLikeTypeLookupCache.clear();  // the set of types changed, while interface types may be keys
+        }
 
         // schedule a validation
         nedValidationStarterJob.restartTimer();
     }
 
+    /**
+     * Invalidates everything; the next rehash will rebuild all tables from scratch.
+     * Use invalidate(IFile) if the change is confined to a NED file.
+     */
     public synchronized void invalidate() {
         lastChangeSerial++;
+        immutableCopy = null;
+        filesChangedSinceLastImmutableCopy = null;
         needsRehash = true;
-        nedTypeLookupCache.clear();
-        nedLikeTypeLookupCache.clear();
+        needsFullRehash = true;
+        changedFiles.clear();
+        clearCachedLookups();
 
         // invalidate all inherited members on all typeInfo objects
         for (NedFileElementEx file : nedElementFiles.keySet())
             invalidateTypeInfo(file);
     }
 
+    /**
+     * Invalidates the types in the given NED file and the types that depend on
+     * them (via the reverse dependency index), and records the file for the
+     * next rehash. Must be called while the file's current tree (if any) is
+     * still registered, i.e. before replacing or removing it.
+     */
+    public synchronized void invalidate(IFile file) {
+        lastChangeSerial++;
+        needsRehash = true;
+
+        // the immutable copy and the set of files changed since it was made must be updated
+        // together, otherwise a copy derived in between would be regarded up to date
+        immutableCopy = null;
+        if (filesChangedSinceLastImmutableCopy != null)
+            filesChangedSinceLastImmutableCopy.add(file);
+        if (needsFullRehash)
+            return; // everything has been invalidated already
+
+        changedFiles.add(file);
+        Map<INedTypeElement, String> registered = registeredTypes.get(file);
+        invalidateAffectedTypes(Collections.singletonList(file), registered == null ? Collections.<String>emptySet() : registered.values());
+    }
+
+    protected void invalidateAffectedTypes(Collection<IFile> files, Collection<String> changedNames) {
+        List<INedTypeElement> changedTypes = new ArrayList<INedTypeElement>();
+        for (IFile file : files) {
+            NedFileElementEx nedFileElement = nedFiles.get(file);
+            if (nedFileElement != null) {
+                collectAllTypes(nedFileElement, changedTypes);
+                removeCachedLookups(nedFileElement);
+            }
+        }
+
+        Set<INedTypeElement> affectedTypes = collectAffectedTypes(changedTypes, changedNames);
+        Set<String> affectedNames = new HashSet<String>();
+        for (INedTypeElement typeElement : affectedTypes) {
+            typeElement.getNedTypeInfo().invalidateInherited();
+            if (typeElement instanceof INedTypeLookupContext)
+                removeCachedLookups((INedTypeLookupContext)typeElement);
+            affectedNames.add(typeElement.getName());
+        }
+
+        // like-lookups are keyed by type name, and depend on the interfaces of the types with that name
+        for (Map<INedTypeInfo, Map<String, INedTypeInfo>> map : nedLikeTypeLookupCache.values())
+            for (Map<String, INedTypeInfo> map2 : map.values())
+                map2.keySet().removeIf(name -> affectedNames.contains(getSimpleName(name)));
+
+        if (debug)
+            Debug.println("invalidated " + affectedTypes.size() + " types affected by changes in " + StringUtils.join(files, ", "));
+    }
+
     protected void rehash() {
         invalidate();
         rehashIfNeeded();
@@ -497,38 +772,90 @@ public class NedResources extends NedTypeResolver implements INedResources, IRes
      * This should be run on startup and after rebuildProjectsTable();
      * individual file changes are handled by loadNedFile() calls from the
      * workspace listener.
+     *
+     * Files are parsed in parallel without holding the NedResources lock;
+     * the lock is only taken for collecting the file list, and for storing
+     * the parsed trees and rehashing at the end.
      */
-    public synchronized void readMissingNedFiles() {
-        try {
-            // disable all ned model notifications until all files have been processed
-            nedModelChangeNotificationDisabled = true;
-            debugRehashCounter = 0;
+    public void readMissingNedFiles() {
+        long startTime = System.currentTimeMillis();
+
+        // collect the NED files that are not yet loaded
+        final List<IFile> missingFiles = new ArrayList<IFile>();
+        synchronized (this) {
+            try {
+                IWorkspaceRoot workspaceRoot = ResourcesPlugin.getWorkspace().getRoot();
+                workspaceRoot.accept(new IResourceVisitor() {
+                    public boolean visit(IResource resource) {
+                        if (!nedFiles.containsKey(resource) && isNedFile(resource))
+                            missingFiles.add((IFile)resource);
+                        return true;
+                    }
+                });
+            }
+            catch (CoreException e) {
+                NedResourcesPlugin.logError("Error during workspace refresh: ",e);
+                return;
+            }
+        }
+        long collectTime = System.currentTimeMillis();
 
-            // read NED files that are not yet loaded
-            final ProblemMarkerSynchronizer sync = new ProblemMarkerSynchronizer();
-            IWorkspaceRoot workspaceRoot = ResourcesPlugin.getWorkspace().getRoot();
-            workspaceRoot.accept(new IResourceVisitor() {
-                public boolean visit(IResource resource) {
-                    if (!nedFiles.containsKey(resource) && isNedFile(resource))
-                        doReadNedFile((IFile)resource, sync);
-                    return true;
+        // parse them in parallel; only the native parser is serialized inside NedTreeUtil
+        final ProblemMarkerSynchronizer sync = new ProblemMarkerSynchronizer();
+        final Map<IFile,NedFileElementEx> parsedFiles = new ConcurrentHashMap<IFile, NedFileElementEx>();
+        try {
+            missingFiles.parallelStream().forEach(file -> {
+                try {
+                    parsedFiles.put(file, parseNedFileFromDisk(file, sync));
+                }
+                catch (RuntimeException e) {
+                    NedResourcesPlugin.logError("Error parsing NED file " + file.getFullPath(), e);
                 }
             });
-            sync.runAsWorkspaceJob();
-            rehashIfNeeded();
         }
-        catch (CoreException e) {
-            NedResourcesPlugin.logError("Error during workspace refresh: ",e);
-        } finally {
-            nedModelChangeNotificationDisabled = false;
-            Assert.isTrue(debugRehashCounter <= 1, "Too many rehash operations during readMissingNedFiles()");
-            nedModelChanged(new NedModelChangeEvent(null));  // "everything changed"
+        catch (RuntimeException e) {
+            NedResourcesPlugin.logError("Error during workspace refresh: ", e);
+        }
+        long parseTime = System.currentTimeMillis();
+
+        // store the results and rehash, in one go
+        synchronized (this) {
+            try {
+                // disable all ned model notifications until all files have been processed
+                nedModelChangeNotificationDisabled = true;
+                debugRehashCounter = 0;
+
+                for (IFile file : missingFiles) {
+                    NedFileElementEx tree = parsedFiles.get(file);
+                    // skip files that failed to parse, or were loaded/opened meanwhile by someone else
+                    if (tree != null && !nedFiles.containsKey(file) && !hasConnectedEditor(file) && isNedFile(file))
+                        commitNedFile(file, tree);
+                }
+                sync.runAsWorkspaceJob();
+                rehashIfNeeded();
+            }
+            finally {
+                nedModelChangeNotificationDisabled = false;
+                Assert.isTrue(debugRehashCounter <= 1, "Too many rehash operations during readMissingNedFiles()");
+                nedModelChanged(new NedModelChangeEvent(null));  // "everything changed"
+            }
         }
+        long endTime = System.currentTimeMillis();
+
+        if (debug && !missingFiles.isEmpty())
+            Debug.println("readMissingNedFiles(): " + missingFiles.size() + " files, collect: " + (collectTime - startTime) + "ms, " +
+                    "parse: " + (parseTime - collectTime) + "ms, store+rehash: " + (endTime - parseTime) + "ms");
     }
 
     public synchronized INedTypeResolver getImmutableCopy() {
-        if (immutableCopy == null)
-            immutableCopy = new ImmutableNedTypeResolver(this);
+        if (immutableCopy == null) {
+            if (lastImmutableCopy != null && filesChangedSinceLastImmutableCopy != null && lastImmutableCopy.canDerive(this, filesChangedSinceLastImmutableCopy))
+                immutableCopy = new ImmutableNedTypeResolver(this, lastImmutableCopy, filesChangedSinceLastImmutableCopy);
+            else
+                immutableCopy = new ImmutableNedTypeResolver(this);
+            lastImmutableCopy = immutableCopy;
+            filesChangedSinceLastImmutableCopy = new HashSet<IFile>();
+        }
         return immutableCopy;
     }
 
@@ -553,8 +880,15 @@ public class NedResources extends NedTypeResolver implements INedResources, IRes
      * Respond to model changes
      */
     protected void nedModelChanged(NedModelEvent event) {
-        if (event instanceof NedModelChangeEvent)
-            immutableCopy = null; // invalidate
+        if (event instanceof NedModelChangeEvent) {
+            // the tree no longer corresponds to the text it was parsed from (setNedFileText() stores it again afterwards)
+            INedElement source = ((NedModelChangeEvent)event).getSource();
+            NedFileElementEx nedFileElement = source == null ? null : source.getContainingNedFileElement();
+            if (nedFileElement == null)
+                parsedTexts.clear();
+            else
+                parsedTexts.remove(nedElementFiles.get(nedFileElement));
+        }
 
         if (nedModelChangeNotificationDisabled)
             return;
@@ -562,7 +896,12 @@ public class NedResources extends NedTypeResolver implements INedResources, IRes
         if (event instanceof NedModelChangeEvent) {
             INedElement source = ((NedModelChangeEvent)event).getSource();
             Assert.isTrue(source==null || refactoringInProgress || source instanceof NedFileElementEx || hasConnectedEditor(getNedFile(source.getContainingNedFileElement())), "NED trees not opened in any editor must NOT be changed");
-            invalidate();
+            NedFileElementEx nedFileElement = source == null ? null : source.getContainingNedFileElement();
+            IFile file = nedFileElement == null ? null : nedElementFiles.get(nedFileElement);
+            if (file != null)
+                invalidate(file);  // change is confined to this file
+            else
+                invalidate();
             nedValidationStarterJob.restartTimer(); //FIXME obey begin/end notifications too!
         }
 
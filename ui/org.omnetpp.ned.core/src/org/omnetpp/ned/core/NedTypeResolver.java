@@ -1,9 +1,13 @@
 package org.omnetpp.ned.core;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -34,6 +38,9 @@ import org.omnetpp.ned.model.interfaces.INedTypeElement;
 import org.omnetpp.ned.model.interfaces.INedTypeInfo;
 import org.omnetpp.ned.model.interfaces.INedTypeLookupContext;
 import org.omnetpp.ned.model.interfaces.INedTypeResolver;
+import org.omnetpp.ned.model.interfaces.ISubmoduleOrConnection;
+import org.omnetpp.ned.model.pojo.ExtendsElement;
+import org.omnetpp.ned.model.pojo.InterfaceNameElement;
 import org.omnetpp.ned.model.pojo.NedElementTags;
 import org.omnetpp.ned.model.pojo.NedFileElement;
 
@@ -52,6 +59,21 @@ public class NedTypeResolver implements INedTypeResolver {
     protected Map<INedTypeLookupContext, Map<String, INedTypeInfo>> nedTypeLookupCache = new HashMap<INedTypeLookupContext, Map<String,INedTypeInfo>>();
     protected Map<IProject, Map<INedTypeInfo, Map<String, INedTypeInfo>>> nedLikeTypeLookupCache = new HashMap<IProject, Map<INedTypeInfo,Map<String,INedTypeInfo>>>();
 
+    // index into nedTypeLookupCache: simple name of the looked-up type -> lookup contexts that have it cached
+    protected Map<String, Set<INedTypeLookupContext>> nedTypeLookupCacheIndex = new HashMap<String, Set<INedTypeLookupContext>>();
+
+    // toplevel types registered from each NED file at the last rehash, with their fully qualified names
+    protected final Map<IFile, Map<INedTypeElement, String>> registeredTypes = new HashMap<IFile, Map<INedTypeElement,String>>();
+
+    // reverse dependency index: simple type name -> types (toplevel or inner) that extend or implement
+    // a type of that name, resp. use it as submodule or channel type. Matching by simple name means
+    // the index may list a few extra types, but it never misses one.
+    protected final Map<String, Set<INedTypeElement>> subtypeIndex = new HashMap<String, Set<INedTypeElement>>();
+    protected final Map<String, Set<INedTypeElement>> userIndex = new HashMap<String, Set<INedTypeElement>>();
+
+    // the types of each NED file that are in the above indices, with the names they were indexed under
+    protected final Map<IFile, Map<INedTypeElement, TypeReferences>> indexedTypes = new HashMap<IFile, Map<INedTypeElement,TypeReferences>>();
+
     // file element to contain built-in declarations (does not correspond to any physical file)
     protected NedFileElementEx builtInDeclarationsFile;
 
@@ -78,6 +100,10 @@ public class NedTypeResolver implements INedTypeResolver {
         // reserved (used) fully qualified names (contains all names including duplicates)
         final Set<String> reservedNames = new HashSet<String>();
 
+        // all definitions of each fully qualified name, built-in declaration first; the above
+        // three tables are derived from this one
+        final Map<String, List<INedTypeElement>> definitions = new HashMap<String, List<INedTypeElement>>();
+
         @Override
         public String toString() {
             return "references: " + StringUtils.join(referencedProjects, ",") +
@@ -87,6 +113,12 @@ public class NedTypeResolver implements INedTypeResolver {
         }
     }
 
+    // names of other types a NED type refers to, see subtypeIndex and userIndex
+    protected static class TypeReferences {
+        final Set<String> supertypeNames = new HashSet<String>();  // "extends" and "like"
+        final Set<String> usedTypeNames = new HashSet<String>();  // submodule and channel types
+    }
+
     /**
      * Empty constructor, for subclasses
      */
@@ -123,6 +155,14 @@ public class NedTypeResolver implements INedTypeResolver {
         internalRehash();
     }
 
+    /**
+     * Returns whether elements created by the given resolver may be used with this
+     * one. Immutable copies may share NED trees with earlier copies.
+     */
+    protected boolean isCompatibleResolver(INedTypeResolver resolver) {
+        return resolver == this;
+    }
+
     protected void internalRehash() {
         long startMillis = System.currentTimeMillis();
 
@@ -131,65 +171,375 @@ public class NedTypeResolver implements INedTypeResolver {
             projectData.components.clear();
             projectData.duplicates.clear();
             projectData.reservedNames.clear();
+            projectData.definitions.clear();
             for (INedElement child : builtInDeclarationsFile) {
                 if (child instanceof INedTypeElement) {
-                    INedTypeInfo typeInfo = ((INedTypeElement)child).getNedTypeInfo();
-                    projectData.components.put(typeInfo.getFullyQualifiedName(), typeInfo);
+                    INedTypeElement typeElement = (INedTypeElement)child;
+                    List<INedTypeElement> list = new ArrayList<INedTypeElement>();
+                    list.add(typeElement);
+                    projectData.definitions.put(typeElement.getNedTypeInfo().getFullyQualifiedName(), list);
                 }
             }
-            projectData.reservedNames.addAll(projectData.components.keySet());
         }
 
-        // register NED types in all projects
+        // collect the toplevel types of each NED file, and register them in all projects that see the file
+        registeredTypes.clear();
+        for (IFile file : nedFiles.keySet()) {
+            Map<INedTypeElement, String> types = collectToplevelTypes(nedFiles.get(file));
+            registeredTypes.put(file, types);
+            for (IProject project : projects.keySet()) {
+                ProjectData projectData = projects.get(project);
+                if (isFileVisibleInProject(file, project, projectData))
+                    addDefinitions(projectData, types);
+            }
+        }
+
+        // build the name tables; names defined more than once go into the duplicates table
         for (IProject project : projects.keySet()) {
             ProjectData projectData = projects.get(project);
+            for (String qualifiedName : projectData.definitions.keySet())
+                updateProjectTables(projectData, qualifiedName);
 
-            // find NED types in each file, and register them
-            for (IFile file : nedFiles.keySet()) {
-                // file must be in this project or a referenced project
-                if (file.getProject().equals(project) || ArrayUtils.contains(projectData.referencedProjects, file.getProject())) {
-
-                    // collect toplevel types from the NED file, and process them one by one
-                    for (INedElement child : nedFiles.get(file)) {
-                        if (child instanceof INedTypeElement) {
-                            INedTypeElement typeElement = (INedTypeElement) child;
-                            Assert.isTrue(typeElement.getResolver() == this);
-                            INedTypeInfo typeInfo = typeElement.getNedTypeInfo();
-                            String qualifiedName = typeInfo.getFullyQualifiedName();
-
-                            if (projectData.reservedNames.contains(qualifiedName)) {
-                                if (!projectData.duplicates.containsKey(qualifiedName))
-                                    projectData.duplicates.put(qualifiedName, new ArrayList<INedTypeElement>());
-                                projectData.duplicates.get(qualifiedName).add(typeElement);
-                            }
-                            else {
-                                // normal case: not duplicate. Add the type info to our tables.
-                                projectData.components.put(qualifiedName, typeInfo);
-                            }
-
-                            // add to the name list even if it was duplicate
-                            projectData.reservedNames.add(qualifiedName);
-                        }
-                    }
+            if (debug)
+                Debug.println("types in project " + project.getName() + ": " + StringUtils.join(projectData.components.keySet(), ", ", " and "));
+        }
+
+        // rebuild the reverse dependency index
+        subtypeIndex.clear();
+        userIndex.clear();
+        indexedTypes.clear();
+        for (IFile file : nedFiles.keySet())
+            indexTypeReferences(file);
+
+        if (debug) {
+            long dt = System.currentTimeMillis() - startMillis;
+            Debug.println("rehash(): " + dt + "ms, " + nedFiles.size() + " files, " + projects.size() + " projects");
+        }
+
+    }
+
+    /**
+     * Updates the project tables after the given NED files have changed (were added,
+     * modified or removed), assuming the tables were up to date otherwise. Returns the
+     * fully qualified names of the types that were added, removed or replaced.
+     * The NedTypeInfo fully qualified names of the types in the changed files must
+     * already be invalidated.
+     */
+    protected Set<String> internalRehash(Collection<IFile> changedFiles) {
+        long startMillis = System.currentTimeMillis();
+
+        Set<String> changedNames = new HashSet<String>();
+        for (IFile file : changedFiles) {
+            Map<INedTypeElement, String> oldTypes = registeredTypes.remove(file);
+            Map<INedTypeElement, String> newTypes = nedFiles.containsKey(file) ? collectToplevelTypes(nedFiles.get(file)) : null;
+            if (newTypes != null)
+                registeredTypes.put(file, newTypes);
+            indexTypeReferences(file);
+
+            // same types under the same names (the typical case when editing): nothing to do
+            if (oldTypes == null ? newTypes == null : oldTypes.equals(newTypes))
+                continue;
+
+            Set<String> names = new HashSet<String>();
+            if (oldTypes != null)
+                names.addAll(oldTypes.values());
+            if (newTypes != null)
+                names.addAll(newTypes.values());
+
+            for (IProject project : projects.keySet()) {
+                ProjectData projectData = projects.get(project);
+                if (isFileVisibleInProject(file, project, projectData)) {
+                    if (oldTypes != null)
+                        removeDefinitions(projectData, oldTypes);
+                    if (newTypes != null)
+                        addDefinitions(projectData, newTypes);
+                    for (String qualifiedName : names)
+                        updateProjectTables(projectData, qualifiedName);
                 }
             }
+            changedNames.addAll(names);
+        }
 
-            // now we should remove all types that were duplicates
-            for (String name : projectData.duplicates.keySet()) {
-                projectData.duplicates.get(name).add(projectData.components.get(name).getNedElement());
-                projectData.components.remove(name);
+        if (debug) {
+            long dt = System.currentTimeMillis() - startMillis;
+            Debug.println("incremental rehash(): " + dt + "ms, " + changedFiles.size() + " changed files, changed types: " + StringUtils.join(changedNames, ", "));
+        }
+        return changedNames;
+    }
+
+    protected static boolean isFileVisibleInProject(IFile file, IProject project, ProjectData projectData) {
+        // file must be in this project or a referenced project
+        return file.getProject().equals(project) || ArrayUtils.contains(projectData.referencedProjects, file.getProject());
+    }
+
+    protected Map<INedTypeElement, String> collectToplevelTypes(NedFileElementEx nedFileElement) {
+        Map<INedTypeElement, String> result = new LinkedHashMap<INedTypeElement, String>();
+        for (INedElement child : nedFileElement) {
+            if (child instanceof INedTypeElement) {
+                INedTypeElement typeElement = (INedTypeElement) child;
+                Assert.isTrue(isCompatibleResolver(typeElement.getResolver()));
+                result.put(typeElement, typeElement.getNedTypeInfo().getFullyQualifiedName());
             }
+        }
+        return result;
+    }
 
-            if (debug)
-                Debug.println("types in project " + project.getName() + ": " + StringUtils.join(projectData.components.keySet(), ", ", " and "));
+    protected static void addDefinitions(ProjectData projectData, Map<INedTypeElement, String> types) {
+        for (Map.Entry<INedTypeElement, String> entry : types.entrySet()) {
+            List<INedTypeElement> list = projectData.definitions.get(entry.getValue());
+            if (list == null)
+                projectData.definitions.put(entry.getValue(), list = new ArrayList<INedTypeElement>());
+            list.add(entry.getKey());
+        }
+    }
 
+    protected static void removeDefinitions(ProjectData projectData, Map<INedTypeElement, String> types) {
+        for (Map.Entry<INedTypeElement, String> entry : types.entrySet()) {
+            List<INedTypeElement> list = projectData.definitions.get(entry.getValue());
+            if (list != null)
+                list.remove(entry.getKey());
         }
+    }
 
-        if (debug) {
-            long dt = System.currentTimeMillis() - startMillis;
-            Debug.println("rehash(): " + dt + "ms, " + nedFiles.size() + " files, " + projects.size() + " projects");
+    /**
+     * Updates the components, duplicates and reservedNames tables for the given
+     * name, from the definitions table.
+     */
+    protected static void updateProjectTables(ProjectData projectData, String qualifiedName) {
+        List<INedTypeElement> list = projectData.definitions.get(qualifiedName);
+        if (list == null || list.isEmpty()) {
+            projectData.definitions.remove(qualifiedName);
+            projectData.components.remove(qualifiedName);
+            projectData.duplicates.remove(qualifiedName);
+            projectData.reservedNames.remove(qualifiedName);
+        }
+        else if (list.size() == 1) {
+            // normal case: not duplicate
+            projectData.components.put(qualifiedName, list.get(0).getNedTypeInfo());
+            projectData.duplicates.remove(qualifiedName);
+            projectData.reservedNames.add(qualifiedName);
+        }
+        else {
+            // duplicate: list the later definitions first, then the first one (a built-in type, if any)
+            List<INedTypeElement> duplicateList = new ArrayList<INedTypeElement>(list.subList(1, list.size()));
+            duplicateList.add(list.get(0));
+            projectData.components.remove(qualifiedName);
+            projectData.duplicates.put(qualifiedName, duplicateList);
+            projectData.reservedNames.add(qualifiedName);
+        }
+    }
+
+    /**
+     * Updates the reverse dependency index (subtypeIndex, userIndex) for the given
+     * file; types that were indexed from the file before are removed first.
+     */
+    protected void indexTypeReferences(IFile file) {
+        Map<INedTypeElement, TypeReferences> oldEntries = indexedTypes.remove(file);
+        if (oldEntries != null) {
+            for (Map.Entry<INedTypeElement, TypeReferences> entry : oldEntries.entrySet()) {
+                removeFromIndex(subtypeIndex, entry.getValue().supertypeNames, entry.getKey());
+                removeFromIndex(userIndex, entry.getValue().usedTypeNames, entry.getKey());
+            }
         }
 
+        NedFileElementEx nedFileElement = nedFiles.get(file);
+        if (nedFileElement != null) {
+            Map<INedTypeElement, TypeReferences> entries = new HashMap<INedTypeElement, TypeReferences>();
+            collectTypeReferences(nedFileElement, entries);
+            for (Map.Entry<INedTypeElement, TypeReferences> entry : entries.entrySet()) {
+                addToIndex(subtypeIndex, entry.getValue().supertypeNames, entry.getKey());
+                addToIndex(userIndex, entry.getValue().usedTypeNames, entry.getKey());
+            }
+            indexedTypes.put(file, entries);
+        }
+    }
+
+    protected static void collectTypeReferences(INedElement parent, Map<INedTypeElement, TypeReferences> result) {
+        for (INedElement child : parent) {
+            if (child instanceof INedTypeElement) {
+                INedTypeElement typeElement = (INedTypeElement)child;
+                TypeReferences references = new TypeReferences();
+                for (INedElement element : typeElement) {
+                    if (element instanceof ExtendsElement)
+                        references.supertypeNames.add(getSimpleName(((ExtendsElement)element).getName()));
+                    else if (element instanceof InterfaceNameElement)
+                        references.supertypeNames.add(getSimpleName(((InterfaceNameElement)element).getName()));
+                }
+                if (typeElement instanceof CompoundModuleElementEx) {
+                    CompoundModuleElementEx compoundModule = (CompoundModuleElementEx)typeElement;
+                    if (compoundModule.getFirstSubmodulesChild() != null)
+                        collectUsedTypeNames(compoundModule.getFirstSubmodulesChild(), references.usedTypeNames);
+                    if (compoundModule.getFirstConnectionsChild() != null)
+                        collectUsedTypeNames(compoundModule.getFirstConnectionsChild(), references.usedTypeNames);
+                    if (compoundModule.getFirstTypesChild() != null)
+                        collectTypeReferences(compoundModule.getFirstTypesChild(), result);
+                }
+                result.put(typeElement, references);
+            }
+        }
+    }
+
+    protected static void collectUsedTypeNames(INedElement parent, Set<String> result) {
+        // note: connections may be nested into connection groups
+        for (INedElement child : parent) {
+            if (child instanceof ISubmoduleOrConnection) {
+                ISubmoduleOrConnection submoduleOrConnection = (ISubmoduleOrConnection)child;
+                if (StringUtils.isNotEmpty(submoduleOrConnection.getType()))
+                    result.add(getSimpleName(submoduleOrConnection.getType()));
+                if (StringUtils.isNotEmpty(submoduleOrConnection.getLikeType()))
+                    result.add(getSimpleName(submoduleOrConnection.getLikeType()));
+            }
+            else
+                collectUsedTypeNames(child, result);
+        }
+    }
+
+    private static void addToIndex(Map<String, Set<INedTypeElement>> index, Set<String> names, INedTypeElement typeElement) {
+        for (String name : names) {
+            Set<INedTypeElement> set = index.get(name);
+            if (set == null)
+                index.put(name, set = new HashSet<INedTypeElement>());
+            set.add(typeElement);
+        }
+    }
+
+    private static void removeFromIndex(Map<String, Set<INedTypeElement>> index, Set<String> names, INedTypeElement typeElement) {
+        for (String name : names) {
+            Set<INedTypeElement> set = index.get(name);
+            if (set != null) {
+                set.remove(typeElement);
+                if (set.isEmpty())
+                    index.remove(name);
+            }
+        }
+    }
+
+    /**
+     * Returns the types whose inherited members or lookups may be affected by a change in
+     * the given types and type names: the types themselves, all types that extend or
+     * implement them (transitively), the types that use any of these as submodule or
+     * channel type and their subtypes (transitively), and the inner types of all of the
+     * above. Types are matched by simple name, so the result may contain a few unaffected
+     * types as well.
+     */
+    protected Set<INedTypeElement> collectAffectedTypes(Collection<INedTypeElement> changedTypes, Collection<String> changedNames) {
+        Set<INedTypeElement> result = new HashSet<INedTypeElement>();
+        Deque<String> queue = new ArrayDeque<String>();
+        for (String name : changedNames)
+            queue.add(getSimpleName(name));
+        for (INedTypeElement typeElement : changedTypes)
+            if (result.add(typeElement))
+                queue.add(typeElement.getName());
+
+        // subtypes and implementors, transitively
+        Set<String> processedNames = new HashSet<String>();
+        collectSubtypes(queue, processedNames, result);
+
+        // users: only one level, as using a type does not make its members part of the user type;
+        // the subtypes of the users inherit the submodules and connections though
+        for (String name : processedNames.toArray(new String[]{}))
+            for (INedTypeElement typeElement : getIndexEntry(userIndex, name))
+                if (result.add(typeElement))
+                    queue.add(typeElement.getName());
+
+        // inner types see the (inherited) inner types of their enclosing type
+        do {
+            collectSubtypes(queue, processedNames, result);
+            for (INedTypeElement typeElement : result.toArray(new INedTypeElement[]{})) {
+                if (typeElement instanceof CompoundModuleElementEx) {
+                    Set<INedTypeElement> innerTypes = new HashSet<INedTypeElement>();
+                    collectInnerTypes((CompoundModuleElementEx)typeElement, innerTypes);
+                    for (INedTypeElement innerType : innerTypes)
+                        if (result.add(innerType))
+                            queue.add(innerType.getName());
+                }
+            }
+        } while (!queue.isEmpty());
+
+        return result;
+    }
+
+    private void collectSubtypes(Deque<String> queue, Set<String> processedNames, Set<INedTypeElement> result) {
+        while (!queue.isEmpty()) {
+            String name = queue.poll();
+            if (processedNames.add(name))
+                for (INedTypeElement typeElement : getIndexEntry(subtypeIndex, name))
+                    if (result.add(typeElement))
+                        queue.add(typeElement.getName());
+        }
+    }
+
+    private static Set<INedTypeElement> getIndexEntry(Map<String, Set<INedTypeElement>> index, String name) {
+        Set<INedTypeElement> set = index.get(name);
+        return set == null ? Collections.<INedTypeElement>emptySet() : set;
+    }
+
+    protected static void collectInnerTypes(CompoundModuleElementEx compoundModule, Set<INedTypeElement> result) {
+        INedElement typesSection = compoundModule.getFirstTypesChild();
+        if (typesSection != null) {
+            for (INedElement child : typesSection) {
+                if (child instanceof INedTypeElement) {
+                    result.add((INedTypeElement)child);
+                    if (child instanceof CompoundModuleElementEx)
+                        collectInnerTypes((CompoundModuleElementEx)child, result);
+                }
+            }
+        }
+    }
+
+    /**
+     * Collects the types (toplevel and inner) in the given NED file.
+     */
+    protected static void collectAllTypes(INedElement parent, Collection<INedTypeElement> result) {
+        for (INedElement child : parent) {
+            if (child instanceof INedTypeElement) {
+                result.add((INedTypeElement)child);
+                if (child instanceof CompoundModuleElementEx) {
+                    INedElement typesSection = ((CompoundModuleElementEx)child).getFirstTypesChild();
+                    if (typesSection != null)
+                        collectAllTypes(typesSection, result);
+                }
+            }
+        }
+    }
+
+    protected static String getSimpleName(String typeName) {
+        return typeName.substring(typeName.lastIndexOf('.') + 1);
+    }
+
+    /**
+     * Removes the cached lookups done in the given context.
+     */
+    protected void removeCachedLookups(INedTypeLookupContext lookupContext) {
+        Map<String, INedTypeInfo> map = nedTypeLookupCache.remove(lookupContext);
+        if (map != null) {
+            for (String name : map.keySet()) {
+                Set<INedTypeLookupContext> contexts = nedTypeLookupCacheIndex.get(getSimpleName(name));
+                if (contexts != null)
+                    contexts.remove(lookupContext);
+            }
+        }
+    }
+
+    /**
+     * Removes the cached lookups of the given type name (simple name, or fully
+     * qualified name with the given simple name) from all contexts.
+     */
+    protected void removeCachedLookups(String simpleName) {
+        Set<INedTypeLookupContext> contexts = nedTypeLookupCacheIndex.remove(simpleName);
+        if (contexts != null) {
+            for (INedTypeLookupContext lookupContext : contexts) {
+                Map<String, INedTypeInfo> map = nedTypeLookupCache.get(lookupContext);
+                if (map != null)
+                    map.keySet().removeIf(name -> getSimpleName(name).equals(simpleName));
+            }
+        }
+    }
+
+    protected void clearCachedLookups() {
+        nedTypeLookupCache.clear();
+        nedTypeLookupCacheIndex.clear();
+        nedLikeTypeLookupCache.clear();
     }
 
     /**
@@ -203,7 +553,7 @@ public class NedTypeResolver implements INedTypeResolver {
     }
 
     public boolean isBuiltInDeclaration(INedTypeInfo typeInfo) {
-        Assert.isTrue(typeInfo.getResolver() == this, "cannot use another resolver for lookups than the one that created the element");
+        Assert.isTrue(isCompatibleResolver(typeInfo.getResolver()), "cannot use another resolver for lookups than the one that created the element");
         return typeInfo.getNedElement().getContainingNedFileElement() == builtInDeclarationsFile;
     }
 
@@ -248,7 +598,7 @@ public class NedTypeResolver implements INedTypeResolver {
     }
 
     public synchronized IFile getNedFile(NedFileElementEx nedFileElement) {
-        Assert.isTrue(nedFileElement.getResolver() == this, "cannot use another resolver for lookups than the one that created the element");
+        Assert.isTrue(isCompatibleResolver(nedFileElement.getResolver()), "cannot use another resolver for lookups than the one that created the element");
         Assert.isTrue(nedElementFiles.containsKey(nedFileElement) || nedFileElement==builtInDeclarationsFile, "NedFileElement is not in the resolver");
         return nedElementFiles.get(nedFileElement);
     }
@@ -351,7 +701,7 @@ public class NedTypeResolver implements INedTypeResolver {
     }
 
     public synchronized Collection<INedTypeInfo> getToplevelNedTypesThatImplement(INedTypeInfo interfaceType, IProject context) {
-        Assert.isTrue(interfaceType.getResolver() == this, "cannot use another resolver for lookups than the one that created the element");
+        Assert.isTrue(isCompatibleResolver(interfaceType.getResolver()), "cannot use another resolver for lookups than the one that created the element");
         Collection<INedTypeInfo> result = new ArrayList<INedTypeInfo>();
         for (INedTypeInfo type : getToplevelNedTypesInternal(context))
             if (type.getInterfaces().contains(interfaceType.getNedElement()))
@@ -487,7 +837,9 @@ public class NedTypeResolver implements INedTypeResolver {
     }
 
     public synchronized INedTypeInfo lookupNedType(String name, INedTypeLookupContext lookupContext) {
-        Assert.isTrue(lookupContext.getResolver() == this, "cannot use another resolver for lookups than the one that created the element");
+        Assert.isTrue(isCompatibleResolver(lookupContext.getResolver()), "cannot use another resolver for lookups than the one that created the element");
+        // the cache is only cleaned up by the rehash (changed types are not dropped from it right away)
+        rehashIfNeeded();
         // return cached value if exists, otherwise call doLookupNedType()
         Map<String, INedTypeInfo> map = nedTypeLookupCache.get(lookupContext);
         if (map == null)
@@ -495,8 +847,14 @@ public class NedTypeResolver implements INedTypeResolver {
         INedTypeInfo typeInfo = map.get(name);
         // note: we need to distinguish between "null" meaning "not yet looked up", and
         // "looked up but no such type" (represented as: no such key vs value is null)
-        if (typeInfo == null && !map.containsKey(name))
+        if (typeInfo == null && !map.containsKey(name)) {
             map.put(name, typeInfo = doLookupNedType(name, lookupContext));
+            String simpleName = getSimpleName(name);
+            Set<INedTypeLookupContext> contexts = nedTypeLookupCacheIndex.get(simpleName);
+            if (contexts == null)
+                nedTypeLookupCacheIndex.put(simpleName, contexts = new HashSet<INedTypeLookupContext>());
+            contexts.add(lookupContext);
+        }
         return typeInfo;
     }
 
@@ -579,7 +937,8 @@ public class NedTypeResolver implements INedTypeResolver {
     }
 
     public INedTypeInfo lookupLikeType(String name, INedTypeInfo interfaceType, IProject context) {
-        Assert.isTrue(interfaceType.getResolver() == this, "cannot use another resolver for lookups than the one that created the element");
+        Assert.isTrue(isCompatibleResolver(interfaceType.getResolver()), "cannot use another resolver for lookups than the one that created the element");
+        rehashIfNeeded();
         // return cached value if exists, otherwise call doLookupLikeType()
         Map<INedTypeInfo, Map<String, INedTypeInfo>> map = nedLikeTypeLookupCache.get(context);
         if (map == null)
@@ -615,7 +974,7 @@ public class NedTypeResolver implements INedTypeResolver {
     }
 
     public synchronized Set<String> getLocalTypeNames(INedTypeLookupContext lookupContext, IPredicate predicate) {
-        Assert.isTrue(lookupContext.getResolver() == this, "cannot use another resolver for lookups than the one that created the element");
+        Assert.isTrue(isCompatibleResolver(lookupContext.getResolver()), "cannot use another resolver for lookups than the one that created the element");
         Set<String> result = new HashSet<String>();
         if (lookupContext instanceof NedFileElement) {
             List<INedTypeElement> topLevelTypeNodes = lookupContext.getContainingNedFileElement().getTopLevelTypeNodes();
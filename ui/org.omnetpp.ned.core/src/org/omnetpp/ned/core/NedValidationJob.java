@@ -1,6 +1,21 @@
 package org.omnetpp.ned.core;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
 import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
@@ -8,19 +23,79 @@ import org.eclipse.core.runtime.jobs.Job;
 import org.omnetpp.common.Debug;
 import org.omnetpp.common.markers.ProblemMarkerSynchronizer;
 import org.omnetpp.ned.model.INedElement;
+import org.omnetpp.ned.model.ex.CompoundModuleElementEx;
+import org.omnetpp.ned.model.ex.NedElementUtilEx;
 import org.omnetpp.ned.model.ex.NedFileElementEx;
+import org.omnetpp.ned.model.ex.SubmoduleElementEx;
+import org.omnetpp.ned.model.interfaces.INedTypeElement;
+import org.omnetpp.ned.model.interfaces.INedTypeInfo;
 import org.omnetpp.ned.model.interfaces.INedTypeResolver;
+import org.omnetpp.ned.model.pojo.ImportElement;
 
 
 /**
  * Validates all NED files for consistency (no such parameter/gate/module-type, redeclarations,
  * duplicate types, cycles in the inheritance chain, etc). All consistency problem markers
  * (NEDCONSISTENCYPROBLEM_MARKERID) are managed within this job.
+ *
+ * Only files that may be affected by the changes since the last validation are validated
+ * again; the problems found in the other files are reused. Immutable copies of NedResources
+ * share the trees of the files that cannot see the changed types, so a file needs to be
+ * validated if its tree is not the one validated last time, or if it has an import that
+ * matches a type that was added or removed. Files are validated in parallel.
  */
 public class NedValidationJob extends Job {
     private boolean validateOpenNedFilesOnly = false; //TODO such preference might be useful for netbooks
     private int retryCount = 0;
 
+    // results of the last completed validation
+    private Map<IFile, FileResult> fileResults = new HashMap<IFile, FileResult>();
+    private Map<IProject, Set<String>> validatedTypeNames = new HashMap<IProject, Set<String>>();
+
+    private static class Problem {
+        final int severity;
+        final INedElement context;
+        final int line;
+        final String message;
+
+        Problem(int severity, INedElement context, int line, String message) {
+            this.severity = severity;
+            this.context = context;
+            this.line = line;
+            this.message = message;
+        }
+    }
+
+    private static class FileResult {
+        final NedFileElementEx nedFileElement; // the tree that was validated (in an immutable copy)
+        final List<Problem> problems;
+        final Set<INedElement> affectedElements;
+
+        FileResult(NedFileElementEx nedFileElement, List<Problem> problems, Set<INedElement> affectedElements) {
+            this.nedFileElement = nedFileElement;
+            this.problems = problems;
+            this.affectedElements = affectedElements;
+        }
+    }
+
+    /**
+     * Error store that also remembers the problems, so that they can be reported
+     * again without validating the file.
+     */
+    private static class RecordingErrorStore extends NedMarkerErrorStore {
+        private List<Problem> problems = new ArrayList<Problem>();
+
+        public RecordingErrorStore(ProblemMarkerSynchronizer markerSync) {
+            super(markerSync);
+        }
+
+        @Override
+        public void add(int severity, INedElement context, int line, String message) {
+            super.add(severity, context, line, message);
+            problems.add(new Problem(severity, context, line, message));
+        }
+    }
+
     public NedValidationJob() {
         super("Checking NED files...");
     }
@@ -55,7 +130,7 @@ public class NedValidationJob extends Job {
 
         INedResources nedResources = NedResourcesPlugin.getNedResources();
 
-        int numWorkUnits = 3 + nedResources.getNedFiles().size();
+        int numWorkUnits = 4 + nedResources.getNedFiles().size();
         monitor.beginTask(getName(), numWorkUnits);
 
         // we'll analyze an immutable copy, so that NedResources doesn't need to be locked
@@ -72,21 +147,55 @@ public class NedValidationJob extends Job {
         immutableResolver.addErrorsForDuplicates(errorStore);
         monitor.worked(1);
 
-        // validate all files
+        // find out which files need to be validated; report the problems of the others again
+        Map<IProject, Set<String>> typeNames = new HashMap<IProject, Set<String>>();
+        Map<IProject, Set<String>> changedTypeNames = new HashMap<IProject, Set<String>>();
         for (IFile file : immutableResolver.getNedFiles()) {
-            NedFileElementEx nedFileElement = immutableResolver.getNedFileElement(file);
-            errorStore.setFile(file);
-            new NedValidator(immutableResolver, file.getProject(), errorStore).validate(nedFileElement);
-            monitor.worked(1);
+            IProject project = file.getProject();
+            if (!typeNames.containsKey(project)) {
+                Set<String> names = immutableResolver.getToplevelNedTypeQNames(project);
+                Set<String> oldNames = validatedTypeNames.get(project);
+                Set<String> changedNames = new HashSet<String>();
+                if (oldNames != null) {
+                    for (String name : names)
+                        if (!oldNames.contains(name))
+                            changedNames.add(name);
+                    for (String name : oldNames)
+                        if (!names.contains(name))
+                            changedNames.add(name);
+                }
+                typeNames.put(project, names);
+                changedTypeNames.put(project, changedNames);
+            }
+        }
 
-            if (!nedResources.isImmutableCopyUpToDate(immutableResolver)) {
-                Debug.println("NED validation job: NED trees changed meanwhile, abandoning after " + (System.currentTimeMillis()-startTime) + "ms of work");
-                return false;
+        Map<IFile, FileResult> newFileResults = new HashMap<IFile, FileResult>();
+        List<IFile> filesToValidate = new ArrayList<IFile>();
+        for (IFile file : immutableResolver.getNedFiles()) {
+            NedFileElementEx nedFileElement = immutableResolver.getNedFileElement(file);
+            FileResult result = fileResults.get(file);
+            if (result == null || result.nedFileElement != nedFileElement || importsAnyOf(nedFileElement, changedTypeNames.get(file.getProject())))
+                filesToValidate.add(file);
+            else {
+                errorStore.setFile(file);
+                for (Problem problem : result.problems)
+                    errorStore.add(problem.severity, problem.context, problem.line, problem.message);
+                newFileResults.put(file, result);
+                monitor.worked(1);
             }
-            if (monitor.isCanceled()) {
+        }
+
+        // type information is computed lazily and is not thread-safe, so fill it in before going parallel
+        computeTypeInfo(immutableResolver);
+        monitor.worked(1);
+
+        // validate files in parallel, each with its own error store
+        if (!validateFiles(filesToValidate, immutableResolver, markerSync, newFileResults, nedResources, monitor)) {
+            if (monitor.isCanceled())
                 Debug.println("NED validation job: cancelled after " + (System.currentTimeMillis()-startTime) + "ms of work");
-                return false;
-            }
+            else
+                Debug.println("NED validation job: NED trees changed meanwhile, abandoning after " + (System.currentTimeMillis()-startTime) + "ms of work");
+            return false;
         }
 
         // lock NedResources while we copy marker severities onto NED trees in it
@@ -104,7 +213,10 @@ public class NedValidationJob extends Job {
                 clearConsistencyProblemSeverities(nedResources);
 
                 // put validation errors
-                for (INedElement element : errorStore.getAffectedElements()) {
+                Set<INedElement> affectedElements = new HashSet<INedElement>(errorStore.getAffectedElements());
+                for (IFile file : filesToValidate)
+                    affectedElements.addAll(newFileResults.get(file).affectedElements);
+                for (INedElement element : affectedElements) {
                     INedElement original = element.getOriginal();
                     original.setConsistencyProblemMaxLocalSeverity(element.getConsistencyProblemMaxLocalSeverity());
                 }
@@ -112,7 +224,11 @@ public class NedValidationJob extends Job {
                 // we need to do the synchronization in a background job, to avoid deadlocks
                 markerSync.runAsWorkspaceJob();
 
-                Debug.println("NED validation job completed: spent " + (midTime-startTime) + "ms in background, " + (System.currentTimeMillis()-midTime) + "ms blocking, " + markerSync.getNumberOfMarkers() + " markers on " + markerSync.getNumberOfFiles() + " files");
+                fileResults = newFileResults;
+                validatedTypeNames = typeNames;
+
+                Debug.println("NED validation job completed: validated " + filesToValidate.size() + " of " + newFileResults.size() + " files, " +
+                        "spent " + (midTime-startTime) + "ms in background, " + (System.currentTimeMillis()-midTime) + "ms blocking, " + markerSync.getNumberOfMarkers() + " markers on " + markerSync.getNumberOfFiles() + " files");
                 monitor.worked(1);
 
                 return true;
@@ -123,6 +239,110 @@ public class NedValidationJob extends Job {
         }
     }
 
+    /**
+     * Validates the given files using a thread pool, and stores their results. Returns false
+     * if validation was stopped because it was cancelled or the immutable copy became obsolete.
+     */
+    private boolean validateFiles(List<IFile> files, INedTypeResolver immutableResolver, ProblemMarkerSynchronizer markerSync,
+            Map<IFile, FileResult> results, INedResources nedResources, IProgressMonitor monitor) {
+        if (files.isEmpty())
+            return true;
+
+        int numThreads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), files.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        CompletionService<FileResult> completionService = new ExecutorCompletionService<FileResult>(executor);
+        List<Future<FileResult>> futures = new ArrayList<Future<FileResult>>();
+
+        try {
+            for (final IFile file : files) {
+                futures.add(completionService.submit(() -> {
+                    NedFileElementEx nedFileElement = immutableResolver.getNedFileElement(file);
+                    RecordingErrorStore fileErrorStore = new RecordingErrorStore(markerSync);
+                    fileErrorStore.setFile(file);
+                    new NedValidator(immutableResolver, file.getProject(), fileErrorStore).validate(nedFileElement);
+                    return new FileResult(nedFileElement, fileErrorStore.problems, fileErrorStore.getAffectedElements());
+                }));
+            }
+
+            for (int numCompleted = 0; numCompleted < files.size(); ) {
+                if (monitor.isCanceled() || !nedResources.isImmutableCopyUpToDate(immutableResolver))
+                    return false;
+                Future<FileResult> future = completionService.poll(100, TimeUnit.MILLISECONDS);
+                if (future != null) {
+                    future.get(); // rethrow failure
+                    numCompleted++;
+                    monitor.worked(1);
+                }
+            }
+
+            for (int i = 0; i < files.size(); i++)
+                results.put(files.get(i), futures.get(i).get());
+            return true;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException)e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error)e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+        finally {
+            for (Future<FileResult> future : futures)
+                future.cancel(false);
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Fills in the lazily computed type information of all types, so that the
+     * validators can read it concurrently.
+     */
+    private static void computeTypeInfo(INedTypeResolver resolver) {
+        List<INedTypeElement> types = new ArrayList<INedTypeElement>();
+        for (INedTypeInfo typeInfo : resolver.getBuiltInDeclarations())
+            types.add(typeInfo.getNedElement());
+        for (IFile file : resolver.getNedFiles())
+            NedTypeResolver.collectAllTypes(resolver.getNedFileElement(file), types);
+
+        for (INedTypeElement typeElement : types) {
+            INedTypeInfo typeInfo = typeElement.getNedTypeInfo();
+            typeInfo.getFullyQualifiedName();
+            typeInfo.getInheritanceChain();
+            typeInfo.getInterfaces();
+            typeInfo.getUsedTypes();
+            if (typeElement instanceof CompoundModuleElementEx) {
+                ((CompoundModuleElementEx)typeElement).getSrcConnectionsFor("");
+                for (SubmoduleElementEx submodule : typeInfo.getLocalSubmodules().values())
+                    submodule.getNedTypeInfo();
+            }
+        }
+    }
+
+    private static boolean importsAnyOf(NedFileElementEx nedFileElement, Set<String> qualifiedNames) {
+        if (qualifiedNames == null || qualifiedNames.isEmpty())
+            return false;
+        for (INedElement child : nedFileElement) {
+            if (child instanceof ImportElement) {
+                String importSpec = ((ImportElement)child).getImportSpec();
+                if (!importSpec.contains("*")) {
+                    if (qualifiedNames.contains(importSpec))
+                        return true;
+                }
+                else {
+                    String regex = NedElementUtilEx.importToRegex(importSpec);
+                    for (String qualifiedName : qualifiedNames)
+                        if (qualifiedName.matches(regex))
+                            return true;
+                }
+            }
+        }
+        return false;
+    }
+
     private void clearConsistencyProblemSeverities(INedTypeResolver resolver) {
         for (IFile file : resolver.getNedFiles())
             resolver.getNedFileElement(file).clearConsistencyProblemMarkerSeverities();
@@ -6,6 +6,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Stack;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.core.resources.IProject;
 import org.omnetpp.common.engine.Common;
@@ -29,7 +30,7 @@ public class ParamUtil {
         public boolean keyEqualsGeneralizedKey;  // if key.equals(generalizedKey)
         public PatternMatcher matcher;  // pattern is generalizedKey
     }
-    private static Map<String,KeyMatcher> keyMatcherCache = new HashMap<String, KeyMatcher>();
+    private static Map<String,KeyMatcher> keyMatcherCache = new ConcurrentHashMap<String, KeyMatcher>(); // may be used from several threads
 
     public static KeyMatcher getOrCreateKeyMatcher(String key) {
         KeyMatcher keyMatcher = keyMatcherCache.get(key);
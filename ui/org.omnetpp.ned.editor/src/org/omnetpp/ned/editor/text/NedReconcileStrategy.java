@@ -43,7 +43,9 @@ public class NedReconcileStrategy implements IReconcilingStrategy {
 
     public void reconcile(DirtyRegion dirtyRegion, IRegion subRegion) {
         // this method is not called, because reconciler is configured
-        // to be a non-incremental reconciler in NedSourceViewerConfiguration
+        // to be a non-incremental reconciler in NedSourceViewerConfiguration;
+        // NedResources.setNedFileText() finds the edited region itself, by
+        // comparing the text with the one it last received
         throw new IllegalStateException();
     }
 
@@ -106,6 +106,13 @@ public class NedTreeUtil {
         return result;
     }
 
+    // The native (bison/flex based) parsers keep their state in global variables,
+    // and ASTNode creation/deletion updates static counters, so everything that
+    // creates, modifies or deletes native trees must be done under this lock.
+    // Converting the native tree to Java objects (the bulk of the work) may run
+    // concurrently.
+    private static final Object nativeParserLock = new Object();
+
     /**
      * Load and parse NED file to a NedElement tree. Returns a non-null,
      * DTD-conforming (but possibly incomplete) tree even in case of parse errors.
@@ -113,8 +120,10 @@ public class NedTreeUtil {
      * and source location attributes. Callers should check ErrorStore to determine
      * whether a parse error occurred. All errors produced here will be syntax errors
      * (see NEDSYNTAXPROBLEM_MARKERID).
+     *
+     * This method may be called from several threads concurrently.
      */
-    public static synchronized NedFileElementEx parseNedFile(String filesystemFilename, INedErrorStore errors, String displayFilename, INedTypeResolver resolver) {
+    public static NedFileElementEx parseNedFile(String filesystemFilename, INedErrorStore errors, String displayFilename, INedTypeResolver resolver) {
         return doParseNedSource(null, filesystemFilename, errors, displayFilename, resolver);
     }
 
@@ -125,50 +134,54 @@ public class NedTreeUtil {
      * and source location attributes. Callers should check INedErrorStore to determine
      * whether a parse error occurred. All errors produced here will be syntax errors
      * (see NEDSYNTAXPROBLEM_MARKERID).
+     *
+     * This method may be called from several threads concurrently.
      */
-    public static synchronized NedFileElementEx parseNedText(String source, INedErrorStore errors, String displayFilename, INedTypeResolver resolver) {
+    public static NedFileElementEx parseNedText(String source, INedErrorStore errors, String displayFilename, INedTypeResolver resolver) {
         return doParseNedSource(source, null, errors, displayFilename, resolver);
     }
 
-    private static synchronized NedFileElementEx doParseNedSource(String source, String filesystemFilename, INedErrorStore errors, String displayFilename, INedTypeResolver resolver) {
+    private static NedFileElementEx doParseNedSource(String source, String filesystemFilename, INedErrorStore errors, String displayFilename, INedTypeResolver resolver) {
         Assert.isTrue(displayFilename != null);
         ASTNode swigTree = null;
         try {
             // Debug.println("Parsing NED file started: " + filesystemFilename);
-            // parse
             ErrorStore swigErrors = new ErrorStore();
-            NedParser np = new NedParser(swigErrors);
-            swigTree = source!=null ? np.parseNedText(source, displayFilename) : np.parseNedFile(filesystemFilename, displayFilename);
-            if (swigTree == null) {
-                // return an empty NedFileElement if parsing totally failed
-                NedFileElementEx fileNode = (NedFileElementEx)NedElementFactoryEx.getInstance().createElement(resolver, NedElementTags.NED_NED_FILE, null);
-                fileNode.setFilename(displayFilename);
-                copyGlobalErrors(swigErrors, fileNode, errors); // piggyback errors which came without context node onto the tree root
-                return fileNode;
-            }
-
-            if (!swigErrors.empty()) {
-                // There were parse errors, and the tree built may not be entirely correct.
-                // Typical problems are "mandatory attribute missing" especially with connections,
-                // due to parse errors before filling in the connection element was completed.
-                // Here we try to check and repair the tree by discarding elements that cause
-                // DTD validation error.
-                NedTools.repairNedAST(swigTree);
+            synchronized (nativeParserLock) {
+                // parse
+                NedParser np = new NedParser(swigErrors);
+                swigTree = source!=null ? np.parseNedText(source, displayFilename) : np.parseNedFile(filesystemFilename, displayFilename);
+                if (swigTree == null) {
+                    // return an empty NedFileElement if parsing totally failed
+                    NedFileElementEx fileNode = (NedFileElementEx)NedElementFactoryEx.getInstance().createElement(resolver, NedElementTags.NED_NED_FILE, null);
+                    fileNode.setFilename(displayFilename);
+                    copyGlobalErrors(swigErrors, fileNode, errors); // piggyback errors which came without context node onto the tree root
+                    return fileNode;
+                }
+
+                if (!swigErrors.empty()) {
+                    // There were parse errors, and the tree built may not be entirely correct.
+                    // Typical problems are "mandatory attribute missing" especially with connections,
+                    // due to parse errors before filling in the connection element was completed.
+                    // Here we try to check and repair the tree by discarding elements that cause
+                    // DTD validation error.
+                    NedTools.repairNedAST(swigTree);
+                }
+
+                // run DTD validation (once again)
+                int numMessages = swigErrors.numMessages();
+                NedDtdValidator dtdvalidator = new NedDtdValidator(swigErrors);
+                dtdvalidator.validate(swigTree);
+                dumpSwigErrors(swigErrors); //XXX remove -- debugging only
+
+                Assert.isTrue(swigErrors.numMessages() == numMessages, "NED tree fails DTD validation, even after repairs");
+
+                // additional syntax-related validation
+                NedSyntaxValidator syntaxValidator = new NedSyntaxValidator(swigErrors);
+                syntaxValidator.validate(swigTree);
             }
 
-            // run DTD validation (once again)
-            int numMessages = swigErrors.numMessages();
-            NedDtdValidator dtdvalidator = new NedDtdValidator(swigErrors);
-            dtdvalidator.validate(swigTree);
-            dumpSwigErrors(swigErrors); //XXX remove -- debugging only
-
-            Assert.isTrue(swigErrors.numMessages() == numMessages, "NED tree fails DTD validation, even after repairs");
-
-            // additional syntax-related validation
-            NedSyntaxValidator syntaxValidator = new NedSyntaxValidator(swigErrors);
-            syntaxValidator.validate(swigTree);
-
-            // convert tree to pure Java objects
+            // convert tree to pure Java objects (only reads the native tree, so no locking needed)
             INedElement pojoTree = swig2pojo(swigTree, null, swigErrors, errors, resolver);
             Assert.isTrue(swigErrors.numMessages() == errors.getNumProblems(), "problems lost in translation");
 
@@ -178,49 +191,57 @@ public class NedTreeUtil {
         }
         finally {
             if (swigTree != null)
-                swigTree.delete();
+                synchronized (nativeParserLock) {
+                    swigTree.delete();
+                }
 
             // Debug.println("Parsing NED file finished: " + filesystemFilename);
         }
     }
 
-    public static synchronized MsgFileElementEx parseMsgSource(String source, INedErrorStore errors, String filename) {
+    /**
+     * Parse the MSG source and return it as a NedElement tree. May be called
+     * from several threads concurrently.
+     */
+    public static MsgFileElementEx parseMsgSource(String source, INedErrorStore errors, String filename) {
         Assert.isTrue(filename != null);
         ASTNode swigTree = null;
         try {
             // Debug.println("Parsing MSG file started: " + filename);
-            // parse
             ErrorStore swigErrors = new ErrorStore();
-            MsgParser np = new MsgParser(swigErrors);
-            np.setMsgNewSyntaxFlag(true); //TODO configurable?
-            swigTree = source!=null ? np.parseMsgText(source, filename) : np.parseMsgFile(filename);
-            if (swigTree == null) {
-                // return an empty MsgFileElement if parsing totally failed
-                MsgFileElementEx fileNode = (MsgFileElementEx)NedElementFactoryEx.getInstance().createElement(NedElementTags.NED_MSG_FILE, null);
-                fileNode.setFilename(filename);
-                copyGlobalErrors(swigErrors, fileNode, errors); // piggyback errors which came without context node onto the tree root
-                return fileNode;
-            }
-
-            // set the file name property in the nedFileElement
-            if (swigTree.getTagCode() == MsgTagCode.MSG_MSG_FILE.swigValue())
-                swigTree.setAttribute("filename", filename);
-
-            if (!swigErrors.empty()) {
-                // There were parse errors, and the tree built may not be entirely correct.
-                // Typical problems are "mandatory attribute missing".
-                // Here we try to check and repair the tree by discarding elements that cause
-                // DTD validation error.
-                NedTools.repairMsgAST(swigTree);
+            synchronized (nativeParserLock) {
+                // parse
+                MsgParser np = new MsgParser(swigErrors);
+                np.setMsgNewSyntaxFlag(true); //TODO configurable?
+                swigTree = source!=null ? np.parseMsgText(source, filename) : np.parseMsgFile(filename);
+                if (swigTree == null) {
+                    // return an empty MsgFileElement if parsing totally failed
+                    MsgFileElementEx fileNode = (MsgFileElementEx)NedElementFactoryEx.getInstance().createElement(NedElementTags.NED_MSG_FILE, null);
+                    fileNode.setFilename(filename);
+                    copyGlobalErrors(swigErrors, fileNode, errors); // piggyback errors which came without context node onto the tree root
+                    return fileNode;
+                }
+
+                // set the file name property in the nedFileElement
+                if (swigTree.getTagCode() == MsgTagCode.MSG_MSG_FILE.swigValue())
+                    swigTree.setAttribute("filename", filename);
+
+                if (!swigErrors.empty()) {
+                    // There were parse errors, and the tree built may not be entirely correct.
+                    // Typical problems are "mandatory attribute missing".
+                    // Here we try to check and repair the tree by discarding elements that cause
+                    // DTD validation error.
+                    NedTools.repairMsgAST(swigTree);
+                }
+
+                // run DTD validation (once again)
+                int numMessages = swigErrors.numMessages();
+                MsgDtdValidator dtdvalidator = new MsgDtdValidator(swigErrors);
+                dtdvalidator.validate(swigTree);
+                dumpSwigErrors(swigErrors); //XXX remove -- debugging only
+                Assert.isTrue(swigErrors.numMessages() == numMessages, "MSG tree fails DTD validation, even after repairs");
             }
 
-            // run DTD validation (once again)
-            int numMessages = swigErrors.numMessages();
-            MsgDtdValidator dtdvalidator = new MsgDtdValidator(swigErrors);
-            dtdvalidator.validate(swigTree);
-            dumpSwigErrors(swigErrors); //XXX remove -- debugging only
-            Assert.isTrue(swigErrors.numMessages() == numMessages, "MSG tree fails DTD validation, even after repairs");
-
             // convert tree to pure Java objects
             INedElement pojoTree = swig2pojo(swigTree, null, swigErrors, errors, null);
             Assert.isTrue(swigErrors.numMessages() == errors.getNumProblems(), "problems lost in translation");
@@ -231,7 +252,9 @@ public class NedTreeUtil {
         }
         finally {
             if (swigTree != null)
-                swigTree.delete();
+                synchronized (nativeParserLock) {
+                    swigTree.delete();
+                }
 
             // Debug.println("Parsing MSG file finished: " + filename);
         }
@@ -368,8 +391,10 @@ public class NedTreeUtil {
     public static boolean isExpressionValid(String expression) {
         Assert.isTrue(expression != null);
         ErrorStore errors = new ErrorStore();
-        NedParser np = new NedParser(errors);
-        return np.isValidNedExpression(expression);
+        synchronized (nativeParserLock) {
+            NedParser np = new NedParser(errors);
+            return np.isValidNedExpression(expression);
+        }
     }
 
     /**
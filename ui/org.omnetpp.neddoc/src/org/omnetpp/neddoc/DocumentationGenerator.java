@@ -13,18 +13,30 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
 import java.util.Stack;
 import java.util.TreeMap;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -48,6 +60,7 @@ import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.draw2d.IFigure;
@@ -137,6 +150,11 @@ import org.w3c.dom.NodeList;
  * its state to the user. The whole process might take several minutes for
  * large projects such as the INET framework.
  *
+ * Generation is incremental: a digest of everything that goes into a type page
+ * (the type's source and comment, and those of related types) is stored in the
+ * output folder, and pages and diagrams of unchanged types are kept. Doxygen and
+ * the dot invocations run in the background, in parallel with the rest.
+ *
  * The generated documentation consists of the following things:
  *  - doxygen documentation (several different kind of pages)
  *  - one page for each NED and MSG file showing its content and a list of declared types
@@ -221,6 +239,18 @@ public class DocumentationGenerator {
     protected IRenderer renderer;
     protected NeddocExtensions neddocExtensions;
 
+    // incremental generation
+    protected static final String DIGESTS_FILE_NAME = ".neddoc-digests";
+    protected Properties previousDigests = new Properties();
+    protected Properties currentDigests = new Properties();
+    protected Set<ITypeElement> changedTypes = new HashSet<ITypeElement>();
+    protected Map<ITypeElement, String> ownDigestCache = new HashMap<ITypeElement, String>();
+
+    // doxygen and dot run in the background; type figure image maps are computed in one go in the UI thread
+    protected ExecutorService executor;
+    protected List<Future<?>> dotTasks = new ArrayList<Future<?>>();
+    protected Map<INedTypeElement, String> typeImageMaps = new HashMap<INedTypeElement, String>();
+
     static Image createImage(String base64Data) {
         return new Image(Display.getDefault(), new ImageData(new ByteArrayInputStream(Base64.decode(base64Data.getBytes()))));
     }
@@ -338,14 +368,19 @@ public class DocumentationGenerator {
             DocumentationGenerator.this.monitor = monitor;
             renderer = new HtmlRenderer(documentationRootPath.append(rootRelativeNeddocPath));
 
-            ensureEmptyNeddoc();
+            executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+
+            Future<?> doxyTask = startDoxy();
             collectCaches();
-            generateDoxy();
+            computeTypeDigests();
+            ensureEmptyNeddoc();
+            generateNedTypeFigures();
+            waitForDoxy(doxyTask);
             collectDoxyMap();
+            checkDoxyMapDigest();
             renderer.copyStaticResources(customCssPath);
             generateNavTreeData();
             generateNavTreeIndex();
-            generateNedTypeFigures();
             generatePackagesPage();
             if (generateFileListings)
                 generateFilePages();
@@ -354,6 +389,8 @@ public class DocumentationGenerator {
             generateNedTagFile();
             if (generateMsgDefinitions)
                 generateMsgTagFile();
+            waitForDotTasks();
+            saveDigests();
 
             return Status.OK_STATUS;
         }
@@ -377,6 +414,11 @@ public class DocumentationGenerator {
             return NeddocPlugin.getErrorStatus("Internal error during generating NED documentation", e);
         }
         finally {
+            if (executor != null) {
+                executor.shutdownNow();
+                executor = null;
+            }
+            dotTasks.clear();
             if (verboseMode)
                 System.out.println("");
             try {
@@ -400,6 +442,7 @@ public class DocumentationGenerator {
             neddocFile.mkdirs();
 
         File[] files = neddocFile.listFiles();
+        Set<File> keptFiles = getOutputFilesOfUnchangedTypes();
 
         if (files != null) {
             try {
@@ -408,7 +451,8 @@ public class DocumentationGenerator {
                 if (files != null) {
                     for (File file : files) {
                         monitor.subTask(file.toString());
-                        file.delete();
+                        if (!keptFiles.contains(file))
+                            file.delete();
                         monitor.worked(1);
                     }
                 }
@@ -430,6 +474,165 @@ public class DocumentationGenerator {
         }
     }
 
+    /**
+     * Determines which type pages need to be regenerated, by comparing digests of
+     * their inputs with the ones saved by the previous run.
+     */
+    protected void computeTypeDigests() throws IOException {
+        try {
+            monitor.beginTask("Checking for changes...", typeElements.size());
+
+            previousDigests = new Properties();
+            File digestsFile = getOutputFile(DIGESTS_FILE_NAME);
+            if (digestsFile.exists()) {
+                try (InputStream stream = new FileInputStream(digestsFile)) {
+                    previousDigests.load(stream);
+                }
+                catch (IOException | IllegalArgumentException e) {
+                    previousDigests.clear();
+                }
+                digestsFile.delete(); // only written back after successful generation
+            }
+
+            currentDigests = new Properties();
+            String settingsDigest = digest(getSettingsString());
+            currentDigests.setProperty("settings", settingsDigest);
+            boolean settingsChanged = !settingsDigest.equals(previousDigests.getProperty("settings"));
+
+            changedTypes.clear();
+            ownDigestCache.clear();
+            for (ITypeElement typeElement : typeElements) {
+                String key = "type." + getOutputBaseFileName(typeElement);
+                String typeDigest = computeTypeDigest(typeElement);
+                currentDigests.setProperty(key, typeDigest);
+                if (settingsChanged || !typeDigest.equals(previousDigests.getProperty(key)))
+                    changedTypes.add(typeElement);
+                monitor.worked(1);
+            }
+
+            if (verboseMode)
+                System.out.println(changedTypes.size() + " of " + typeElements.size() + " type pages need to be generated.");
+        }
+        finally {
+            monitor.done();
+        }
+    }
+
+    /**
+     * Returns the generator settings and other global data that affect every type page.
+     */
+    protected String getSettingsString() {
+        StringBuilder result = new StringBuilder();
+        result.append(renderer.getTemplateName()).append('|')
+            .append(generateNedTypeFigures).append(generatePerTypeUsageDiagrams).append(generatePerTypeInheritanceDiagrams)
+            .append(generateFullUsageDiagrams).append(generateFullInheritanceDiagrams).append(generateSourceListings)
+            .append(generateMsgDefinitions).append(generateFileListings).append(automaticHyperlinking).append(APPLY_CC).append('|')
+            .append(rootRelativeDoxyPath).append('|').append(rootRelativeNeddocPath).append('|').append(customCssPath).append('|');
+        if (extensionFilePath != null)
+            result.append(extensionFilePath).append(':').append(project.getFile(extensionFilePath).getModificationStamp()).append('|');
+        // documented type names affect hyperlinking in comments
+        result.append(new TreeMap<String, List<ITypeElement>>(typeNamesMap).keySet());
+        return result.toString();
+    }
+
+    /**
+     * Computes a digest of the inputs of the given type's page: its own source and
+     * comment, and those of the types it refers to (transitively), and the types that
+     * appear in its "used in", subtypes and implementors tables and diagrams.
+     */
+    protected String computeTypeDigest(ITypeElement typeElement) throws IOException {
+        Set<ITypeElement> relatedTypes = new LinkedHashSet<ITypeElement>();
+        collectReferencedTypes(typeElement, relatedTypes);
+        addAllIfNotNull(relatedTypes, usersMap.get(typeElement));
+        addAllIfNotNull(relatedTypes, subtypesMap.get(typeElement));
+        addAllIfNotNull(relatedTypes, directImplementorsMap.get(typeElement));
+        addAllIfNotNull(relatedTypes, allImplementorsMap.get(typeElement));
+        relatedTypes.remove(typeElement);
+
+        List<String> relatedDigests = new ArrayList<String>();
+        for (ITypeElement relatedType : relatedTypes)
+            relatedDigests.add(getFullyQalifiedName(relatedType) + "=" + getOwnDigest(relatedType));
+        Collections.sort(relatedDigests);
+
+        return digest(getOwnDigest(typeElement) + "|" + StringUtils.join(relatedDigests, ","));
+    }
+
+    private void collectReferencedTypes(ITypeElement typeElement, Set<ITypeElement> result) {
+        List<ITypeElement> referencedTypes = new ArrayList<ITypeElement>();
+        if (typeElement.getSuperType() != null)
+            referencedTypes.add(typeElement.getSuperType());
+        referencedTypes.addAll(typeElement.getLocalUsedTypes());
+        if (typeElement instanceof INedTypeElement)
+            referencedTypes.addAll(((INedTypeElement)typeElement).getNedTypeInfo().getLocalInterfaces());
+
+        for (ITypeElement referencedType : referencedTypes)
+            if (result.add(referencedType))
+                collectReferencedTypes(referencedType, result);
+    }
+
+    private static void addAllIfNotNull(Set<ITypeElement> set, List<? extends ITypeElement> list) {
+        if (list != null)
+            set.addAll(list);
+    }
+
+    protected String getOwnDigest(ITypeElement typeElement) throws IOException {
+        String result = ownDigestCache.get(typeElement);
+        if (result == null) {
+            IFile file = getNedOrMsgFile(typeElement);
+            String comment = getExpandedComment(typeElement);
+            result = digest(getFullyQalifiedName(typeElement) + "|" + (file == null ? "" : file.getFullPath().toString()) + "|" +
+                    typeElement.getNedSource() + "|" + (comment == null ? "" : comment));
+            ownDigestCache.put(typeElement, result);
+        }
+        return result;
+    }
+
+    /**
+     * C++ class references come from doxygen, which runs in parallel with the first part
+     * of the generation; if they changed, all type pages are regenerated.
+     */
+    protected void checkDoxyMapDigest() {
+        String doxyDigest = digest(new TreeMap<String, String>(doxyMap).toString());
+        currentDigests.setProperty("doxy", doxyDigest);
+        if (!doxyDigest.equals(previousDigests.getProperty("doxy")))
+            changedTypes.addAll(typeElements);
+    }
+
+    protected void saveDigests() throws IOException {
+        try (OutputStream stream = new FileOutputStream(getOutputFile(DIGESTS_FILE_NAME))) {
+            currentDigests.store(stream, "Digests of the inputs of generated type pages");
+        }
+    }
+
+    /**
+     * Returns the files generated for types whose pages don't need to be regenerated.
+     */
+    protected Set<File> getOutputFilesOfUnchangedTypes() {
+        Set<File> result = new HashSet<File>();
+        for (ITypeElement typeElement : typeElements) {
+            if (!changedTypes.contains(typeElement) && !getOutputFilePath(typeElement).toString().startsWith("..")) {
+                result.add(getOutputFile(renderer.addExtension(getOutputBaseFileName(typeElement))));
+                result.add(getOutputFile(getOutputFileName(typeElement, "type", ".svg")));
+                result.add(getOutputFile(getOutputFileName(typeElement, "usage", ".svg")));
+                result.add(getOutputFile(getOutputFileName(typeElement, "inheritance", ".svg")));
+            }
+        }
+        return result;
+    }
+
+    protected static String digest(String text) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-1").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder result = new StringBuilder();
+            for (byte b : hash)
+                result.append(String.format("%02x", b));
+            return result.toString();
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     protected void collectCaches() throws Exception {
         try {
             monitor.beginTask("Collecting data...", 6);
@@ -649,7 +852,35 @@ public class DocumentationGenerator {
         return project.getNature("org.eclipse.cdt.core.ccnature") != null;
     }
 
-    protected void generateDoxy() throws Exception {
+    /**
+     * Runs doxygen (if needed) in the background. Its progress is not reported,
+     * but it can be cancelled via the main progress monitor.
+     */
+    protected Future<?> startDoxy() {
+        IProgressMonitor doxyMonitor = new NullProgressMonitor() {
+            @Override
+            public boolean isCanceled() {
+                return monitor.isCanceled();
+            }
+        };
+        return executor.submit(() -> {
+            generateDoxy(doxyMonitor);
+            return null;
+        });
+    }
+
+    protected void waitForDoxy(Future<?> doxyTask) throws Exception {
+        try {
+            monitor.beginTask("Running doxygen...", IProgressMonitor.UNKNOWN);
+            monitor.subTask("Waiting for doxygen to complete");
+            waitFor(doxyTask);
+        }
+        finally {
+            monitor.done();
+        }
+    }
+
+    protected void generateDoxy(IProgressMonitor monitor) throws Exception {
         if (generateDoxy && isCppProject(project)) {
             if (doxyExecutablePath == null || !new File(doxyExecutablePath).exists())
                 throw new IllegalStateException("The Doxygen executable path is invalid, set it using Window/Preferences...\nThe currently set path is: " + doxyExecutablePath);
@@ -1274,11 +1505,15 @@ public class DocumentationGenerator {
     protected void generateTypePages() throws Exception {
         try {
             monitor.beginTask("Generating NED type pages...", typeElements.size());
+            prepareTypeImageMaps();
 
             for (ITypeElement typeElement : typeElements) {
                 if (verboseMode)
                     System.out.append('.').flush();
-                generateTypePage(typeElement);
+                if (changedTypes.contains(typeElement))
+                    generateTypePage(typeElement);
+                else
+                    monitor.worked(1);
             }
         }
         finally {
@@ -1760,8 +1995,17 @@ public class DocumentationGenerator {
     }
 
     protected void generateNedTypeFigures() throws InterruptedException, CoreException {
-        if (generateNedTypeFigures) {
-            ArrayList<IFile> nedFiles = new ArrayList<IFile>(nedResources.getNedFiles(project));
+        ArrayList<IFile> nedFiles = new ArrayList<IFile>();
+        for (IFile file : nedResources.getNedFiles(project)) {
+            for (INedTypeElement typeElement : nedResources.getNedFileElement(file).getTopLevelTypeNodes()) {
+                if (changedTypes.contains(typeElement)) {
+                    nedFiles.add(file);
+                    break;
+                }
+            }
+        }
+
+        if (generateNedTypeFigures && !nedFiles.isEmpty()) {
 
             final ExportDiagramFilesOperation exportOperation =
                 new ExportDiagramFilesOperation(nedFiles,
@@ -1820,38 +2064,71 @@ public class DocumentationGenerator {
     protected void generateTypeDiagram(final INedTypeElement typeElement) throws IOException {
         if (generateNedTypeFigures && !nedResources.isBuiltInDeclaration(typeElement.getNedTypeInfo())) {
             out(renderer.typeImageTag(getOutputFileName(typeElement, "type", ".svg")));
+            String imageMap = typeImageMaps.get(typeElement);
+            if (imageMap == null) {
+                String[] result = new String[1];
+                DisplayUtils.runNowOrSyncInUIThread(() -> {
+                    ScrollingGraphicalViewer viewer = NedFigureProvider.createNedViewer(typeElement.getContainingNedFileElement());
+                    result[0] = getTypeImageMap(viewer, typeElement);
+                });
+                imageMap = result[0];
+            }
+            out(imageMap);
+        }
+    }
+
+    /**
+     * Computes the image maps of the figures of the changed NED types. Figures can only
+     * be created in the UI thread, so this is done in one go, with one viewer per NED file.
+     */
+    protected void prepareTypeImageMaps() {
+        typeImageMaps.clear();
+        if (!generateNedTypeFigures)
+            return;
+
+        Map<NedFileElementEx, List<INedTypeElement>> typesByFile = new LinkedHashMap<NedFileElementEx, List<INedTypeElement>>();
+        for (ITypeElement typeElement : typeElements)
+            if (typeElement instanceof INedTypeElement && changedTypes.contains(typeElement) && !nedResources.isBuiltInDeclaration(((INedTypeElement)typeElement).getNedTypeInfo()))
+                typesByFile.computeIfAbsent(typeElement.getContainingNedFileElement(), k -> new ArrayList<INedTypeElement>()).add((INedTypeElement)typeElement);
+
+        if (!typesByFile.isEmpty()) {
+            monitor.subTask("Creating type figures");
             DisplayUtils.runNowOrSyncInUIThread(() -> {
-                    try {
-                        NedFileElementEx modelRoot = typeElement.getContainingNedFileElement();
-                        ScrollingGraphicalViewer viewer = NedFigureProvider.createNedViewer(modelRoot);
-                        NedEditPart editPart = (NedEditPart)viewer.getEditPartRegistry().get(typeElement);
+                for (Map.Entry<NedFileElementEx, List<INedTypeElement>> entry : typesByFile.entrySet()) {
+                    if (monitor.isCanceled())
+                        throw new CancellationException();
+                    ScrollingGraphicalViewer viewer = NedFigureProvider.createNedViewer(entry.getKey());
+                    for (INedTypeElement typeElement : entry.getValue())
+                        typeImageMaps.put(typeElement, getTypeImageMap(viewer, typeElement));
+                }
+            });
+        }
+    }
 
-                        out(renderer.typeImageMapHeaderTag());
+    protected String getTypeImageMap(ScrollingGraphicalViewer viewer, INedTypeElement typeElement) {
+        StringBuilder imageMap = new StringBuilder();
+        NedEditPart editPart = (NedEditPart)viewer.getEditPartRegistry().get(typeElement);
 
-                        if (editPart instanceof CompoundModuleEditPart) {
-                            CompoundModuleEditPart compoundModuleEditPart = (CompoundModuleEditPart)editPart;
+        imageMap.append(renderer.typeImageMapHeaderTag());
 
-                            for (Object child : compoundModuleEditPart.getChildren()) {
-                                if (child instanceof SubmoduleEditPart) {
-                                    SubmoduleEditPart submoduleEditPart = (SubmoduleEditPart)child;
-                                    SubmoduleElementEx submoduleElement = submoduleEditPart.getModel();
-                                    outMapReference(submoduleElement.getEffectiveTypeRef(), submoduleEditPart.getFigure());
-                                }
-                            }
-                        }
-                        else if (editPart instanceof NedTypeEditPart) {
-                            NedTypeEditPart nedTypeEditPart = (NedTypeEditPart)editPart;
-                            outMapReference(nedTypeEditPart.getModel(), nedTypeEditPart.getFigure());
-                        }
+        if (editPart instanceof CompoundModuleEditPart) {
+            CompoundModuleEditPart compoundModuleEditPart = (CompoundModuleEditPart)editPart;
 
-                        out(renderer.typeImageMapTrailerTag());
-                    }
-                    catch (IOException e) {
-                        throw new RuntimeException(e);
-                    }
+            for (Object child : compoundModuleEditPart.getChildren()) {
+                if (child instanceof SubmoduleEditPart) {
+                    SubmoduleEditPart submoduleEditPart = (SubmoduleEditPart)child;
+                    SubmoduleElementEx submoduleElement = submoduleEditPart.getModel();
+                    imageMap.append(mapReferenceString(submoduleElement.getEffectiveTypeRef(), submoduleEditPart.getFigure()));
                 }
-            );
+            }
         }
+        else if (editPart instanceof NedTypeEditPart) {
+            NedTypeEditPart nedTypeEditPart = (NedTypeEditPart)editPart;
+            imageMap.append(mapReferenceString(nedTypeEditPart.getModel(), nedTypeEditPart.getFigure()));
+        }
+
+        imageMap.append(renderer.typeImageMapTrailerTag());
+        return imageMap.toString();
     }
 
     protected void generateFullDiagrams() throws Exception {
@@ -2162,7 +2439,49 @@ public class DocumentationGenerator {
             throw new IllegalStateException("The GraphViz Dot executable path is invalid, set it using Window/Preferences...\nThe currently set path is: " + dotExecutablePath);
 
         // dot has a width/height limit of 32768 pixels, see bug #149.
-        ProcessUtils.exec(dotExecutablePath, new String[] {"-T" + format, "-o", outputFile.toString()}, ".", dot.toString(), 10, monitor);
+        String[] arguments = new String[] {"-T" + format, "-o", outputFile.toString()};
+        String input = dot.toString();
+        if (executor == null)
+            ProcessUtils.exec(dotExecutablePath, arguments, ".", input, 10, monitor);
+        else
+            dotTasks.add(executor.submit(() -> ProcessUtils.exec(dotExecutablePath, arguments, ".", input, 10, monitor)));
+    }
+
+    protected void waitForDotTasks() throws Exception {
+        try {
+            monitor.beginTask("Waiting for dot to complete...", dotTasks.size());
+            for (Future<?> task : dotTasks) {
+                waitFor(task);
+                monitor.worked(1);
+            }
+            dotTasks.clear();
+        }
+        finally {
+            monitor.done();
+        }
+    }
+
+    /**
+     * Waits for a background task while checking for cancellation, and rethrows its exception.
+     */
+    protected void waitFor(Future<?> task) throws Exception {
+        try {
+            while (true) {
+                try {
+                    task.get(100, TimeUnit.MILLISECONDS);
+                    return;
+                }
+                catch (java.util.concurrent.TimeoutException e) {
+                    if (monitor.isCanceled())
+                        throw new CancellationException();
+                }
+            }
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception)
+                throw (Exception)e.getCause();
+            throw e;
+        }
     }
 
     protected String getParamTypeAsString(ParamElementEx param) {
@@ -2268,7 +2587,7 @@ public class DocumentationGenerator {
         currentOutputStream.write(data);
     }
 
-    protected void outMapReference(INedTypeElement model, IFigure figure) throws IOException {
+    protected String mapReferenceString(INedTypeElement model, IFigure figure) {
         //FigureUtils.debugPrintFigureAncestors(figure, "");
         Rectangle bounds = new Rectangle(figure.getBounds());
         if (figure instanceof SubmoduleFigure) {
@@ -2281,7 +2600,7 @@ public class DocumentationGenerator {
             }
         }
 
-        out(renderer.areaRefTag(model.getName(), renderer.addExtension(getOutputBaseFileName(model)), bounds));
+        return renderer.areaRefTag(model.getName(), renderer.addExtension(getOutputBaseFileName(model)), bounds);
     }
 
     protected IPath getOutputFilePath(IFile file) {
@@ -13,7 +13,6 @@ import static org.omnetpp.scave.common.IndexFileUtils.isIndexFile;
 import static org.omnetpp.scave.common.IndexFileUtils.isIndexFileUpToDate;
 import static org.omnetpp.scave.common.IndexFileUtils.performIndexing;
 
-import java.io.File;
 import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -28,7 +27,7 @@ import org.eclipse.core.resources.IncrementalProjectBuilder;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
-import org.eclipse.core.runtime.SubProgressMonitor;
+import org.eclipse.core.runtime.ProgressMonitorWrapper;
 
 public class VectorFileIndexBuilder extends IncrementalProjectBuilder {
 
@@ -98,37 +97,16 @@ public class VectorFileIndexBuilder extends IncrementalProjectBuilder {
     }
 
     protected void doBuild(IProgressMonitor monitor) {
-        try {
-            monitor.beginTask("Indexing vector files", filesToBeIndexed.size());
-
-            IFile file;
-            while ((file = filesToBeIndexed.peek()) != null) {
-                if (monitor.isCanceled())
-                    throw new OperationCanceledException();
-                if (isInterrupted())
-                    break;
-
-                file = filesToBeIndexed.poll();
-                monitor.subTask("Indexing "+file.getName());
-                try {
-                    File path = file.getLocation().toFile();
-                    if (path.exists() && isExistingVectorFile(file) && !isIndexFileUpToDate(file))
-                    {
-                        IProgressMonitor subMonitor = new SubProgressMonitor(monitor, 1);
-                        performIndexing(file, subMonitor);
-                        if (subMonitor.isCanceled())
-                            throw new OperationCanceledException();
-                    }
-                }
-                catch (Exception e) {
-                    Activator.logError(e);
-                    monitor.worked(1);
-                }
+        // files are indexed in parallel; the ones not indexed when the build
+        // gets interrupted remain in the queue for the next build
+        IProgressMonitor interruptibleMonitor = new ProgressMonitorWrapper(monitor) {
+            @Override
+            public boolean isCanceled() {
+                return super.isCanceled() || isInterrupted();
             }
-        }
-        finally {
-            monitor.done();
-        }
+        };
+        if (!performIndexing(filesToBeIndexed, interruptibleMonitor) && monitor.isCanceled())
+            throw new OperationCanceledException();
     }
 
     protected boolean toBeIndexed(IFile file) {
@@ -11,14 +11,28 @@ import static org.omnetpp.scave.common.ScaveMarkers.MARKERTYPE_SCAVEPROBLEM;
 import static org.omnetpp.scave.common.ScaveMarkers.addMarker;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.eclipse.core.resources.IContainer;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.Assert;
+import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Path;
 import org.omnetpp.common.Debug;
 import org.omnetpp.scave.builder.Activator;
@@ -141,13 +155,183 @@ public class IndexFileUtils extends org.omnetpp.scave.engine.IndexFileUtils {
             indexer.generateIndex(osFileName, monitor);
             Debug.println("finished indexing " + vectorFile + ", " + (System.currentTimeMillis()-startTime) + "ms");
         }
-        catch (ResultFileFormatException e) {
-            addMarker(vectorFile, MARKERTYPE_SCAVEPROBLEM, IMarker.SEVERITY_ERROR, "Wrong file: "+e.getMessage(), e.getLineNo());
+        catch (Throwable e) {
+            addIndexingErrorMarker(vectorFile, e);
+        }
+    }
+
+    private static void addIndexingErrorMarker(IFile vectorFile, Throwable e) {
+        if (e instanceof ResultFileFormatException) {
+            addMarker(vectorFile, MARKERTYPE_SCAVEPROBLEM, IMarker.SEVERITY_ERROR, "Wrong file: "+e.getMessage(), ((ResultFileFormatException)e).getLineNo());
             Activator.logError("Vector file format error: " + e.getMessage(), e);
         }
-        catch (Throwable e) {
+        else {
             addMarker(vectorFile, MARKERTYPE_SCAVEPROBLEM, IMarker.SEVERITY_WARNING, "Indexing failed: "+e.getMessage(), -1);
             Activator.logError("Cannot create index file for: "+vectorFile.toString(), e);
         }
     }
+
+    /**
+     * Perform indexing the given vector files in parallel, larger files first.
+     * Files that no longer exist, and files whose index file is up-to-date are
+     * skipped; the latter is checked right before indexing the file, and only
+     * needs to read the header of the index file. Error/warning markers are added
+     * to the files like in performIndexing(IFile, IProgressMonitor).
+     *
+     * Files are removed from the collection as they are processed, so if the
+     * monitor gets canceled, the collection contains the files still to be indexed.
+     * Progress is reported to the monitor from the calling thread.
+     *
+     * @return false if indexing was canceled
+     */
+    public static boolean performIndexing(Collection<IFile> vectorFiles, IProgressMonitor monitor) {
+        List<IndexingTask> tasks = new ArrayList<>();
+        for (IFile file : vectorFiles)
+            tasks.add(new IndexingTask(file));
+        tasks.sort(Comparator.comparingLong((IndexingTask task) -> task.fileSize).reversed());
+        long totalSize = 1;
+        for (IndexingTask task : tasks)
+            totalSize += task.fileSize;
+
+        AtomicBoolean canceled = new AtomicBoolean();
+        int numThreads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), tasks.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads, runnable -> {
+            Thread thread = new Thread(runnable, "Vector file indexer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletionService<IndexingTask> completionService = new ExecutorCompletionService<>(executor);
+        for (IndexingTask task : tasks)
+            completionService.submit(() -> task.run(canceled), task);
+        executor.shutdown();
+
+        final int totalWork = 1000;
+        monitor.beginTask("Indexing vector files", totalWork);
+        try {
+            int numFinished = 0;
+            int reportedWork = 0;
+            while (numFinished < tasks.size()) {
+                if (monitor.isCanceled())
+                    canceled.set(true); // tasks not yet started return immediately, the others stop soon
+
+                Future<IndexingTask> future = completionService.poll(100, TimeUnit.MILLISECONDS);
+                if (future != null) {
+                    IndexingTask task = future.get();
+                    numFinished++;
+                    if (task.isProcessed) {
+                        vectorFiles.remove(task.file);
+                        if (task.isIndexed)
+                            updateMarkers(task.file, task.error);
+                    }
+                }
+
+                // progress is weighted by file size
+                double completedSize = 0;
+                IndexingTask largestRunningTask = null;
+                int numRunning = 0;
+                for (IndexingTask task : tasks) {
+                    completedSize += task.fileSize * (task.percentage / 100.0);
+                    if (task.isRunning) {
+                        if (largestRunningTask == null)
+                            largestRunningTask = task;
+                        numRunning++;
+                    }
+                }
+                int work = (int)(totalWork * completedSize / totalSize);
+                if (work > reportedWork) {
+                    monitor.worked(work - reportedWork);
+                    reportedWork = work;
+                }
+                if (largestRunningTask != null)
+                    monitor.subTask("Indexing " + largestRunningTask.file.getName() + (numRunning > 1 ? " and " + (numRunning-1) + " more" : "") +
+                            " (" + numFinished + " of " + tasks.size() + " files done)");
+            }
+            return !canceled.get();
+        }
+        catch (InterruptedException e) {
+            canceled.set(true);
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        catch (ExecutionException e) {
+            // IndexingTask catches everything, this should not happen
+            canceled.set(true);
+            Activator.logError(e);
+            return false;
+        }
+        finally {
+            monitor.done();
+        }
+    }
+
+    private static void updateMarkers(IFile vectorFile, Throwable error) {
+        try {
+            vectorFile.deleteMarkers(MARKERTYPE_SCAVEPROBLEM, true, IResource.DEPTH_ZERO);
+        }
+        catch (CoreException e) {
+            Activator.logError(e);
+        }
+        if (error != null)
+            addIndexingErrorMarker(vectorFile, error);
+    }
+
+    /**
+     * Indexing of one vector file in performIndexing(Collection, IProgressMonitor).
+     * Markers are not touched here, because that is done in the calling thread.
+     */
+    private static class IndexingTask {
+        final IFile file;
+        final long fileSize;
+        volatile boolean isRunning;
+        volatile int percentage;
+        boolean isProcessed; // false if canceled before finishing
+        boolean isIndexed; // false if skipped
+        Throwable error;
+
+        IndexingTask(IFile file) {
+            this.file = file;
+            File path = file.getLocation() == null ? null : file.getLocation().toFile();
+            this.fileSize = path == null ? 0 : path.length();
+        }
+
+        void run(AtomicBoolean canceled) {
+            if (canceled.get())
+                return;
+            isRunning = true;
+            try {
+                String osFileName = file.getLocation().toFile().getAbsolutePath();
+                if (!new File(osFileName).exists() || !isExistingVectorFile(osFileName) || isIndexFileUpToDate(osFileName)) {
+                    isProcessed = true;
+                    return;
+                }
+
+                Debug.println("started indexing " + file);
+                long startTime = System.currentTimeMillis();
+                new VectorFileIndexer().generateIndex(osFileName, new NullProgressMonitor() {
+                    int worked = 0;
+
+                    @Override
+                    public void worked(int work) {
+                        worked += work;
+                        percentage = Math.min(100, worked * 100 / 110); // VectorFileIndexer reports 110 units in total
+                    }
+
+                    @Override
+                    public boolean isCanceled() {
+                        return canceled.get();
+                    }
+                });
+                Debug.println("finished indexing " + file + ", " + (System.currentTimeMillis()-startTime) + "ms");
+                isProcessed = isIndexed = !canceled.get();
+            }
+            catch (Throwable e) {
+                error = e;
+                isProcessed = isIndexed = true;
+            }
+            finally {
+                percentage = 100;
+                isRunning = false;
+            }
+        }
+    }
 }
@@ -11,6 +11,7 @@ __license__ = """
 
 import sys
 import os
+import warnings
 import pickle as pl
 
 # the print function is replaced so it will flush after each line
@@ -51,6 +52,10 @@ class PythonEntryPoint(object):
         self.execContext = {
             "print": print
         }
+        # the initial state of the interpreter, restored by reset()
+        self.initialCwd = os.getcwd()
+        self.initialSysPath = list(sys.path)
+        self.initialRcParams = {k: v for k, v in mpl.rcParams.items() if k != "backend"}
 
     def check(self):
         return True
@@ -82,6 +87,44 @@ class PythonEntryPoint(object):
     def setGlobalObjectPickle(self, name, pickle):
         self.execContext[name] = pl.loads(pickle)
 
+    def reset(self):
+        plt.close("all")
+        with warnings.catch_warnings():
+            warnings.simplefilter("ignore") # about deprecated rcParams
+            mpl.rcParams.update(self.initialRcParams)
+
+        # forget the modules imported by the scripts from the directories they added
+        added_paths = [os.path.abspath(p) for p in sys.path if p and p not in self.initialSysPath]
+        for name, module in list(sys.modules.items()):
+            file = getattr(module, "__file__", None)
+            if file and any(os.path.abspath(file).startswith(p + os.sep) for p in added_paths):
+                del sys.modules[name]
+
+        os.chdir(self.initialCwd)
+        sys.path[:] = self.initialSysPath
+
+        Gateway.results_provider = None
+        Gateway.chart_provider = None
+        Gateway.widget_provider = None
+        Gateway.chart_plotter = None
+
+        # the omnetpp.scave modules have state (e.g. cached chart properties),
+        # so they are imported again, which is cheap now that their dependencies are loaded
+        swtplot = sys.modules.get("omnetpp.scave.impl_ide.swtplot")
+        vector_data_counter = swtplot._vector_data_counter if swtplot else 0
+        for name in list(sys.modules.keys()):
+            if name == "omnetpp.scave" or name.startswith("omnetpp.scave."):
+                del sys.modules[name]
+        preload_modules()
+        swtplot = sys.modules.get("omnetpp.scave.impl_ide.swtplot")
+        if swtplot:
+            # shared memory object names must stay unique within the process
+            swtplot._vector_data_counter = vector_data_counter
+
+        self.execContext = {
+            "print": print
+        }
+
 
 def connect_to_IDE():
     java_port = int(sys.argv[1]) if len(sys.argv) > 1 else DEFAULT_PORT
@@ -105,6 +148,16 @@ def connect_to_IDE():
     # print("Python ClientServer done, listening on port " + str(python_port))
 
 
+def preload_modules():
+    # Importing these here, while the process is waiting in the pool, saves
+    # time when the first chart script is executed. Errors are not reported,
+    # they will surface when the chart script imports the same modules.
+    try:
+        from omnetpp.scave import results, chart, plot, utils, vectorops
+    except Exception:
+        pass
+
+
 def setup_unbuffered_output():
     # I believe the purpose of the following piece of code is entirely achieved by the "-u" command line argument.
     # But just to be sure, let's leave this in here, I don't think it will cause harm.
@@ -137,6 +190,7 @@ if __name__ == "__main__":
     setup_unbuffered_output()
     setup_pandas_display_parameters()
     connect_to_IDE()
+    preload_modules()
 
     # block the main Python thread while the host process is running
     # (our stdin is connected to it via a pipe, so stdin will be closed when it exists)
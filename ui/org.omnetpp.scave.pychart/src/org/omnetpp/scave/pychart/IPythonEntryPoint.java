@@ -71,5 +71,13 @@ public interface IPythonEntryPoint {
 
     Object evaluate(String expression) throws Py4JException;
 
+    /**
+     * Restores the initial state of the interpreter after chart scripts were
+     * executed in it, so the process can be reused for another chart: the
+     * working directory, sys.path, the execution context, the omnetpp.scave
+     * modules, Matplotlib figures and rcParams, and the providers set from Java.
+     */
+    void reset() throws Py4JException;
+
     HashMap<String, String> getRcParams();
 }
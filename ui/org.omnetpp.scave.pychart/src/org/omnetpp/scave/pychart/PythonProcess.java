@@ -25,6 +25,7 @@ import py4j.ClientServer;
  */
 public class PythonProcess {
     public static boolean debug = Debug.isChannelEnabled("pythonprocess");
+    private static final long CONNECT_TIMEOUT_MILLIS = 30000;
 
     private Process process;
     private ClientServer clientServer = null;
@@ -82,9 +83,12 @@ public class PythonProcess {
 
         if (debug)
             Debug.println("getting entry point...");
+        // Several processes may be starting up at the same time (see PythonProcessPool),
+        // so keep trying for a while as long as the process is alive
+        long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT_MILLIS;
         int tries = 0;
         boolean ok = false;
-        while (!ok && tries < 5) {
+        while (!ok && (tries < 5 || (isAlive() && System.currentTimeMillis() < deadline))) {
             try {
                 entryPoint = (IPythonEntryPoint) clientServer
                         .getPythonServerEntryPoint(new Class[] { IPythonEntryPoint.class });
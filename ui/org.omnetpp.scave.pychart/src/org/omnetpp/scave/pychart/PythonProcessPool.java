@@ -10,63 +10,274 @@ package org.omnetpp.scave.pychart;
 import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.omnetpp.common.Debug;
 
 import py4j.ClientServer;
 
 /**
- * This class keeps a (configurable) number of PythonProcess instances in a pool,
- * ready to use. Each of them is a running python3 interpreter process, with a
- * Py4J connection to it. This was added to reduce the latency of repeated chart
- * script executions.
+ * This class keeps a number of PythonProcess instances in a pool, ready to use.
+ * Each of them is a running python3 interpreter process, with a Py4J connection
+ * to it, and with the omnetpp.scave modules (and their dependencies, such as
+ * matplotlib, numpy and pandas) already imported. This was added to reduce the
+ * latency of repeated chart script executions.
+ *
+ * Processes are started in parallel on background threads. The number of idle
+ * processes kept in the pool is at least the number given in the constructor;
+ * it grows (up to the number of processors) when requests come in faster than
+ * the pool can serve them, e.g. when opening many charts at once, and falls back
+ * to the minimum after a period without requests. getProcess() blocks until a
+ * process is available.
+ *
+ * Processes may be given back to the pool with releaseProcess() after use; they
+ * are reset and reused if they are still healthy and the pool is not full,
+ * otherwise they are killed.
  */
 public class PythonProcessPool {
+    private static final long STARTUP_TIMEOUT_MILLIS = 60000;
+    private static final long BURST_WINDOW_MILLIS = 5000;
+    private static final long IDLE_TIMEOUT_MILLIS = 60000;
+    private static final long MAINTENANCE_INTERVAL_MILLIS = 10000;
+
+    private final int minProcesses;
+    private final int maxProcesses;
+    private final ScheduledThreadPoolExecutor executor;
+
+    // all fields below are guarded by "this"
     private boolean shouldSetOmnetppMplBackend = true;
-    private ArrayList<PythonProcess> availableProcesses = new ArrayList<PythonProcess>();
+    private int generation = 0; // incremented when processes started earlier become unsuitable
+    private ArrayDeque<PythonProcess> idleProcesses = new ArrayDeque<>();
+    private int numIncomingProcesses = 0; // being started or reset
+    private int numWaitingRequests = 0;
+    private int targetSize; // the desired number of idle processes
+    private ArrayDeque<Long> recentRequestTimes = new ArrayDeque<>();
+    private long lastRequestTime = System.currentTimeMillis();
     private String errorMessage = null;
-    private boolean threadExit = false;
-    private Thread launcherThread;
+    private boolean disposed = false;
 
     public PythonProcessPool() {
         this(1);
     }
 
     public PythonProcessPool(int N) {
+        this(N, true);
+    }
 
-        launcherThread = new Thread(() -> {
-            while (!threadExit) {
-                if (availableProcesses.size() < N) {
-                    try {
-                        availableProcesses.add(createProcess());
-                    }
-                    catch (IOException e) {
-                        errorMessage = e.getMessage();
-                        threadExit = true;
+    public PythonProcessPool(int N, boolean shouldSetOmnetppMplBackend) {
+        this.minProcesses = N;
+        this.maxProcesses = Math.max(N, Runtime.getRuntime().availableProcessors());
+        this.targetSize = N;
+        this.shouldSetOmnetppMplBackend = shouldSetOmnetppMplBackend;
+
+        executor = new ScheduledThreadPoolExecutor(maxProcesses, runnable -> {
+            Thread thread = new Thread(runnable, "Python process launcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setKeepAliveTime(10, TimeUnit.SECONDS);
+        executor.allowCoreThreadTimeOut(true);
+        executor.scheduleWithFixedDelay(() -> maintain(), MAINTENANCE_INTERVAL_MILLIS, MAINTENANCE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+
+        synchronized (this) {
+            replenish();
+        }
+    }
+
+    /**
+     * Processes already started with the other setting are discarded.
+     */
+    public void setShouldSetOmnetppMplBackend(boolean value) {
+        List<PythonProcess> discarded;
+        synchronized (this) {
+            if (shouldSetOmnetppMplBackend == value)
+                return;
+            shouldSetOmnetppMplBackend = value;
+            generation++;
+            discarded = new ArrayList<>(idleProcesses);
+            idleProcesses.clear();
+            replenish();
+        }
+        for (PythonProcess process : discarded)
+            process.kill();
+    }
+
+    /**
+     * Returns a running process with a working connection, waiting for one to
+     * be started if necessary. Throws RuntimeException if the process could not
+     * be started.
+     */
+    public PythonProcess getProcess() {
+        long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT_MILLIS;
+        synchronized (this) {
+            if (disposed)
+                throw new IllegalStateException("Python process pool already disposed");
+            errorMessage = null; // try again even if the previous attempt failed
+            recordRequest();
+            numWaitingRequests++;
+            try {
+                while (true) {
+                    PythonProcess process = pollIdleProcess();
+                    if (process != null) {
+                        replenish();
+                        return process;
                     }
-                    if (PythonProcess.debug)
-                        Debug.println("We have " + availableProcesses.size() + " processes.");
-                }
-                try {
-                    Thread.sleep(1000);
-                }
-                catch (InterruptedException e) {
-                    // need to create a process right away - most likely
+                    if (errorMessage != null)
+                        throw new RuntimeException(errorMessage);
+                    if (disposed)
+                        throw new IllegalStateException("Python process pool already disposed");
+                    replenish();
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0)
+                        throw new RuntimeException("Timed out waiting for a Python process to start");
+                    wait(remaining);
                 }
             }
-        });
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for a Python process to start", e);
+            }
+            finally {
+                numWaitingRequests--;
+            }
+        }
+    }
 
-        launcherThread.setDaemon(true);
-        launcherThread.start();
+    /**
+     * Gives back a process obtained from getProcess() when it is no longer needed.
+     * If the process is still healthy and the pool is not full, the state
+     * of the interpreter is reset in the background, and the process is reused;
+     * otherwise it is killed. The caller must not use the process afterwards, and
+     * must have removed its own listeners from it.
+     */
+    public void releaseProcess(PythonProcess process) {
+        synchronized (this) {
+            boolean healthy = process.isAlive() && !process.isKilledByUs() && !process.getInterruptedFlag().getFlag();
+            if (!disposed && healthy && idleProcesses.size() + numIncomingProcesses < maxProcesses) {
+                numIncomingProcesses++;
+                int processGeneration = generation;
+                executor.execute(() -> resetProcess(process, processGeneration));
+                return;
+            }
+        }
+        process.kill();
     }
 
-    public void setShouldSetOmnetppMplBackend(boolean value) {
-        this.shouldSetOmnetppMplBackend = value;
+    private void resetProcess(PythonProcess process, int processGeneration) {
+        try {
+            process.getEntryPoint().reset();
+        }
+        catch (RuntimeException e) {
+            if (PythonProcess.debug)
+                Debug.println("could not reset python process, killing it: " + e.getMessage());
+            process.kill();
+        }
+        processArrived(process, processGeneration, true);
     }
 
-    private PythonProcess createProcess() throws IOException {
+    private void recordRequest() {
+        long now = System.currentTimeMillis();
+        lastRequestTime = now;
+        recentRequestTimes.addLast(now);
+        while (recentRequestTimes.getFirst() < now - BURST_WINDOW_MILLIS)
+            recentRequestTimes.removeFirst();
+
+        // grow if requests come in faster than the pool can serve them
+        if (idleProcesses.isEmpty())
+            targetSize = Math.max(targetSize, Math.min(maxProcesses, recentRequestTimes.size()));
+    }
+
+    private PythonProcess pollIdleProcess() {
+        while (!idleProcesses.isEmpty()) {
+            PythonProcess process = idleProcesses.removeFirst();
+            if (process.isAlive())
+                return process;
+        }
+        return null;
+    }
+
+    /**
+     * Starts as many processes as needed to reach the target size, not counting
+     * the ones already being started.
+     */
+    private void replenish() {
+        if (disposed || errorMessage != null)
+            return;
+        int needed = targetSize + numWaitingRequests - idleProcesses.size() - numIncomingProcesses;
+        int count = Math.min(needed, maxProcesses - numIncomingProcesses);
+        for (int i = 0; i < count; i++) {
+            numIncomingProcesses++;
+            boolean setOmnetppMplBackend = shouldSetOmnetppMplBackend;
+            int processGeneration = generation;
+            executor.execute(() -> startProcess(setOmnetppMplBackend, processGeneration));
+        }
+    }
+
+    private void startProcess(boolean setOmnetppMplBackend, int processGeneration) {
+        PythonProcess process = null;
+        try {
+            process = createProcess(setOmnetppMplBackend);
+            process.getEntryPoint(); // connect now, so it is ready to use when handed out
+        }
+        catch (IOException | RuntimeException e) {
+            if (process != null)
+                process.kill();
+            synchronized (this) {
+                numIncomingProcesses--;
+                errorMessage = e.getMessage();
+                notifyAll();
+            }
+            return;
+        }
+        processArrived(process, processGeneration, false);
+    }
+
+    private void processArrived(PythonProcess process, int processGeneration, boolean recycled) {
+        boolean accepted;
+        synchronized (this) {
+            numIncomingProcesses--;
+            accepted = !disposed && processGeneration == generation && process.isAlive();
+            // recycled processes are handed out first, so that the extra ones
+            // trimmed by maintain() are the ones that were never used
+            if (accepted && recycled)
+                idleProcesses.addFirst(process);
+            else if (accepted)
+                idleProcesses.addLast(process);
+            if (PythonProcess.debug)
+                Debug.println("We have " + idleProcesses.size() + " processes.");
+            notifyAll();
+            replenish();
+        }
+        if (!accepted)
+            process.kill();
+    }
+
+    /**
+     * Drops the processes that exited on their own, and shrinks the pool back
+     * to its minimum size if there were no requests for a while.
+     */
+    private void maintain() {
+        List<PythonProcess> discarded = new ArrayList<>();
+        synchronized (this) {
+            if (disposed)
+                return;
+            idleProcesses.removeIf(process -> !process.isAlive());
+            if (System.currentTimeMillis() - lastRequestTime > IDLE_TIMEOUT_MILLIS)
+                targetSize = minProcesses;
+            while (idleProcesses.size() > targetSize)
+                discarded.add(idleProcesses.removeLast());
+            replenish();
+        }
+        for (PythonProcess process : discarded)
+            process.kill();
+    }
+
+    private PythonProcess createProcess(boolean setOmnetppMplBackend) throws IOException {
         if (PythonProcess.debug)
             Debug.println("connecting...");
 
@@ -88,7 +299,7 @@ public class PythonProcessPool {
         env.put("PYTHONPATH", extendPythonPath(env.get("PYTHONPATH")));
         // Selecting agg to avoid initializing any GUI framework (Tk, Qt, GTK, ...) in chart export
         // jobs, which would likely fail, because we are doing it from a thread other than the main
-        env.put("MPLBACKEND", shouldSetOmnetppMplBackend ? "module://omnetpp.internal.backend_SWTAgg" : "agg");
+        env.put("MPLBACKEND", setOmnetppMplBackend ? "module://omnetpp.internal.backend_SWTAgg" : "agg");
 
         if (PythonProcess.debug)
             Debug.println("starting python process... with path " + env.get("PYTHONPATH"));
@@ -139,27 +350,16 @@ public class PythonProcessPool {
     }
 
     public void dispose() {
-        threadExit = true;
-        launcherThread.interrupt();
-        for (PythonProcess pr : availableProcesses)
-            pr.kill();
-        availableProcesses.clear();
-    }
-
-    public PythonProcess getProcess() {
-
-        while (availableProcesses.isEmpty()) {
-            launcherThread.interrupt();
-            // TODO: make sure to wait for a process to become available
-
-            if (errorMessage != null)
-                throw new RuntimeException(errorMessage);
+        List<PythonProcess> discarded;
+        synchronized (this) {
+            disposed = true;
+            discarded = new ArrayList<>(idleProcesses);
+            idleProcesses.clear();
+            notifyAll();
         }
-
-        PythonProcess pr = availableProcesses.remove(0);
-        // waking up the launcher to replenish the supply of processes
-        launcherThread.interrupt();
-
-        return pr;
+        // processes still being started are killed when they arrive
+        executor.shutdown();
+        for (PythonProcess process : discarded)
+            process.kill();
     }
 }
@@ -242,6 +242,14 @@ public abstract class PlotBase extends ZoomableCachingCanvas implements IPlotVie
         doPaintCachableLayer(graphics, coordsMapping);
     }
 
+    @Override
+    protected void paintCachableLayerAhead(Graphics graphics) {
+        // the coordinate mapping saved by paintCachableLayer() belongs to the current repaint
+        ICoordsMapping savedCoordsMapping = coordsMapping;
+        paintCachableLayer(graphics);
+        coordsMapping = savedCoordsMapping;
+    }
+
     @Override
     protected void paintNoncachableLayer(Graphics graphics) {
         if (debug) Debug.println("paintNoncachableLayer()");
@@ -139,4 +139,18 @@ public interface IXYDataset extends IDataset {
      * Returns the maximum value of the y coordinates in the given series.
      */
     public double getMaxY(int series);
+
+    /**
+     * Returns the minimum of the y values of the items in the given index
+     * range (inclusive) of the series. NaNs are ignored; returns +Inf
+     * if there are no such values.
+     */
+    public double getMinY(int series, int firstItem, int lastItem);
+
+    /**
+     * Returns the maximum of the y values of the items in the given index
+     * range (inclusive) of the series. NaNs are ignored; returns -Inf
+     * if there are no such values.
+     */
+    public double getMaxY(int series, int firstItem, int lastItem);
 }
@@ -0,0 +1,198 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2020 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.scave.charting.dataset;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * Multi-resolution min/max summary of an array of doubles, for answering
+ * "minimum/maximum in index range" queries in O(log n) time. Level 0 stores
+ * the min/max of consecutive blocks of BASE_BLOCK_SIZE values, and every
+ * further level summarizes FANOUT blocks of the level below. NaNs are ignored.
+ *
+ * The summary is built in one pass over the data; the data itself is not
+ * copied, and it must not change afterwards.
+ */
+public class MinMaxPyramid {
+    public static final int BASE_BLOCK_SIZE = 64;
+    public static final int FANOUT = 16;
+
+    private final DoubleBuffer data;
+    private final int size;
+    private final int[] blockSizes;  // number of values covered by one block, per level
+    private final double[][] mins;  // per level
+    private final double[][] maxs;  // per level
+
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public MinMaxPyramid(DoubleBuffer data) {
+        this.data = data;
+        this.size = data.limit();
+
+        int numLevels = 0;
+        for (long blockSize = BASE_BLOCK_SIZE; blockSize < size; blockSize *= FANOUT)
+            numLevels++;
+        blockSizes = new int[numLevels];
+        mins = new double[numLevels][];
+        maxs = new double[numLevels][];
+
+        // level 0, from the raw data
+        if (numLevels > 0) {
+            blockSizes[0] = BASE_BLOCK_SIZE;
+            int numBlocks = (size + BASE_BLOCK_SIZE - 1) / BASE_BLOCK_SIZE;
+            double[] levelMins = mins[0] = new double[numBlocks];
+            double[] levelMaxs = maxs[0] = new double[numBlocks];
+            for (int b = 0; b < numBlocks; b++) {
+                double blockMin = Double.POSITIVE_INFINITY, blockMax = Double.NEGATIVE_INFINITY;
+                int end = Math.min(size, (b + 1) * BASE_BLOCK_SIZE);
+                for (int i = b * BASE_BLOCK_SIZE; i < end; i++) {
+                    double value = data.get(i);
+                    if (value < blockMin)
+                        blockMin = value;
+                    if (value > blockMax)
+                        blockMax = value;
+                }
+                levelMins[b] = blockMin;
+                levelMaxs[b] = blockMax;
+            }
+        }
+
+        // further levels, from the level below
+        for (int level = 1; level < numLevels; level++) {
+            blockSizes[level] = blockSizes[level-1] * FANOUT;
+            double[] lowerMins = mins[level-1], lowerMaxs = maxs[level-1];
+            int numBlocks = (lowerMins.length + FANOUT - 1) / FANOUT;
+            double[] levelMins = mins[level] = new double[numBlocks];
+            double[] levelMaxs = maxs[level] = new double[numBlocks];
+            for (int b = 0; b < numBlocks; b++) {
+                double blockMin = Double.POSITIVE_INFINITY, blockMax = Double.NEGATIVE_INFINITY;
+                int end = Math.min(lowerMins.length, (b + 1) * FANOUT);
+                for (int i = b * FANOUT; i < end; i++) {
+                    blockMin = Math.min(blockMin, lowerMins[i]);
+                    blockMax = Math.max(blockMax, lowerMaxs[i]);
+                }
+                levelMins[b] = blockMin;
+                levelMaxs[b] = blockMax;
+            }
+        }
+
+        // overall min/max
+        if (numLevels > 0) {
+            double[] topMins = mins[numLevels-1], topMaxs = maxs[numLevels-1];
+            for (int b = 0; b < topMins.length; b++) {
+                min = Math.min(min, topMins[b]);
+                max = Math.max(max, topMaxs[b]);
+            }
+        }
+        else {
+            for (int i = 0; i < size; i++) {
+                double value = data.get(i);
+                if (value < min)
+                    min = value;
+                if (value > max)
+                    max = value;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of values.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the minimum of all non-NaN values, or +Inf if there are none.
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * Returns the maximum of all non-NaN values, or -Inf if there are none.
+     */
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the minimum of the non-NaN values in the [first,last] index
+     * range (inclusive), or +Inf if there are none.
+     */
+    public double getMin(int first, int last) {
+        return query(first, last, true);
+    }
+
+    /**
+     * Returns the maximum of the non-NaN values in the [first,last] index
+     * range (inclusive), or -Inf if there are none.
+     */
+    public double getMax(int first, int last) {
+        return query(first, last, false);
+    }
+
+    private double query(int first, int last, boolean isMin) {
+        first = Math.max(first, 0);
+        last = Math.min(last, size - 1);
+        double result = isMin ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+        int i = first;
+        int end = last + 1; // exclusive
+
+        // raw values until the first level-0 block boundary
+        int limit = Math.min(end, alignUp(i, BASE_BLOCK_SIZE));
+        result = scanRaw(i, limit, result, isMin);
+        i = limit;
+
+        // go up the levels while blocks fit, then come down at the end of the range
+        int level = 0;
+        while (level < blockSizes.length && i + blockSizes[level] <= end) {
+            int blockSize = blockSizes[level];
+            int nextLevelSize = level + 1 < blockSizes.length ? blockSizes[level+1] : Integer.MAX_VALUE;
+            // blocks of this level until aligned to the next level (or the range ends)
+            while (i + blockSize <= end && (i % nextLevelSize != 0 || (long)i + nextLevelSize > end)) {
+                result = combine(result, level, i / blockSize, isMin);
+                i += blockSize;
+            }
+            if (i + blockSize > end)
+                break;
+            level++;
+        }
+        while (level >= 0) {
+            if (level < blockSizes.length) {
+                int blockSize = blockSizes[level];
+                while (i + blockSize <= end) {
+                    result = combine(result, level, i / blockSize, isMin);
+                    i += blockSize;
+                }
+            }
+            level--;
+        }
+
+        // remaining raw values
+        return scanRaw(i, end, result, isMin);
+    }
+
+    private double combine(double result, int level, int block, boolean isMin) {
+        return isMin ? Math.min(result, mins[level][block]) : Math.max(result, maxs[level][block]);
+    }
+
+    private double scanRaw(int from, int to, double result, boolean isMin) {
+        for (int i = from; i < to; i++) {
+            double value = data.get(i);
+            if (isMin ? value < result : value > result)
+                result = value;
+        }
+        return result;
+    }
+
+    private static int alignUp(int i, int blockSize) {
+        return (int)Math.min(Integer.MAX_VALUE, ((long)i + blockSize - 1) / blockSize * blockSize);
+    }
+}
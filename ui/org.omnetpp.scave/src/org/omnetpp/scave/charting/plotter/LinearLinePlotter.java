@@ -13,15 +13,28 @@ import org.eclipse.draw2d.Graphics;
 import org.eclipse.swt.SWT;
 import org.omnetpp.common.canvas.ICoordsMapping;
 import org.omnetpp.common.canvas.LargeGraphics;
+import org.omnetpp.common.util.GraphicsUtils;
 import org.omnetpp.scave.charting.ILinePlot;
 import org.omnetpp.scave.charting.dataset.IXYDataset;
 
 /**
  * Line plotter that connects data points with lines.
  *
+ * When there are many more data points than pixel columns in the visible
+ * range, the min/max envelope of the data is drawn instead: for each pixel
+ * column, the index range of the points falling into it is found by binary
+ * search, and their y range is obtained from the dataset's range queries.
+ * This makes drawing time proportional to the width of the plot, not to the
+ * number of data points.
+ *
  * @author Andras
  */
 public class LinearLinePlotter extends LinePlotter {
+    /**
+     * Minimum average number of data points per pixel column above which
+     * the min/max envelope is drawn instead of the individual points.
+     */
+    public static final int DECIMATION_THRESHOLD = 4;
 
     public boolean plot(ILinePlot plot, int series, Graphics graphics, ICoordsMapping mapping, IPlotSymbol symbol, int timeLimitMillis) {
         IXYDataset dataset = plot.getDataset();
@@ -36,6 +49,14 @@ public class LinearLinePlotter extends LinePlotter {
         int[] range = indexRange(plot, series, graphics, mapping);
         int first = range[0], last = range[1];
 
+        if (last - first > DECIMATION_THRESHOLD * (long)Math.max(1, GraphicsUtils.getClip(graphics).width)) {
+            long startTime = System.currentTimeMillis();
+            if (!plotEnvelope(plot, series, graphics, mapping, first, last, timeLimitMillis))
+                return false;
+            int remainingTime = Math.max(0, timeLimitMillis - (int)(System.currentTimeMillis()-startTime));
+            return plotSymbols(plot, series, graphics, mapping, symbol, remainingTime);
+        }
+
         // Performance optimization: avoid painting the same pixels over and over
         // when drawing vertical lines. This results in magnitudes faster
         // execution for large datasets.
@@ -95,4 +116,77 @@ public class LinearLinePlotter extends LinePlotter {
         int remainingTime = Math.max(0, timeLimitMillis - (int)(System.currentTimeMillis()-startTime));
         return plotSymbols(plot, series, graphics, mapping, symbol, remainingTime);
     }
+
+    /**
+     * Draws the data points in the [first,last] index range as a min/max
+     * envelope: one vertical line per pixel column, connected to the
+     * neighboring columns by the lines between their first and last points.
+     */
+    protected boolean plotEnvelope(ILinePlot plot, int series, Graphics graphics, ICoordsMapping mapping, int first, int last, int timeLimitMillis) {
+        IXYDataset dataset = plot.getDataset();
+
+        int origAntialias = graphics.getAntialias();
+        long startTime = System.currentTimeMillis();
+
+        long prevX = Long.MIN_VALUE;
+        long prevY = NAN_PIX;
+        int numColumns = 0;
+        int i = first;
+        while (i <= last) {
+            if ((++numColumns & 63)==0 && System.currentTimeMillis() - startTime > timeLimitMillis) {
+                graphics.setAntialias(origAntialias);
+                return false; // timed out
+            }
+
+            // find the last data point in the same pixel column
+            long x = mapping.toCanvasX(plot.transformX(dataset.getX(series, i)));
+            int j = findLastInColumn(plot, dataset, series, mapping, x, i, last);
+
+            long firstY = mapping.toCanvasY(plot.transformY(dataset.getY(series, i)));
+            long lastY = mapping.toCanvasY(plot.transformY(dataset.getY(series, j)));
+
+            // connect to the previous column
+            if (firstY != NAN_PIX && prevY != NAN_PIX && prevX != Long.MIN_VALUE) {
+                graphics.setAntialias(origAntialias);
+                LargeGraphics.drawLine(graphics, prevX, prevY, x, firstY);
+            }
+
+            // vertical line covering the y range of the column (y axis transforms are monotonic)
+            if (j > i) {
+                double minY = dataset.getMinY(series, i, j);
+                double maxY = dataset.getMaxY(series, i, j);
+                if (minY <= maxY) {
+                    long y1 = mapping.toCanvasY(plot.transformY(minY));
+                    long y2 = mapping.toCanvasY(plot.transformY(maxY));
+                    if (y1 != NAN_PIX && y2 != NAN_PIX) {
+                        graphics.setAntialias(SWT.OFF);
+                        LargeGraphics.drawLine(graphics, x, y1, x, y2);
+                    }
+                }
+            }
+
+            prevX = x;
+            prevY = lastY;
+            i = j + 1;
+        }
+
+        graphics.setAntialias(origAntialias);
+        return true;
+    }
+
+    /**
+     * Returns the largest index in [from,last] whose data point maps to the given
+     * canvas x coordinate; relies on x values being in increasing order.
+     */
+    private static int findLastInColumn(ILinePlot plot, IXYDataset dataset, int series, ICoordsMapping mapping, long x, int from, int last) {
+        int low = from, high = last + 1;
+        while (high - low > 1) {
+            int mid = (low + high) >>> 1;
+            if (mapping.toCanvasX(plot.transformX(dataset.getX(series, mid))) > x)
+                high = mid;
+            else
+                low = mid;
+        }
+        return low;
+    }
 }
@@ -306,8 +306,10 @@ public class ChartScriptEditor extends PyEdit {  //TODO ChartEditor?
                 public void pythonProcessLivenessChanged(PythonProcess proc) {
                     Display.getDefault().syncExec(() -> {
                         if (!isDisposed()) {
-                            if (!proc.getProcess().isAlive()) {
-                                if (!proc.isKilledByUs() && proc.getProcess().exitValue() != 0) {
+                            boolean exited = !proc.getProcess().isAlive();
+                            boolean released = getChartViewer().getPythonProcess() != proc;
+                            if (exited || released) {
+                                if (exited && !proc.isKilledByUs() && proc.getProcess().exitValue() != 0) {
                                     try {
                                         errorStream.write("Python process exited with: " + proc.getProcess().exitValue() + "\n");
                                     }
@@ -1,20 +1,49 @@
 package org.omnetpp.scave.editors;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import org.omnetpp.scave.engine.FileRun;
+import org.omnetpp.scave.engine.FileRunList;
 import org.omnetpp.scave.engine.IDList;
+import org.omnetpp.scave.engine.ResultFile;
+import org.omnetpp.scave.engine.ResultFileList;
 import org.omnetpp.scave.engine.ResultFileManager;
+import org.omnetpp.scave.model2.AndFilter;
 import org.omnetpp.scave.model2.ScaveModelUtil;
 
 /**
  * Result filtering cache for methods of ResultProvider.
  *
+ * A filter result is the subset of all items of the given result types (including
+ * fields, see getAllItems()) that match the filter expression. When there is no cached result for an
+ * expression, but there is one for a less restrictive expression (one whose terms
+ * connected with AND are a subset of the terms of the new one), the new result is
+ * computed by filtering the cached one, and is cached as well.
+ *
+ * When result files are loaded or unloaded, cached results are updated lazily,
+ * on a per file run basis: items of file runs that are gone are removed, and
+ * items of new file runs are filtered and added.
+ *
+ * The total size of the cached ID lists is limited; least recently used results
+ * are discarded first. The methods may be called from multiple threads.
+ *
  * @author andras
  */
 public class FilterCache {
+    public static final long DEFAULT_MEMORY_LIMIT = 256L * 1024 * 1024;
+    private static final int BYTES_PER_ID = 8;
+    private static final boolean INCLUDE_FIELDS = true;
+
     private ResultFileManager manager;
-    private int currentSerial;
+    private int currentSerial = -1;
+    private FileRunSnapshot currentFileRuns;
+    private long memoryLimit;
+    private long memoryUsed = 0;
 
     private static class Key {
         private int resultTypes;
@@ -46,32 +75,219 @@ public class FilterCache {
         }
     }
 
-    private Map<Key,IDList> filterCache = new HashMap<>();
+    /**
+     * The file runs loaded at some point in time. A file run is identified by its
+     * id (which determines the IDs of its items) together with its file and run,
+     * because ids are reused after the manager is cleared.
+     */
+    private static class FileRunSnapshot {
+        Map<Integer,String> signatures = new HashMap<>(); // id -> signature
+        Map<Integer,FileRun> fileRuns = new HashMap<>(); // only valid while this is the current snapshot
+    }
+
+    private static class Entry {
+        IDList idList;
+        Set<String> conjuncts; // null if the expression cannot be analyzed
+        FileRunSnapshot fileRuns; // the file runs idList was computed from
+
+        long getSize() {
+            return idList.size() * (long)BYTES_PER_ID;
+        }
+    }
+
+    private Map<Key,Entry> filterCache = new LinkedHashMap<>(16, 0.75f, true); // in access order, for LRU
 
     public FilterCache(ResultFileManager manager) {
+        this(manager, DEFAULT_MEMORY_LIMIT);
+    }
+
+    public FilterCache(ResultFileManager manager, long memoryLimit) {
         this.manager = manager;
-        this.currentSerial = manager.getSerial();
+        this.memoryLimit = memoryLimit;
     }
 
     private void checkSerial() {
         if (currentSerial != manager.getSerial()) {
-            filterCache.clear();
             currentSerial = manager.getSerial();
+            currentFileRuns = takeSnapshot();
+        }
+    }
+
+    private FileRunSnapshot takeSnapshot() {
+        FileRunSnapshot snapshot = new FileRunSnapshot();
+        ResultFileList files = manager.getFiles();
+        for (int i = 0; i < files.size(); i++) {
+            ResultFile file = files.get(i);
+            String fileSignature = file.getFilePath() + "\t" + file.getFileSize() + "\t" + file.getModificationTime();
+            FileRunList fileRuns = file.getFileRuns();
+            for (int j = 0; j < fileRuns.size(); j++) {
+                FileRun fileRun = fileRuns.get(j);
+                snapshot.signatures.put(fileRun.getId(), fileSignature + "\t" + fileRun.getRun().getRunName());
+                snapshot.fileRuns.put(fileRun.getId(), fileRun);
+            }
         }
+        return snapshot;
+    }
+
+    /**
+     * Returns all items of the given result types. Filter results are subsets of this;
+     * fields are included if scalars are requested. Callers that compute a filter result
+     * themselves (see putFilterResult()) should filter this list, so that cached results
+     * are consistent with the results computed here when files are loaded.
+     */
+    public static IDList getAllItems(ResultFileManager manager, int resultTypes) {
+        if (resultTypes == ResultFileManager.PARAMETER)
+            return manager.getAllParameters();
+        else if (resultTypes == ResultFileManager.SCALAR)
+            return manager.getAllScalars(INCLUDE_FIELDS);
+        else if (resultTypes == ResultFileManager.VECTOR)
+            return manager.getAllVectors();
+        else if (resultTypes == ResultFileManager.STATISTICS)
+            return manager.getAllStatistics();
+        else if (resultTypes == ResultFileManager.HISTOGRAM)
+            return manager.getAllHistograms();
+        else
+            return manager.getAllItems(INCLUDE_FIELDS).filterByTypes(resultTypes);
     }
 
+    /**
+     * Returns the cached filter result, or null. The result may be computed from the
+     * cached result of a less restrictive filter, or from a cached result computed
+     * from a different set of loaded file runs. Computation is done without holding
+     * the lock of this object, so that other threads may use the cache meanwhile.
+     */
     public IDList getFilterResult(int resultTypes, String filterExpression) {
-        checkSerial();
-        return filterCache.get(new Key(resultTypes, filterExpression));
+        return ResultFileManager.callWithReadLock(manager, () -> {
+            Key key = new Key(resultTypes, filterExpression);
+            Set<String> conjuncts = null;
+            Key baseKey = null;
+            Entry baseEntry = null;
+            IDList baseIDList;
+            FileRunSnapshot baseFileRuns, fileRuns;
+            synchronized (this) {
+                checkSerial();
+                fileRuns = currentFileRuns;
+                Entry entry = filterCache.get(key);
+                if (entry != null) {
+                    if (entry.fileRuns == fileRuns)
+                        return entry.idList;
+                    baseKey = key;
+                    baseEntry = entry;
+                }
+                else {
+                    conjuncts = AndFilter.getConjuncts(filterExpression);
+                    if (conjuncts == null)
+                        return null;
+                    for (Map.Entry<Key,Entry> e : filterCache.entrySet()) {
+                        Key candidateKey = e.getKey();
+                        Entry candidate = e.getValue();
+                        boolean isLessRestrictive = (candidateKey.resultTypes & key.resultTypes) == key.resultTypes && candidate.conjuncts != null && conjuncts.containsAll(candidate.conjuncts);
+                        if (isLessRestrictive && (baseEntry == null || candidate.idList.size() < baseEntry.idList.size())) {
+                            baseKey = candidateKey;
+                            baseEntry = candidate;
+                        }
+                    }
+                    if (baseEntry == null)
+                        return null;
+                }
+                baseIDList = baseEntry.idList;
+                baseFileRuns = baseEntry.fileRuns;
+            }
+
+            // the loaded files cannot change while we hold the read lock, so fileRuns remains current
+            IDList idList = baseIDList;
+            if (baseFileRuns != fileRuns)
+                idList = computeUpdate(baseKey, baseIDList, baseFileRuns, fileRuns);
+            IDList result = idList;
+            if (baseKey != key) {
+                result = manager.filterIDList(idList, filterExpression);
+                if (baseKey.resultTypes != key.resultTypes)
+                    result = result.filterByTypes(key.resultTypes);
+            }
+
+            synchronized (this) {
+                if (fileRuns == currentFileRuns) {
+                    if (baseFileRuns != fileRuns && filterCache.get(baseKey) == baseEntry && baseEntry.fileRuns == baseFileRuns) {
+                        long oldSize = baseEntry.getSize();
+                        baseEntry.idList = idList;
+                        baseEntry.fileRuns = fileRuns;
+                        memoryUsed += baseEntry.getSize() - oldSize;
+                        discardLeastRecentlyUsed();
+                    }
+                    if (baseKey != key) {
+                        Entry entry = new Entry();
+                        entry.idList = result;
+                        entry.conjuncts = conjuncts;
+                        entry.fileRuns = fileRuns;
+                        put(key, entry);
+                    }
+                }
+            }
+            return result;
+        });
     }
 
     public void putFilterResult(int resultTypes, String filterExpression, IDList result) {
-        checkSerial();
-        filterCache.put(new Key(resultTypes, filterExpression), result);
+        ResultFileManager.runWithReadLock(manager, () -> {
+            synchronized (this) {
+                checkSerial();
+                Entry entry = new Entry();
+                entry.idList = result;
+                entry.conjuncts = AndFilter.getConjuncts(filterExpression);
+                entry.fileRuns = currentFileRuns;
+                put(new Key(resultTypes, filterExpression), entry);
+            }
+        });
+    }
+
+    /**
+     * Returns the given filter result, computed from the file runs in oldFileRuns,
+     * brought up to date with the file runs in newFileRuns.
+     */
+    private IDList computeUpdate(Key key, IDList idList, FileRunSnapshot oldFileRuns, FileRunSnapshot newFileRuns) {
+        boolean anyRemoved = false;
+        for (Map.Entry<Integer,String> e : oldFileRuns.signatures.entrySet())
+            if (!e.getValue().equals(newFileRuns.signatures.get(e.getKey())))
+                anyRemoved = true;
+
+        FileRunList keptFileRuns = new FileRunList();
+        FileRunList addedFileRuns = new FileRunList();
+        for (Map.Entry<Integer,String> e : newFileRuns.signatures.entrySet()) {
+            FileRun fileRun = newFileRuns.fileRuns.get(e.getKey());
+            if (e.getValue().equals(oldFileRuns.signatures.get(e.getKey())))
+                keptFileRuns.add(fileRun);
+            else
+                addedFileRuns.add(fileRun);
+        }
+
+        if (anyRemoved)
+            idList = idList.intersect(manager.getItems(keptFileRuns, key.resultTypes, INCLUDE_FIELDS));
+        if (addedFileRuns.size() > 0)
+            idList = idList.unionWith(manager.filterIDList(manager.getItems(addedFileRuns, key.resultTypes, INCLUDE_FIELDS), key.filterExpression));
+        return idList;
+    }
+
+    private void put(Key key, Entry entry) {
+        if (entry.getSize() > memoryLimit)
+            return;
+        Entry oldEntry = filterCache.put(key, entry);
+        if (oldEntry != null)
+            memoryUsed -= oldEntry.getSize();
+        memoryUsed += entry.getSize();
+        discardLeastRecentlyUsed();
+    }
+
+    private void discardLeastRecentlyUsed() {
+        if (memoryUsed <= memoryLimit)
+            return;
+        List<Key> keys = new ArrayList<>(filterCache.keySet());
+        for (int i = 0; i < keys.size() && memoryUsed > memoryLimit; i++)
+            memoryUsed -= filterCache.remove(keys.get(i)).getSize();
     }
 
-    public void clear() {
+    public synchronized void clear() {
         filterCache.clear();
+        memoryUsed = 0;
     }
 
 }
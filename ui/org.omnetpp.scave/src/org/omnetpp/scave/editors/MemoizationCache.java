@@ -1,25 +1,86 @@
 package org.omnetpp.scave.editors;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
 
-import org.eclipse.core.runtime.Assert;
+import org.omnetpp.common.Debug;
 import org.omnetpp.common.util.StringUtils;
+import org.omnetpp.scave.ScavePlugin;
 import org.omnetpp.scave.engine.ByteVector;
+import org.omnetpp.scave.engine.ResultFile;
+import org.omnetpp.scave.engine.ResultFileList;
 import org.omnetpp.scave.engine.ResultFileManager;
+import org.omnetpp.scave.engine.RunList;
 
 /**
  * Memoization cache for methods of ResultProvider.
  *
+ * The cache has two tiers. The in-memory tier is an LRU cache limited by the
+ * total size of the stored replies. The optional disk tier stores the replies
+ * compressed, one file per reply, and is limited by the total size of the files;
+ * least recently used files are deleted first. Replies are stored on disk in the
+ * background.
+ *
+ * Replies are keyed by the query and a fingerprint of the result files the reply
+ * depends on (path, size and modification time of each file containing the runs
+ * the caller reports as dependencies). Replies therefore remain valid when files
+ * are reloaded without change or unrelated files are loaded or unloaded, and the
+ * disk tier can be used across IDE sessions. When the manager's serial changes,
+ * in-memory replies whose fingerprint is no longer current are dropped; on disk,
+ * they are only evicted as least recently used ones.
+ *
+ * The methods may be called from multiple threads.
+ *
  * @author andras
  */
 public class MemoizationCache {
+    private static final boolean debug = false;
+
+    private static final int DISK_FORMAT_MAGIC = 0x6f4d4331; // "oMC1"
+    private static final String DISK_FILE_EXTENSION = ".memo";
+
+    // a single thread for all caches, so that writes don't compete for the disk
+    private static final ExecutorService diskWriter = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Memoization cache writer");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
     private ResultFileManager rfm;
-    private int currentSerial = 0;
+    private int fingerprintSerial = -1;
+    private Map<Key,String> fingerprints = new HashMap<>(); // computed at fingerprintSerial
     private long memoryLimit;
     private long memoryUsed = 0;
+    private File diskCacheDir; // null if there is no disk tier
+    private long diskLimit;
+    private long diskUsed = -1; // -1 if not yet known; only accessed from the writer thread
 
     public static class Key {
         private String method;
@@ -34,6 +95,40 @@ public class MemoizationCache {
             return method;
         }
 
+        /**
+         * Returns a string that identifies the key across sessions. Arguments are
+         * encoded with their types and lengths, so that e.g. the integer 1 and
+         * the string "1" give different keys.
+         */
+        public String getPersistentKey() {
+            StringBuilder sb = new StringBuilder(method);
+            for (Object arg : args) {
+                sb.append(':');
+                appendArg(sb, arg);
+            }
+            return sb.toString();
+        }
+
+        private static void appendArg(StringBuilder sb, Object arg) {
+            if (arg == null)
+                sb.append("null");
+            else if (arg instanceof Object[] || arg instanceof Collection) {
+                // lists of different classes are equal if their elements are
+                Collection<?> elements = arg instanceof Object[] ? Arrays.asList((Object[])arg) : (Collection<?>)arg;
+                sb.append(arg instanceof List || arg instanceof Object[] ? "list" : arg.getClass().getName());
+                sb.append('[');
+                for (Object element : elements) {
+                    appendArg(sb, element);
+                    sb.append(',');
+                }
+                sb.append(']');
+            }
+            else {
+                String value = arg.toString();
+                sb.append(arg.getClass().getName()).append('(').append(value.length()).append(')').append(value);
+            }
+        }
+
         @Override
         public int hashCode() {
             return method.hashCode() + 31 * Arrays.deepHashCode(args);
@@ -55,72 +150,337 @@ public class MemoizationCache {
         }
     }
 
-    private Map<Key,List<ByteVector>> cache = new LinkedHashMap<>(); // for FIFO order
+    private static class Entry {
+        final Key key;
+        final Supplier<RunList> dependencies;
+        final String fingerprint;
+        final List<ByteVector> reply;
+        final long size;
+
+        Entry(Key key, Supplier<RunList> dependencies, String fingerprint, List<ByteVector> reply) {
+            this.key = key;
+            this.dependencies = dependencies;
+            this.fingerprint = fingerprint;
+            this.reply = reply;
+            this.size = getTotalSize(reply);
+        }
+    }
+
+    // the fingerprint is part of the key, so entries of other file sets are not returned
+    private Map<String,Entry> cache = new LinkedHashMap<>(16, 0.75f, true); // in access order, for LRU
 
     public MemoizationCache(ResultFileManager rfm) {
         this(rfm, Long.MAX_VALUE);
     }
 
     public MemoizationCache(ResultFileManager rfm, long memoryLimit) {
+        this(rfm, memoryLimit, null, 0);
+    }
+
+    /**
+     * Creates a cache with a disk tier in the given directory. The directory
+     * is created if it does not exist.
+     */
+    public MemoizationCache(ResultFileManager rfm, long memoryLimit, File diskCacheDir, long diskLimit) {
         this.rfm = rfm;
-        this.currentSerial = rfm.getSerial();
         this.memoryLimit = memoryLimit;
+        this.diskCacheDir = diskCacheDir;
+        this.diskLimit = diskLimit;
+    }
+
+    private static long getTotalSize(List<ByteVector> reply) {
+        long totalSize = 0;
+        for (ByteVector v : reply)
+            totalSize += v.size();
+        return totalSize;
+    }
+
+    /**
+     * Returns the fingerprint of the result files containing the runs returned by
+     * the dependencies supplier. The supplier is called with the manager's read
+     * lock held, and only once per key while the manager's serial is unchanged.
+     */
+    private String getFingerprint(Key key, Supplier<RunList> dependencies) {
+        int serial = rfm.getSerial();
+        boolean serialChanged = false;
+        synchronized (this) {
+            if (serial != fingerprintSerial) {
+                fingerprints.clear();
+                fingerprintSerial = serial;
+                serialChanged = true;
+            }
+        }
+        if (serialChanged)
+            discardOutdatedEntries();
+
+        synchronized (this) {
+            String fingerprint = fingerprints.get(key);
+            if (fingerprint != null)
+                return fingerprint;
+        }
+
+        // computed without holding our lock, so that we never wait for the manager's lock while holding it
+        Object[] serialAndFingerprint = ResultFileManager.callWithReadLock(rfm, () -> new Object[] { rfm.getSerial(), computeFingerprint(dependencies.get()) });
+        synchronized (this) {
+            String fingerprint = (String)serialAndFingerprint[1];
+            if ((Integer)serialAndFingerprint[0] == fingerprintSerial)
+                fingerprints.put(key, fingerprint);
+            return fingerprint;
+        }
     }
 
-    private void checkSerial() {
-        if (currentSerial != rfm.getSerial()) {
-            cache.clear();
-            memoryUsed = 0;
-            currentSerial = rfm.getSerial();
+    /**
+     * Removes the in-memory entries whose fingerprint differs from the current one,
+     * as they can no longer be returned. The current fingerprints are remembered.
+     */
+    private void discardOutdatedEntries() {
+        List<Entry> entries;
+        synchronized (this) {
+            entries = new ArrayList<>(cache.values());
+        }
+        if (entries.isEmpty())
+            return;
+
+        // computed without holding our lock, see getFingerprint()
+        Map<Key,String> currentFingerprints = new HashMap<>();
+        int serial = ResultFileManager.callWithReadLock(rfm, () -> {
+            for (Entry entry : entries)
+                if (!currentFingerprints.containsKey(entry.key))
+                    currentFingerprints.put(entry.key, computeFingerprint(entry.dependencies.get()));
+            return rfm.getSerial();
+        });
+
+        synchronized (this) {
+            if (serial != fingerprintSerial)
+                return; // changed again meanwhile; the next call will do it
+            for (Entry entry : entries) {
+                String fingerprint = currentFingerprints.get(entry.key);
+                fingerprints.put(entry.key, fingerprint);
+                if (!fingerprint.equals(entry.fingerprint)) {
+                    String cacheKey = getCacheKey(entry.fingerprint, entry.key);
+                    if (cache.get(cacheKey) == entry) {
+                        cache.remove(cacheKey);
+                        memoryUsed -= entry.size;
+                    }
+                }
+            }
+            if (debug)
+                Debug.println("MemoizationCache: " + cache.size() + " of " + entries.size() + " entries are current");
         }
     }
 
-    public boolean contains(Key key) {
-        checkSerial();
-        return cache.containsKey(key);
+    private String computeFingerprint(RunList runs) {
+        TreeSet<String> items = new TreeSet<>(); // sorted, so independent of the load order
+        for (int i = 0; i < runs.size(); i++) {
+            ResultFileList files = rfm.getFilesForRun(runs.get(i));
+            for (int j = 0; j < files.size(); j++) {
+                ResultFile file = files.get(j);
+                items.add(file.getFilePath() + "\t" + file.getFileSize() + "\t" + file.getModificationTime());
+            }
+        }
+        MessageDigest digest = createDigest();
+        for (String item : items) {
+            digest.update(item.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte)'\n');
+        }
+        return toHexString(digest.digest());
+    }
+
+    private static String getCacheKey(String fingerprint, Key key) {
+        return fingerprint + "/" + key.getPersistentKey();
     }
 
-    public List<ByteVector> get(Key key) {
-        checkSerial();
-        return cache.get(key);
+    public boolean contains(Key key, Supplier<RunList> dependencies) {
+        return get(key, dependencies) != null;
+    }
+
+    /**
+     * Returns the stored reply for the given key, or null. The dependencies supplier
+     * returns the runs whose result files the reply depends on.
+     */
+    public List<ByteVector> get(Key key, Supplier<RunList> dependencies) {
+        String fingerprint = getFingerprint(key, dependencies);
+        String cacheKey = getCacheKey(fingerprint, key);
+        synchronized (this) {
+            Entry entry = cache.get(cacheKey);
+            if (entry != null)
+                return entry.reply;
+        }
+
+        // disk I/O is done without holding the lock
+        List<ByteVector> reply = readFromDisk(cacheKey);
+        if (reply != null) {
+            synchronized (this) {
+                putIntoMemory(cacheKey, new Entry(key, dependencies, fingerprint, reply));
+            }
+        }
+        return reply;
     }
 
     public boolean isCacheable(Key key, long replySize) {
-        return replySize <= memoryLimit;
+        return replySize <= memoryLimit || (diskCacheDir != null && replySize <= diskLimit);
     }
 
-    public void put(Key key, ByteVector reply) {
-        // note: using this API, memory consumption can temporarily exceed memoryLimit
-        checkSerial();
-        Assert.isTrue(reply.size() <= memoryLimit);
-        memoryUsed += reply.size();
-        cache.put(key, List.of(reply));
-        while (memoryUsed > memoryLimit)
-            discardFirst();
+    public void put(Key key, Supplier<RunList> dependencies, ByteVector reply) {
+        put(key, dependencies, List.of(reply));
     }
 
-    public void put(Key key, List<ByteVector> reply) {
-        // note: using this API, memory consumption can temporarily exceed memoryLimit
-        checkSerial();
-        long totalSize = 0;
-        for (ByteVector v : reply)
-            totalSize += v.size();
-        memoryUsed += totalSize;
-        Assert.isTrue(totalSize <= memoryLimit);
-        cache.put(key, reply);
+    public void put(Key key, Supplier<RunList> dependencies, List<ByteVector> reply) {
+        String fingerprint = getFingerprint(key, dependencies);
+        String cacheKey = getCacheKey(fingerprint, key);
+        Entry entry = new Entry(key, dependencies, fingerprint, reply);
+        synchronized (this) {
+            putIntoMemory(cacheKey, entry);
+        }
+        if (diskCacheDir != null && entry.size <= diskLimit)
+            diskWriter.execute(() -> writeToDisk(cacheKey, entry.reply));
+    }
+
+    private void putIntoMemory(String cacheKey, Entry entry) {
+        if (entry.size > memoryLimit)
+            return; // too large, may still be stored on disk
+        Entry oldEntry = cache.put(cacheKey, entry);
+        if (oldEntry != null)
+            memoryUsed -= oldEntry.size;
+        memoryUsed += entry.size;
         while (memoryUsed > memoryLimit)
-            discardFirst();
+            discardLeastRecentlyUsed();
     }
 
-    private void discardFirst() {
-        Map.Entry<Key,List<ByteVector>> entry = cache.entrySet().iterator().next();
-        memoryUsed -= entry.getValue().size();
+    private void discardLeastRecentlyUsed() {
+        Map.Entry<String,Entry> entry = cache.entrySet().iterator().next();
+        memoryUsed -= entry.getValue().size;
         cache.remove(entry.getKey());
     }
 
-    public void clear() {
+    /**
+     * Clears the in-memory tier. The disk tier is kept.
+     */
+    public synchronized void clear() {
         cache.clear();
         memoryUsed = 0;
     }
 
+    private File getDiskFile(String cacheKey) {
+        return new File(diskCacheDir, toHexString(createDigest().digest(cacheKey.getBytes(StandardCharsets.UTF_8))) + DISK_FILE_EXTENSION);
+    }
+
+    private List<ByteVector> readFromDisk(String cacheKey) {
+        if (diskCacheDir == null)
+            return null;
+        File file = getDiskFile(cacheKey);
+        if (!file.isFile())
+            return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new InflaterInputStream(new FileInputStream(file))))) {
+            if (in.readInt() != DISK_FORMAT_MAGIC || !readString(in).equals(cacheKey))
+                return null; // different format, or a hash collision
+            int n = in.readInt();
+            List<ByteVector> reply = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                reply.add(ByteVector.fromByteArray(bytes, bytes.length));
+            }
+            file.setLastModified(System.currentTimeMillis()); // for LRU
+            if (debug)
+                Debug.println("MemoizationCache: read " + file.getName() + " from disk");
+            return reply;
+        }
+        catch (IOException e) {
+            // probably truncated or corrupted
+            file.delete();
+            return null;
+        }
+    }
+
+    private void writeToDisk(String cacheKey, List<ByteVector> reply) {
+        File file = getDiskFile(cacheKey);
+        if (file.isFile())
+            return;
+        File tmpFile = new File(file.getPath() + ".tmp");
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED); // pickles compress well even so
+        try {
+            diskCacheDir.mkdirs();
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new DeflaterOutputStream(new FileOutputStream(tmpFile), deflater)))) {
+                out.writeInt(DISK_FORMAT_MAGIC);
+                writeString(out, cacheKey);
+                out.writeInt(reply.size());
+                for (ByteVector v : reply) {
+                    byte[] bytes = v.toByteArray();
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                }
+            }
+            // readers never see partially written files
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if (debug)
+                Debug.println("MemoizationCache: wrote " + file.getName() + " to disk, " + file.length() + " bytes");
+            if (diskUsed != -1)
+                diskUsed += file.length();
+            if (diskUsed == -1 || diskUsed > diskLimit)
+                enforceDiskLimit();
+        }
+        catch (IOException e) {
+            tmpFile.delete();
+            ScavePlugin.logError("Cannot write memoization cache file " + file, e);
+        }
+        finally {
+            deflater.end();
+        }
+    }
+
+    // unlike writeUTF(), not limited to 64K
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Deletes the least recently used files while the disk tier is over the limit,
+     * and updates diskUsed. The directory is only listed when the running total
+     * is unknown or exceeds the limit, i.e. not on every write. (Files deleted by
+     * readers as corrupt are accounted for here, too.)
+     */
+    private void enforceDiskLimit() {
+        File[] files = diskCacheDir.listFiles((dir, name) -> name.endsWith(DISK_FILE_EXTENSION));
+        if (files == null)
+            return;
+        long totalSize = 0;
+        for (File file : files)
+            totalSize += file.length();
+        if (totalSize > diskLimit) {
+            Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+            for (File file : files) {
+                if (totalSize <= diskLimit)
+                    break;
+                long length = file.length();
+                if (file.delete())
+                    totalSize -= length;
+            }
+        }
+        diskUsed = totalSize;
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e); // SHA-256 is always available
+        }
+    }
+
+    private static String toHexString(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(2 * bytes.length);
+        for (byte b : bytes)
+            sb.append(String.format("%02x", b));
+        return sb.toString();
+    }
 }
@@ -14,6 +14,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import org.eclipse.core.resources.IContainer;
@@ -26,8 +31,13 @@ import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.ListenerList;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.core.runtime.jobs.IJobManager;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.jobs.MultiRule;
 import org.eclipse.jface.dialogs.MessageDialog;
 import org.eclipse.swt.widgets.Display;
 import org.eclipse.ui.IPageLayout;
@@ -40,11 +50,13 @@ import org.omnetpp.common.ui.TimeTriggeredProgressMonitorDialog2;
 import org.omnetpp.common.util.DisplayUtils;
 import org.omnetpp.common.util.StringUtils;
 import org.omnetpp.scave.ScavePlugin;
+import org.omnetpp.scave.common.IndexFileUtils;
 import org.omnetpp.scave.common.ScaveMarkers;
 import org.omnetpp.scave.engine.InterruptedFlag;
 import org.omnetpp.scave.engine.ResultFile;
 import org.omnetpp.scave.engine.ResultFileList;
 import org.omnetpp.scave.engine.ResultFileManager;
+import org.omnetpp.scave.engine.VectorFileIndexer;
 import org.omnetpp.scave.engineext.IResultFilesChangeListener;
 import org.omnetpp.scave.engineext.ResultFileManagerChangeEvent;
 import org.omnetpp.scave.engineext.ResultFileManagerEx;
@@ -66,11 +78,23 @@ public class ResultFilesTracker implements IModelChangeListener {
 
     private static final boolean debug = true;
 
+    private static final int PROGRESS_REPORT_INTERVAL_MILLIS = 100;
+    private static final int LOAD_FLAGS = ResultFileManagerEx.RELOAD_IF_CHANGED | ResultFileManagerEx.ALLOW_INDEXING | ResultFileManagerEx.SKIP_IF_LOCKED;
+
     private ResultFileManager manager; // backreference to the manager it operates on, the manager is owned by the editor
     private Inputs inputs; // backreference to the Inputs element we watch
     private IContainer anfFolder; // the project or folder to resolve relative paths as a base
     private ListenerList<IResultFilesChangeListener> listeners = new ListenerList<>();
 
+    /**
+     * A result file parsed on a worker thread: the separate manager it was
+     * loaded into, or the error that occurred.
+     */
+    protected static class ParsedFile {
+        ResultFileManager detachedManager;
+        Exception error;
+    }
+
     public ResultFilesTracker(ResultFileManager manager, Inputs inputs, IContainer anfFolder) {
         this.manager = manager;
         this.inputs = inputs;
@@ -117,10 +141,23 @@ public class ResultFilesTracker implements IModelChangeListener {
         DisplayUtils.runNowOrSyncInUIThread(() -> {
             List<String> filesThatFailedToLoad = new ArrayList<>();
             TimeTriggeredProgressMonitorDialog2.runWithDialog("Loading result files", (monitor)-> {
-                ResultFileManager.runWithWriteLock(manager, () -> {
-                    InterruptedFlag interruptedFlag = TimeTriggeredProgressMonitorDialog2.getActiveInstance().getInterruptedFlag();
-                    doSynchronize(reload, monitor, interruptedFlag, filesThatFailedToLoad);
-                });
+                InterruptedFlag interruptedFlag = TimeTriggeredProgressMonitorDialog2.getActiveInstance().getInterruptedFlag();
+                SubMonitor subMonitor = SubMonitor.convert(monitor, 100);
+
+                // collecting and parsing the files does not involve the manager, so it is done without the lock
+                Map<String, Map<String, String>> files = collectFiles(subMonitor.split(10));
+                Map<String, ParsedFile> parsedFiles = new ConcurrentHashMap<>();
+                try {
+                    if (!interruptedFlag.getFlag())
+                        prepareFiles(files, reload, parsedFiles, subMonitor.split(80), interruptedFlag);
+                    ResultFileManager.runWithWriteLock(manager, () -> {
+                        doSynchronize(reload, files, parsedFiles, subMonitor.split(10), interruptedFlag, filesThatFailedToLoad);
+                    });
+                }
+                finally {
+                    for (ParsedFile parsedFile : parsedFiles.values())
+                        parsedFile.detachedManager.delete();
+                }
             });
 
             if (!filesThatFailedToLoad.isEmpty()) {
@@ -136,7 +173,152 @@ public class ResultFilesTracker implements IModelChangeListener {
         });
     }
 
-    protected void doSynchronize(boolean reload, IProgressMonitor monitor, InterruptedFlag interruptedFlag, List<String> filesThatFailedToLoad) {
+    /**
+     * Collects the result files specified in the Inputs node. The result maps input
+     * names to workspace path -> file system location maps.
+     */
+    protected Map<String, Map<String, String>> collectFiles(IProgressMonitor monitor) {
+        Map<String, Map<String, String>> files = new LinkedHashMap<>(); //TODO we could use a flat list of structs -- would be easier to understand
+
+        Debug.time("Collecting files", debug, 1, () -> {
+            SubMonitor subMonitor = SubMonitor.convert(monitor, "Collecting files", inputs.getInputs().size());
+            for (InputFile input : inputs.getInputs()) {
+                files.put(input.getName(), collectResultFiles(input.getName(), anfFolder));
+                subMonitor.worked(1);
+            }
+        });
+        return files;
+    }
+
+    /**
+     * Prepares the files for loading on a pool of worker threads: vector files whose
+     * index file is missing or out of date are indexed, and files that need to be
+     * (re)loaded are parsed, each into a separate ResultFileManager, which are put
+     * into parsedFiles under the workspace path of the file. This way only moving
+     * their contents into the manager is done while holding its write lock, and not
+     * parsing and indexing, which are by far the most expensive parts of loading.
+     *
+     * Files that are already loaded and unchanged since are only indexed if needed.
+     * Parse errors are stored in parsedFiles, and get reported when the files are
+     * moved into the manager.
+     */
+    protected void prepareFiles(Map<String, Map<String, String>> files, boolean reload, Map<String, ParsedFile> parsedFiles, IProgressMonitor monitor, InterruptedFlag interruptedFlag) {
+        Map<String,String> filesToPrepare = new LinkedHashMap<>();
+        for (Map<String,String> pathToLocation : files.values())
+            filesToPrepare.putAll(pathToLocation);
+        if (filesToPrepare.isEmpty())
+            return;
+
+        Set<String> upToDateFiles = new HashSet<>();
+        if (!reload) {
+            ResultFileManager.runWithReadLock(manager, () -> {
+                for (Entry<String,String> entry : filesToPrepare.entrySet())
+                    if (manager.isFileUpToDate(entry.getKey(), entry.getValue()))
+                        upToDateFiles.add(entry.getKey());
+            });
+        }
+
+        Debug.time("Preparing files", debug, 1, () -> {
+            int numFiles = filesToPrepare.size();
+            SubMonitor subMonitor = SubMonitor.convert(monitor, "Preparing " + StringUtils.formatCounted(numFiles, "file"), numFiles);
+            int numThreads = Math.min(numFiles, Runtime.getRuntime().availableProcessors());
+            ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+            AtomicInteger numPreparedFiles = new AtomicInteger();
+            try {
+                for (Entry<String,String> entry : filesToPrepare.entrySet()) {
+                    boolean parse = !upToDateFiles.contains(entry.getKey());
+                    executor.execute(() -> {
+                        if (!interruptedFlag.getFlag())
+                            prepareFile(entry.getKey(), entry.getValue(), parse, parsedFiles, interruptedFlag);
+                        numPreparedFiles.incrementAndGet();
+                    });
+                }
+                executor.shutdown();
+
+                // progress is reported from this thread only, as progress monitors are not thread-safe
+                int numReportedFiles = 0;
+                while (!executor.awaitTermination(PROGRESS_REPORT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    int numPrepared = numPreparedFiles.get();
+                    subMonitor.worked(numPrepared - numReportedFiles);
+                    numReportedFiles = numPrepared;
+                }
+            }
+            catch (InterruptedException e) {
+                // the workers stop soon, as the flag is set; wait for them, because the parsed files are deleted afterwards
+                interruptedFlag.setFlag(true);
+                boolean terminated = false;
+                while (!terminated) {
+                    try {
+                        terminated = executor.awaitTermination(PROGRESS_REPORT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                    }
+                    catch (InterruptedException e2) {
+                        // keep waiting
+                    }
+                }
+                Thread.currentThread().interrupt();
+            }
+            finally {
+                executor.shutdownNow();
+            }
+        });
+    }
+
+    protected void prepareFile(String filePath, String fileLocation, boolean parse, Map<String, ParsedFile> parsedFiles, InterruptedFlag interruptedFlag) {
+        IProgressMonitor monitor = new NullProgressMonitor() {
+            @Override
+            public boolean isCanceled() {
+                return interruptedFlag.getFlag();
+            }
+        };
+        try {
+            if (IndexFileUtils.isExistingVectorFile(fileLocation) && !IndexFileUtils.isIndexFileUpToDate(fileLocation))
+                indexVectorFile(filePath, fileLocation, monitor);
+        }
+        catch (Exception e) {
+            // the error occurs again and gets reported when the file is loaded
+            if (debug)
+                Debug.println("Could not index result file " + fileLocation + ": " + e.getMessage());
+        }
+
+        if (parse && !interruptedFlag.getFlag()) {
+            ParsedFile parsedFile = new ParsedFile();
+            parsedFile.detachedManager = new ResultFileManager();
+            parsedFiles.put(filePath, parsedFile);
+            try {
+                parsedFile.detachedManager.loadFile(filePath, fileLocation, LOAD_FLAGS, interruptedFlag);
+            }
+            catch (Exception e) {
+                parsedFile.error = e;
+            }
+        }
+    }
+
+    /**
+     * Indexes a vector file, holding the same scheduling rule (the vector file and
+     * its index file) as VectorFileIndexerJob, so that the file is not indexed by
+     * the job or the builder at the same time.
+     */
+    protected void indexVectorFile(String filePath, String fileLocation, IProgressMonitor monitor) {
+        IResource resource = ResourcesPlugin.getWorkspace().getRoot().findMember(filePath);
+        ISchedulingRule rule = null;
+        if (resource instanceof IFile) {
+            IFile indexFile = IndexFileUtils.getIndexFileFor((IFile)resource);
+            rule = indexFile == null ? resource : MultiRule.combine(resource, indexFile);
+        }
+        IJobManager jobManager = Job.getJobManager();
+        try {
+            if (rule != null)
+                jobManager.beginRule(rule, monitor);
+            if (!IndexFileUtils.isIndexFileUpToDate(fileLocation)) // might have been indexed while we were waiting
+                new VectorFileIndexer().generateIndex(fileLocation, monitor);
+        }
+        finally {
+            if (rule != null)
+                jobManager.endRule(rule); // must be called even if beginRule() failed
+        }
+    }
+
+    protected void doSynchronize(boolean reload, Map<String, Map<String, String>> files, Map<String, ParsedFile> parsedFiles, IProgressMonitor monitor, InterruptedFlag interruptedFlag, List<String> filesThatFailedToLoad) {
         manager.checkWriteLock(); // must run with write lock
 
         if (reload)
@@ -144,15 +326,6 @@ public class ResultFilesTracker implements IModelChangeListener {
 
         SubMonitor subMonitor = SubMonitor.convert(monitor, 100);
 
-        Map<String, Map<String, String>> files = new LinkedHashMap<>(); //TODO we could use a flat list of structs -- would be easier to understand
-
-        Debug.time("Collecting files", debug, 1, () -> {
-            subMonitor.setTaskName("Collecting files");
-            subMonitor.split(10); // 10%
-            for (InputFile input : inputs.getInputs())
-                files.put(input.getName(), collectResultFiles(input.getName(), anfFolder));
-        });
-
         Debug.time("Loading files", debug, 1, () -> {
             int numFiles = files.values().stream().collect(Collectors.summingInt((map) -> map.size()));
             subMonitor.setTaskName("Loading " + StringUtils.formatCounted(numFiles, "file"));
@@ -161,13 +334,25 @@ public class ResultFilesTracker implements IModelChangeListener {
 
             int progressBatchSize = 1+numFiles/1000; // if there are many files, report them in batches (performance)
             int filesUnreported = 0;
-            int loadFlags = ResultFileManagerEx.RELOAD_IF_CHANGED | ResultFileManagerEx.ALLOW_INDEXING | ResultFileManagerEx.SKIP_IF_LOCKED;
             outer: for (String inputName : files.keySet()) {
                 for (Entry<String,String> entry : files.get(inputName).entrySet()) {
+                    if (interruptedFlag.getFlag())
+                        break outer;
+
                     String filePath = entry.getKey();
                     String fileLocation = entry.getValue();
                     try {
-                        ResultFile file = manager.loadFile(filePath, fileLocation, loadFlags, interruptedFlag);
+                        ResultFile file;
+                        ParsedFile parsedFile = parsedFiles.get(filePath);
+                        if (parsedFile == null) // up to date (or changed since prepareFiles(), then it is reloaded here)
+                            file = manager.loadFile(filePath, fileLocation, LOAD_FLAGS, interruptedFlag);
+                        else if (parsedFile.error != null)
+                            throw parsedFile.error;
+                        else {
+                            manager.unloadFile(filePath); // the new content may be empty, e.g. if the file was skipped due to a lock file
+                            manager.moveFilesFrom(parsedFile.detachedManager);
+                            file = manager.getFile(filePath);
+                        }
                         if (file != null)
                             manager.setFileInput(file, inputName);
                     }
@@ -179,9 +364,6 @@ public class ResultFilesTracker implements IModelChangeListener {
                             ScaveMarkers.setMarker((IFile)resource, ScaveMarkers.MARKERTYPE_SCAVEPROBLEM, IMarker.SEVERITY_ERROR, "Could not load result file. Reason: "+e.getMessage(), -1);
                     }
 
-                    if (interruptedFlag.getFlag())
-                        break outer;
-
                     if (++filesUnreported == progressBatchSize) {
                         subMonitor.worked(filesUnreported);
                         filesUnreported = 0;
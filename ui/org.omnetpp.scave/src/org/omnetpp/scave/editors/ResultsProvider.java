@@ -3,6 +3,7 @@ package org.omnetpp.scave.editors;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Supplier;
 
 import org.eclipse.core.runtime.Assert;
 import org.omnetpp.common.Debug;
@@ -12,6 +13,8 @@ import org.omnetpp.scave.engine.IDList;
 import org.omnetpp.scave.engine.InterruptedFlag;
 import org.omnetpp.scave.engine.ResultFileManager;
 import org.omnetpp.scave.engine.ResultsPickler;
+import org.omnetpp.scave.engine.Run;
+import org.omnetpp.scave.engine.RunList;
 import org.omnetpp.scave.engine.ShmSendBuffer;
 import org.omnetpp.scave.engine.ShmSendBufferManager;
 import org.omnetpp.scave.engine.ShmSendBufferVector;
@@ -59,8 +62,8 @@ public class ResultsProvider implements IScaveResultsPickleProvider {
         ShmSendBufferVector call() throws PickleException, IOException;
     };
 
-    private String memoize(Key key, PicklerFunction pickler) throws PickleException, IOException {
-        List<ByteVector> cachedReply = memoizationCache.get(key);
+    private String memoize(Key key, Supplier<RunList> dependencies, PicklerFunction pickler) throws PickleException, IOException {
+        List<ByteVector> cachedReply = memoizationCache.get(key, dependencies);
 
         if (cachedReply != null) {
             Assert.isTrue(cachedReply.size() == 1);
@@ -70,13 +73,13 @@ public class ResultsProvider implements IScaveResultsPickleProvider {
         else {
             Debug.println("ResultsProvider." + key.getMethodName() + ": computing and memoizing reply");
             ShmSendBuffer pickle = Debug.timed("ResultsProvider." + key.getMethodName(), 100, () -> pickler.call());
-            memoizationCache.put(key, pickle.getContentCopy());
+            memoizationCache.put(key, dependencies, pickle.getContentCopy());
             return pickle.getNameAndSize();
         }
     }
 
-    private List<String> memoize(Key key, PicklerFunctionVec pickler) throws PickleException, IOException {
-        List<ByteVector> cachedReply = memoizationCache.get(key);
+    private List<String> memoize(Key key, Supplier<RunList> dependencies, PicklerFunctionVec pickler) throws PickleException, IOException {
+        List<ByteVector> cachedReply = memoizationCache.get(key, dependencies);
         List<String> result = new ArrayList<String>();
         if (cachedReply != null) {
             Debug.println("ResultsProvider." + key.getMethodName() + ": returning memoized reply");
@@ -92,76 +95,111 @@ public class ResultsProvider implements IScaveResultsPickleProvider {
                 result.add(buf.getNameAndSize());
                 intoCache.add(buf.getContentCopy());
             }
-            memoizationCache.put(key, intoCache);
+            memoizationCache.put(key, dependencies, intoCache);
         }
         return result;
     }
 
+    /**
+     * The reply depends on the runs of the result items matching the filter.
+     * Fields are included, so the set of runs may be larger than necessary.
+     */
+    private Supplier<RunList> runsOfMatchingItems(int types, String filterExpression) {
+        return () -> {
+            IDList idList = filterCache.getFilterResult(types, filterExpression);
+            if (idList == null)
+                idList = manager.filterIDList(FilterCache.getAllItems(manager, types), filterExpression);
+            return manager.getUniqueRuns(idList);
+        };
+    }
+
+    private Supplier<RunList> runsMatching(String filterExpression) {
+        return () -> filterExpression.isEmpty() ? new RunList() : manager.filterRunList(manager.getRuns(), filterExpression);
+    }
+
+    private Supplier<RunList> runsNamed(List<String> runIDs) {
+        return () -> {
+            RunList runs = new RunList();
+            for (String runID : runIDs) {
+                Run run = manager.getRunByName(runID);
+                if (run != null)
+                    runs.add(run);
+            }
+            return runs;
+        };
+    }
+
+    /**
+     * The filter matches run attributes, iteration variables or config entries
+     * whose runs are not accessible from Java, so all runs are considered.
+     */
+    private Supplier<RunList> allRuns() {
+        return () -> manager.getRuns();
+    }
+
     public int getSerial() {
         return manager.getSerial();
     }
 
     public String getRunsPickle(String filterExpression) throws PickleException, IOException {
         Key key = new Key("getRunsPickle", filterExpression);
-        return memoize(key, () -> pickler.getRunsPickle(filterExpression));
+        return memoize(key, runsMatching(filterExpression), () -> pickler.getRunsPickle(filterExpression));
     }
 
     public String getRunAttrsPickle(String filterExpression) throws PickleException, IOException {
         Key key = new Key("getRunAttrsPickle", filterExpression);
-        return memoize(key, () -> pickler.getRunattrsPickle(filterExpression));
+        return memoize(key, allRuns(), () -> pickler.getRunattrsPickle(filterExpression));
     }
 
     @Override
     public String getRunAttrsForRunsPickle(List<String> runIDs) throws PickleException, IOException {
         Key key = new Key("getRunAttrsPickle", runIDs);
-        return memoize(key, () -> pickler.getRunattrsForRunsPickle(toStringVector(runIDs)));
+        return memoize(key, runsNamed(runIDs), () -> pickler.getRunattrsForRunsPickle(toStringVector(runIDs)));
     }
 
     @Override
     public String getItervarsPickle(String filterExpression) throws PickleException, IOException {
         Key key = new Key("getItervarsPickle", filterExpression);
-        return memoize(key, () -> pickler.getItervarsPickle(filterExpression));
+        return memoize(key, allRuns(), () -> pickler.getItervarsPickle(filterExpression));
     }
 
     @Override
     public String getItervarsForRunsPickle(List<String> runIDs) throws PickleException, IOException {
         Key key = new Key("getItervarsPickle", runIDs);
-        return memoize(key, () -> pickler.getItervarsForRunsPickle(toStringVector(runIDs)));
+        return memoize(key, runsNamed(runIDs), () -> pickler.getItervarsForRunsPickle(toStringVector(runIDs)));
     }
 
     @Override
     public String getParamAssignmentsPickle(String filterExpression) throws PickleException, IOException {
         Key key = new Key("getParamAssignmentsPickle", filterExpression);
-        return memoize(key, () -> pickler.getParamAssignmentsPickle(filterExpression));
+        return memoize(key, allRuns(), () -> pickler.getParamAssignmentsPickle(filterExpression));
     }
 
     @Override
     public String getParamAssignmentsForRunsPickle(List<String> runIDs) throws PickleException, IOException {
         Key key = new Key("getParamAssignmentsPickle", runIDs);
-        return memoize(key, () -> pickler.getParamAssignmentsForRunsPickle(toStringVector(runIDs)));
+        return memoize(key, runsNamed(runIDs), () -> pickler.getParamAssignmentsForRunsPickle(toStringVector(runIDs)));
     }
 
     @Override
     public String getConfigEntriesPickle(String filterExpression) throws PickleException, IOException {
         Key key = new Key("getConfigEntriesPickle", filterExpression);
-        return memoize(key, () -> pickler.getConfigEntriesPickle(filterExpression));
+        return memoize(key, allRuns(), () -> pickler.getConfigEntriesPickle(filterExpression));
     }
 
     @Override
     public String getConfigEntriesForRunsPickle(List<String> runIDs) throws PickleException, IOException {
         Key key = new Key("getConfigEntriesForRunsPickle", runIDs);
-        return memoize(key, () -> pickler.getConfigEntriesForRunsPickle(toStringVector(runIDs)));
+        return memoize(key, runsNamed(runIDs), () -> pickler.getConfigEntriesForRunsPickle(toStringVector(runIDs)));
     }
 
     public List<String> getResultsPickle(String filterExpression, List<String> rowTypes, boolean omitUnusedColumns, double simTimeStart, double simTimeEnd) throws PickleException, IOException {
         Key key = new Key("getResultsPickle", filterExpression, rowTypes, omitUnusedColumns, simTimeStart, simTimeEnd);
-        List<String> names = memoize(key, (PicklerFunctionVec) () -> {
-            int allTypes = ResultFileManager.PARAMETER | ResultFileManager.SCALAR | ResultFileManager.VECTOR | ResultFileManager.STATISTICS | ResultFileManager.HISTOGRAM;
+        int allTypes = ResultFileManager.PARAMETER | ResultFileManager.SCALAR | ResultFileManager.VECTOR | ResultFileManager.STATISTICS | ResultFileManager.HISTOGRAM;
+        List<String> names = memoize(key, runsOfMatchingItems(allTypes, filterExpression), (PicklerFunctionVec) () -> {
             IDList idList = filterCache.getFilterResult(allTypes, filterExpression);
-            if (idList == null) {
-                // TODO: should the GUI switch for including fields matter here? is that handled elsewhere?
-                idList = manager.filterIDList(manager.getAllItems(true), filterExpression); // no need to cache, as result will be (likely) memoized
-            }
+            if (idList == null)
+                idList = manager.filterIDList(FilterCache.getAllItems(manager, allTypes), filterExpression); // no need to cache, as result will be (likely) memoized
             return pickler.getCsvResultsPickle(idList, toStringVector(rowTypes), omitUnusedColumns, simTimeStart, simTimeEnd);
         });
         return names;
@@ -170,10 +208,10 @@ public class ResultsProvider implements IScaveResultsPickleProvider {
     @Override
     public String getParamValuesPickle(String filterExpression, boolean includeAttrs) throws PickleException, IOException {
         Key key = new Key("getParamValuesPickle", filterExpression, includeAttrs);
-        return memoize(key, () -> {
+        return memoize(key, runsOfMatchingItems(ResultFileManager.PARAMETER, filterExpression), () -> {
             IDList idList = filterCache.getFilterResult(ResultFileManager.PARAMETER, filterExpression);
             if (idList == null)
-                idList = manager.filterIDList(manager.getAllParameters(), filterExpression); // no need to cache, as result will be (likely) memoized
+                idList = manager.filterIDList(FilterCache.getAllItems(manager, ResultFileManager.PARAMETER), filterExpression); // no need to cache, as result will be (likely) memoized
             return pickler.getParamValuesPickle(idList, includeAttrs);
         });
     }
@@ -181,11 +219,10 @@ public class ResultsProvider implements IScaveResultsPickleProvider {
     @Override
     public String getScalarsPickle(String filterExpression, boolean includeAttrs) throws PickleException, IOException {
         Key key = new Key("getScalarsPickle", filterExpression, includeAttrs);
-        return memoize(key, () -> {
+        return memoize(key, runsOfMatchingItems(ResultFileManager.SCALAR, filterExpression), () -> {
             IDList idList = filterCache.getFilterResult(ResultFileManager.SCALAR, filterExpression);
             if (idList == null)
-                // TODO: should the GUI switch for including fields matter here? is that handled elsewhere?
-                idList = manager.filterIDList(manager.getAllScalars(true), filterExpression, -1, interrupted); // no need to cache, as result will be (likely) memoized
+                idList = manager.filterIDList(FilterCache.getAllItems(manager, ResultFileManager.SCALAR), filterExpression, -1, interrupted); // no need to cache, as result will be (likely) memoized
             return pickler.getScalarsPickle(idList, includeAttrs);
         });
     }
@@ -193,10 +230,10 @@ public class ResultsProvider implements IScaveResultsPickleProvider {
     @Override
     public List<String> getVectorsPickle(String filterExpression, boolean includeAttrs, double simTimeStart, double simTimeEnd) throws PickleException, IOException {
         Key key = new Key("getVectorsPickle", filterExpression, includeAttrs, simTimeStart, simTimeEnd);
-        List<String> names = memoize(key, (PicklerFunctionVec) () -> {
+        List<String> names = memoize(key, runsOfMatchingItems(ResultFileManager.VECTOR, filterExpression), (PicklerFunctionVec) () -> {
             IDList idList = filterCache.getFilterResult(ResultFileManager.VECTOR, filterExpression);
             if (idList == null)
-                idList = manager.filterIDList(manager.getAllVectors(), filterExpression, -1, interrupted); // no need to cache, as result will be (likely) memoized
+                idList = manager.filterIDList(FilterCache.getAllItems(manager, ResultFileManager.VECTOR), filterExpression, -1, interrupted); // no need to cache, as result will be (likely) memoized
             return pickler.getVectorsPickle(filterExpression, includeAttrs, simTimeStart, simTimeEnd);
         });
         return names;
@@ -205,12 +242,12 @@ public class ResultsProvider implements IScaveResultsPickleProvider {
     @Override
     public String getStatisticsPickle(String filterExpression, boolean includeAttrs) throws PickleException, IOException {
         Key key = new Key("getStatisticsPickle", filterExpression, includeAttrs);
-        return memoize(key, () -> {
+        return memoize(key, runsOfMatchingItems(ResultFileManager.STATISTICS | ResultFileManager.HISTOGRAM, filterExpression), () -> {
             IDList idList = filterCache.getFilterResult(ResultFileManager.STATISTICS | ResultFileManager.HISTOGRAM, filterExpression);
             if (idList != null)
                     idList = idList.filterByTypes(ResultFileManager.STATISTICS);
             if (idList == null)
-                idList = manager.filterIDList(manager.getAllStatistics(), filterExpression, -1, interrupted); // no need to cache, as result will be (likely) memoized
+                idList = manager.filterIDList(FilterCache.getAllItems(manager, ResultFileManager.STATISTICS), filterExpression, -1, interrupted); // no need to cache, as result will be (likely) memoized
             return pickler.getStatisticsPickle(idList, includeAttrs);
         });
     }
@@ -218,12 +255,12 @@ public class ResultsProvider implements IScaveResultsPickleProvider {
     @Override
     public String getHistogramsPickle(String filterExpression, boolean includeAttrs) throws PickleException, IOException {
         Key key = new Key("getHistogramsPickle", filterExpression, includeAttrs);
-        return memoize(key, () -> {
+        return memoize(key, runsOfMatchingItems(ResultFileManager.STATISTICS | ResultFileManager.HISTOGRAM, filterExpression), () -> {
             IDList idList = filterCache.getFilterResult(ResultFileManager.HISTOGRAM | ResultFileManager.HISTOGRAM, filterExpression);
             if (idList != null)
                 idList = idList.filterByTypes(ResultFileManager.HISTOGRAM);
             if (idList == null)
-                idList = manager.filterIDList(manager.getAllHistograms(), filterExpression, -1, interrupted); // no need to cache, as result will be (likely) memoized
+                idList = manager.filterIDList(FilterCache.getAllItems(manager, ResultFileManager.HISTOGRAM), filterExpression, -1, interrupted); // no need to cache, as result will be (likely) memoized
             return pickler.getHistogramsPickle(idList, includeAttrs);
         });
     }
@@ -7,6 +7,7 @@
 
 package org.omnetpp.scave.editors;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -156,6 +157,9 @@ public class ScaveEditor extends MultiPageEditorPartExt
 
     protected static final String PREF_DONT_SHOW_PYTHON_EXECUTION_WARNING_DIALOG = "dont_show_python_execution_warning_dialog";
 
+    private static final long MEMOIZATION_CACHE_MEMORY_LIMIT = 1024L * 1024 * 1024;
+    private static final long MEMOIZATION_CACHE_DISK_LIMIT = 4096L * 1024 * 1024;
+
     private InputsPage inputsPage;
     private BrowseDataPage browseDataPage;
     private ChartsPage chartsPage;
@@ -536,7 +540,8 @@ public class ScaveEditor extends MultiPageEditorPartExt
 
         IFile inputFile = ((IFileEditorInput) getEditorInput()).getFile();
         tracker = new ResultFilesTracker(manager, analysis.getInputs(), inputFile.getParent());
-        memoizationCache = new MemoizationCache(manager);
+        File memoizationCacheDir = ScavePlugin.getDefault().getStateLocation().append("memoization-cache").toFile();
+        memoizationCache = new MemoizationCache(manager, MEMOIZATION_CACHE_MEMORY_LIMIT, memoizationCacheDir, MEMOIZATION_CACHE_DISK_LIMIT);
         filterCache = new FilterCache(manager);
         analysis.addListener(this);
         analysis.addListener(tracker);
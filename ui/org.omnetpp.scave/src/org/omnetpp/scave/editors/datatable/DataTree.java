@@ -11,7 +11,10 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.ListenerList;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jface.action.ActionContributionItem;
 import org.eclipse.jface.action.IContributionItem;
 import org.eclipse.jface.action.IMenuListener;
@@ -60,6 +63,44 @@ public class DataTree extends Tree implements IDataControl {
     protected DataTreeContentProvider contentProvider;
     protected IPreferenceStore preferenceStore = ScavePlugin.getDefault().getPreferenceStore();
     private FlatModuleTreeAction flatModuleTreeAction;
+    private IndexingJob indexingJob;
+
+    /**
+     * Builds the DataTreeIndex for large inputs in the background, and refreshes
+     * the tree when done.
+     */
+    private class IndexingJob extends Job {
+        private ResultFileManagerEx manager;
+        private IDList idList;
+        private Class<? extends Node>[] levels;
+
+        public IndexingJob(ResultFileManagerEx manager, IDList idList, Class<? extends Node>[] levels) {
+            super("Grouping results");
+            this.manager = manager;
+            this.idList = idList;
+            this.levels = levels;
+            setSystem(true);
+        }
+
+        public boolean isFor(ResultFileManagerEx manager, IDList idList, Class<? extends Node>[] levels) {
+            return this.manager == manager && this.idList == idList && this.levels == levels;
+        }
+
+        @Override
+        protected IStatus run(IProgressMonitor monitor) {
+            DataTreeIndex index = ResultFileManager.callWithReadLock(manager, () -> DataTreeIndex.build(manager, idList, levels, monitor));
+            if (index == null)
+                return Status.CANCEL_STATUS;
+            Display.getDefault().asyncExec(() -> {
+                if (!isDisposed() && indexingJob == this) {
+                    indexingJob = null;
+                    if (contentProvider.setIndex(index))
+                        refresh();
+                }
+            });
+            return Status.OK_STATUS;
+        }
+    }
 
     public DataTree(Composite parent, int style) {
         super(parent, style | SWT.VIRTUAL | SWT.FULL_SELECTION);
@@ -81,6 +122,22 @@ public class DataTree extends Tree implements IDataControl {
                 });
             }
         });
+
+        // item counts of not yet expanded items may be estimates, see DataTreeContentProvider.getChildCount()
+        addListener(SWT.Expand, new Listener() {
+            public void handleEvent(final Event e) {
+                ResultFileManager.runWithReadLock(manager, () -> {
+                    TreeItem item = (TreeItem)e.item;
+                    if (manager != null && item.getData() != null) {
+                        int count = contentProvider.getChildNodes(getPath(item)).length;
+                        if (item.getItemCount() != count)
+                            item.setItemCount(count);
+                    }
+                });
+            }
+        });
+
+        addDisposeListener(e -> cancelIndexing());
     }
 
     public DataTreeContentProvider getContentProvider() {
@@ -175,6 +232,7 @@ public class DataTree extends Tree implements IDataControl {
             Node node = (Node)treeItem.getData();
             if (node == null)
                 continue;
+            contentProvider.fillValue(node);
             writer.addField(node.getColumnText(0));
             writer.addField(node.getColumnText(1));
             writer.endRecord();
@@ -268,10 +326,30 @@ public class DataTree extends Tree implements IDataControl {
     public void refresh() {
             Debug.time("DataTree.refresh()/removeAll", 100, () ->removeAll());
             Debug.time("DataTree.refresh()/clearAll", 100, () ->clearAll(true));
+            if (contentProvider.needsIndexing())
+                startIndexing();
+            else
+                cancelIndexing();
             int length = Debug.timed("DataTree.refresh()/getChildNodes", 100, () -> contentProvider.getChildNodes(new ArrayList<Node>()).length);
             Debug.time("DataTree.refresh()/setItemCount", 100, ()->setItemCount(length));
     }
 
+    protected void startIndexing() {
+        Class<? extends Node>[] levels = contentProvider.getLevels();
+        if (indexingJob != null && indexingJob.isFor(manager, idList, levels))
+            return;
+        cancelIndexing();
+        indexingJob = new IndexingJob(manager, idList, levels);
+        indexingJob.schedule();
+    }
+
+    protected void cancelIndexing() {
+        if (indexingJob != null) {
+            indexingJob.cancel();
+            indexingJob = null;
+        }
+    }
+
     public void contributeToContextMenu(IMenuManager menuManager) {
         final ActionContributionItem item = new ActionContributionItem(flatModuleTreeAction);
         menuManager.add(item);
@@ -334,12 +412,14 @@ public class DataTree extends Tree implements IDataControl {
         Node node = contentProvider.getChildNodes(path)[index];
         path.add(0, node);
 
+        contentProvider.fillValue(node);
+
         setRedraw(false);
         item.setText(0, node.getColumnText(0));
         item.setText(1, node.getColumnText(1));
         item.setData(node);
         item.setImage(node.getImage());
-        item.setItemCount(contentProvider.getChildNodes(path).length);
+        item.setItemCount(contentProvider.getChildCount(path));
         item.setExpanded(node.isExpandedByDefault());
         setRedraw(true);
     }
@@ -12,6 +12,7 @@ import java.util.Map;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.text.WordUtils;
 import org.eclipse.core.runtime.Assert;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.swt.graphics.Image;
 import org.omnetpp.common.Debug;
 import org.omnetpp.common.engine.BigDecimal;
@@ -64,6 +65,8 @@ public class DataTreeContentProvider {
 
     public final static int GROUPSIZE = 1000;
 
+    public final static int MAX_SYNC_INDEXING_SIZE = 100000; // larger IDLists are grouped in the background, see DataTreeIndex
+
     private static boolean debug = false;
 
     protected ResultFileManagerEx manager;
@@ -76,6 +79,8 @@ public class DataTreeContentProvider {
 
     protected Node[] rootNodes;
 
+    protected DataTreeIndex index;
+
     public DataTreeContentProvider() {
         setDefaultLevels();
     }
@@ -83,11 +88,13 @@ public class DataTreeContentProvider {
     public void setResultFileManager(ResultFileManagerEx manager) {
         this.manager = manager;
         rootNodes = null;
+        index = null;
     }
 
     public void setIDList(IDList idList) {
         this.inputIdList = idList;
         rootNodes = null;
+        index = null;
     }
 
     public Class<? extends Node>[] getLevels() {
@@ -99,6 +106,7 @@ public class DataTreeContentProvider {
             Debug.println("setLevels(): " + levels);
         this.levels = levels;
         rootNodes = null;
+        index = null;
     }
 
     public void setDefaultLevels() {
@@ -113,6 +121,27 @@ public class DataTreeContentProvider {
         return numericPrecision;
     }
 
+    /**
+     * Returns true if the input is too large to be grouped synchronously, and
+     * the index has not been set yet. Until then, the tree only contains a
+     * placeholder node.
+     */
+    public boolean needsIndexing() {
+        return manager != null && inputIdList != null && index == null && inputIdList.size() > MAX_SYNC_INDEXING_SIZE;
+    }
+
+    /**
+     * Sets the index built by DataTreeIndex.build() in the background. Returns
+     * false (and ignores the index) if the input has changed since.
+     */
+    public boolean setIndex(DataTreeIndex index) {
+        if (!index.isFor(manager, inputIdList, levels))
+            return false;
+        this.index = index;
+        rootNodes = null;
+        return true;
+    }
+
     public Node[] getChildNodes(List<Node> path) {
         if (manager == null || inputIdList == null)
             return new Node[0];
@@ -125,8 +154,18 @@ public class DataTreeContentProvider {
         if (cachedChildren != null)
             return cachedChildren;
 
+        if (parentNode == null && needsIndexing()) {
+            GroupNode placeholder = new GroupNode("Grouping " + inputIdList.size() + " results...", null);
+            placeholder.children = new Node[0];
+            return new Node[] { placeholder };
+        }
+
         // not cached, compute
-        Node[] children = ResultFileManager.callWithReadLock(manager, () -> computeChildren(path));
+        Node[] children = ResultFileManager.callWithReadLock(manager, () -> {
+            if (index == null && inputIdList.size() <= MAX_SYNC_INDEXING_SIZE)
+                index = Debug.timed("Building DataTreeIndex", 10, () -> DataTreeIndex.build(manager, inputIdList, levels, new NullProgressMonitor()));
+            return computeChildren(path);
+        });
         if (children.length > GROUPSIZE)
             children = makeGroups(children);
 
@@ -139,6 +178,44 @@ public class DataTreeContentProvider {
         return children;
     }
 
+    /**
+     * Returns the number of children of the last node in the path, without
+     * computing the children where possible. Result item attributes are not
+     * counted: if the children are attributes, 1 is returned, and the exact
+     * count is only available after getChildNodes() has been called.
+     */
+    public int getChildCount(List<Node> path) {
+        Node parentNode = path.size() == 0 ? null : path.get(0);
+        Node[] cachedChildren = parentNode == null ? rootNodes : parentNode.children;
+        if (cachedChildren != null)
+            return cachedChildren.length;
+
+        if (parentNode != null && parentNode.group != null && parentNode.group.hasIndexedChildren()) {
+            int count = parentNode.group.getChildren().size();
+            return count > GROUPSIZE ? (count + GROUPSIZE - 1) / GROUPSIZE : count;
+        }
+
+        int currentLevelIndex = parentNode == null ? -1 : ArrayUtils.indexOf(levels, parentNode.getClass());
+        if (currentLevelIndex != -1 && !(parentNode instanceof ResultItemAttributeNode)) {
+            int nextLevelIndex = getNextLevelIndex(parentNode, currentLevelIndex);
+            if (nextLevelIndex < levels.length && levels[nextLevelIndex].equals(ResultItemAttributeNode.class))
+                return 1;
+        }
+        return getChildNodes(path).length;
+    }
+
+    /**
+     * Fills in the value of the node if it has been deferred until the node
+     * is actually displayed.
+     */
+    public void fillValue(Node node) {
+        if (node.valueId != -1) {
+            long id = node.valueId;
+            node.valueId = -1;
+            node.value = ResultFileManager.callWithReadLock(manager, () -> getResultItemShortDescription(manager.getItem(id)));
+        }
+    }
+
     public Node[] makeGroups(Node[] children) {
         List<Node> groups = new ArrayList<>();
         Debug.time("Making groups", 10, () -> {
@@ -171,25 +248,21 @@ public class DataTreeContentProvider {
         }
 
         // determine nextLevelIndex
-        int nextLevelIndex;
-        if (firstNode instanceof ModuleNameNode) {
-            ModuleNameNode moduleNameNode = (ModuleNameNode)firstNode;
-            nextLevelIndex = currentLevelIndex + (moduleNameNode.leaf ? 1 : 0);
-        }
-        else
-            nextLevelIndex = currentLevelIndex + 1;
+        int nextLevelIndex = getNextLevelIndex(firstNode, currentLevelIndex);
 
         // determine collector, whatever TF it is
-        boolean collector = false;
-        for (int j = nextLevelIndex + 1; j < levels.length; j++)
-            if (!levels[j].equals(ResultItemAttributeNode.class))
-                collector = true;
+        boolean collector = DataTreeIndex.isCollectorLevel(levels, nextLevelIndex);
 
         // this is how we want the IDList to split up
         Class<? extends Node> nextLevelClass = nextLevelIndex < levels.length ? levels[nextLevelIndex] : null;
         if (nextLevelClass == null)
             return new Node[0];
 
+        // use the index if it covers this level
+        DataTreeIndex.Group group = firstNode == null ? (index == null ? null : index.getRoot()) : firstNode.group;
+        if (group != null && group.hasIndexedChildren())
+            return computeChildrenFromIndex(group, nextLevelClass, collector);
+
         // sort the IDs into different child nodes, according to nextLevelClass
         IDList currentLevelIdList = firstNode == null ? inputIdList : firstNode.ids;
         Map<Node, IDListBuffer> nodeIdsMap = sortIdListToChildNodes(path, currentLevelIdList, nextLevelClass, collector);
@@ -197,28 +270,104 @@ public class DataTreeContentProvider {
         // get nodes[] from keyset, sort if necessary
         Node[] nodes = nodeIdsMap.keySet().toArray(new Node[0]);
         boolean shouldSort = !nextLevelClass.equals(ResultItemAttributeNode.class);
-        if (shouldSort) {
-            Arrays.sort(nodes, new Comparator<Node>() {
-                public int compare(Node o1, Node o2) {
-                    return StringUtils.dictionaryCompare((o1).getColumnText(0), (o2).getColumnText(0));
-                }
-            });
-        }
+        if (shouldSort)
+            sortNodes(nodes);
 
         // fill in ids[], value
         for (Node node : nodes) {
             node.ids = nodeIdsMap.get(node).toIDList();
-            // add quick value if applicable
-            if (node.ids.size() == 1 && !collector && StringUtils.isEmpty(node.value) &&
-                (!(node instanceof ModuleNameNode) || ((ModuleNameNode)node).leaf))
-            {
-                ResultItem resultItem = manager.getItem(node.ids.get(0));
-                node.value = getResultItemShortDescription(resultItem);
-            }
+            setQuickValue(node, collector);
         }
         return nodes;
     }
 
+    protected int getNextLevelIndex(Node node, int levelIndex) {
+        if (node instanceof ModuleNameNode)
+            return levelIndex + (((ModuleNameNode)node).leaf ? 1 : 0);
+        else
+            return levelIndex + 1;
+    }
+
+    protected Node[] computeChildrenFromIndex(DataTreeIndex.Group group, Class<? extends Node> nextLevelClass, boolean collector) {
+        List<Node> nodes = new ArrayList<>();
+        for (DataTreeIndex.Group childGroup : group.getChildren()) {
+            Node node = createNode(nextLevelClass, childGroup);
+            node.group = childGroup;
+            node.ids = index.getIDs(childGroup);
+            setQuickValue(node, collector);
+            nodes.add(node);
+        }
+        Node[] result = nodes.toArray(new Node[0]);
+        sortNodes(result);
+        return result;
+    }
+
+    protected Node createNode(Class<? extends Node> levelClass, DataTreeIndex.Group group) {
+        Object key = group.key;
+        List<String> keys = key instanceof List ? (List<String>)key : null;
+        if (levelClass.equals(ExperimentNode.class))
+            return new ExperimentNode((String)key);
+        else if (levelClass.equals(MeasurementNode.class))
+            return new MeasurementNode((String)key);
+        else if (levelClass.equals(ReplicationNode.class))
+            return new ReplicationNode((String)key);
+        else if (levelClass.equals(ExperimentMeasurementReplicationNode.class))
+            return new ExperimentMeasurementReplicationNode(keys.get(0), keys.get(1), keys.get(2));
+        else if (levelClass.equals(ConfigNode.class))
+            return new ConfigNode((String)key);
+        else if (levelClass.equals(RunNumberNode.class))
+            return new RunNumberNode((String)key);
+        else if (levelClass.equals(ConfigRunNumberNode.class))
+            return new ConfigRunNumberNode(keys.get(0), keys.get(1));
+        else if (levelClass.equals(FileNameNode.class))
+            return new FileNameNode((String)key);
+        else if (levelClass.equals(RunIdNode.class))
+            return new RunIdNode((String)key);
+        else if (levelClass.equals(FileNameRunIdNode.class))
+            return new FileNameRunIdNode(keys.get(0), keys.get(1));
+        else if (levelClass.equals(ModulePathNode.class))
+            return new ModulePathNode((String)key);
+        else if (levelClass.equals(ModuleNameNode.class))
+            return new ModuleNameNode((String)key, group.leaf);
+        else if (levelClass.equals(ResultItemNode.class))
+            return new ResultItemNode(manager, -1, (String)key);
+        else
+            throw new IllegalArgumentException();
+    }
+
+    /**
+     * Sorts the nodes by their labels. Labels are computed only once per node,
+     * because they may involve accessing the result items.
+     */
+    protected static void sortNodes(Node[] nodes) {
+        String[] labels = new String[nodes.length];
+        Integer[] order = new Integer[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            labels[i] = nodes[i].getColumnText(0);
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer i1, Integer i2) {
+                return StringUtils.dictionaryCompare(labels[i1], labels[i2]);
+            }
+        });
+        Node[] unsortedNodes = nodes.clone();
+        for (int i = 0; i < nodes.length; i++)
+            nodes[i] = unsortedNodes[order[i]];
+    }
+
+    /**
+     * Arranges the value of a node representing a single result item to be
+     * filled in with the item's short description. The description is only
+     * computed when the node gets displayed, see fillValue().
+     */
+    protected void setQuickValue(Node node, boolean collector) {
+        if (node.ids.size() == 1 && !collector && StringUtils.isEmpty(node.value) &&
+            (!(node instanceof ModuleNameNode) || ((ModuleNameNode)node).leaf) &&
+            !(node instanceof ResultItemNode && ((ResultItemNode)node).name == null)) // those display the description anyway
+            node.valueId = node.ids.get(0);
+    }
+
     protected Map<Node, IDListBuffer> sortIdListToChildNodes(List<Node> path, IDList idList, Class<? extends Node> nextLevelClass, boolean collector) {
         int idCount = idList.size();
         Map<Node,IDListBuffer> nodeIdsMap = new LinkedHashMap<>(); // preserve insertion order of children
@@ -561,6 +710,8 @@ public class DataTreeContentProvider {
         public IDList ids;
         public Node[] children;
         public String value = "";
+        public long valueId = -1; // if not -1, value is yet to be filled in from this result item (see fillValue())
+        DataTreeIndex.Group group; // null if not created from the index
 
         public boolean isExpandedByDefault() {
             return false;
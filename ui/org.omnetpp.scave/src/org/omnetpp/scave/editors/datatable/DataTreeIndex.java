@@ -0,0 +1,311 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2020 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.scave.editors.datatable;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.omnetpp.scave.editors.datatable.DataTreeContentProvider.ConfigNode;
+import org.omnetpp.scave.editors.datatable.DataTreeContentProvider.ConfigRunNumberNode;
+import org.omnetpp.scave.editors.datatable.DataTreeContentProvider.ExperimentMeasurementReplicationNode;
+import org.omnetpp.scave.editors.datatable.DataTreeContentProvider.ExperimentNode;
+import org.omnetpp.scave.editors.datatable.DataTreeContentProvider.FileNameNode;
+import org.omnetpp.scave.editors.datatable.DataTreeContentProvider.FileNameRunIdNode;
+import org.omnetpp.scave.editors.datatable.DataTreeContentProvider.MeasurementNode;
+import org.omnetpp.scave.editors.datatable.DataTreeContentProvider.ModuleNameNode;
+import org.omnetpp.scave.editors.datatable.DataTreeContentProvider.ModulePathNode;
+import org.omnetpp.scave.editors.datatable.DataTreeContentProvider.ReplicationNode;
+import org.omnetpp.scave.editors.datatable.DataTreeContentProvider.ResultItemAttributeNode;
+import org.omnetpp.scave.editors.datatable.DataTreeContentProvider.ResultItemNode;
+import org.omnetpp.scave.editors.datatable.DataTreeContentProvider.RunIdNode;
+import org.omnetpp.scave.editors.datatable.DataTreeContentProvider.RunNumberNode;
+import org.omnetpp.scave.engine.FileRun;
+import org.omnetpp.scave.engine.IDList;
+import org.omnetpp.scave.engine.ResultFileManager;
+import org.omnetpp.scave.engine.ResultItem;
+import org.omnetpp.scave.engine.Run;
+import org.omnetpp.scave.engine.Scave;
+
+/**
+ * The grouping of an IDList according to the levels of a DataTree, computed in
+ * a single pass over the IDs for all levels at once. Levels are indexed down to
+ * (but not including) the first result item attribute level or the level where
+ * result items are listed individually; children below that are computed on
+ * demand by DataTreeContentProvider.
+ *
+ * Run, file and experiment related keys are computed once per file run, and
+ * module and result names are interned, so that groups can be looked up without
+ * creating tree nodes for every ID. The IDs of the groups are not stored as
+ * IDLists: every group is a range of a single array of indices into the input
+ * IDList, ordered so that the ranges of child groups are nested in the range of
+ * their parent.
+ *
+ * Building the index may take a while for large IDLists; it can be done in a
+ * background thread while holding the read lock of the result file manager.
+ * The index is immutable once built.
+ */
+@SuppressWarnings("rawtypes")
+public class DataTreeIndex {
+    private static final int CHECK_CANCELED_INTERVAL = 10000;
+
+    private static final Class[] RUN_LEVELS = {
+            ExperimentNode.class, MeasurementNode.class, ReplicationNode.class, ExperimentMeasurementReplicationNode.class,
+            ConfigNode.class, RunNumberNode.class, ConfigRunNumberNode.class, FileNameNode.class, RunIdNode.class, FileNameRunIdNode.class
+    };
+
+    /**
+     * A node of the index. The key identifies the group among its siblings, and
+     * is a String, or a List of Strings for levels that combine several attributes.
+     */
+    public static class Group {
+        public final Object key;
+        public final int level; // index into levels[], -1 for the root
+        public final boolean leaf; // for module name levels: whether the next level comes below this group
+        private int start;  // range in indices[]
+        private int count;
+        private int next;  // only used while building
+        private Map<Object,Group> children; // null if the children are not indexed
+
+        private Group(Object key, int level, boolean leaf) {
+            this.key = key;
+            this.level = level;
+            this.leaf = leaf;
+        }
+
+        public int getIDCount() {
+            return count;
+        }
+
+        public boolean hasIndexedChildren() {
+            return children != null;
+        }
+
+        public Collection<Group> getChildren() {
+            return children == null ? Collections.emptyList() : children.values();
+        }
+
+        private Group getOrCreateChild(Object key, int level, boolean leaf) {
+            Group child = children.get(key);
+            if (child == null)
+                children.put(key, child = new Group(key, level, leaf));
+            return child;
+        }
+    }
+
+    private ResultFileManager manager;
+    private IDList idList;
+    private Class[] levels;
+    private Group root = new Group(null, -1, false);
+    private int[] indices;
+
+    private DataTreeIndex(ResultFileManager manager, IDList idList, Class[] levels) {
+        this.manager = manager;
+        this.idList = idList;
+        this.levels = levels;
+    }
+
+    /**
+     * Returns true if the index was built for the given input.
+     */
+    public boolean isFor(ResultFileManager manager, IDList idList, Class[] levels) {
+        return this.manager == manager && this.idList == idList && this.levels == levels;
+    }
+
+    public Group getRoot() {
+        return root;
+    }
+
+    /**
+     * Returns the IDs in the group, in the order they appear in the input IDList.
+     */
+    public IDList getIDs(Group group) {
+        int[] groupIndices = Arrays.copyOfRange(indices, group.start, group.start + group.count);
+        Arrays.sort(groupIndices);
+        return idList.getSubsetByIndices(groupIndices);
+    }
+
+    /**
+     * Builds the index for the given IDList and levels. Returns null if the
+     * operation was canceled via the progress monitor. The caller must hold
+     * the read lock of the result file manager.
+     */
+    public static DataTreeIndex build(ResultFileManager manager, IDList idList, Class[] levels, IProgressMonitor monitor) {
+        manager.checkReadLock();
+        DataTreeIndex index = new DataTreeIndex(manager, idList, levels);
+        int numIds = idList.size();
+
+        // determine which levels can be indexed, and which levels need result item data
+        int numIndexedLevels = 0;
+        boolean needsResultItem = false;
+        while (numIndexedLevels < levels.length) {
+            Class levelClass = levels[numIndexedLevels];
+            if (levelClass == ResultItemAttributeNode.class || (levelClass == ResultItemNode.class && !isCollectorLevel(levels, numIndexedLevels)))
+                break;
+            if (!isRunLevel(levelClass))
+                needsResultItem = true;
+            numIndexedLevels++;
+        }
+
+        monitor.beginTask("Grouping results", numIds / CHECK_CANCELED_INTERVAL + 1);
+        if (numIndexedLevels > 0)
+            index.root.children = new LinkedHashMap<>();
+        index.root.count = numIds;
+
+        // classify IDs, remembering the deepest group of each
+        Group[] deepestGroups = new Group[numIds];
+        Object[][] runKeysByFileRunId = new Object[16][];
+        Map<String,String> dictionary = new HashMap<>();
+        Map<String,String[]> moduleNameSegments = new HashMap<>();
+        for (int i = 0; i < numIds; i++) {
+            if (i % CHECK_CANCELED_INTERVAL == 0) {
+                if (monitor.isCanceled())
+                    return null;
+                monitor.worked(1);
+            }
+
+            long id = idList.get(i);
+            int fileRunId = ResultFileManager.getFileRunIdOf(id);
+            if (fileRunId >= runKeysByFileRunId.length)
+                runKeysByFileRunId = Arrays.copyOf(runKeysByFileRunId, Math.max(2 * runKeysByFileRunId.length, fileRunId + 1));
+            Object[] runKeys = runKeysByFileRunId[fileRunId];
+            if (runKeys == null)
+                runKeys = runKeysByFileRunId[fileRunId] = getRunKeys(levels, numIndexedLevels, manager.getFileRun(id));
+
+            String moduleName = null;
+            String resultName = null;
+            if (needsResultItem) {
+                ResultItem resultItem = manager.getItem(id);
+                moduleName = intern(dictionary, resultItem.getModuleName());
+                resultName = intern(dictionary, resultItem.getName());
+            }
+
+            Group group = index.root;
+            int consumedSegments = 0; // module name segments covered by module levels so far
+            for (int level = 0; level < numIndexedLevels; level++) {
+                Class levelClass = levels[level];
+                if (levelClass == ModuleNameNode.class) {
+                    // one group per module name segment, down to the first leaf group
+                    String[] segments = moduleNameSegments.get(moduleName);
+                    if (segments == null)
+                        moduleNameSegments.put(moduleName, segments = splitModuleName(dictionary, moduleName));
+                    Group parent = group;
+                    do {
+                        int numRemainingSegments = segments.length - consumedSegments;
+                        String name = numRemainingSegments > 0 ? segments[consumedSegments] : ".";
+                        if (parent.children == null)
+                            parent.children = new LinkedHashMap<>();
+                        group = parent.getOrCreateChild(name, level, numRemainingSegments <= 1);
+                        group.count++;
+                        consumedSegments++;
+                        parent = group;
+                    } while (!group.leaf);
+                }
+                else {
+                    Object key;
+                    if (levelClass == ModulePathNode.class) {
+                        key = moduleName;
+                        consumedSegments = Integer.MAX_VALUE / 2;
+                    }
+                    else if (levelClass == ResultItemNode.class)
+                        key = resultName;
+                    else
+                        key = runKeys[level];
+                    if (group.children == null)
+                        group.children = new LinkedHashMap<>();
+                    group = group.getOrCreateChild(key, level, false);
+                    group.count++;
+                }
+            }
+            deepestGroups[i] = group;
+        }
+
+        // lay out the groups in the index array, then fill it in
+        index.indices = new int[numIds];
+        assignRanges(index.root, 0);
+        for (int i = 0; i < numIds; i++)
+            index.indices[deepestGroups[i].next++] = i;
+
+        monitor.done();
+        return index;
+    }
+
+    private static int assignRanges(Group group, int start) {
+        group.start = start;
+        group.next = start;
+        if (group.children == null)
+            return start + group.count;
+        int end = start;
+        for (Group child : group.children.values())
+            end = assignRanges(child, end);
+        return end;
+    }
+
+    /**
+     * Returns true if result items at the given level are grouped by name,
+     * i.e. there are further non-attribute levels below it.
+     */
+    public static boolean isCollectorLevel(Class[] levels, int levelIndex) {
+        for (int j = levelIndex + 1; j < levels.length; j++)
+            if (!levels[j].equals(ResultItemAttributeNode.class))
+                return true;
+        return false;
+    }
+
+    private static boolean isRunLevel(Class levelClass) {
+        for (Class runLevel : RUN_LEVELS)
+            if (runLevel == levelClass)
+                return true;
+        return false;
+    }
+
+    private static Object[] getRunKeys(Class[] levels, int numIndexedLevels, FileRun fileRun) {
+        Object[] keys = new Object[numIndexedLevels];
+        Run run = fileRun.getRun();
+        for (int level = 0; level < numIndexedLevels; level++) {
+            Class levelClass = levels[level];
+            if (levelClass == ExperimentNode.class)
+                keys[level] = run.getAttribute(Scave.EXPERIMENT);
+            else if (levelClass == MeasurementNode.class)
+                keys[level] = run.getAttribute(Scave.MEASUREMENT);
+            else if (levelClass == ReplicationNode.class)
+                keys[level] = run.getAttribute(Scave.REPLICATION);
+            else if (levelClass == ExperimentMeasurementReplicationNode.class)
+                keys[level] = Arrays.asList(run.getAttribute(Scave.EXPERIMENT), run.getAttribute(Scave.MEASUREMENT), run.getAttribute(Scave.REPLICATION));
+            else if (levelClass == ConfigNode.class)
+                keys[level] = run.getAttribute(Scave.CONFIGNAME);
+            else if (levelClass == RunNumberNode.class)
+                keys[level] = run.getAttribute(Scave.RUNNUMBER);
+            else if (levelClass == ConfigRunNumberNode.class)
+                keys[level] = Arrays.asList(run.getAttribute(Scave.CONFIGNAME), run.getAttribute(Scave.RUNNUMBER));
+            else if (levelClass == FileNameNode.class)
+                keys[level] = fileRun.getFile().getFileName();
+            else if (levelClass == RunIdNode.class)
+                keys[level] = run.getRunName();
+            else if (levelClass == FileNameRunIdNode.class)
+                keys[level] = Arrays.asList(fileRun.getFile().getFileName(), run.getRunName());
+        }
+        return keys;
+    }
+
+    private static String[] splitModuleName(Map<String,String> dictionary, String moduleName) {
+        String[] segments = moduleName.split("\\.");
+        for (int i = 0; i < segments.length; i++)
+            segments[i] = segments[i].isEmpty() ? "." : intern(dictionary, segments[i]);
+        return segments;
+    }
+
+    private static String intern(Map<String,String> dictionary, String s) {
+        String result = dictionary.putIfAbsent(s, s);
+        return result == null ? s : result;
+    }
+}
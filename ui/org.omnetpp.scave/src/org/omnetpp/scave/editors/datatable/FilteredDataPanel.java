@@ -9,6 +9,7 @@ package org.omnetpp.scave.editors.datatable;
 
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.jface.dialogs.MessageDialog;
@@ -30,6 +31,7 @@ import org.omnetpp.common.ui.IHasFocusManager;
 import org.omnetpp.scave.engine.IDList;
 import org.omnetpp.scave.engine.ResultFileManager;
 import org.omnetpp.scave.engineext.ResultFileManagerEx;
+import org.omnetpp.scave.model2.AndFilter;
 import org.omnetpp.scave.model2.FilterField;
 import org.omnetpp.scave.model2.FilterHintsCache;
 
@@ -59,6 +61,7 @@ public class FilteredDataPanel extends Composite implements IHasFocusManager {
     private int itemLimit = 100_000_000; // some sensible limit to the number of data items displayed, may be important with DataTree which isn't O(1)
     private Map<String,IDList> filterCache = new LinkedHashMap<>(); // keep order so we can discard oldest entries
     private FilterHintsCache filterHintsCache = new FilterHintsCache();
+    private boolean resultFilesChanged = false; // filter must be re-run even if the IDList is the same
 
     public FilteredDataPanel(Composite parent, int style, PanelType type) {
         super(parent, style);
@@ -76,8 +79,9 @@ public class FilteredDataPanel extends Composite implements IHasFocusManager {
     }
 
     public void setIDList(IDList idlist) {
-        boolean changed = !idlist.equals(this.idlist);
+        boolean changed = !idlist.equals(this.idlist) || resultFilesChanged;
         this.idlist = idlist;
+        resultFilesChanged = false;
         if (changed) {
             filterCache.clear();
             filterBar.getFilterExpressionProposalProvider().setIDList(dataControl.getResultFileManager(), idlist);
@@ -85,6 +89,17 @@ public class FilteredDataPanel extends Composite implements IHasFocusManager {
         }
     }
 
+    /**
+     * Must be called when result files are loaded or unloaded, before the new IDList
+     * is set. The cached filter results and hints are discarded, because the manager
+     * reuses IDs for different items after reloading files.
+     */
+    public void resultFilesChanged() {
+        filterCache.clear();
+        filterHintsCache.clear();
+        resultFilesChanged = true;
+    }
+
     public IDList getIDList() {
         return idlist;
     }
@@ -236,7 +251,8 @@ public class FilteredDataPanel extends Composite implements IHasFocusManager {
         else if (filterString != null) {
             if (filterCache.containsKey(filterString))
                 return filterCache.get(filterString);
-            IDList filtered = Debug.timed("ResultFileManager.filterIDList", 1, () -> manager.filterIDList(idlist, filterString, itemLimit));
+            IDList base = findLessRestrictiveFilterResult(filterString);
+            IDList filtered = Debug.timed("ResultFileManager.filterIDList", 1, () -> manager.filterIDList(base, filterString, itemLimit));
             filterCache.put(filterString, filtered);
             if (filterCache.size() > 10)
                 filterCache.remove(filterCache.keySet().iterator().next()); // drop first element
@@ -250,6 +266,29 @@ public class FilteredDataPanel extends Composite implements IHasFocusManager {
         }
     }
 
+    /**
+     * Returns the smallest cached result of a filter that is less restrictive than the
+     * given one (see AndFilter.getConjuncts()), or the unfiltered list if there is none.
+     * Refining the filter term by term is common, and it is faster to filter the
+     * result of the previous filter than the whole list. Truncated results cannot
+     * be used.
+     */
+    protected IDList findLessRestrictiveFilterResult(String filterString) {
+        IDList result = idlist;
+        Set<String> conjuncts = AndFilter.getConjuncts(filterString);
+        if (conjuncts != null) {
+            for (Map.Entry<String,IDList> entry : filterCache.entrySet()) {
+                IDList candidate = entry.getValue();
+                if (candidate.size() < itemLimit && candidate.size() < result.size()) {
+                    Set<String> candidateConjuncts = AndFilter.getConjuncts(entry.getKey());
+                    if (candidateConjuncts != null && conjuncts.containsAll(candidateConjuncts))
+                        result = candidate;
+                }
+            }
+        }
+        return result;
+    }
+
     public String getFilter() {
         return filterBar.getFilter();
     }
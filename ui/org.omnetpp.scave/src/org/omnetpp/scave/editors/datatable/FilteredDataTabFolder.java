@@ -177,6 +177,17 @@ public class FilteredDataTabFolder extends TabFolder {
         histogramsPanel.setResultFileManager(manager);
     }
 
+    /**
+     * Clears the filter caches of the panels; see FilteredDataPanel.resultFilesChanged().
+     */
+    public void resultFilesChanged() {
+        allPanel.resultFilesChanged();
+        scalarsPanel.resultFilesChanged();
+        parametersPanel.resultFilesChanged();
+        vectorsPanel.resultFilesChanged();
+        histogramsPanel.resultFilesChanged();
+    }
+
     public void refreshPanelTitles() {
         setPanelTitle(allTab, "&All");
         setPanelTitle(vectorsTab, "&Vectors");
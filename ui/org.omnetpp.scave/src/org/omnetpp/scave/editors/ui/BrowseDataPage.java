@@ -297,6 +297,7 @@ public class BrowseDataPage extends FormEditorPage {
                             public void run() {
                                 scheduledUpdate = null;
                                 if (!isDisposed()) {
+                                    tabFolder.resultFilesChanged();
                                     ResultFileManager.runWithReadLock(manager, () -> {
                                         refreshPage(manager);
                                     });
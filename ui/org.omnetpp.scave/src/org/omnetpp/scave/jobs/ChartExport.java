@@ -85,8 +85,7 @@ public class ChartExport {
         protected IStatus run(final IProgressMonitor monitor) {
             try {
                 ResultFileManager.runWithReadLock(context.manager, () -> {
-                    PythonProcessPool processPool = new PythonProcessPool(1);
-                    processPool.setShouldSetOmnetppMplBackend(false);
+                    PythonProcessPool processPool = new PythonProcessPool(1, false);
                     runChartScript(chart, processPool, context, monitor);
                 });
                 return Status.OK_STATUS;
@@ -16,7 +16,6 @@ import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
-import org.eclipse.core.runtime.SubProgressMonitor;
 import org.eclipse.core.runtime.jobs.ISchedulingRule;
 import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.core.runtime.jobs.MultiRule;
@@ -48,32 +47,15 @@ public class VectorFileIndexerJob extends WorkspaceJob {
     }
 
     /**
-     * Generate indeces for files in the queue.
+     * Generate indeces for files in the queue. Files are indexed in parallel.
      */
     @Override
     public IStatus runInWorkspace(IProgressMonitor monitor)
             throws CoreException {
 
         if (!filesToBeIndexed.isEmpty()) {
-            try {
-                monitor.beginTask(getName(), filesToBeIndexed.size());
-
-                for (IFile file : filesToBeIndexed) {
-                    if (monitor.isCanceled())
-                        return Status.CANCEL_STATUS;
-
-                    monitor.subTask("Indexing "+file.getName());
-                    if (file.exists() && IndexFileUtils.isExistingVectorFile(file) && !IndexFileUtils.isIndexFileUpToDate(file)) {
-                        IProgressMonitor subMonitor = new SubProgressMonitor(monitor, 1);
-                        IndexFileUtils.performIndexing(file, subMonitor);
-                        if (subMonitor.isCanceled())
-                            return Status.CANCEL_STATUS;
-                    }
-                }
-            }
-            finally {
-                monitor.done();
-            }
+            if (!IndexFileUtils.performIndexing(filesToBeIndexed, monitor))
+                return Status.CANCEL_STATUS;
         }
         return Status.OK_STATUS;
     }
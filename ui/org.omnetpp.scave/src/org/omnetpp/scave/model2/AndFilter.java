@@ -149,6 +149,43 @@ public class AndFilter {
         return visitor.isANDPattern;  //TODO why not just tokenize it, and if it doesn't contain OR and NOT tokens, it's an AND pattern...
     }
 
+    /**
+     * Returns the terms of the pattern that are connected with AND on the top level,
+     * in a normalized form. The "*" term, which matches everything, is left out.
+     * If the terms of pattern A are a superset of the terms of pattern B, then A
+     * matches a subset of the items matched by B, and can be evaluated on the
+     * result of B instead of all items. Returns null for invalid or empty patterns.
+     */
+    public static Set<String> getConjuncts(String pattern) {
+        if (pattern == null || pattern.trim().isEmpty() || !isValidPattern(pattern))
+            return null;
+        Set<String> conjuncts = new HashSet<String>();
+        collectConjuncts(MatchExpressionSyntax.parseFilter(pattern).getExpr(), conjuncts);
+        return conjuncts;
+    }
+
+    private static void collectConjuncts(Node node, Set<String> conjuncts) {
+        if (node.type == Node.PARENTHESISED_EXPR)
+            collectConjuncts(node.getExpr(), conjuncts);
+        else if (node.type == Node.BINARY_OPERATOR_EXPR && node.getOperator().getType() == TokenType.AND) {
+            collectConjuncts(node.getLeftOperand(), conjuncts);
+            collectConjuncts(node.getRightOperand(), conjuncts);
+        }
+        else if (node.type != Node.PATTERN || !node.getPatternString().equals("*"))
+            conjuncts.add(formatTerm(node));
+    }
+
+    private static String formatTerm(Node node) {
+        switch (node.type) {
+        case Node.FIELDPATTERN: return quoteStringIfNeeded(node.getFieldName()) + " =~ " + quoteStringIfNeeded(node.getPatternString());
+        case Node.PATTERN: return quoteStringIfNeeded(node.getPatternString());
+        case Node.UNARY_OPERATOR_EXPR: return node.getOperator().getType() + " " + formatTerm(node.getOperand());
+        case Node.BINARY_OPERATOR_EXPR: return "(" + formatTerm(node.getLeftOperand()) + " " + node.getOperator().getType() + " " + formatTerm(node.getRightOperand()) + ")";
+        case Node.PARENTHESISED_EXPR: return formatTerm(node.getExpr());
+        default: throw new IllegalArgumentException();
+        }
+    }
+
     private void parseFields(String pattern) {
         // Note: here we allow non-AND patterns which cannot be represented, but
         // at least the fields can be extracted.
@@ -17,6 +17,8 @@ import static org.omnetpp.scave.model2.FilterField.TYPE;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -33,17 +35,61 @@ import org.omnetpp.scave.model2.FilterField.Kind;
  * Given an IDList, produces hints for different filter fields such as
  * module name, statistic name, run attributes etc.
  *
+ * Hints are cached for several IDLists, up to a memory limit; the hints
+ * of the least recently used IDLists are discarded first.
+ *
  * @author tomi, andras
  */
 public class FilterHintsCache {
-    //TODO cache hints for more than one IDList
-    private ResultFileManager lastManager = null;
-    private IDList lastIdList = null;
+    public static final long DEFAULT_MEMORY_LIMIT = 32L * 1024 * 1024;
+
+    private long memoryLimit;
+    private long memoryUsed = 0;
     private RunList cachedRunList = null;
-    private Map<FilterField.Kind,String[]> cachedNameHints = new HashMap<>();
-    private Map<FilterField,String[]> cachedValueHints = new HashMap<>();
+
+    /**
+     * The hints computed for one IDList. IDList.equals() compares contents, but does
+     * not override Object.equals(), so this class serves as the hash key as well.
+     */
+    private static class Hints {
+        final ResultFileManager manager;
+        final IDList idlist;
+        final int hashCode;
+        Map<FilterField.Kind,String[]> nameHints = new HashMap<>();
+        Map<FilterField,String[]> valueHints = new HashMap<>();
+        long size;
+
+        Hints(ResultFileManager manager, IDList idlist) {
+            this.manager = manager;
+            this.idlist = idlist;
+            this.hashCode = idlist.hashCode();
+            this.size = 8L * idlist.size();
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (obj == null || getClass() != obj.getClass())
+                return false;
+            Hints other = (Hints) obj;
+            return manager == other.manager && hashCode == other.hashCode && idlist.equals(other.idlist);
+        }
+    }
+
+    private Map<Hints,Hints> cache = new LinkedHashMap<>(16, 0.75f, true); // in access order, for LRU
 
     public FilterHintsCache() {
+        this(DEFAULT_MEMORY_LIMIT);
+    }
+
+    public FilterHintsCache(long memoryLimit) {
+        this.memoryLimit = memoryLimit;
     }
 
     public String[] getValueHints(ResultFileManager manager, IDList idlist, FilterField field, String prefix) {
@@ -51,12 +97,15 @@ public class FilterHintsCache {
     }
 
     public String[] getValueHints(ResultFileManager manager, IDList idlist, FilterField field) {
-        setCachedIDList(manager, idlist);
-
-        if (!cachedValueHints.containsKey(field))
-            cachedValueHints.put(field,  computeValueHints(manager, idlist, field));
+        Hints hints = getCachedHints(manager, idlist);
 
-        return cachedValueHints.get(field);
+        String[] result = hints.valueHints.get(field);
+        if (result == null) {
+            result = computeValueHints(manager, idlist, field);
+            hints.valueHints.put(field, result);
+            hintsAdded(hints, result);
+        }
+        return result;
     }
 
     public String[] getNameHints(ResultFileManager manager, IDList idlist, FilterField.Kind kind, String prefix) {
@@ -64,24 +113,54 @@ public class FilterHintsCache {
     }
 
     public String[] getNameHints(ResultFileManager manager, IDList idlist, FilterField.Kind kind) {
-        setCachedIDList(manager, idlist);
+        Hints hints = getCachedHints(manager, idlist);
+
+        String[] result = hints.nameHints.get(kind);
+        if (result == null) {
+            result = computeNameHints(manager, idlist, kind);
+            hints.nameHints.put(kind, result);
+            hintsAdded(hints, result);
+        }
+        return result;
+    }
 
-        if (!cachedNameHints.containsKey(kind))
-            cachedNameHints.put(kind,  computeNameHints(manager, idlist, kind));
+    private Hints getCachedHints(ResultFileManager manager, IDList idlist) {
+        Hints key = new Hints(manager, idlist);
+        Hints hints = cache.get(key);
+        if (hints == null) {
+            hints = key;
+            cache.put(hints, hints);
+            memoryUsed += hints.size;
+            discardLeastRecentlyUsed(hints);
+        }
+        return hints;
+    }
 
-        return cachedNameHints.get(kind);
+    private void hintsAdded(Hints hints, String[] strings) {
+        long size = 16 + 8L * strings.length;
+        for (String s : strings)
+            size += 40 + 2L * s.length(); // rough estimate
+        hints.size += size;
+        memoryUsed += size;
+        discardLeastRecentlyUsed(hints);
     }
 
-    protected void setCachedIDList(ResultFileManager manager, IDList idlist) {
-        if (manager != lastManager || !idlist.equals(lastIdList)) {
-            cachedNameHints.clear();
-            cachedValueHints.clear();
-            cachedRunList = null;
-            lastManager = manager;
-            lastIdList = idlist;
+    private void discardLeastRecentlyUsed(Hints keep) {
+        Iterator<Hints> it = cache.keySet().iterator();
+        while (memoryUsed > memoryLimit && it.hasNext()) {
+            Hints hints = it.next();
+            if (hints != keep) {
+                memoryUsed -= hints.size;
+                it.remove();
+            }
         }
     }
 
+    public void clear() {
+        cache.clear();
+        memoryUsed = 0;
+    }
+
     public static String[] computeValueHints(ResultFileManager manager, IDList idlist, FilterField field) {
         if (field.equals(RUN)) {
             RunList runList = manager.getUniqueRuns(idlist);
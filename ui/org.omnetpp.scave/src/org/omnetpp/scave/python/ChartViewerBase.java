@@ -60,6 +60,26 @@ public abstract class ChartViewerBase {
             proc.kill();
     }
 
+    /**
+     * Gives the Python process back to the pool, which may reuse it for another
+     * chart. Only to be called when no more Python code is going to be executed
+     * for the current chart (i.e. it is not interactive).
+     */
+    public void releasePythonProcess() {
+        if (proc == null)
+            return;
+        PythonProcess releasedProc = proc;
+        proc = null;
+        for (IOutputListener l : outputListeners) {
+            releasedProc.outputMonitoringThread.removeOutputListener(l);
+            releasedProc.errorMonitoringThread.removeOutputListener(l);
+        }
+        processPool.releaseProcess(releasedProc);
+
+        for (MatplotlibChartViewer.IStateChangeListener l : stateChangeListeners)
+            l.pythonProcessLivenessChanged(releasedProc);
+    }
+
     public boolean isAlive() {
         return proc != null && proc.isAlive();
     }
@@ -89,9 +109,12 @@ public abstract class ChartViewerBase {
         proc.getEntryPoint().setResultsProvider(new ResultsProvider(rfm, proc, memoizationCache, filterCache));
         proc.getEntryPoint().setChartProvider(chartProvider = new ChartProvider(chart));
 
+        PythonProcess acquiredProc = proc;
         proc.getProcess().onExit().thenRun(() -> {
-            for (MatplotlibChartViewer.IStateChangeListener l : stateChangeListeners)
-                l.pythonProcessLivenessChanged(proc);
+            // the process may have been released, and exited while used by another chart
+            if (proc == acquiredProc)
+                for (MatplotlibChartViewer.IStateChangeListener l : stateChangeListeners)
+                    l.pythonProcessLivenessChanged(acquiredProc);
         });
 
     }
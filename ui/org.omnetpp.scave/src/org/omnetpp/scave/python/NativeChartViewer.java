@@ -137,7 +137,7 @@ public class NativeChartViewer extends ChartViewerBase {
                     plot.scrollVerticalTo(vt);
                 }
 
-                killPythonProcess();
+                releasePythonProcess();
             });
         };
 
@@ -15,12 +15,18 @@ import java.util.Map;
 
 import org.omnetpp.scave.ScavePlugin;
 import org.omnetpp.scave.charting.dataset.IXYDataset;
+import org.omnetpp.scave.charting.dataset.MinMaxPyramid;
 import org.omnetpp.scave.editors.ui.ScaveUtil;
 import org.omnetpp.scave.engine.ScaveEngine;
 
 import net.razorvine.pickle.PickleException;
 import net.razorvine.pickle.Unpickler;
 
+/**
+ * XY dataset backed by shared memory buffers filled by the Python process.
+ * When a series is mapped, its x range is computed and a min/max pyramid is
+ * built over its y values, so that range queries do not need to scan the data.
+ */
 public class XYDataset implements IXYDataset {
 
     class SeriesData {
@@ -29,6 +35,20 @@ public class XYDataset implements IXYDataset {
         ByteBuffer xs;
         ByteBuffer ys;
 
+        double minX = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        MinMaxPyramid yPyramid;
+
+        public void computeRanges() {
+            int n = xs.capacity() / 8;
+            for (int i = 0; i < n; ++i) {
+                double x = xs.getDouble(i*8);
+                minX = Double.min(minX, x);
+                maxX = Double.max(maxX, x);
+            }
+            yPyramid = new MinMaxPyramid(ys.asDoubleBuffer());
+        }
+
         public void dispose() {
             if (xs != null && xs.capacity() != 0)
                 ScaveEngine.unmapSharedMemory(xs);
@@ -101,6 +121,7 @@ public class XYDataset implements IXYDataset {
 
                 seriesData.xs = map(xName);
                 seriesData.ys = map(yName);
+                seriesData.computeRanges();
 
                 series.add(seriesData);
             }
@@ -170,24 +191,12 @@ public class XYDataset implements IXYDataset {
 
     @Override
     public double getMinX(int series) {
-        double min = Double.POSITIVE_INFINITY;
-
-        SeriesData sd = this.series.get(series);
-        for (int i = 0; i < sd.xs.capacity() / 8; ++i)
-            min = Double.min(min, sd.xs.getDouble(i*8));
-
-        return min;
+        return this.series.get(series).minX;
     }
 
     @Override
     public double getMaxX(int series) {
-        double max = Double.NEGATIVE_INFINITY;
-
-        SeriesData sd = this.series.get(series);
-        for (int i = 0; i < sd.xs.capacity() / 8; ++i)
-            max = Double.max(max, sd.xs.getDouble(i*8));
-
-        return max;
+        return this.series.get(series).maxX;
     }
 
     @Override
@@ -217,24 +226,22 @@ public class XYDataset implements IXYDataset {
 
     @Override
     public double getMinY(int series) {
-        double min = Double.POSITIVE_INFINITY;
-
-        SeriesData sd = this.series.get(series);
-        for (int i = 0; i < sd.ys.capacity() / 8; ++i)
-            min = Double.min(min, sd.ys.getDouble(i*8));
-
-        return min;
+        return this.series.get(series).yPyramid.getMin();
     }
 
     @Override
     public double getMaxY(int series) {
-        double max = Double.NEGATIVE_INFINITY;
+        return this.series.get(series).yPyramid.getMax();
+    }
 
-        SeriesData sd = this.series.get(series);
-        for (int i = 0; i < sd.ys.capacity() / 8; ++i)
-            max = Double.max(max, sd.ys.getDouble(i*8));
+    @Override
+    public double getMinY(int series, int firstItem, int lastItem) {
+        return this.series.get(series).yPyramid.getMin(firstItem, lastItem);
+    }
 
-        return max;
+    @Override
+    public double getMaxY(int series, int firstItem, int lastItem) {
+        return this.series.get(series).yPyramid.getMax(firstItem, lastItem);
     }
 
     private static String formatNumber(double number) {
@@ -0,0 +1,359 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.sequencechart.widgets;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.omnetpp.eventlog.engine.IEvent;
+import org.omnetpp.eventlog.engine.IEventLog;
+import org.omnetpp.eventlog.engine.MatchKind;
+import org.omnetpp.eventlog.engine.SequenceChartFacade;
+
+/**
+ * Multi-resolution summary of the eventlog, used by the sequence chart to draw
+ * zoomed out views without visiting every single event. The eventlog is divided
+ * into buckets of consecutive event numbers; a bucket on level 0 covers
+ * BASE_BUCKET_SIZE event numbers, and every further level doubles the bucket size.
+ * For each bucket, the number of events per module and the message dependencies
+ * aggregated by (cause module, consequence module, reuse) are stored.
+ *
+ * The summary is independent of the timeline mode, the coordinate system origin
+ * and the axis order, because it only refers to event numbers and module ids.
+ * It must be cleared when the eventlog is overwritten or filtered; when events are
+ * appended, only the buckets at the end of the eventlog and the ones with message
+ * dependencies pointing beyond the end are forgotten. Buckets are computed on demand:
+ * level 0 buckets by walking the events, higher levels by merging the two buckets of
+ * the level below. The least recently used buckets are forgotten when there are too
+ * many of them. The time spent on computing buckets can be limited (see limitWork()),
+ * so that painting does not block the user interface on a large eventlog; buckets not
+ * computed in time are returned as null, and the caller should try again later.
+ *
+ * The initialization event is not part of the summary.
+ */
+class EventDensitySummary {
+    public static final int BASE_BUCKET_SIZE = 64;
+    public static final int MAX_LEVEL = 40;
+    private static final int MAX_CACHED_BUCKETS = 200000;
+    private static final int LEVEL_SHIFT = 56; // bucket keys are composed of the level and the index
+
+    /**
+     * Aggregated message dependencies between two modules within a bucket.
+     * The consequence event numbers are the first and last ones among the
+     * aggregated dependencies.
+     */
+    public static class Bundle {
+        public final int causeModuleId;
+        public final int consequenceModuleId;
+        public final boolean isReuse;
+        public int count;
+        public long firstConsequenceEventNumber;
+        public long lastConsequenceEventNumber;
+
+        public Bundle(int causeModuleId, int consequenceModuleId, boolean isReuse) {
+            this.causeModuleId = causeModuleId;
+            this.consequenceModuleId = consequenceModuleId;
+            this.isReuse = isReuse;
+        }
+
+        private long getKey() {
+            return getKey(causeModuleId, consequenceModuleId, isReuse);
+        }
+
+        private static long getKey(int causeModuleId, int consequenceModuleId, boolean isReuse) {
+            return ((long)causeModuleId << 32) | ((consequenceModuleId & 0x7fffffffL) << 1) | (isReuse ? 1 : 0);
+        }
+    }
+
+    /**
+     * Summary of the events within a range of event numbers. Empty buckets have
+     * -1 as first and last event number.
+     */
+    public static class Bucket {
+        public long firstEventNumber = -1;
+        public long lastEventNumber = -1;
+        public int numEvents;
+        public int[] moduleIds;  // sorted
+        public int[] eventCounts;  // per module, parallel to moduleIds
+        public Bundle[] bundles;
+        public boolean hasMissingConsequences; // some consequence events were not (yet) in the eventlog
+
+        public boolean isEmpty() {
+            return numEvents == 0;
+        }
+    }
+
+    private IEventLog eventLog;
+    private SequenceChartFacade sequenceChartFacade;
+    private long lastKnownEventNumber;
+    private Map<Long, Bucket> buckets = new LinkedHashMap<Long, Bucket>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Bucket> eldest) {
+            return size() > MAX_CACHED_BUCKETS;
+        }
+    };
+
+    // limiting the time spent on computing buckets
+    private long deadline = Long.MAX_VALUE;
+    private boolean isWorkDone;
+    private boolean isIncomplete;
+
+    public EventDensitySummary(IEventLog eventLog, SequenceChartFacade sequenceChartFacade) {
+        this.eventLog = eventLog;
+        this.sequenceChartFacade = sequenceChartFacade;
+        lastKnownEventNumber = getLastEventNumber();
+    }
+
+    /**
+     * Returns the number of event numbers covered by a bucket on the given level.
+     */
+    public static long getBucketSize(int level) {
+        return (long)BASE_BUCKET_SIZE << level;
+    }
+
+    /**
+     * Returns the lowest level where a bucket covers at least the given number of events.
+     */
+    public static int getLevelForBucketSize(double numEvents) {
+        int level = 0;
+        while (level < MAX_LEVEL && getBucketSize(level) < numEvents)
+            level++;
+        return level;
+    }
+
+    /**
+     * Returns the index of the bucket containing the given event number on the given level.
+     */
+    public static long getBucketIndex(int level, long eventNumber) {
+        return eventNumber / getBucketSize(level);
+    }
+
+    private static long getKey(int level, long index) {
+        return ((long)level << LEVEL_SHIFT) | index;
+    }
+
+    private long getLastEventNumber() {
+        IEvent lastEvent = eventLog.getLastEvent();
+        return lastEvent == null ? -1 : lastEvent.getEventNumber();
+    }
+
+    /**
+     * Forgets all computed buckets.
+     */
+    public void clear() {
+        buckets.clear();
+        lastKnownEventNumber = getLastEventNumber();
+    }
+
+    /**
+     * Forgets the buckets affected by events appended to the eventlog: the ones
+     * covering the end of the eventlog, and the ones with message dependencies whose
+     * consequence events were not yet in the eventlog.
+     */
+    public void eventLogAppended() {
+        long firstNewEventNumber = lastKnownEventNumber + 1;
+        buckets.entrySet().removeIf(entry -> {
+            int level = (int)(entry.getKey() >>> LEVEL_SHIFT);
+            long index = entry.getKey() & ((1L << LEVEL_SHIFT) - 1);
+            return index >= getBucketIndex(level, firstNewEventNumber) || entry.getValue().hasMissingConsequences;
+        });
+        lastKnownEventNumber = getLastEventNumber();
+    }
+
+    /**
+     * Limits the time spent on computing buckets from now on to the given number
+     * of milliseconds. When the time is up, getBucket() returns null for buckets
+     * not yet computed; at least one level 0 bucket is computed in any case, so
+     * that repeated attempts make progress. Use isIncomplete() to check whether
+     * that happened.
+     */
+    public void limitWork(long millis) {
+        deadline = System.currentTimeMillis() + millis;
+        isWorkDone = false;
+        isIncomplete = false;
+    }
+
+    /**
+     * Returns true if getBucket() returned null since the last limitWork() call.
+     */
+    public boolean isIncomplete() {
+        return isIncomplete;
+    }
+
+    /**
+     * Returns the bucket with the given index on the given level, computing it if
+     * necessary. Returns null if the bucket could not be computed within the time
+     * limit set by limitWork().
+     */
+    public Bucket getBucket(int level, long index) {
+        long key = getKey(level, index);
+        Bucket bucket = buckets.get(key);
+        if (bucket == null) {
+            if (level == 0) {
+                if (isWorkDone && System.currentTimeMillis() > deadline) {
+                    isIncomplete = true;
+                    return null;
+                }
+                bucket = computeBucket(index);
+                isWorkDone = true;
+            }
+            else {
+                Bucket left = getBucket(level - 1, 2 * index);
+                Bucket right = left == null ? null : getBucket(level - 1, 2 * index + 1);
+                if (right == null)
+                    return null;
+                bucket = mergeBuckets(left, right);
+            }
+            buckets.put(key, bucket);
+        }
+        return bucket;
+    }
+
+    /**
+     * Returns the number of events between the given event numbers (inclusive),
+     * counted on the given level. Event numbers may be sparse (e.g. in a filtered
+     * eventlog), so this may be much less than the difference of the event numbers.
+     * Buckets at the ends of the range are counted in proportion to their overlap
+     * with it. Buckets not computed within the time limit (see limitWork()) are
+     * estimated from the computed ones; if none could be computed, the difference
+     * of the event numbers is returned as an upper bound.
+     */
+    public double estimateNumEvents(int level, long startEventNumber, long endEventNumber) {
+        long bucketSize = getBucketSize(level);
+        double numEvents = 0;
+        long numCountedEventNumbers = 0;
+        long firstIndex = getBucketIndex(level, startEventNumber);
+        long lastIndex = getBucketIndex(level, endEventNumber);
+        for (long index = firstIndex; index <= lastIndex; index++) {
+            Bucket bucket = getBucket(level, index);
+            if (bucket == null)
+                continue;
+            long overlap = Math.min(endEventNumber, (index + 1) * bucketSize - 1) - Math.max(startEventNumber, index * bucketSize) + 1;
+            numEvents += (double)bucket.numEvents * overlap / bucketSize;
+            numCountedEventNumbers += overlap;
+        }
+        long numEventNumbers = endEventNumber - startEventNumber + 1;
+        if (numCountedEventNumbers == 0)
+            return numEventNumbers;
+        else
+            return numEvents * numEventNumbers / numCountedEventNumbers;
+    }
+
+    private Bucket computeBucket(long index) {
+        long beginEventNumber = index * BASE_BUCKET_SIZE;
+        long endEventNumber = beginEventNumber + BASE_BUCKET_SIZE - 1;
+        Map<Integer, int[]> eventCounts = new HashMap<Integer, int[]>();
+        Map<Long, Bundle> bundles = new HashMap<Long, Bundle>();
+        Bucket bucket = new Bucket();
+
+        // NOTE: navigating through next event takes care about leaving events out which are not in the filter's result
+        IEvent firstEvent = eventLog.getEventForEventNumber(Math.max(1, beginEventNumber), MatchKind.FIRST_OR_NEXT);
+        long eventPtr = firstEvent == null ? 0 : firstEvent.getCPtr();
+        while (eventPtr != 0) {
+            long eventNumber = sequenceChartFacade.IEvent_getEventNumber(eventPtr);
+            if (eventNumber > endEventNumber)
+                break;
+            if (bucket.firstEventNumber == -1)
+                bucket.firstEventNumber = eventNumber;
+            bucket.lastEventNumber = eventNumber;
+            bucket.numEvents++;
+
+            int moduleId = sequenceChartFacade.IEvent_getModuleId(eventPtr);
+            int[] count = eventCounts.get(moduleId);
+            if (count == null)
+                eventCounts.put(moduleId, count = new int[1]);
+            count[0]++;
+
+            int numConsequences = sequenceChartFacade.IEvent_getNumConsequences(eventPtr);
+            for (int i = 0; i < numConsequences; i++) {
+                long messageDependencyPtr = sequenceChartFacade.IEvent_getConsequence(eventPtr, i);
+                long consequenceEventPtr = sequenceChartFacade.IMessageDependency_getConsequenceEvent(messageDependencyPtr);
+                // events may be omitted from the log, or not yet written
+                if (consequenceEventPtr == 0) {
+                    bucket.hasMissingConsequences = true;
+                    continue;
+                }
+                int consequenceModuleId = sequenceChartFacade.IEvent_getModuleId(consequenceEventPtr);
+                long consequenceEventNumber = sequenceChartFacade.IEvent_getEventNumber(consequenceEventPtr);
+                boolean isReuse = sequenceChartFacade.IMessageDependency_isReuse(messageDependencyPtr);
+                long key = Bundle.getKey(moduleId, consequenceModuleId, isReuse);
+                Bundle bundle = bundles.get(key);
+                if (bundle == null) {
+                    bundles.put(key, bundle = new Bundle(moduleId, consequenceModuleId, isReuse));
+                    bundle.firstConsequenceEventNumber = consequenceEventNumber;
+                    bundle.lastConsequenceEventNumber = consequenceEventNumber;
+                }
+                bundle.count++;
+                bundle.firstConsequenceEventNumber = Math.min(bundle.firstConsequenceEventNumber, consequenceEventNumber);
+                bundle.lastConsequenceEventNumber = Math.max(bundle.lastConsequenceEventNumber, consequenceEventNumber);
+            }
+
+            eventPtr = sequenceChartFacade.IEvent_getNextEvent(eventPtr);
+        }
+
+        fillModuleCounts(bucket, eventCounts);
+        bucket.bundles = bundles.values().toArray(new Bundle[0]);
+        return bucket;
+    }
+
+    private static Bucket mergeBuckets(Bucket left, Bucket right) {
+        if (right.isEmpty())
+            return left;
+        if (left.isEmpty())
+            return right;
+
+        Bucket bucket = new Bucket();
+        bucket.firstEventNumber = left.firstEventNumber;
+        bucket.lastEventNumber = right.lastEventNumber;
+        bucket.numEvents = left.numEvents + right.numEvents;
+        bucket.hasMissingConsequences = left.hasMissingConsequences || right.hasMissingConsequences;
+
+        Map<Integer, int[]> eventCounts = new HashMap<Integer, int[]>();
+        for (Bucket child : new Bucket[] {left, right}) {
+            for (int i = 0; i < child.moduleIds.length; i++) {
+                int[] count = eventCounts.get(child.moduleIds[i]);
+                if (count == null)
+                    eventCounts.put(child.moduleIds[i], count = new int[1]);
+                count[0] += child.eventCounts[i];
+            }
+        }
+        fillModuleCounts(bucket, eventCounts);
+
+        Map<Long, Bundle> bundles = new HashMap<Long, Bundle>();
+        for (Bucket child : new Bucket[] {left, right}) {
+            for (Bundle childBundle : child.bundles) {
+                long key = childBundle.getKey();
+                Bundle bundle = bundles.get(key);
+                if (bundle == null) {
+                    bundles.put(key, bundle = new Bundle(childBundle.causeModuleId, childBundle.consequenceModuleId, childBundle.isReuse));
+                    bundle.firstConsequenceEventNumber = childBundle.firstConsequenceEventNumber;
+                    bundle.lastConsequenceEventNumber = childBundle.lastConsequenceEventNumber;
+                }
+                bundle.count += childBundle.count;
+                bundle.firstConsequenceEventNumber = Math.min(bundle.firstConsequenceEventNumber, childBundle.firstConsequenceEventNumber);
+                bundle.lastConsequenceEventNumber = Math.max(bundle.lastConsequenceEventNumber, childBundle.lastConsequenceEventNumber);
+            }
+        }
+        bucket.bundles = bundles.values().toArray(new Bundle[0]);
+        return bucket;
+    }
+
+    private static void fillModuleCounts(Bucket bucket, Map<Integer, int[]> eventCounts) {
+        int[] moduleIds = new int[eventCounts.size()];
+        int i = 0;
+        for (int moduleId : eventCounts.keySet())
+            moduleIds[i++] = moduleId;
+        Arrays.sort(moduleIds);
+        bucket.moduleIds = moduleIds;
+        bucket.eventCounts = new int[moduleIds.length];
+        for (i = 0; i < moduleIds.length; i++)
+            bucket.eventCounts[i] = eventCounts.get(moduleIds[i])[0];
+    }
+}
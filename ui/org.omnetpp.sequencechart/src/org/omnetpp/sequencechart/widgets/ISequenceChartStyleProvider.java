@@ -19,6 +19,8 @@ public interface ISequenceChartStyleProvider
 
     Color getBookmarkColor();
 
+    Color getSearchHitColor();
+
     Color getZeroSimulationTimeRegionColor();
 
     Color getLongArrowheadColor();
@@ -51,10 +53,20 @@ public interface ISequenceChartStyleProvider
 
     Color getEventFillColor(long eventPtr);
 
+    /**
+     * Returns the color of the event density bars drawn in zoomed out views.
+     */
+    Color getEventDensityColor();
+
     Font getMessageDependencyLabelFont(long messageDependencyPtr);
 
     Color getMessageDependencyColor(long messageDependencyPtr);
 
+    /**
+     * Returns the color of aggregated message dependencies drawn in zoomed out views.
+     */
+    Color getMessageDependencyBundleColor(boolean isReuse);
+
     int getMessageDependencyLineStyle(long messageDependencyPtr);
 
     int[] getMessageDependencyLineDash(long messageDependencyPtr);
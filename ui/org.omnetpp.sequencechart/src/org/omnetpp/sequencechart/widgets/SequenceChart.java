@@ -81,6 +81,7 @@ import org.omnetpp.common.eventlog.EventLogFilterParameters;
 import org.omnetpp.common.eventlog.EventLogFindTextDialog;
 import org.omnetpp.common.eventlog.EventLogInput;
 import org.omnetpp.common.eventlog.EventLogInput.TimelineMode;
+import org.omnetpp.common.eventlog.EventLogSearchIndex;
 import org.omnetpp.common.eventlog.EventLogSelection;
 import org.omnetpp.common.eventlog.EventNumberRangeSet;
 import org.omnetpp.common.eventlog.IEventLogChangeListener;
@@ -152,6 +153,10 @@ public class SequenceChart
     private static final int ANTIALIAS_TURN_ON_AT_MSEC = 100;
     private static final int ANTIALIAS_TURN_OFF_AT_MSEC = 300;
     private static final int MOUSE_TOLERANCE = 3;
+    private static final double EVENT_DENSITY_SUMMARY_EVENTS_PER_PIXEL = EventDensitySummary.BASE_BUCKET_SIZE / 2; // above this, events and message dependencies are drawn aggregated
+    private static final int EVENT_DENSITY_SUMMARY_BUCKET_WIDTH = 2; // approximate width of a bucket of the event density summary in pixels
+    private static final int MAX_SEARCH_HIT_MARKS = 10000; // above this, the rest of the search hits in the viewport are not marked
+    private static final int EVENT_DENSITY_SUMMARY_TIME_LIMIT_MILLIS = 200; // time spent on computing the summary in one go, the rest is computed in later redraws
 
     private boolean debug = false;
 
@@ -246,6 +251,8 @@ public class SequenceChart
     private boolean invalidVirtualSize = false; // requests recalculation
     private boolean invalidViewportSize = false; // requests recalculation
 
+    private EventDensitySummary eventDensitySummary; // cached summary of the eventlog used for drawing zoomed out views
+
     private boolean drawWithAntialias = true; // antialias gets turned on/off automatically
     private boolean paintHasBeenFinished = false; // true means the user did not cancel the last paint
 
@@ -1433,6 +1440,7 @@ public class SequenceChart
                 eventLog = null;
                 eventLogInput = null;
                 sequenceChartFacade = null;
+                eventDensitySummary = null;
                 styleProvider.setEventLogInput(null);
                 labelProvider.setEventLogInput(null);
             }
@@ -1440,6 +1448,7 @@ public class SequenceChart
                 eventLog = newEventLogInput.getEventLog();
                 eventLogInput = newEventLogInput;
                 sequenceChartFacade = newEventLogInput.getSequenceChartFacade();
+                eventDensitySummary = new EventDensitySummary(eventLog, sequenceChartFacade);
                 styleProvider.setEventLogInput(newEventLogInput);
                 labelProvider.setEventLogInput(newEventLogInput);
                 eventLogInput.addEventLogChangedListener(SequenceChart.this);
@@ -1470,6 +1479,7 @@ public class SequenceChart
         }
         selectedObjects.clear();
         highlightedObjects.clear();
+        eventDensitySummary.clear();
         invalidate();
     }
 
@@ -1717,6 +1727,7 @@ public class SequenceChart
         Display.getCurrent().asyncExec(new Runnable() {
             public void run() {
                 try {
+                    eventDensitySummary.eventLogAppended();
                     eventLogChanged();
                 }
                 catch (RuntimeException e) {
@@ -1772,6 +1783,7 @@ public class SequenceChart
 
     public void eventLogFiltered() {
         eventLog = eventLogInput.getEventLog();
+        eventDensitySummary = new EventDensitySummary(eventLog, sequenceChartFacade);
 
         if (eventLog.isEmpty())
             relocateFixPoint(null, 0);
@@ -1801,6 +1813,7 @@ public class SequenceChart
 
     public void eventLogFilterRemoved() {
         eventLog = eventLogInput.getEventLog();
+        eventDensitySummary = new EventDensitySummary(eventLog, sequenceChartFacade);
 
         if (sequenceChartFacade.getTimelineCoordinateSystemOriginEventNumber() != -1)
             relocateFixPoint(sequenceChartFacade.getTimelineCoordinateSystemOriginEvent(), 0);
@@ -1841,15 +1854,26 @@ public class SequenceChart
             findText = findTextDialog.getValue();
 
             if (findText != null) {
-                try {
-                    IEvent event = getSelectedEvent();
+                IEvent startEvent = getSelectedEvent();
+                if (startEvent == null) {
+                    long[] eventPtrRange = getFirstLastEventPtrForViewportRange(0, 0);
+                    startEvent = sequenceChartFacade.IEvent_getEvent(eventPtrRange[0]);
+                    if (startEvent == null)
+                        return;
+                }
+                long startEventNumber = startEvent.getEventNumber();
+                boolean forward = !findTextDialog.isBackward();
 
-                    if (event == null) {
-                        long[] eventPtrRange = getFirstLastEventPtrForViewportRange(0, 0);
-                        event = sequenceChartFacade.IEvent_getEvent(eventPtrRange[0]);
-                        if (event == null)
-                            return;
-                    }
+                // the search runs in the background if the file can be indexed
+                boolean started = eventLogInput.findText(findText, !findTextDialog.isCaseInsensitive(), result -> {
+                    if (!isDisposed())
+                        gotoSearchHit(result, startEventNumber, forward);
+                });
+                if (started)
+                    return;
+
+                try {
+                    IEvent event = startEvent;
 
                     EventLogEntry startEventLogEntry = null;
                     if (findTextDialog.isBackward()) {
@@ -1877,6 +1901,23 @@ public class SequenceChart
         }
     }
 
+    /**
+     * Goes to the first event of the search result after (or before) the given event
+     * which is present in the (possibly filtered) event log. The hits are marked
+     * on the chart (see drawEventSearchHitMarks()).
+     */
+    private void gotoSearchHit(EventLogSearchIndex.SearchResult result, long eventNumber, boolean forward) {
+        redraw();
+        while ((eventNumber = result.getNextHit(eventNumber, forward)) != -1) {
+            IEvent event = eventLog.getEventForEventNumber(eventNumber);
+            if (event != null) {
+                gotoClosestElement(event);
+                return;
+            }
+        }
+        MessageDialog.openInformation(null, "Find raw text", "No more matches found for " + result.getText());
+    }
+
     /*************************************************************************************
      * OPEN AXIS MODULES
      */
@@ -2043,6 +2084,25 @@ public class SequenceChart
      */
     private Set<Integer> collectPotentiallyVisibleModuleIds() {
         Set<Integer> axisModuleIds = new HashSet<Integer>();
+        int summaryLevel = getEventDensitySummaryLevel();
+        if (summaryLevel != -1) {
+            // zoomed out: use the event density summary instead of visiting all events
+            long[] eventPtrRange = getFirstLastEventPtrForMessageDependencies();
+            eventDensitySummary.limitWork(EVENT_DENSITY_SUMMARY_TIME_LIMIT_MILLIS);
+            collectModuleIdsFromEventDensitySummary(summaryLevel, eventPtrRange[0], eventPtrRange[1], axisModuleIds);
+            if (eventDensitySummary.isIncomplete()) {
+                // try again when the next part of the summary has been computed
+                Display.getCurrent().asyncExec(new Runnable() {
+                    public void run() {
+                        if (!isDisposed() && eventDensitySummary != null)
+                            invalidateVisibleAxisModules();
+                    }
+                });
+            }
+            if (debug)
+                Debug.println("Module ids that will potentially have axes (from event density summary): " + axisModuleIds);
+            return axisModuleIds;
+        }
         // check potentially visible events
         int extraClipping = getExtraClippingForEvents() + 30; // add an extra for the caching canvas tile cache width (clipping may be negative in paint)
         long[] eventPtrRange = getFirstLastEventPtrForViewportRange(-extraClipping, getViewportWidth() + extraClipping);
@@ -3005,6 +3065,7 @@ public class SequenceChart
                 drawAxisLabels(graphics);
             if (showEventMarks) {
                 drawEventBookmarks(graphics);
+                drawEventSearchHitMarks(graphics);
                 drawEventSelectionMarks(graphics);
             }
             if (showMessageSends || showMessageReuses) {
@@ -3278,17 +3339,39 @@ public class SequenceChart
         long startEventPtr = eventPtrRange[0];
         long endEventPtr = eventPtrRange[1];
 
-        if (showZeroSimulationTimeRegions)
-            drawZeroSimulationTimeRegions(graphics, startEventPtr, endEventPtr);
+        int summaryLevel = getEventDensitySummaryLevel();
+        if (summaryLevel == -1) {
+            if (showZeroSimulationTimeRegions)
+                drawZeroSimulationTimeRegions(graphics, startEventPtr, endEventPtr);
 
-        if (showAxes)
-            drawAxes(graphics, startEventPtr, endEventPtr);
+            if (showAxes)
+                drawAxes(graphics, startEventPtr, endEventPtr);
 
-        drawEvents(graphics, startEventPtr, endEventPtr);
-        drawMessageDependencies(graphics);
+            drawEvents(graphics, startEventPtr, endEventPtr);
+            drawMessageDependencies(graphics);
 
-        if (showComponentMethodCalls)
-            drawComponentMethodCalls(graphics);
+            if (showComponentMethodCalls)
+                drawComponentMethodCalls(graphics);
+        }
+        else {
+            // zoomed out: zero simulation time regions and component method calls are not drawn,
+            // events and message dependencies are drawn aggregated from the event density summary
+            if (showAxes)
+                drawAxes(graphics, startEventPtr, endEventPtr);
+
+            eventDensitySummary.limitWork(EVENT_DENSITY_SUMMARY_TIME_LIMIT_MILLIS);
+            drawEventDensities(graphics, summaryLevel, startEventPtr, endEventPtr);
+            drawMessageDependencyBundles(graphics, summaryLevel);
+            if (eventDensitySummary.isIncomplete()) {
+                // the cached tiles are incomplete, redraw when the next part of the summary has been computed
+                Display.getCurrent().asyncExec(new Runnable() {
+                    public void run() {
+                        if (!isDisposed() && eventDensitySummary != null)
+                            clearCanvasCacheAndRedraw();
+                    }
+                });
+            }
+        }
 
         long totalMillis = System.currentTimeMillis() - startMillis;
         if (debug)
@@ -3672,6 +3755,126 @@ public class SequenceChart
         }
     }
 
+    /**
+     * Draws the event density of all axes within the given event range using the
+     * given level of the event density summary. Each summary bucket is drawn as a bar
+     * on the axes having events in it, the more events the more opaque the bar.
+     */
+    private void drawEventDensities(Graphics graphics, int summaryLevel, long startEventPtr, long endEventPtr) {
+        if (startEventPtr != 0 && endEventPtr != 0) {
+            long startEventNumber = sequenceChartFacade.IEvent_getEventNumber(startEventPtr);
+            long endEventNumber = sequenceChartFacade.IEvent_getEventNumber(endEventPtr);
+            if (debug)
+                Debug.println("Drawing event densities on summary level " + summaryLevel + " with event range: " + startEventNumber + " ->: " + endEventNumber);
+
+            if (startEventNumber == 0 && showInitializationEvent)
+                drawEvent(graphics, startEventPtr);
+
+            int height = 2 * styleProvider.getEventRadius() + 1;
+            int[] axisEventCounts = new int[getAxes().size()];
+            graphics.pushState();
+            graphics.setBackgroundColor(styleProvider.getEventDensityColor());
+            long firstIndex = EventDensitySummary.getBucketIndex(summaryLevel, startEventNumber);
+            long lastIndex = EventDensitySummary.getBucketIndex(summaryLevel, endEventNumber);
+            for (long index = firstIndex; index <= lastIndex; index++) {
+                EventDensitySummary.Bucket bucket = eventDensitySummary.getBucket(summaryLevel, index);
+                if (bucket == null || bucket.isEmpty())
+                    continue;
+                Arrays.fill(axisEventCounts, 0);
+                for (int i = 0; i < bucket.moduleIds.length; i++) {
+                    int axisModuleIndex = getAxisModuleIndexByModuleId(bucket.moduleIds[i]);
+                    if (axisModuleIndex != -1)
+                        axisEventCounts[axisModuleIndex] += bucket.eventCounts[i];
+                }
+                int xBegin = (int)getEventXViewportCoordinateBegin(sequenceChartFacade.IEvent_getEventForEventNumber(bucket.firstEventNumber));
+                int xEnd = (int)getEventXViewportCoordinateEnd(sequenceChartFacade.IEvent_getEventForEventNumber(bucket.lastEventNumber));
+                int width = Math.max(1, xEnd - xBegin);
+                for (int axisModuleIndex = 0; axisModuleIndex < axisEventCounts.length; axisModuleIndex++) {
+                    int count = axisEventCounts[axisModuleIndex];
+                    if (count != 0) {
+                        int y = getModuleYViewportCoordinateByModuleIndex(axisModuleIndex);
+                        graphics.setAlpha(getEventDensitySummaryAlpha(count, width));
+                        graphics.fillRectangle(xBegin, y - height / 2, width, height);
+                    }
+                }
+            }
+            graphics.popState();
+        }
+    }
+
+    /**
+     * Draws the message dependencies which have visual representation in the current viewport
+     * aggregated into bundles using the given level of the event density summary. A bundle
+     * represents the message dependencies between two axes originating from the same summary
+     * bucket, it is drawn as a fan from the bucket to the range of the consequence events.
+     */
+    private void drawMessageDependencyBundles(Graphics graphics, int summaryLevel) {
+        long[] eventPtrRange = getFirstLastEventPtrForMessageDependencies();
+        long startEventPtr = eventPtrRange[0];
+        long endEventPtr = eventPtrRange[1];
+        if (startEventPtr != 0 && endEventPtr != 0) {
+            long startEventNumber = sequenceChartFacade.IEvent_getEventNumber(startEventPtr);
+            long endEventNumber = sequenceChartFacade.IEvent_getEventNumber(endEventPtr);
+            if (debug)
+                Debug.println("Drawing message dependency bundles on summary level " + summaryLevel + " with event range: " + startEventNumber + " ->: " + endEventNumber);
+
+            // KLUDGE: cut down big coordinates, see drawZeroSimulationTimeRegion
+            int maximumWidth = getMaximumMessageDependencyDisplayWidth();
+            int minX = -maximumWidth, maxX = getViewportWidth() + maximumWidth;
+            int[] points = new int[6];
+            graphics.pushState();
+            graphics.setLineStyle(SWT.LINE_SOLID);
+            long firstIndex = EventDensitySummary.getBucketIndex(summaryLevel, startEventNumber);
+            long lastIndex = EventDensitySummary.getBucketIndex(summaryLevel, endEventNumber);
+            for (long index = firstIndex; index <= lastIndex; index++) {
+                EventDensitySummary.Bucket bucket = eventDensitySummary.getBucket(summaryLevel, index);
+                if (bucket == null || bucket.isEmpty() || bucket.bundles.length == 0)
+                    continue;
+                long xBegin = getEventXViewportCoordinateBegin(sequenceChartFacade.IEvent_getEventForEventNumber(bucket.firstEventNumber));
+                long xEnd = getEventXViewportCoordinateEnd(sequenceChartFacade.IEvent_getEventForEventNumber(bucket.lastEventNumber));
+                int x = (int)Math.max(minX, Math.min(maxX, (xBegin + xEnd) / 2));
+                for (EventDensitySummary.Bundle bundle : bucket.bundles) {
+                    if (bundle.isReuse ? !showMessageReuses : !showMessageSends)
+                        continue;
+                    int causeAxisModuleIndex = getAxisModuleIndexByModuleId(bundle.causeModuleId);
+                    int consequenceAxisModuleIndex = getAxisModuleIndexByModuleId(bundle.consequenceModuleId);
+                    // skip if one of the axes is filtered out, bundles on a single axis are represented by the event density
+                    if (causeAxisModuleIndex == -1 || consequenceAxisModuleIndex == -1 || causeAxisModuleIndex == consequenceAxisModuleIndex)
+                        continue;
+                    int y1 = getModuleYViewportCoordinateByModuleIndex(causeAxisModuleIndex);
+                    int y2 = getModuleYViewportCoordinateByModuleIndex(consequenceAxisModuleIndex);
+                    int x2First = (int)Math.max(minX, Math.min(maxX, getEventXViewportCoordinateBegin(sequenceChartFacade.IEvent_getEventForEventNumber(bundle.firstConsequenceEventNumber))));
+                    int x2Last = bundle.lastConsequenceEventNumber == bundle.firstConsequenceEventNumber ? x2First :
+                        (int)Math.max(minX, Math.min(maxX, getEventXViewportCoordinateBegin(sequenceChartFacade.IEvent_getEventForEventNumber(bundle.lastConsequenceEventNumber))));
+                    Color color = styleProvider.getMessageDependencyBundleColor(bundle.isReuse);
+                    graphics.setForegroundColor(color);
+                    graphics.setBackgroundColor(color);
+                    graphics.setAlpha(getEventDensitySummaryAlpha(bundle.count, 1));
+                    if (x2Last - x2First <= 1)
+                        graphics.drawLine(x, y1, x2First, y2);
+                    else {
+                        points[0] = x;
+                        points[1] = y1;
+                        points[2] = x2First;
+                        points[3] = y2;
+                        points[4] = x2Last;
+                        points[5] = y2;
+                        graphics.fillPolygon(points);
+                    }
+                }
+            }
+            graphics.popState();
+        }
+    }
+
+    /**
+     * Returns the alpha value used to draw count aggregated elements on the given width.
+     */
+    private int getEventDensitySummaryAlpha(int count, int width) {
+        double density = (double)count / Math.max(1, width);
+        return (int)Math.min(255, 48 + 32 * Math.log(density + 1) / Math.log(2));
+    }
+
     /**
      * Draws a single event.
      */
@@ -4050,6 +4253,36 @@ public class SequenceChart
         }
     }
 
+    /**
+     * Marks the visible events that contain the text of the last raw text search.
+     * At most MAX_SEARCH_HIT_MARKS of them are marked, so that zoomed out views
+     * stay responsive.
+     */
+    private void drawEventSearchHitMarks(Graphics graphics) {
+        EventLogSearchIndex.SearchResult searchResult = eventLogInput.getLastSearchResult();
+        if (searchResult == null || searchResult.getNumHits() == 0)
+            return;
+        long[] eventPtrRange = getFirstLastEventPtrForViewportRange(0 - styleProvider.getEventSelectionRadius(), getViewportWidth() + styleProvider.getEventSelectionRadius());
+        long startEventPtr = eventPtrRange[0];
+        long endEventPtr = eventPtrRange[1];
+        if (startEventPtr != 0 && endEventPtr != 0) {
+            graphics.pushState();
+            graphics.translate(0, getGutterHeight(graphics));
+            long startEventNumber = sequenceChartFacade.IEvent_getEventNumber(startEventPtr);
+            long endEventNumber = sequenceChartFacade.IEvent_getEventNumber(endEventPtr);
+            int count = 0;
+            long eventNumber = startEventNumber - 1;
+            while (count < MAX_SEARCH_HIT_MARKS && (eventNumber = searchResult.getNextHit(eventNumber, true)) != -1 && eventNumber <= endEventNumber) {
+                IEvent event = eventLog.getEventForEventNumber(eventNumber);
+                if (event != null) {
+                    drawEventMark(graphics, styleProvider.getSearchHitColor(), event);
+                    count++;
+                }
+            }
+            graphics.popState();
+        }
+    }
+
     /**
      * Draws a mark around the given event, handles initialize event.
      */
@@ -5162,6 +5395,59 @@ public class SequenceChart
         return getFirstLastEventPtrForViewportRange(-extraWidth, extraWidth * 2);
     }
 
+    /**
+     * Returns the level of the event density summary to be used for drawing the current
+     * viewport, or -1 if events are sparse enough to be drawn one by one. The decision is
+     * based on the number of events per pixel column; the level is chosen so that a bucket
+     * covers about EVENT_DENSITY_SUMMARY_BUCKET_WIDTH pixels of event numbers.
+     */
+    private int getEventDensitySummaryLevel() {
+        if (eventDensitySummary == null || getViewportWidth() <= 0)
+            return -1;
+        long[] eventPtrRange = getFirstLastEventPtrForViewportRange(0, getViewportWidth());
+        long startEventPtr = eventPtrRange[0];
+        long endEventPtr = eventPtrRange[1];
+        if (startEventPtr == 0 || endEventPtr == 0)
+            return -1;
+        long startEventNumber = sequenceChartFacade.IEvent_getEventNumber(startEventPtr);
+        long endEventNumber = sequenceChartFacade.IEvent_getEventNumber(endEventPtr);
+        // event numbers are sparse in a filtered eventlog, so their difference is only an upper bound
+        double eventNumbersPerPixel = (double)(endEventNumber - startEventNumber + 1) / getViewportWidth();
+        if (eventNumbersPerPixel < EVENT_DENSITY_SUMMARY_EVENTS_PER_PIXEL)
+            return -1;
+        int level = EventDensitySummary.getLevelForBucketSize(eventNumbersPerPixel * EVENT_DENSITY_SUMMARY_BUCKET_WIDTH);
+        eventDensitySummary.limitWork(EVENT_DENSITY_SUMMARY_TIME_LIMIT_MILLIS);
+        double eventsPerPixel = eventDensitySummary.estimateNumEvents(level, startEventNumber, endEventNumber) / getViewportWidth();
+        if (eventsPerPixel < EVENT_DENSITY_SUMMARY_EVENTS_PER_PIXEL)
+            return -1;
+        else
+            return level;
+    }
+
+    /**
+     * Collects the ids of the modules having events or message dependencies in the given event range
+     * from the given level of the event density summary.
+     */
+    private void collectModuleIdsFromEventDensitySummary(int summaryLevel, long startEventPtr, long endEventPtr, Set<Integer> moduleIds) {
+        if (startEventPtr != 0 && endEventPtr != 0) {
+            long firstIndex = EventDensitySummary.getBucketIndex(summaryLevel, sequenceChartFacade.IEvent_getEventNumber(startEventPtr));
+            long lastIndex = EventDensitySummary.getBucketIndex(summaryLevel, sequenceChartFacade.IEvent_getEventNumber(endEventPtr));
+            for (long index = firstIndex; index <= lastIndex; index++) {
+                EventDensitySummary.Bucket bucket = eventDensitySummary.getBucket(summaryLevel, index);
+                if (bucket == null)
+                    continue;
+                for (int moduleId : bucket.moduleIds)
+                    moduleIds.add(moduleId);
+                for (EventDensitySummary.Bundle bundle : bucket.bundles) {
+                    if (bundle.isReuse ? showMessageReuses : showMessageSends) {
+                        moduleIds.add(bundle.causeModuleId);
+                        moduleIds.add(bundle.consequenceModuleId);
+                    }
+                }
+            }
+        }
+    }
+
     /**
      * Returns the maximum width after which message dependencies are drawn as a split arrow.
      */
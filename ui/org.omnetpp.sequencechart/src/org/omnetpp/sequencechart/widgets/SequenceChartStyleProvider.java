@@ -53,6 +53,11 @@ public final class SequenceChartStyleProvider implements ISequenceChartStyleProv
         return ColorFactory.GREEN3;
     }
 
+    @Override
+    public final Color getSearchHitColor() {
+        return ColorFactory.DARK_ORANGE;
+    }
+
     @Override
     public final Color getZeroSimulationTimeRegionColor() {
         return ColorFactory.GREY94;
@@ -143,6 +148,11 @@ public final class SequenceChartStyleProvider implements ISequenceChartStyleProv
             return ColorFactory.RED;
     }
 
+    @Override
+    public final Color getEventDensityColor() {
+        return ColorFactory.RED;
+    }
+
     @Override
     public final Font getMessageDependencyLabelFont(long messageDependencyPtr) {
         return null;
@@ -173,6 +183,11 @@ public final class SequenceChartStyleProvider implements ISequenceChartStyleProv
         }
     }
 
+    @Override
+    public final Color getMessageDependencyBundleColor(boolean isReuse) {
+        return isReuse ? ColorFactory.GREEN4 : ColorFactory.BLUE;
+    }
+
     @Override
     public final int getMessageDependencyLineStyle(long messageDependencyPtr) {
         if (sequenceChartFacade.IMessageDependency_isFilteredMessageDependency(messageDependencyPtr)) {
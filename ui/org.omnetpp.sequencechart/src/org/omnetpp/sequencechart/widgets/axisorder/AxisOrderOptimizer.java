@@ -0,0 +1,394 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.sequencechart.widgets.axisorder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Computes an axis order that minimizes the total cost of the message arrows between
+ * axes, where an arrow between axes at positions i and j costs (i-j)^2-1, i.e. arrows
+ * that cross many axes are expensive. The input is the (not necessarily symmetric)
+ * matrix of message counts between axes.
+ *
+ * The search keeps, for every axis, the sum of its arrow weights and the weighted sum of
+ * the positions of the axes it is connected to, so that the cost change of swapping two
+ * axes can be computed in constant time, and applying a swap takes time proportional to
+ * the number of connected axes.
+ *
+ * The initial placement comes from the spectral ordering of the dependency graph (the
+ * Fiedler vector of its Laplacian, which minimizes the continuous relaxation of the cost).
+ * Then several simulated annealing searches are run in parallel, started from the current
+ * order, the spectral order and perturbations of it, each finished with a greedy
+ * best-insertion pass. The best result wins; ties are resolved in favor of the current
+ * order, so that axes don't jump around needlessly.
+ */
+public class AxisOrderOptimizer {
+    private static final int ITERATIONS_PER_AXIS = 5000;  // annealing iteration limit
+
+    private final int numAxes;
+    private final int[][] neighbors;  // adjacency lists
+    private final long[][] neighborWeights;  // symmetric weights, parallel to neighbors[]
+    private final long[] totalWeights;  // sum of neighborWeights[a][]
+    private final int[][] weightMatrix;  // original input, for weight lookup
+
+    public AxisOrderOptimizer(int[][] weightMatrix) {
+        this.weightMatrix = weightMatrix;
+        this.numAxes = weightMatrix.length;
+        neighbors = new int[numAxes][];
+        neighborWeights = new long[numAxes][];
+        totalWeights = new long[numAxes];
+        for (int a = 0; a < numAxes; a++) {
+            int count = 0;
+            for (int b = 0; b < numAxes; b++)
+                if (b != a && getWeight(a, b) != 0)
+                    count++;
+            neighbors[a] = new int[count];
+            neighborWeights[a] = new long[count];
+            int k = 0;
+            for (int b = 0; b < numAxes; b++) {
+                long weight = b == a ? 0 : getWeight(a, b);
+                if (weight != 0) {
+                    neighbors[a][k] = b;
+                    neighborWeights[a][k] = weight;
+                    totalWeights[a] += weight;
+                    k++;
+                }
+            }
+        }
+    }
+
+    private long getWeight(int a, int b) {
+        return (long)weightMatrix[a][b] + weightMatrix[b][a];
+    }
+
+    /**
+     * Returns the cost of the given ordering; positions[a] is the position of axis a.
+     */
+    public long calculateCost(int[] positions) {
+        long cost = 0;
+        for (int a = 0; a < numAxes; a++) {
+            for (int k = 0; k < neighbors[a].length; k++) {
+                int b = neighbors[a][k];
+                if (b > a) {
+                    long d = positions[a] - positions[b];
+                    cost += neighborWeights[a][k] * (d * d - 1);
+                }
+            }
+        }
+        return cost;
+    }
+
+    /**
+     * Computes the ordering within the given time limit, and returns the position
+     * of each axis. The initial ordering is the identity (axis i at position i).
+     */
+    public int[] calculatePositions(long timeLimitMillis) {
+        long deadline = System.currentTimeMillis() + timeLimitMillis;
+        if (numAxes < 3)
+            return identity();
+
+        int[] identityOrder = identity();
+        int[] spectralOrder = calculateSpectralOrder(System.currentTimeMillis() + timeLimitMillis / 5);
+
+        int numSearches = Math.max(3, Runtime.getRuntime().availableProcessors());
+        List<Callable<Search>> searches = new ArrayList<>();
+        for (int i = 0; i < numSearches; i++) {
+            int[] initialOrder = i == 0 ? identityOrder : spectralOrder.clone();
+            Random random = new Random(i);
+            if (i >= 2)
+                perturb(initialOrder, random, numAxes / 4);
+            searches.add(() -> {
+                Search search = new Search(initialOrder, random);
+                search.anneal(System.currentTimeMillis() + (deadline - System.currentTimeMillis()) * 4 / 5);
+                search.improveByInsertion(deadline);
+                return search;
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(numSearches, Runtime.getRuntime().availableProcessors()));
+        try {
+            Search best = null;
+            for (Future<Search> future : executor.invokeAll(searches)) {
+                Search search = future.get();
+                if (best == null || search.bestCost < best.bestCost)
+                    best = search;
+            }
+            return best.getBestPositions();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return identity();
+        }
+        catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private int[] identity() {
+        int[] result = new int[numAxes];
+        for (int i = 0; i < numAxes; i++)
+            result[i] = i;
+        return result;
+    }
+
+    private void perturb(int[] order, Random random, int numSwaps) {
+        for (int i = 0; i < numSwaps; i++) {
+            int p = random.nextInt(numAxes - 1);
+            int tmp = order[p];
+            order[p] = order[p + 1];
+            order[p + 1] = tmp;
+        }
+    }
+
+    /**
+     * Returns the axes sorted by their component in the Fiedler vector of the Laplacian
+     * of the dependency graph, computed by power iteration on (c*I - L) while keeping the
+     * vector orthogonal to the constant vector. The iteration starts from the current
+     * order, so unconnected axes keep their relative order.
+     */
+    private int[] calculateSpectralOrder(long deadline) {
+        long maxDegree = 1;
+        for (int a = 0; a < numAxes; a++)
+            maxDegree = Math.max(maxDegree, totalWeights[a]);
+        double c = 2.0 * maxDegree;
+
+        double[] x = new double[numAxes];
+        for (int a = 0; a < numAxes; a++)
+            x[a] = a;
+        double[] y = new double[numAxes];
+        normalize(x);
+
+        for (int iteration = 0; iteration < 1000 && (iteration % 16 != 0 || System.currentTimeMillis() < deadline); iteration++) {
+            // y = (c*I - L) x = c*x - (D*x - W*x)
+            for (int a = 0; a < numAxes; a++) {
+                double sum = 0;
+                for (int k = 0; k < neighbors[a].length; k++)
+                    sum += neighborWeights[a][k] * x[neighbors[a][k]];
+                y[a] = (c - totalWeights[a]) * x[a] + sum;
+            }
+            normalize(y);
+            double[] tmp = x; x = y; y = tmp;
+        }
+
+        final double[] fiedler = x;
+        Integer[] axes = new Integer[numAxes];
+        for (int a = 0; a < numAxes; a++)
+            axes[a] = a;
+        Arrays.sort(axes, Comparator.comparingDouble((Integer a) -> fiedler[a])); // stable
+        int[] result = new int[numAxes];
+        for (int p = 0; p < numAxes; p++)
+            result[p] = axes[p];
+        return result;
+    }
+
+    private static void normalize(double[] x) {
+        double mean = 0;
+        for (double v : x)
+            mean += v;
+        mean /= x.length;
+        double norm = 0;
+        for (int i = 0; i < x.length; i++) {
+            x[i] -= mean;
+            norm += x[i] * x[i];
+        }
+        norm = Math.sqrt(norm);
+        if (norm > 0)
+            for (int i = 0; i < x.length; i++)
+                x[i] /= norm;
+    }
+
+    /**
+     * State of a single local search.
+     */
+    private class Search {
+        final Random random;
+        final int[] order;  // axis at each position
+        final int[] positions;  // position of each axis
+        final long[] positionSums;  // sum of weight*position over the neighbors of each axis
+        long cost;
+        long bestCost;
+        int[] bestOrder;
+
+        Search(int[] initialOrder, Random random) {
+            this.random = random;
+            order = new int[numAxes];
+            positions = new int[numAxes];
+            positionSums = new long[numAxes];
+            setOrder(initialOrder);
+            bestCost = cost;
+            bestOrder = order.clone();
+        }
+
+        void setOrder(int[] newOrder) {
+            System.arraycopy(newOrder, 0, order, 0, numAxes);
+            for (int p = 0; p < numAxes; p++)
+                positions[order[p]] = p;
+            Arrays.fill(positionSums, 0);
+            for (int a = 0; a < numAxes; a++)
+                for (int k = 0; k < neighbors[a].length; k++)
+                    positionSums[a] += neighborWeights[a][k] * positions[neighbors[a][k]];
+            cost = calculateCost(positions);
+        }
+
+        /**
+         * Cost change of swapping axes a and b, in constant time.
+         */
+        long swapDelta(int a, int b) {
+            long pa = positions[a], pb = positions[b];
+            long w = getWeight(a, b); // the a-b arrow does not change
+            long deltaA = (pb - pa) * ((pb + pa) * (totalWeights[a] - w) - 2 * (positionSums[a] - w * pb));
+            long deltaB = (pa - pb) * ((pa + pb) * (totalWeights[b] - w) - 2 * (positionSums[b] - w * pa));
+            return deltaA + deltaB;
+        }
+
+        void swap(int a, int b, long delta) {
+            int pa = positions[a], pb = positions[b];
+            for (int k = 0; k < neighbors[a].length; k++)
+                positionSums[neighbors[a][k]] += neighborWeights[a][k] * (pb - pa);
+            for (int k = 0; k < neighbors[b].length; k++)
+                positionSums[neighbors[b][k]] += neighborWeights[b][k] * (pa - pb);
+            positions[a] = pb;
+            positions[b] = pa;
+            order[pa] = b;
+            order[pb] = a;
+            cost += delta;
+        }
+
+        void updateBest() {
+            if (cost < bestCost) {
+                bestCost = cost;
+                System.arraycopy(order, 0, bestOrder, 0, numAxes);
+            }
+        }
+
+        int pickPartner(int a) {
+            if (random.nextBoolean())
+                return random.nextInt(numAxes);
+            // nearby axis
+            int window = Math.max(2, numAxes / 20);
+            int p = positions[a] + random.nextInt(2 * window + 1) - window;
+            return order[Math.max(0, Math.min(numAxes - 1, p))];
+        }
+
+        void anneal(long deadline) {
+            // initial temperature from the average cost change of random swaps
+            double sum = 0;
+            int count = 0;
+            for (int i = 0; i < 200; i++) {
+                int a = random.nextInt(numAxes);
+                int b = pickPartner(a);
+                long delta = a == b ? 0 : swapDelta(a, b);
+                if (delta != 0) {
+                    sum += Math.abs(delta);
+                    count++;
+                }
+            }
+            if (count == 0)
+                return;
+            double startTemperature = sum / count;
+            double endTemperature = startTemperature * 1e-4;
+
+            // the schedule is driven by elapsed time or the iteration count, whichever is further;
+            // the latter makes small problems finish early
+            long startTime = System.currentTimeMillis();
+            double duration = Math.max(1, deadline - startTime);
+            double maxIterations = ITERATIONS_PER_AXIS * (double)numAxes;
+            double temperature = startTemperature;
+            for (long iteration = 0; ; iteration++) {
+                if ((iteration & 1023) == 0) {
+                    double progress = Math.max((System.currentTimeMillis() - startTime) / duration, iteration / maxIterations);
+                    if (progress >= 1)
+                        break;
+                    temperature = startTemperature * Math.pow(endTemperature / startTemperature, progress);
+                }
+                int a = random.nextInt(numAxes);
+                int b = pickPartner(a);
+                if (a == b)
+                    continue;
+                long delta = swapDelta(a, b);
+                if (delta < 0 || (delta > 0 && random.nextDouble() < Math.exp(-delta / temperature))) {
+                    swap(a, b, delta);
+                    if (delta < 0)
+                        updateBest();
+                }
+            }
+        }
+
+        /**
+         * Greedily moves axes to the best position, starting from the best order found
+         * so far, until there is no improvement or time runs out. Moving an axis is done
+         * by a series of adjacent swaps, so all target positions are evaluated in time
+         * proportional to the number of arrows of the axes passed.
+         */
+        void improveByInsertion(long deadline) {
+            setOrder(bestOrder);
+
+            boolean improved = true;
+            while (improved && System.currentTimeMillis() < deadline) {
+                improved = false;
+                for (int a = 0; a < numAxes; a++) {
+                    if (neighbors[a].length == 0)
+                        continue;
+                    int start = positions[a];
+                    long bestDelta = 0;
+                    int bestPosition = start;
+                    long delta = 0;
+                    // slide left
+                    for (int p = start - 1; p >= 0; p--) {
+                        long d = swapDelta(a, order[p]);
+                        swap(a, order[p], d);
+                        delta += d;
+                        if (delta < bestDelta) {
+                            bestDelta = delta;
+                            bestPosition = p;
+                        }
+                    }
+                    // slide right from the left end, through the start position
+                    for (int p = 1; p < numAxes; p++) {
+                        long d = swapDelta(a, order[p]);
+                        swap(a, order[p], d);
+                        delta += d;
+                        if (p != start && delta < bestDelta) {
+                            bestDelta = delta;
+                            bestPosition = p;
+                        }
+                    }
+                    // slide back to the best position
+                    for (int p = numAxes - 2; p >= bestPosition; p--) {
+                        long d = swapDelta(a, order[p]);
+                        swap(a, order[p], d);
+                    }
+                    if (bestDelta < 0)
+                        improved = true;
+                    if ((a & 15) == 0 && System.currentTimeMillis() >= deadline)
+                        break;
+                }
+            }
+            updateBest();
+        }
+
+        int[] getBestPositions() {
+            int[] result = new int[numAxes];
+            for (int p = 0; p < numAxes; p++)
+                result[bestOrder[p]] = p;
+            return result;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package org.omnetpp.test.unit.layout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.eclipse.draw2d.geometry.PrecisionPoint;
+import org.junit.Test;
+import org.omnetpp.common.displaymodel.PointF;
+import org.omnetpp.figures.layout.BarnesHutSpringEmbedderLayoutAlgorithm;
+import org.omnetpp.figures.layout.BasicSpringEmbedderLayoutAlgorithm;
+import org.omnetpp.figures.layout.ILayoutAlgorithm;
+
+/**
+ * Non-interactive tests for the spring embedder layouters.
+ */
+public class SpringEmbedderLayoutTest extends TestCase {
+
+    private static int[][] path(int n) {
+        int[][] edges = new int[n - 1][];
+        for (int i = 0; i < n - 1; i++)
+            edges[i] = new int[] {i, i + 1};
+        return edges;
+    }
+
+    private static int[][] star(int n) {
+        int[][] edges = new int[n - 1][];
+        for (int i = 1; i < n; i++)
+            edges[i - 1] = new int[] {0, i};
+        return edges;
+    }
+
+    private static int[][] ring(int n) {
+        int[][] edges = new int[n][];
+        for (int i = 0; i < n; i++)
+            edges[i] = new int[] {i, (i + 1) % n};
+        return edges;
+    }
+
+    private static int[][] grid(int rows, int columns) {
+        List<int[]> edges = new ArrayList<int[]>();
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+                int i = r * columns + c;
+                if (c < columns - 1)
+                    edges.add(new int[] {i, i + 1});
+                if (r < rows - 1)
+                    edges.add(new int[] {i, i + columns});
+            }
+        }
+        return edges.toArray(new int[][] {});
+    }
+
+    private static PointF[] layout(ILayoutAlgorithm layouter, int numNodes, int[][] edges, double nodeSize, double areaSize, int seed) {
+        layouter.setSeed(seed);
+        layouter.setSize(areaSize, areaSize, 20);
+        for (int i = 0; i < numNodes; i++)
+            layouter.addMovableNode(i, nodeSize, nodeSize);
+        for (int[] edge : edges)
+            layouter.addEdge(edge[0], edge[1], 0);
+        layouter.execute();
+
+        PointF[] positions = new PointF[numNodes];
+        for (int i = 0; i < numNodes; i++)
+            positions[i] = layouter.getNodePosition(i);
+        return positions;
+    }
+
+    private static void assertSameLayout(int numNodes, int[][] edges) {
+        for (int seed = 1; seed <= 3; seed++) {
+            PointF[] expected = layout(new BasicSpringEmbedderLayoutAlgorithm(), numNodes, edges, 40, 600, seed);
+            PointF[] actual = layout(new BarnesHutSpringEmbedderLayoutAlgorithm(), numNodes, edges, 40, 600, seed);
+            for (int i = 0; i < numNodes; i++) {
+                assertEquals("x of node " + i + ", seed " + seed, expected[i].x, actual[i].x, 1.0);
+                assertEquals("y of node " + i + ", seed " + seed, expected[i].y, actual[i].y, 1.0);
+            }
+        }
+    }
+
+    @Test
+    public void testSmallGraphsSameAsBasic() {
+        // on small graphs the approximations make no difference
+        assertSameLayout(5, path(5));
+        assertSameLayout(7, star(7));
+        assertSameLayout(8, ring(8));
+        assertSameLayout(9, grid(3, 3));
+    }
+
+    @Test
+    public void testLargeGraph() {
+        // a random tree with some extra edges
+        int n = 1000;
+        Random random = new Random(1);
+        List<int[]> edgeList = new ArrayList<int[]>();
+        for (int i = 1; i < n; i++)
+            edgeList.add(new int[] {random.nextInt(i), i});
+        for (int i = 0; i < n / 10; i++) {
+            int a = random.nextInt(n), b = random.nextInt(n);
+            if (a != b)
+                edgeList.add(new int[] {a, b});
+        }
+        int[][] edges = edgeList.toArray(new int[][] {});
+
+        // the area is large enough not to scale the layout down
+        double nodeSize = 10;
+        PointF[] positions = layout(new BarnesHutSpringEmbedderLayoutAlgorithm(), n, edges, nodeSize, 20000, 1);
+        for (int i = 0; i < n; i++) {
+            assertTrue("node " + i + " has invalid position", !Float.isNaN(positions[i].x) && !Float.isInfinite(positions[i].x) && !Float.isNaN(positions[i].y) && !Float.isInfinite(positions[i].y));
+            for (int j = 0; j < i; j++)
+                assertFalse("nodes " + j + " and " + i + " overlap", Math.abs(positions[i].x - positions[j].x) < nodeSize && Math.abs(positions[i].y - positions[j].y) < nodeSize);
+        }
+    }
+
+    @Test
+    public void testAnchorPosition() {
+        BarnesHutSpringEmbedderLayoutAlgorithm layouter = new BarnesHutSpringEmbedderLayoutAlgorithm();
+        layouter.setSeed(1);
+        layouter.setSize(600, 400, 20);
+        layouter.addFixedNode(0, 50, 50, 40, 40);
+        layouter.addMovableNode(1, 40, 40);
+        double[] offX = new double[4], offY = new double[4];
+        for (int i = 0; i < 4; i++) {
+            offX[i] = 60 * Math.cos(i * Math.PI / 2);
+            offY[i] = 60 * Math.sin(i * Math.PI / 2);
+            layouter.addAnchoredNode(10 + i, "ring", offX[i], offY[i], 30, 30);
+        }
+        layouter.setAnchorPosition("ring", 300, 200);
+        layouter.addEdge(0, 1, 0);
+        layouter.addEdge(1, 10, 0);
+        assertNull(layouter.getAnchorPosition("ring"));
+        layouter.execute();
+
+        // anchored nodes keep their offsets to the anchor
+        PrecisionPoint anchor = layouter.getAnchorPosition("ring");
+        assertNotNull(anchor);
+        for (int i = 0; i < 4; i++) {
+            PointF position = layouter.getNodePosition(10 + i);
+            assertEquals(anchor.preciseX() + offX[i], position.x, 0.01);
+            assertEquals(anchor.preciseY() + offY[i], position.y, 0.01);
+        }
+        assertNull(layouter.getAnchorPosition("nonexistent"));
+    }
+}
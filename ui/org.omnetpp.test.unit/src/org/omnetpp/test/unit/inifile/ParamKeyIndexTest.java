@@ -0,0 +1,194 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.test.unit.inifile;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.jface.text.Document;
+import org.junit.Test;
+import org.omnetpp.inifile.editor.model.IReadonlyInifileDocument;
+import org.omnetpp.inifile.editor.model.InifileDocument;
+import org.omnetpp.inifile.editor.model.InifileUtils;
+import org.omnetpp.inifile.editor.model.SectionKey;
+
+/**
+ * Tests that the indexed parameter lookup on immutable ini documents returns
+ * the same entries as the linear scan on the mutable document.
+ */
+public class ParamKeyIndexTest extends TestCase {
+    private static final String[] MODULES = {"host", "router", "node5", "node12", "app", "udp", "eth", "queue"};
+    private static final String[] PARAMS = {"port", "address", "x", "y", "typename", "numApps"};
+    private static final String[] SECTIONS = {"Config Derived", "Config Base", "General"};
+
+    private Random random;
+
+    private String randomPath() {
+        StringBuilder path = new StringBuilder(random.nextBoolean() ? "net" : "net2");
+        int depth = 1 + random.nextInt(3);
+        for (int i = 0; i < depth; i++) {
+            path.append('.').append(MODULES[random.nextInt(MODULES.length)]);
+            if (random.nextInt(3) == 0)
+                path.append('[').append(random.nextInt(12)).append(']');
+        }
+        path.append('.').append(PARAMS[random.nextInt(PARAMS.length)]);
+        return path.toString();
+    }
+
+    /**
+     * Produces a key by generalizing the segments of a random path.
+     */
+    private String randomKey() {
+        String[] segments = randomPath().split("\\.");
+        StringBuilder key = new StringBuilder();
+        for (int i = 0; i < segments.length; i++) {
+            if (i > 0)
+                key.append('.');
+            key.append(randomPattern(segments[i], i == segments.length - 1));
+        }
+        String result = key.toString();
+        if (random.nextInt(8) == 0)
+            result = result.replaceFirst("^[^.]*\\.([^.]*\\.)?", "**."); // leading "**."
+        return result;
+    }
+
+    private String randomPattern(String segment, boolean isLast) {
+        String name = segment.replaceAll("\\[.*\\]$", "");
+        String index = segment.length() == name.length() ? "" : segment.substring(name.length());
+        if (index.length() > 0) {
+            switch (random.nextInt(6)) {
+            case 0: index = "[*]"; break;
+            case 1: int lo = random.nextInt(8); index = "[" + lo + ".." + (lo + random.nextInt(6)) + "]"; break;
+            case 2: index = "[" + random.nextInt(5) + "..]"; break;
+            case 3: index = "[.." + random.nextInt(8) + "]"; break;
+            default: break; // keep the literal index
+            }
+        }
+        switch (random.nextInt(isLast ? 12 : 8)) {
+        case 0: return "*";
+        case 1: return "**";
+        case 2: return name.substring(0, 1) + "*" + index;
+        case 3: return "*" + name.substring(name.length() - 1) + index;
+        case 4: return name.length() > 1 ? "?" + name.substring(1) + index : name + index;
+        case 5: return name.replaceAll("[0-9]+$", "") + "{" + random.nextInt(8) + ".." + (8 + random.nextInt(8)) + "}" + index;
+        default: return name + index;
+        }
+    }
+
+    private InifileDocument createDocument(int numKeys) {
+        StringBuilder text = new StringBuilder();
+        for (int i = SECTIONS.length - 1; i >= 0; i--) {
+            String section = SECTIONS[i];
+            text.append(section.equals("General") ? "[General]\n" : "[" + section + "]\n");
+            if (i < SECTIONS.length - 1)
+                text.append("extends = " + SECTIONS[i + 1].replace("Config ", "") + "\n");
+            Set<String> keys = new LinkedHashSet<String>();
+            while (keys.size() < numKeys)
+                keys.add(random.nextInt(10) == 0 ? randomPath() : randomKey());
+            for (String key : keys)
+                text.append(key).append(" = ").append(random.nextInt(5) == 0 ? "default" : String.valueOf(random.nextInt(100))).append("\n");
+        }
+        IFile file = ResourcesPlugin.getWorkspace().getRoot().getFile(new Path("/test/omnetpp.ini"));
+        InifileDocument doc = new InifileDocument(new Document(text.toString()), file);
+        doc.parse();
+        return doc;
+    }
+
+    private void assertSameLookups(int seed, int numKeys, int numPaths) {
+        random = new Random(seed);
+        InifileDocument doc = createDocument(numKeys);
+        try {
+            IReadonlyInifileDocument docCopy = doc.getImmutableCopy();
+            for (int i = 0; i < numPaths; i++) {
+                String path = randomPath();
+                for (int start = 0; start < SECTIONS.length; start++) {
+                    String[] sectionChain = new String[SECTIONS.length - start];
+                    System.arraycopy(SECTIONS, start, sectionChain, 0, sectionChain.length);
+                    for (boolean hasNedDefault : new boolean[] {false, true}) {
+                        List<SectionKey> expected = InifileUtils.lookupParameter(path, hasNedDefault, sectionChain, doc);
+                        List<SectionKey> actual = InifileUtils.lookupParameter(path, hasNedDefault, sectionChain, docCopy);
+                        assertEquals("lookup of " + path + " (seed " + seed + ")", toString(expected), toString(actual));
+                    }
+                }
+            }
+        }
+        finally {
+            doc.dispose();
+        }
+    }
+
+    private static List<String> toString(List<SectionKey> sectionKeys) {
+        List<String> result = new ArrayList<String>();
+        for (SectionKey sectionKey : sectionKeys)
+            result.add("[" + sectionKey.section + "] " + sectionKey.key);
+        return result;
+    }
+
+    @Test
+    public void testRandomizedSmall() {
+        for (int seed = 1; seed <= 20; seed++)
+            assertSameLookups(seed, 10, 200);
+    }
+
+    @Test
+    public void testRandomizedLarge() {
+        for (int seed = 1; seed <= 3; seed++)
+            assertSameLookups(seed, 300, 2000);
+    }
+
+    @Test
+    public void testHandWritten() {
+        String text =
+            "[General]\n" +
+            "net.host[2..4].app.port = 2\n" +
+            "net.host[*].app.port = 3\n" +
+            "net.node{1..10}.x = default\n" +
+            "*.router.*.address = 4\n" +
+            "net.router.eth[0].address = 5\n" +
+            "net.h?st[0].y = 6\n" +
+            "**.udp.** = 7\n" +
+            "**.y = 8\n" +
+            "**.port = 1\n";
+        IFile file = ResourcesPlugin.getWorkspace().getRoot().getFile(new Path("/test/omnetpp.ini"));
+        InifileDocument doc = new InifileDocument(new Document(text), file);
+        doc.parse();
+        try {
+            IReadonlyInifileDocument docCopy = doc.getImmutableCopy();
+            String[] sectionChain = new String[] {"General"};
+            String[] paths = {"net.host[3].app.port", "net.host[7].app.port", "net.host.app.port", "net.node5.x", "net.node12.x",
+                    "net.router.eth[0].address", "net.router.udp.address", "net2.router.eth.address", "net.host[0].y", "net.hst[0].y",
+                    "net.udp.app.x", "net.udp", "net.x.y", "port"};
+            for (String path : paths) {
+                for (boolean hasNedDefault : new boolean[] {false, true}) {
+                    List<SectionKey> expected = InifileUtils.lookupParameter(path, hasNedDefault, sectionChain, doc);
+                    List<SectionKey> actual = InifileUtils.lookupParameter(path, hasNedDefault, sectionChain, docCopy);
+                    assertEquals("lookup of " + path, toString(expected), toString(actual));
+                }
+            }
+
+            // check the results themselves
+            assertEquals("[[General] net.host[2..4].app.port, [General] net.host[*].app.port]",
+                    toString(InifileUtils.lookupParameter("net.host[3].app.port", false, sectionChain, docCopy)).toString());
+            assertEquals("[[General] net.node{1..10}.x]",
+                    toString(InifileUtils.lookupParameter("net.node5.x", true, sectionChain, docCopy)).toString());
+            assertEquals("[]",
+                    toString(InifileUtils.lookupParameter("net.node5.x", false, sectionChain, docCopy)).toString());
+        }
+        finally {
+            doc.dispose();
+        }
+    }
+}
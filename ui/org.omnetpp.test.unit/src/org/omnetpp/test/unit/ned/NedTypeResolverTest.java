@@ -0,0 +1,156 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.test.unit.ned;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.Path;
+import org.junit.Test;
+import org.omnetpp.ned.core.NedTypeResolver;
+import org.omnetpp.ned.model.INedErrorStore;
+import org.omnetpp.ned.model.NedTreeUtil;
+import org.omnetpp.ned.model.SysoutNedErrorStore;
+import org.omnetpp.ned.model.interfaces.INedTypeElement;
+
+/**
+ * Tests the reverse dependency index of NedTypeResolver, which is used to
+ * find the types to invalidate on an incremental rehash.
+ */
+public class NedTypeResolverTest extends TestCase {
+
+    private static class TestNedTypeResolver extends NedTypeResolver {
+        public TestNedTypeResolver() {
+            debug = false;
+        }
+
+        public IFile setFile(String name, String source) {
+            IFile file = ResourcesPlugin.getWorkspace().getRoot().getFile(new Path("/test/" + name));
+            INedErrorStore errorStore = new SysoutNedErrorStore();
+            nedFiles.put(file, NedTreeUtil.parseNedText(source, errorStore, name, this));
+            assertEquals(0, errorStore.getNumProblems());
+            return file;
+        }
+
+        public Set<String> rehash(IFile file) {
+            return internalRehash(Collections.singleton(file));
+        }
+
+        public void rehash() {
+            internalRehash();
+        }
+
+        public INedTypeElement getType(String name) {
+            List<INedTypeElement> types = new ArrayList<INedTypeElement>();
+            for (IFile file : nedFiles.keySet())
+                collectAllTypes(nedFiles.get(file), types);
+            for (INedTypeElement type : types)
+                if (type.getName().equals(name))
+                    return type;
+            fail("no such type: " + name);
+            return null;
+        }
+
+        public Set<String> getAffectedTypeNames(String... changedTypeNames) {
+            List<INedTypeElement> changedTypes = new ArrayList<INedTypeElement>();
+            for (String name : changedTypeNames)
+                changedTypes.add(getType(name));
+            Set<String> result = new HashSet<String>();
+            for (INedTypeElement type : collectAffectedTypes(changedTypes, Arrays.asList(changedTypeNames)))
+                result.add(type.getName());
+            return result;
+        }
+
+        public Map<String, Set<String>> getIndex(boolean subtypes) {
+            Map<String, Set<String>> result = new HashMap<String, Set<String>>();
+            for (Map.Entry<String, Set<INedTypeElement>> entry : (subtypes ? subtypeIndex : userIndex).entrySet()) {
+                Set<String> names = new HashSet<String>();
+                for (INedTypeElement type : entry.getValue())
+                    names.add(type.getName());
+                result.put(entry.getKey(), names);
+            }
+            return result;
+        }
+    }
+
+    private static Set<String> names(String... names) {
+        return new HashSet<String>(Arrays.asList(names));
+    }
+
+    @Test
+    public void testSubtypesOfUsersAreAffected() {
+        TestNedTypeResolver resolver = new TestNedTypeResolver();
+        resolver.setFile("a.ned",
+                "simple B {}\n" +
+                "module A { submodules: b: B; }\n" +
+                "module C extends A {}\n" +
+                "module D extends C {}\n" +
+                "module E { submodules: a: A; }\n");
+        resolver.rehash();
+
+        // E only uses A, so it is not affected by B; the subtypes of A inherit the submodule
+        assertEquals(names("B", "A", "C", "D"), resolver.getAffectedTypeNames("B"));
+        assertEquals(names("A", "C", "D", "E"), resolver.getAffectedTypeNames("A"));
+        assertEquals(names("D"), resolver.getAffectedTypeNames("D"));
+    }
+
+    @Test
+    public void testInnerTypesAreAffected() {
+        TestNedTypeResolver resolver = new TestNedTypeResolver();
+        resolver.setFile("a.ned",
+                "simple B {}\n" +
+                "module A {\n" +
+                "  types:\n" +
+                "    module Inner { submodules: b: B; }\n" +
+                "    module InnerSub extends Inner {}\n" +
+                "}\n" +
+                "module C { submodules: a: A; }\n");
+        resolver.rehash();
+
+        assertEquals(names("B", "Inner", "InnerSub"), resolver.getAffectedTypeNames("B"));
+        assertEquals(names("A", "Inner", "InnerSub", "C"), resolver.getAffectedTypeNames("A"));
+    }
+
+    @Test
+    public void testIncrementalRehash() {
+        TestNedTypeResolver resolver = new TestNedTypeResolver();
+        resolver.setFile("a.ned",
+                "simple B {}\n" +
+                "module A { submodules: b: B; }\n");
+        IFile file = resolver.setFile("c.ned",
+                "module C extends A {}\n");
+        resolver.rehash();
+
+        // change the file: a new supertype, a new user, a renamed type
+        resolver.setFile("c.ned",
+                "module C extends A { submodules: b: B; }\n" +
+                "module D extends C {}\n");
+        Set<String> changedNames = resolver.rehash(file);
+        assertEquals(names("C", "D"), changedNames);
+        Map<String, Set<String>> subtypeIndex = resolver.getIndex(true);
+        Map<String, Set<String>> userIndex = resolver.getIndex(false);
+
+        // the incrementally updated index must be the same as the rebuilt one
+        resolver.rehash();
+        assertEquals(resolver.getIndex(true), subtypeIndex);
+        assertEquals(resolver.getIndex(false), userIndex);
+        assertEquals(names("A", "C"), subtypeIndex.keySet());
+        assertEquals(names("C", "D"), resolver.getAffectedTypeNames("C"));
+        assertEquals(names("B", "A", "C", "D"), resolver.getAffectedTypeNames("B"));
+    }
+}